@@ -8,10 +8,14 @@ import com.fasterxml.jackson.databind.PropertyNamingStrategies;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.databind.json.JsonMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.mewebstudio.nestedset.entity.type.UlidType;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 @Configuration
+@EnableConfigurationProperties(NestedSetProperties.class)
 public class AppConfig {
     @Bean
     public ObjectMapper objectMapper() {
@@ -28,4 +32,12 @@ public class AppConfig {
 
         return objectMapper;
     }
+
+    /**
+     * Hand the ID storage over to Hibernate, where {@link UlidType} picks the column type from it.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer idStorageCustomizer(NestedSetProperties nestedSetProperties) {
+        return properties -> properties.put(UlidType.ID_STORAGE, nestedSetProperties.getIdStorage().name());
+    }
 }
@@ -0,0 +1,65 @@
+package com.mewebstudio.nestedset.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.mewebstudio.nestedset.entity.Category;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.util.OptionalLong;
+import java.util.UUID;
+
+/**
+ * Backs the Hibernate second-level cache with an in-process Caffeine cache, bounded in size and in time. The hits,
+ * misses, puts and evictions of the category region are published as the {@code cache.*} metrics, whether or not the
+ * Hibernate statistics are on.
+ */
+@Configuration
+public class CacheConfig {
+    /**
+     * The regions are created here with their bounds, Hibernate fails on a region it does not find instead of
+     * creating an unbounded one.
+     */
+    @Bean
+    public CacheManager secondLevelCacheManager(NestedSetProperties nestedSetProperties) {
+        // Every application context gets its own manager, the provider shares one manager per URI.
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+            .getCacheManager(URI.create("nested-set-" + UUID.randomUUID()), getClass().getClassLoader());
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(nestedSetProperties.getCacheMaxSize()));
+        configuration.setExpireAfterWrite(OptionalLong.of(nestedSetProperties.getCacheTtl().toNanos()));
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(Category.CACHE_REGION, configuration);
+        return cacheManager;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(NestedSetProperties nestedSetProperties,
+                                                                    CacheManager secondLevelCacheManager) {
+        return properties -> {
+            properties.put(AvailableSettings.USE_SECOND_LEVEL_CACHE, nestedSetProperties.isCacheEnabled());
+            if (nestedSetProperties.isCacheEnabled()) {
+                properties.put(AvailableSettings.CACHE_REGION_FACTORY, ConfigSettings.SIMPLE_FACTORY_NAME);
+                properties.put(ConfigSettings.CACHE_MANAGER, secondLevelCacheManager);
+                properties.put(ConfigSettings.MISSING_CACHE_STRATEGY, "fail");
+            }
+        };
+    }
+
+    /**
+     * The statistics are read from the JMX bean the Caffeine provider registers for the region.
+     */
+    @Bean
+    public MeterBinder secondLevelCacheMetrics(CacheManager secondLevelCacheManager) {
+        return new JCacheMetrics<>(secondLevelCacheManager.getCache(Category.CACHE_REGION), Tags.empty());
+    }
+}
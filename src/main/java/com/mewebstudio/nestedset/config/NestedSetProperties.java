@@ -0,0 +1,411 @@
+package com.mewebstudio.nestedset.config;
+
+import com.github.f4b6a3.ulid.Ulid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.validation.annotation.Validated;
+
+import java.time.Duration;
+import java.util.UUID;
+
+@ConfigurationProperties(prefix = "app.nested-set")
+@Validated
+public class NestedSetProperties {
+    /**
+     * Strategy used to assign left/right bounds on insert and move.
+     */
+    private Numbering numbering = Numbering.DENSE;
+
+    /**
+     * Distance between consecutive bounds when the gapped numbering is used, at least 3 so that a gap has room
+     * for the two bounds of an insert.
+     */
+    @Min(3)
+    private int gapStep = 1024;
+
+    /**
+     * How a delete removes the subtree and closes the gap it leaves.
+     */
+    private DeleteMode deleteMode = DeleteMode.RANGE;
+
+    /**
+     * Whether the tree reads are served from an in-memory snapshot of all trees. When disabled they stream from
+     * the database, which keeps the heap use of a read proportional to the tree depth.
+     */
+    private boolean snapshotEnabled = true;
+
+    /**
+     * How often a read compares the snapshot with the persisted tree version, so the mutations committed by other
+     * instances are picked up. 0 compares on every read.
+     */
+    private Duration snapshotCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * How concurrent mutations are kept from working on the same bounds.
+     */
+    private Concurrency concurrency = Concurrency.LOCK;
+
+    /**
+     * How many times a mutation that lost a race is run again before the conflict is reported.
+     */
+    @PositiveOrZero
+    private int maxRetries = 5;
+
+    /**
+     * Whether create, move and delete requests are queued and applied in batches of one transaction each.
+     */
+    private boolean groupCommitEnabled = false;
+
+    /**
+     * How long the queue keeps collecting requests after the first one of a batch arrived.
+     */
+    private Duration groupCommitWindow = Duration.ofMillis(5);
+
+    /**
+     * Largest number of requests applied in one batch.
+     */
+    @Positive
+    private int groupCommitMaxBatch = 256;
+
+    /**
+     * Largest number of items of a batch create, which holds the tree locks and binds parameters for all of them.
+     */
+    @Positive
+    private int batchMaxSize = 1000;
+
+    /**
+     * How a rebuild of every tree applies the positions it computed.
+     */
+    private RebuildMode rebuildMode = RebuildMode.LOCKED;
+
+    /**
+     * Number of partitions an integrity check reads and checks at the same time, each read takes a connection.
+     */
+    @Positive
+    private int verifyParallelism = 4;
+
+    /**
+     * How the category IDs, their parent references and tree IDs are stored. Decides the column types, so an
+     * existing database has to be migrated when it is changed.
+     */
+    private IdStorage idStorage = IdStorage.TEXT;
+
+    /**
+     * Whether loaded categories are kept in the Hibernate second-level cache, so that a lookup by ID, and the parent
+     * of a category, are served without a query.
+     */
+    private boolean cacheEnabled = true;
+
+    /**
+     * Largest number of categories kept in the second-level cache, those least likely to be read again are evicted
+     * first.
+     */
+    @Positive
+    private long cacheMaxSize = 10_000;
+
+    /**
+     * How long a category stays in the second-level cache after it was put there.
+     */
+    private Duration cacheTtl = Duration.ofMinutes(10);
+
+    /**
+     * Number of the latest tree changes kept for the subscribers of the change feed that resume from a version.
+     */
+    @PositiveOrZero
+    private int feedHistorySize = 1024;
+
+    /**
+     * Number of changes a subscriber of the change feed may fall behind before it is told to resync and dropped.
+     */
+    @Positive
+    private int feedBufferSize = 256;
+
+    /**
+     * Number of threads sending the change feed to its subscribers, each one blocks while it writes to a slow client.
+     */
+    @Positive
+    private int feedSenderThreads = 8;
+
+    /**
+     * How long a subscription to the change feed stays open, the client reconnects with the last version it got.
+     */
+    private Duration feedTimeout = Duration.ofMinutes(30);
+
+    /**
+     * Number of the latest tree versions the change journal keeps for delta syncs, 0 to keep no journal.
+     */
+    @PositiveOrZero
+    private int journalSize = 10000;
+
+    public Numbering getNumbering() {
+        return numbering;
+    }
+
+    public void setNumbering(Numbering numbering) {
+        this.numbering = numbering;
+    }
+
+    public int getGapStep() {
+        return gapStep;
+    }
+
+    public void setGapStep(int gapStep) {
+        this.gapStep = gapStep;
+    }
+
+    public DeleteMode getDeleteMode() {
+        return deleteMode;
+    }
+
+    public void setDeleteMode(DeleteMode deleteMode) {
+        this.deleteMode = deleteMode;
+    }
+
+    public boolean isSnapshotEnabled() {
+        return snapshotEnabled;
+    }
+
+    public void setSnapshotEnabled(boolean snapshotEnabled) {
+        this.snapshotEnabled = snapshotEnabled;
+    }
+
+    public Duration getSnapshotCheckInterval() {
+        return snapshotCheckInterval;
+    }
+
+    public void setSnapshotCheckInterval(Duration snapshotCheckInterval) {
+        this.snapshotCheckInterval = snapshotCheckInterval;
+    }
+
+    public Concurrency getConcurrency() {
+        return concurrency;
+    }
+
+    public void setConcurrency(Concurrency concurrency) {
+        this.concurrency = concurrency;
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public boolean isGroupCommitEnabled() {
+        return groupCommitEnabled;
+    }
+
+    public void setGroupCommitEnabled(boolean groupCommitEnabled) {
+        this.groupCommitEnabled = groupCommitEnabled;
+    }
+
+    public Duration getGroupCommitWindow() {
+        return groupCommitWindow;
+    }
+
+    public void setGroupCommitWindow(Duration groupCommitWindow) {
+        this.groupCommitWindow = groupCommitWindow;
+    }
+
+    public int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+
+    public void setGroupCommitMaxBatch(int groupCommitMaxBatch) {
+        this.groupCommitMaxBatch = groupCommitMaxBatch;
+    }
+
+    public int getBatchMaxSize() {
+        return batchMaxSize;
+    }
+
+    public void setBatchMaxSize(int batchMaxSize) {
+        this.batchMaxSize = batchMaxSize;
+    }
+
+    public RebuildMode getRebuildMode() {
+        return rebuildMode;
+    }
+
+    public void setRebuildMode(RebuildMode rebuildMode) {
+        this.rebuildMode = rebuildMode;
+    }
+
+    public int getVerifyParallelism() {
+        return verifyParallelism;
+    }
+
+    public void setVerifyParallelism(int verifyParallelism) {
+        this.verifyParallelism = verifyParallelism;
+    }
+
+    public IdStorage getIdStorage() {
+        return idStorage;
+    }
+
+    public void setIdStorage(IdStorage idStorage) {
+        this.idStorage = idStorage;
+    }
+
+    public boolean isCacheEnabled() {
+        return cacheEnabled;
+    }
+
+    public void setCacheEnabled(boolean cacheEnabled) {
+        this.cacheEnabled = cacheEnabled;
+    }
+
+    public long getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(long cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public Duration getCacheTtl() {
+        return cacheTtl;
+    }
+
+    public void setCacheTtl(Duration cacheTtl) {
+        this.cacheTtl = cacheTtl;
+    }
+
+    public int getFeedHistorySize() {
+        return feedHistorySize;
+    }
+
+    public void setFeedHistorySize(int feedHistorySize) {
+        this.feedHistorySize = feedHistorySize;
+    }
+
+    public int getFeedBufferSize() {
+        return feedBufferSize;
+    }
+
+    public void setFeedBufferSize(int feedBufferSize) {
+        this.feedBufferSize = feedBufferSize;
+    }
+
+    public int getFeedSenderThreads() {
+        return feedSenderThreads;
+    }
+
+    public void setFeedSenderThreads(int feedSenderThreads) {
+        this.feedSenderThreads = feedSenderThreads;
+    }
+
+    public Duration getFeedTimeout() {
+        return feedTimeout;
+    }
+
+    public void setFeedTimeout(Duration feedTimeout) {
+        this.feedTimeout = feedTimeout;
+    }
+
+    public int getJournalSize() {
+        return journalSize;
+    }
+
+    public void setJournalSize(int journalSize) {
+        this.journalSize = journalSize;
+    }
+
+    public boolean isGapped() {
+        return numbering == Numbering.GAPPED;
+    }
+
+    public enum Numbering {
+        /**
+         * Contiguous bounds, every insert shifts all nodes to the right of the insert point.
+         */
+        DENSE,
+
+        /**
+         * Spaced-out bounds, inserts and moves use the free gap and only renumber locally when it is used up.
+         */
+        GAPPED
+    }
+
+    public enum Concurrency {
+        /**
+         * Remember the tree version when the mutation starts and only bump it if it is still the same at the end,
+         * a mutation that lost the race is rolled back and run again.
+         */
+        OPTIMISTIC,
+
+        /**
+         * Lock the tree version row when the mutation starts, so writers queue up and never have to run again.
+         */
+        LOCK
+    }
+
+    public enum RebuildMode {
+        /**
+         * Compute and write the positions while holding the tree version, every other mutation waits for the whole
+         * rebuild. Packs the trees one after the other.
+         */
+        LOCKED,
+
+        /**
+         * Compute the positions into a shadow table while mutations go on, then swap them in with one short
+         * transaction that also rebuilds the trees changed meanwhile. Every tree keeps the left bound of its root.
+         */
+        ONLINE
+    }
+
+    public enum DeleteMode {
+        /**
+         * Load and remove the category entity, the database cascades the delete to the subtree.
+         */
+        CASCADE,
+
+        /**
+         * Remove the whole left/right range with one DELETE and close the gap with one UPDATE,
+         * without loading any entity.
+         */
+        RANGE
+    }
+
+    public enum IdStorage {
+        /**
+         * The 26 characters of the ULID string, in a varchar column.
+         */
+        TEXT,
+
+        /**
+         * The 16 bytes of the ULID, in a uuid column. Halves the keys and their indexes, and joins compare fixed-size
+         * values instead of strings.
+         */
+        BINARY;
+
+        /**
+         * Convert an ID to the value of its column, for statements that bypass the entity mapping.
+         *
+         * @param id String? The ULID string.
+         * @return Object? The ULID string, or its UUID when stored as binary. A string that is not a ULID matches no
+         * category, as it would as text: it becomes the nil UUID, which no generated ULID has.
+         */
+        public Object toColumn(String id) {
+            if (this == TEXT || id == null) {
+                return id;
+            }
+
+            return Ulid.isValid(id) ? Ulid.from(id).toUuid() : new UUID(0, 0);
+        }
+
+        /**
+         * Convert the value of an ID column read without the entity mapping.
+         *
+         * @param value Object? The column value.
+         * @return String? The ULID string.
+         */
+        public String fromColumn(Object value) {
+            return value instanceof UUID uuid ? Ulid.from(uuid).toString() : (String) value;
+        }
+    }
+}
@@ -1,55 +1,185 @@
 package com.mewebstudio.nestedset.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchRequest;
 import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
 import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.dto.response.CategoryChangeSetResponse;
+import com.mewebstudio.nestedset.dto.response.CategoryPageResponse;
 import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.dto.response.RebuildProgressResponse;
 import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import com.mewebstudio.nestedset.service.CategoryChangeFeed;
+import com.mewebstudio.nestedset.service.CategoryChangeJournal;
+import com.mewebstudio.nestedset.service.CategoryMutationQueue;
+import com.mewebstudio.nestedset.service.CategoryRowSource;
 import com.mewebstudio.nestedset.service.CategoryService;
+import com.mewebstudio.nestedset.service.CategoryTreeRebuildService;
+import com.mewebstudio.nestedset.service.CategoryTreeRebuilder;
+import com.mewebstudio.nestedset.service.CategoryTreeSnapshotService;
+import com.mewebstudio.nestedset.service.RebuildProgress;
+import com.mewebstudio.nestedset.service.TreeMutationRetrier;
+import com.mewebstudio.nestedset.service.Versioned;
 import com.mewebstudio.nestedset.exception.BadRequestException;
-import com.mewebstudio.springboot.jpa.nestedset.NestedSetUtil;
 import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/categories")
 public class CategoryController {
     private final CategoryService categoryService;
 
-    public CategoryController(CategoryService categoryService) {
+    private final CategoryTreeSnapshotService categoryTreeSnapshotService;
+
+    private final TreeMutationRetrier treeMutationRetrier;
+
+    private final CategoryMutationQueue categoryMutationQueue;
+
+    private final CategoryTreeRebuilder categoryTreeRebuilder;
+
+    private final CategoryTreeRebuildService categoryTreeRebuildService;
+
+    private final CategoryChangeFeed categoryChangeFeed;
+
+    private final CategoryChangeJournal categoryChangeJournal;
+
+    private final ObjectMapper objectMapper;
+
+    public CategoryController(CategoryService categoryService,
+                              CategoryTreeSnapshotService categoryTreeSnapshotService,
+                              TreeMutationRetrier treeMutationRetrier, CategoryMutationQueue categoryMutationQueue,
+                              CategoryTreeRebuilder categoryTreeRebuilder,
+                              CategoryTreeRebuildService categoryTreeRebuildService,
+                              CategoryChangeFeed categoryChangeFeed, CategoryChangeJournal categoryChangeJournal,
+                              ObjectMapper objectMapper) {
         this.categoryService = categoryService;
+        this.categoryTreeSnapshotService = categoryTreeSnapshotService;
+        this.treeMutationRetrier = treeMutationRetrier;
+        this.categoryMutationQueue = categoryMutationQueue;
+        this.categoryTreeRebuilder = categoryTreeRebuilder;
+        this.categoryTreeRebuildService = categoryTreeRebuildService;
+        this.categoryChangeFeed = categoryChangeFeed;
+        this.categoryChangeJournal = categoryChangeJournal;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Get every tree, or a single one when a tree ID is given.
+     *
+     * @param treeId   The ID of the tree (its root category), optional.
+     * @param maxDepth The number of levels below the roots to include, optional.
+     * @param request  The request, its If-None-Match header is checked against the tree version.
+     * @return The trees in root order streamed as they are read, or 304 when the client has them already.
+     */
     @GetMapping("/tree")
-    public ResponseEntity<List<CategoryResponse>> tree() {
+    public ResponseEntity<StreamingResponseBody> tree(@RequestParam(required = false) String treeId,
+                                                      @RequestParam(required = false) Integer maxDepth,
+                                                      WebRequest request) {
+        return streamed(categoryTreeSnapshotService.tree(treeId, maxDepth), request);
+    }
+
+    /**
+     * Get a page of every tree, or of a single one when a tree ID is given.
+     *
+     * @param treeId   The ID of the tree (its root category), optional.
+     * @param maxDepth The number of levels below the roots to include, optional.
+     * @param after    The cursor returned with the previous page, optional.
+     * @param limit    The maximum number of categories.
+     * @return The flat categories in tree order and the cursor of the next page.
+     */
+    @GetMapping(value = "/tree", params = "limit")
+    public ResponseEntity<CategoryPageResponse> treePage(@RequestParam(required = false) String treeId,
+                                                         @RequestParam(required = false) Integer maxDepth,
+                                                         @RequestParam(required = false) String after,
+                                                         @RequestParam int limit) {
         return ResponseEntity.ok(
-            NestedSetUtil.tree(
-                categoryService.getAllCategories(),
-                category -> CategoryResponse.convert(category, false)
-            )
+            CategoryPageResponse.convert(categoryTreeSnapshotService.treePage(treeId, maxDepth, after, limit))
         );
     }
 
+    /**
+     * Subscribe to the tree changes as Server-Sent Events, in version order.
+     *
+     * @param sinceVersion The last version the client got, optional, every change after it is sent first.
+     * @param lastEventId  The Last-Event-ID header an event source reconnects with, used when no version is given.
+     * @return The {@code change} events, or a {@code resync} event when the client has to read the trees again.
+     */
+    @GetMapping(value = "/tree/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter treeEvents(@RequestParam(required = false) Long sinceVersion,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return categoryChangeFeed.subscribe(sinceVersion != null ? sinceVersion : lastEventId);
+    }
+
+    /**
+     * Get the changes of the trees since a version, to bring a copy of them up to date.
+     *
+     * @param sinceVersion The last version the client has.
+     * @return For every tree changed since, the categories with a bound in the changed range, or a resync when the
+     * change journal does not reach back to the version.
+     */
+    @GetMapping("/tree/changes")
+    public ResponseEntity<CategoryChangeSetResponse> treeChanges(@RequestParam long sinceVersion) {
+        return ResponseEntity.ok(CategoryChangeSetResponse.convert(categoryChangeJournal.changesSince(sinceVersion)));
+    }
+
     @GetMapping("/ancestors/{id}")
-    public ResponseEntity<List<CategoryResponse>> ancestorsById(@PathVariable String id) {
-        return ResponseEntity.ok(
-            NestedSetUtil.tree(
-                categoryService.getAncestors(categoryService.findById(id)),
-                category -> CategoryResponse.convert(category, false)
-            )
-        );
+    public ResponseEntity<List<CategoryResponse>> ancestorsById(@PathVariable String id, WebRequest request) {
+        return versioned(categoryTreeSnapshotService.ancestors(id), request);
+    }
+
+    /**
+     * Tell whether a category lies in the subtree of another one.
+     *
+     * @param id           The ID of the enclosing category.
+     * @param descendantId The ID of the category looked for.
+     * @param request      The request, its If-None-Match header is checked against the tree version.
+     * @return True when the category is a descendant of the other one.
+     */
+    @GetMapping("/{id}/contains/{descendantId}")
+    public ResponseEntity<Boolean> contains(@PathVariable String id, @PathVariable String descendantId,
+                                            WebRequest request) {
+        return versioned(categoryTreeSnapshotService.contains(id, descendantId), request);
+    }
+
+    /**
+     * Get the lowest common ancestor of categories: the deepest category that is one of them or an ancestor of
+     * each of them.
+     *
+     * @param ids     The IDs of the categories.
+     * @param request The request, its If-None-Match header is checked against the tree version.
+     * @return The common ancestor.
+     */
+    @GetMapping("/common-ancestor")
+    public ResponseEntity<CategoryResponse> commonAncestor(@RequestParam(required = false) List<String> ids,
+                                                           WebRequest request) {
+        return versioned(categoryTreeSnapshotService.commonAncestor(ids != null ? ids : List.of()), request);
     }
 
+    /**
+     * Get the descendants of a category.
+     *
+     * @param id       The ID of the category.
+     * @param maxDepth The number of levels below the category to include, optional.
+     * @param request  The request, its If-None-Match header is checked against the tree version.
+     * @return The descendants as nested categories, or 304 when the client has them already.
+     */
     @GetMapping("/descendants/{id}")
-    public ResponseEntity<List<CategoryResponse>> descendantsById(@PathVariable String id) {
-        return ResponseEntity.ok(
-            NestedSetUtil.tree(
-                categoryService.getDescendants(categoryService.findById(id)),
-                category -> CategoryResponse.convert(category, false)
-            )
-        );
+    public ResponseEntity<StreamingResponseBody> descendantsById(@PathVariable String id,
+                                                                 @RequestParam(required = false) Integer maxDepth,
+                                                                 WebRequest request) {
+        return streamed(categoryTreeSnapshotService.descendants(id, maxDepth), request);
     }
 
     /**
@@ -59,8 +189,27 @@ public class CategoryController {
      * @return The created category.
      */
     @PostMapping
-    public ResponseEntity<CategoryResponse> create(@Valid @RequestBody CreateCategoryRequest request) {
-        return ResponseEntity.ok(CategoryResponse.convert(categoryService.create(request), true));
+    public CompletableFuture<ResponseEntity<CategoryResponse>> create(
+        @Valid @RequestBody CreateCategoryRequest request
+    ) {
+        return categoryMutationQueue.create(request)
+            .thenApply(category -> ResponseEntity.ok(CategoryResponse.convert(category, true)));
+    }
+
+    /**
+     * Create a batch of categories in one transaction.
+     *
+     * @param request The request containing the items, a parent can be an existing category or another item.
+     * @return The created categories, in the order of the items.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<List<CategoryResponse>> createBatch(@Valid @RequestBody CreateCategoryBatchRequest request) {
+        return ResponseEntity.ok(
+            treeMutationRetrier.execute(CategoryTreeChangedEvent.Operation.CREATE,
+                    () -> categoryService.createAll(request.getItems())).stream()
+                .map(category -> CategoryResponse.convert(category, true))
+                .toList()
+        );
     }
 
     /**
@@ -71,7 +220,8 @@ public class CategoryController {
      */
     @GetMapping("/{id}")
     public ResponseEntity<CategoryResponse> show(@PathVariable String id) {
-        return ResponseEntity.ok(CategoryResponse.convert(categoryService.findById(id), true));
+        List<CategoryRow> rows = categoryService.getWithParent(id);
+        return ResponseEntity.ok(CategoryResponse.convert(rows.get(0), rows.size() > 1 ? rows.get(1) : null));
     }
 
     /**
@@ -82,16 +232,15 @@ public class CategoryController {
      * @return The updated category.
      */
     @PostMapping("/{id}/{action}")
-    public ResponseEntity<CategoryResponse> move(@PathVariable String id, @PathVariable String action) {
-        Category category = categoryService.findById(id);
+    public CompletableFuture<ResponseEntity<CategoryResponse>> move(@PathVariable String id,
+                                                                   @PathVariable String action) {
+        CompletableFuture<Category> moved = switch (action) {
+            case "up" -> categoryMutationQueue.moveUp(id);
+            case "down" -> categoryMutationQueue.moveDown(id);
+            default -> throw new BadRequestException("Invalid action: " + action);
+        };
 
-        return ResponseEntity.ok(
-            switch (action) {
-                case "up" -> CategoryResponse.convert(categoryService.moveUp(category), true);
-                case "down" -> CategoryResponse.convert(categoryService.moveDown(category), true);
-                default -> throw new BadRequestException("Invalid action: " + action);
-            }
-        );
+        return moved.thenApply(category -> ResponseEntity.ok(CategoryResponse.convert(category, true)));
     }
 
     /**
@@ -102,17 +251,37 @@ public class CategoryController {
      * @return The updated category.
      */
     @PatchMapping("/{id}")
-    public ResponseEntity<CategoryResponse> update(
+    public CompletableFuture<ResponseEntity<CategoryResponse>> update(
         @PathVariable String id,
         @Valid @RequestBody UpdateCategoryRequest request
     ) {
-        return ResponseEntity.ok(CategoryResponse.convert(categoryService.update(id, request), true));
+        return categoryMutationQueue.update(id, request)
+            .thenApply(category -> ResponseEntity.ok(CategoryResponse.convert(category, true)));
     }
 
+    /**
+     * Rebuild the left/right bounds of every tree, or of a single one when a tree ID is given. A rebuild of every
+     * tree runs online when the rebuild mode says so.
+     *
+     * @param treeId The ID of the tree (its root category), optional.
+     * @return The number of categories read and changed, and the time it took.
+     */
     @PatchMapping
-    public ResponseEntity<Void> rebuild() {
-        categoryService.rebuildTree(null);
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<RebuildProgressResponse> rebuild(@RequestParam(required = false) String treeId) {
+        return ResponseEntity.ok(RebuildProgressResponse.convert(categoryTreeRebuildService.rebuild(treeId)));
+    }
+
+    /**
+     * Get the progress of the running rebuild, or the outcome of the last one.
+     *
+     * @return The rebuild phase and counts, or 204 when no rebuild ran since the start.
+     */
+    @GetMapping("/rebuild")
+    public ResponseEntity<RebuildProgressResponse> rebuildProgress() {
+        RebuildProgress progress = categoryTreeRebuilder.getProgress();
+        return progress != null
+            ? ResponseEntity.ok(RebuildProgressResponse.convert(progress))
+            : ResponseEntity.noContent().build();
     }
 
     /**
@@ -122,19 +291,80 @@ public class CategoryController {
      * @return No content.
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> delete(@PathVariable String id) {
-        categoryService.delete(id);
-        return ResponseEntity.noContent().build();
+    public CompletableFuture<ResponseEntity<Void>> delete(@PathVariable String id) {
+        return categoryMutationQueue.delete(id).thenApply(ignored -> ResponseEntity.noContent().build());
     }
 
     /**
      * Get the subtree of a category.
      *
-     * @param id The ID of the category.
+     * @param id      The ID of the category.
+     * @param request The request, its If-None-Match header is checked against the tree version.
      * @return The subtree as a list of categories.
      */
     @GetMapping("/{id}/subtree")
-    public ResponseEntity<List<Category>> getSubtree(@PathVariable String id) {
-        return ResponseEntity.ok(categoryService.getSubtree(id));
+    public ResponseEntity<List<CategoryResponse>> getSubtree(@PathVariable String id, WebRequest request) {
+        return versioned(categoryTreeSnapshotService.subtree(id), request);
+    }
+
+    /**
+     * Get a page of the subtree of a category.
+     *
+     * @param id    The ID of the category.
+     * @param after The cursor returned with the previous page, optional.
+     * @param limit The maximum number of categories.
+     * @return The flat categories ordered by left value and the cursor of the next page.
+     */
+    @GetMapping(value = "/{id}/subtree", params = "limit")
+    public ResponseEntity<CategoryPageResponse> getSubtreePage(@PathVariable String id,
+                                                               @RequestParam(required = false) String after,
+                                                               @RequestParam int limit) {
+        return ResponseEntity.ok(
+            CategoryPageResponse.convert(categoryTreeSnapshotService.subtreePage(id, after, limit))
+        );
+    }
+
+    /**
+     * Answer a tree read with the tree version as a strong ETag, or with 304 when it matches If-None-Match.
+     *
+     * @param read    The read result and the tree version it reflects.
+     * @param request The request.
+     * @return The response.
+     */
+    private static <T> ResponseEntity<T> versioned(Versioned<T> read, WebRequest request) {
+        String eTag = eTag(read);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok().eTag(eTag).body(read.getValue());
+    }
+
+    /**
+     * Like {@link #versioned}, but the rows are written as nested JSON while they are read.
+     *
+     * @param read    The rows and the tree version they reflect.
+     * @param request The request.
+     * @return The response.
+     */
+    private ResponseEntity<StreamingResponseBody> streamed(Versioned<CategoryRowSource> read, WebRequest request) {
+        String eTag = eTag(read);
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+        }
+
+        return ResponseEntity.ok()
+            .eTag(eTag)
+            .contentType(MediaType.APPLICATION_JSON)
+            .body(outputStream -> {
+                try (JsonGenerator generator = objectMapper.createGenerator(outputStream)
+                    .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                    CategoryTreeJsonWriter.write(read.getValue(), generator);
+                }
+            });
+    }
+
+    private static String eTag(Versioned<?> read) {
+        return "\"" + read.getVersion() + "\"";
     }
 }
@@ -0,0 +1,80 @@
+package com.mewebstudio.nestedset.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.service.CategoryRowSource;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Objects;
+
+/**
+ * Writes rows ordered by left value as the nested JSON of {@link CategoryResponse}, without building the nested
+ * responses. A row opens its children array and the array is closed once a row outside its bounds comes, so only
+ * the rows on the current path are held. The fields come in the order, and are left out when null, as the
+ * application {@code ObjectMapper} serializes a {@link CategoryResponse}; the parent of a node in a tree is always
+ * null and never written.
+ */
+final class CategoryTreeJsonWriter {
+    private CategoryTreeJsonWriter() {
+    }
+
+    /**
+     * @param rows      CategoryRowSource The rows, tree by tree, each tree ordered by left value.
+     * @param generator JsonGenerator The generator to write the array of top-level nodes to.
+     * @throws IOException if writing fails.
+     */
+    static void write(CategoryRowSource rows, JsonGenerator generator) throws IOException {
+        Deque<CategoryResponse> path = new ArrayDeque<>();
+        generator.writeStartArray();
+        try {
+            rows.forEach(row -> {
+                try {
+                    while (!path.isEmpty() && !encloses(path.peek(), row)) {
+                        close(path.pop(), generator);
+                    }
+                    open(row, generator);
+                    path.push(row);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        while (!path.isEmpty()) {
+            close(path.pop(), generator);
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private static void open(CategoryResponse row, JsonGenerator generator) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("id", row.getId());
+        generator.writeStringField("name", row.getName());
+        generator.writeNumberField("left", row.getLeft());
+        generator.writeNumberField("right", row.getRight());
+        if (row.getTreeId() != null) {
+            generator.writeStringField("treeId", row.getTreeId());
+        }
+        generator.writeArrayFieldStart("children");
+    }
+
+    private static void close(CategoryResponse row, JsonGenerator generator) throws IOException {
+        generator.writeEndArray();
+        if (row.getCreatedAt() != null) {
+            generator.writeObjectField("createdAt", row.getCreatedAt());
+        }
+        if (row.getUpdatedAt() != null) {
+            generator.writeObjectField("updatedAt", row.getUpdatedAt());
+        }
+        generator.writeEndObject();
+    }
+
+    private static boolean encloses(CategoryResponse parent, CategoryResponse row) {
+        return Objects.equals(parent.getTreeId(), row.getTreeId()) && row.getLeft() < parent.getRight();
+    }
+}
@@ -0,0 +1,43 @@
+package com.mewebstudio.nestedset.controller;
+
+import com.mewebstudio.nestedset.dto.response.TreeIntegrityResponse;
+import com.mewebstudio.nestedset.service.CategoryTreeVerifier;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+/**
+ * Actuator endpoint {@code /actuator/treeintegrity}, checks the nested-set invariants of every tree.
+ */
+@Component
+@Endpoint(id = "treeintegrity")
+public class TreeIntegrityEndpoint {
+    private static final int DEFAULT_LIMIT = 100;
+
+    private static final int MAX_LIMIT = 10_000;
+
+    private final CategoryTreeVerifier categoryTreeVerifier;
+
+    public TreeIntegrityEndpoint(CategoryTreeVerifier categoryTreeVerifier) {
+        this.categoryTreeVerifier = categoryTreeVerifier;
+    }
+
+    /**
+     * Check every tree.
+     *
+     * @param limit Integer? The largest number of violations to report, 100 by default.
+     * @return TreeIntegrityResponse The outcome of the check.
+     */
+    @ReadOperation
+    public TreeIntegrityResponse verify(@Nullable Integer limit) {
+        int max = limit != null ? limit : DEFAULT_LIMIT;
+        if (max < 1 || max > MAX_LIMIT) {
+            throw new InvalidEndpointRequestException("Limit must be between 1 and " + MAX_LIMIT,
+                "Invalid limit " + limit);
+        }
+
+        return TreeIntegrityResponse.convert(categoryTreeVerifier.verify(max));
+    }
+}
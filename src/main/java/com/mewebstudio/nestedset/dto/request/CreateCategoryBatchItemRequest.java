@@ -0,0 +1,42 @@
+package com.mewebstudio.nestedset.dto.request;
+
+public class CreateCategoryBatchItemRequest extends CreateCategoryRequest {
+    private String ref;
+
+    private String parentRef;
+
+    public CreateCategoryBatchItemRequest() {
+    }
+
+    public CreateCategoryBatchItemRequest(String ref, String name, String parentId, String parentRef) {
+        super(name, parentId);
+        this.ref = ref;
+        this.parentRef = parentRef;
+    }
+
+    /**
+     * Client-side key of the item, so that other items of the same batch can use it as their parent.
+     *
+     * @return String The reference of the item.
+     */
+    public String getRef() {
+        return ref;
+    }
+
+    public void setRef(String ref) {
+        this.ref = ref;
+    }
+
+    /**
+     * Reference of another item of the same batch to use as parent, instead of the ID of an existing category.
+     *
+     * @return String The reference of the parent item.
+     */
+    public String getParentRef() {
+        return parentRef;
+    }
+
+    public void setParentRef(String parentRef) {
+        this.parentRef = parentRef;
+    }
+}
@@ -0,0 +1,28 @@
+package com.mewebstudio.nestedset.dto.request;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.List;
+
+public class CreateCategoryBatchRequest {
+    @NotEmpty(message = "Items cannot be empty")
+    @MaxBatchSize
+    private List<@NotNull(message = "Item cannot be null") @Valid CreateCategoryBatchItemRequest> items;
+
+    public CreateCategoryBatchRequest() {
+    }
+
+    public CreateCategoryBatchRequest(List<CreateCategoryBatchItemRequest> items) {
+        this.items = items;
+    }
+
+    public List<CreateCategoryBatchItemRequest> getItems() {
+        return items;
+    }
+
+    public void setItems(List<CreateCategoryBatchItemRequest> items) {
+        this.items = items;
+    }
+}
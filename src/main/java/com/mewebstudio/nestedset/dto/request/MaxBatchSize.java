@@ -0,0 +1,26 @@
+package com.mewebstudio.nestedset.dto.request;
+
+import jakarta.validation.Constraint;
+import jakarta.validation.Payload;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * The annotated collection must not have more elements than {@code app.nested-set.batch-max-size}, as
+ * {@code @Size} only takes a constant.
+ */
+@Documented
+@Constraint(validatedBy = MaxBatchSizeValidator.class)
+@Target(ElementType.FIELD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface MaxBatchSize {
+    String message() default "Items cannot be more than the batch max size";
+
+    Class<?>[] groups() default {};
+
+    Class<? extends Payload>[] payload() default {};
+}
@@ -0,0 +1,30 @@
+package com.mewebstudio.nestedset.dto.request;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import jakarta.validation.ConstraintValidator;
+import jakarta.validation.ConstraintValidatorContext;
+
+import java.util.Collection;
+
+/**
+ * Created by the validator factory of Spring, which injects the properties.
+ */
+public class MaxBatchSizeValidator implements ConstraintValidator<MaxBatchSize, Collection<?>> {
+    private final NestedSetProperties nestedSetProperties;
+
+    public MaxBatchSizeValidator(NestedSetProperties nestedSetProperties) {
+        this.nestedSetProperties = nestedSetProperties;
+    }
+
+    @Override
+    public boolean isValid(Collection<?> value, ConstraintValidatorContext context) {
+        int max = nestedSetProperties.getBatchMaxSize();
+        if (value == null || value.size() <= max) {
+            return true;
+        }
+        context.disableDefaultConstraintViolation();
+        context.buildConstraintViolationWithTemplate("Items cannot be more than " + max)
+            .addConstraintViolation();
+        return false;
+    }
+}
@@ -0,0 +1,95 @@
+package com.mewebstudio.nestedset.dto.response;
+
+import com.mewebstudio.nestedset.service.CategoryChangeSet;
+
+import java.util.List;
+
+public class CategoryChangeSetResponse extends AbstractBaseResponse {
+    private long version;
+
+    private boolean resync;
+
+    private List<TreeChangesResponse> trees;
+
+    public CategoryChangeSetResponse(long version, boolean resync, List<TreeChangesResponse> trees) {
+        this.version = version;
+        this.resync = resync;
+        this.trees = trees;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @return boolean True when the client has to read the trees again instead.
+     */
+    public boolean isResync() {
+        return resync;
+    }
+
+    public void setResync(boolean resync) {
+        this.resync = resync;
+    }
+
+    /**
+     * @return List<TreeChangesResponse>? The changes tree by tree, absent when the client has to resync.
+     */
+    public List<TreeChangesResponse> getTrees() {
+        return trees;
+    }
+
+    public void setTrees(List<TreeChangesResponse> trees) {
+        this.trees = trees;
+    }
+
+    public static CategoryChangeSetResponse convert(CategoryChangeSet changes) {
+        return new CategoryChangeSetResponse(
+            changes.getVersion(),
+            changes.isResync(),
+            changes.isResync() ? null : changes.getTrees().stream().map(TreeChangesResponse::convert).toList()
+        );
+    }
+
+    public static class TreeChangesResponse extends AbstractBaseResponse {
+        private CategoryTreeChangeResponse.RangeResponse range;
+
+        private List<CategoryResponse> categories;
+
+        public TreeChangesResponse(CategoryTreeChangeResponse.RangeResponse range,
+                                   List<CategoryResponse> categories) {
+            this.range = range;
+            this.categories = categories;
+        }
+
+        public CategoryTreeChangeResponse.RangeResponse getRange() {
+            return range;
+        }
+
+        public void setRange(CategoryTreeChangeResponse.RangeResponse range) {
+            this.range = range;
+        }
+
+        /**
+         * @return List<CategoryResponse> The categories with a bound in the range now, ordered by left value.
+         */
+        public List<CategoryResponse> getCategories() {
+            return categories;
+        }
+
+        public void setCategories(List<CategoryResponse> categories) {
+            this.categories = categories;
+        }
+
+        public static TreeChangesResponse convert(CategoryChangeSet.TreeChanges changes) {
+            return new TreeChangesResponse(
+                CategoryTreeChangeResponse.RangeResponse.convert(changes.getRange()),
+                changes.getRows().stream().map(CategoryResponse::convert).toList()
+            );
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.mewebstudio.nestedset.dto.response;
+
+import com.mewebstudio.nestedset.service.CategoryPage;
+
+import java.util.List;
+
+public class CategoryPageResponse extends AbstractBaseResponse {
+    private List<CategoryResponse> items;
+
+    private String next;
+
+    public CategoryPageResponse(List<CategoryResponse> items, String next) {
+        this.items = items;
+        this.next = next;
+    }
+
+    public List<CategoryResponse> getItems() {
+        return items;
+    }
+
+    public void setItems(List<CategoryResponse> items) {
+        this.items = items;
+    }
+
+    /**
+     * @return String? The cursor to pass as {@code after} for the next page, absent on the last page.
+     */
+    public String getNext() {
+        return next;
+    }
+
+    public void setNext(String next) {
+        this.next = next;
+    }
+
+    public static CategoryPageResponse convert(CategoryPage page) {
+        return new CategoryPageResponse(
+            page.getRows().stream().map(CategoryResponse::convert).toList(),
+            page.getNext() != null ? page.getNext().encode() : null
+        );
+    }
+}
@@ -1,9 +1,11 @@
 package com.mewebstudio.nestedset.dto.response;
 
 import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
 import com.mewebstudio.springboot.jpa.nestedset.INestedSetNodeResponse;
 
 import java.time.LocalDateTime;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,6 +18,8 @@ public class CategoryResponse extends AbstractBaseResponse implements INestedSet
 
     private int right;
 
+    private String treeId;
+
     private CategoryResponse parent;
 
     private List<CategoryResponse> children;
@@ -24,12 +28,13 @@ public class CategoryResponse extends AbstractBaseResponse implements INestedSet
 
     private LocalDateTime updatedAt;
 
-    public CategoryResponse(String id, String name, int left, int right, CategoryResponse parent,
+    public CategoryResponse(String id, String name, int left, int right, String treeId, CategoryResponse parent,
                             List<CategoryResponse> children, LocalDateTime createdAt, LocalDateTime updatedAt) {
         this.id = id;
         this.name = name;
         this.left = left;
         this.right = right;
+        this.treeId = treeId;
         this.parent = parent;
         this.children = children;
         this.createdAt = createdAt;
@@ -68,15 +73,24 @@ public class CategoryResponse extends AbstractBaseResponse implements INestedSet
         this.right = right;
     }
 
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(String treeId) {
+        this.treeId = treeId;
+    }
+
+    /**
+     * @return List<INestedSetNodeResponse<String>> A read-only view of the children, the list is not copied.
+     */
     @Override
     public List<INestedSetNodeResponse<String>> getChildren() {
         if (children == null) {
             return List.of();
         }
 
-        return children.stream()
-            .map(child -> (INestedSetNodeResponse<String>) child)
-            .collect(Collectors.toList());
+        return Collections.unmodifiableList(children);
     }
 
     public void setChildren(List<CategoryResponse> children) {
@@ -113,7 +127,7 @@ public class CategoryResponse extends AbstractBaseResponse implements INestedSet
             .filter(child -> child instanceof CategoryResponse)
             .map(child -> (CategoryResponse) child)
             .collect(Collectors.toList());
-        return new CategoryResponse(id, name, left, right, parent, categoryResponses, createdAt, updatedAt);
+        return new CategoryResponse(id, name, left, right, treeId, parent, categoryResponses, createdAt, updatedAt);
     }
 
     public static CategoryResponse convert(Category category, boolean includeParent) {
@@ -127,10 +141,29 @@ public class CategoryResponse extends AbstractBaseResponse implements INestedSet
             category.getName(),
             category.getLeft(),
             category.getRight(),
+            category.getTreeId(),
             parentResponse,
             null,
             category.getCreatedAt(),
             category.getUpdatedAt()
         );
     }
+
+    public static CategoryResponse convert(CategoryRow row) {
+        return convert(row, null);
+    }
+
+    public static CategoryResponse convert(CategoryRow row, CategoryRow parent) {
+        return new CategoryResponse(
+            row.getId(),
+            row.getName(),
+            row.getLeft(),
+            row.getRight(),
+            row.getTreeId(),
+            parent != null ? convert(parent, null) : null,
+            null,
+            row.getCreatedAt(),
+            row.getUpdatedAt()
+        );
+    }
 }
@@ -0,0 +1,111 @@
+package com.mewebstudio.nestedset.dto.response;
+
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+
+import java.util.List;
+
+public class CategoryTreeChangeResponse extends AbstractBaseResponse {
+    private long version;
+
+    private String operation;
+
+    private List<RangeResponse> ranges;
+
+    public CategoryTreeChangeResponse(long version, String operation, List<RangeResponse> ranges) {
+        this.version = version;
+        this.operation = operation;
+        this.ranges = ranges;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @return String? The mutation, absent when the client has to read the trees again.
+     */
+    public String getOperation() {
+        return operation;
+    }
+
+    public void setOperation(String operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * @return List<RangeResponse>? The bounds that may have changed, one range per tree, empty when every tree may
+     * have changed.
+     */
+    public List<RangeResponse> getRanges() {
+        return ranges;
+    }
+
+    public void setRanges(List<RangeResponse> ranges) {
+        this.ranges = ranges;
+    }
+
+    public static CategoryTreeChangeResponse convert(CategoryTreeChangedEvent event) {
+        return new CategoryTreeChangeResponse(
+            event.getVersion(),
+            event.getOperation().name(),
+            event.getRanges().stream().map(RangeResponse::convert).toList()
+        );
+    }
+
+    /**
+     * @param version long The tree version the client has to read the trees at, or later.
+     * @return CategoryTreeChangeResponse The change telling the client to read the trees again.
+     */
+    public static CategoryTreeChangeResponse resync(long version) {
+        return new CategoryTreeChangeResponse(version, null, null);
+    }
+
+    public static class RangeResponse extends AbstractBaseResponse {
+        private String treeId;
+
+        private int from;
+
+        private Integer to;
+
+        public RangeResponse(String treeId, int from, Integer to) {
+            this.treeId = treeId;
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getTreeId() {
+            return treeId;
+        }
+
+        public void setTreeId(String treeId) {
+            this.treeId = treeId;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        public void setFrom(int from) {
+            this.from = from;
+        }
+
+        /**
+         * @return Integer? The last bound of the range, absent when it reaches to the end of the tree.
+         */
+        public Integer getTo() {
+            return to;
+        }
+
+        public void setTo(Integer to) {
+            this.to = to;
+        }
+
+        public static RangeResponse convert(CategoryTreeChangedEvent.Range range) {
+            return new RangeResponse(range.getTreeId(), range.getFrom(), range.getTo());
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.mewebstudio.nestedset.dto.response;
+
+import com.mewebstudio.nestedset.service.RebuildProgress;
+
+import java.time.Instant;
+
+public class RebuildProgressResponse extends AbstractBaseResponse {
+    private String phase;
+
+    private String treeId;
+
+    private long total;
+
+    private long read;
+
+    private long changed;
+
+    private long written;
+
+    private Instant startedAt;
+
+    private Instant finishedAt;
+
+    private long elapsedMs;
+
+    private Long lockedMs;
+
+    public RebuildProgressResponse(String phase, String treeId, long total, long read, long changed, long written,
+                                   Instant startedAt, Instant finishedAt, long elapsedMs, Long lockedMs) {
+        this.phase = phase;
+        this.treeId = treeId;
+        this.total = total;
+        this.read = read;
+        this.changed = changed;
+        this.written = written;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.elapsedMs = elapsedMs;
+        this.lockedMs = lockedMs;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(String treeId) {
+        this.treeId = treeId;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public void setTotal(long total) {
+        this.total = total;
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    public void setRead(long read) {
+        this.read = read;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public void setChanged(long changed) {
+        this.changed = changed;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public void setWritten(long written) {
+        this.written = written;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    public void setStartedAt(Instant startedAt) {
+        this.startedAt = startedAt;
+    }
+
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    public void setFinishedAt(Instant finishedAt) {
+        this.finishedAt = finishedAt;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    /**
+     * @return Long? How long other mutations were kept waiting, absent while the rebuild runs.
+     */
+    public Long getLockedMs() {
+        return lockedMs;
+    }
+
+    public void setLockedMs(Long lockedMs) {
+        this.lockedMs = lockedMs;
+    }
+
+    public static RebuildProgressResponse convert(RebuildProgress progress) {
+        return new RebuildProgressResponse(
+            progress.getPhase().name(),
+            progress.getTreeId(),
+            progress.getTotal(),
+            progress.getRead(),
+            progress.getChanged(),
+            progress.getWritten(),
+            progress.getStartedAt(),
+            progress.getFinishedAt(),
+            progress.getElapsed().toMillis(),
+            progress.getLocked() != null ? progress.getLocked().toMillis() : null
+        );
+    }
+}
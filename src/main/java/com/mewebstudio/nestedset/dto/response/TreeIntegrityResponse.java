@@ -0,0 +1,182 @@
+package com.mewebstudio.nestedset.dto.response;
+
+import com.mewebstudio.nestedset.service.TreeIntegrityReport;
+
+import java.util.List;
+
+public class TreeIntegrityResponse extends AbstractBaseResponse {
+    private boolean valid;
+
+    private boolean consistent;
+
+    private long version;
+
+    private long checked;
+
+    private int partitions;
+
+    private long violationCount;
+
+    private List<ViolationResponse> violations;
+
+    private long elapsedMs;
+
+    public TreeIntegrityResponse(boolean valid, boolean consistent, long version, long checked, int partitions,
+                                 long violationCount, List<ViolationResponse> violations, long elapsedMs) {
+        this.valid = valid;
+        this.consistent = consistent;
+        this.version = version;
+        this.checked = checked;
+        this.partitions = partitions;
+        this.violationCount = violationCount;
+        this.violations = violations;
+        this.elapsedMs = elapsedMs;
+    }
+
+    public boolean isValid() {
+        return valid;
+    }
+
+    public void setValid(boolean valid) {
+        this.valid = valid;
+    }
+
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    public void setConsistent(boolean consistent) {
+        this.consistent = consistent;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getChecked() {
+        return checked;
+    }
+
+    public void setChecked(long checked) {
+        this.checked = checked;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(int partitions) {
+        this.partitions = partitions;
+    }
+
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    public void setViolationCount(long violationCount) {
+        this.violationCount = violationCount;
+    }
+
+    public List<ViolationResponse> getViolations() {
+        return violations;
+    }
+
+    public void setViolations(List<ViolationResponse> violations) {
+        this.violations = violations;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public static TreeIntegrityResponse convert(TreeIntegrityReport report) {
+        return new TreeIntegrityResponse(
+            report.isValid(),
+            report.isConsistent(),
+            report.getVersion(),
+            report.getChecked(),
+            report.getPartitions(),
+            report.getViolationCount(),
+            report.getViolations().stream().map(ViolationResponse::convert).toList(),
+            report.getElapsed().toMillis()
+        );
+    }
+
+    public static class ViolationResponse extends AbstractBaseResponse {
+        private String type;
+
+        private String categoryId;
+
+        private String treeId;
+
+        private int bound;
+
+        private String detail;
+
+        public ViolationResponse(String type, String categoryId, String treeId, int bound, String detail) {
+            this.type = type;
+            this.categoryId = categoryId;
+            this.treeId = treeId;
+            this.bound = bound;
+            this.detail = detail;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public void setType(String type) {
+            this.type = type;
+        }
+
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        public void setCategoryId(String categoryId) {
+            this.categoryId = categoryId;
+        }
+
+        public String getTreeId() {
+            return treeId;
+        }
+
+        public void setTreeId(String treeId) {
+            this.treeId = treeId;
+        }
+
+        public int getBound() {
+            return bound;
+        }
+
+        public void setBound(int bound) {
+            this.bound = bound;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+
+        public void setDetail(String detail) {
+            this.detail = detail;
+        }
+
+        public static ViolationResponse convert(TreeIntegrityReport.Violation violation) {
+            return new ViolationResponse(
+                violation.getType().name(),
+                violation.getCategoryId(),
+                violation.getTreeId(),
+                violation.getBound(),
+                violation.getDetail()
+            );
+        }
+    }
+}
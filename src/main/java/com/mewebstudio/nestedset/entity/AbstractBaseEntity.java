@@ -1,19 +1,27 @@
 package com.mewebstudio.nestedset.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.mewebstudio.nestedset.entity.generator.GeneratedId;
+import com.mewebstudio.nestedset.entity.type.UlidType;
 import jakarta.persistence.Column;
 import jakarta.persistence.Id;
 import jakarta.persistence.MappedSuperclass;
+import jakarta.persistence.PostLoad;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.Transient;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.Type;
 import org.hibernate.annotations.UpdateTimestamp;
+import org.springframework.data.domain.Persistable;
 
 import java.io.Serializable;
 import java.time.LocalDateTime;
 
 @MappedSuperclass
-public abstract class AbstractBaseEntity implements Serializable {
+public abstract class AbstractBaseEntity implements Serializable, Persistable<String> {
     @Id
     @GeneratedId
+    @Type(UlidType.class)
     @Column(name = "id", nullable = false, updatable = false, length = 26)
     private String id;
 
@@ -25,6 +33,14 @@ public abstract class AbstractBaseEntity implements Serializable {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    /**
+     * Whether the entity has not been persisted yet, so that save() persists entities whose ID was assigned up front
+     * instead of merging them.
+     */
+    @Transient
+    private boolean isNew = true;
+
+    @Override
     public String getId() {
         return id;
     }
@@ -48,4 +64,16 @@ public abstract class AbstractBaseEntity implements Serializable {
     public void setUpdatedAt(LocalDateTime updatedAt) {
         this.updatedAt = updatedAt;
     }
+
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return isNew;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markNotNew() {
+        this.isNew = false;
+    }
 }
@@ -1,16 +1,39 @@
 package com.mewebstudio.nestedset.entity;
 
+import com.mewebstudio.nestedset.entity.type.UlidType;
 import com.mewebstudio.springboot.jpa.nestedset.INestedSetNode;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.OnDelete;
 import org.hibernate.annotations.OnDeleteAction;
+import org.hibernate.annotations.Type;
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Category.CACHE_REGION)
 @Table(
     name = "categories",
-    uniqueConstraints = @UniqueConstraint(columnNames = "name", name = "uk_categories_name")
+    uniqueConstraints = @UniqueConstraint(columnNames = "name", name = "uk_categories_name"),
+    indexes = {
+        @Index(columnList = "tree_id, left, right", name = "idx_categories_tree_id_left_right"),
+        @Index(columnList = "parent_id", name = "idx_categories_parent_id")
+    }
 )
 public class Category extends AbstractBaseEntity implements INestedSetNode<String, Category> {
+    /**
+     * Second-level cache region of the categories. Holds the parent ID with every category, so that a lazy parent
+     * is resolved from the same region.
+     */
+    public static final String CACHE_REGION = "category";
+
+    /**
+     * Name of the foreign key from a category to its parent, which a mutation breaks when the parent it read was
+     * deleted meanwhile.
+     */
+    public static final String PARENT_FOREIGN_KEY = "fk_categories_parent_id";
+
     @Column(name = "name", nullable = false)
     private String name;
 
@@ -20,9 +43,23 @@ public class Category extends AbstractBaseEntity implements INestedSetNode<Strin
     @Column(name = "right", nullable = false)
     private int right;
 
+    /**
+     * ID of the root category, every bound is only unique within its tree.
+     */
+    @Type(UlidType.class)
+    @Column(name = "tree_id", length = 26)
+    private String treeId;
+
+    /**
+     * Number of ancestors, 0 for a root.
+     */
+    @ColumnDefault("0")
+    @Column(name = "depth", nullable = false)
+    private int depth;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @OnDelete(action = OnDeleteAction.CASCADE)
-    @JoinColumn(name = "parent_id")
+    @JoinColumn(name = "parent_id", foreignKey = @ForeignKey(name = PARENT_FOREIGN_KEY))
     private Category parent;
 
     public Category() {
@@ -68,6 +105,22 @@ public class Category extends AbstractBaseEntity implements INestedSetNode<Strin
         this.right = right;
     }
 
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(String treeId) {
+        this.treeId = treeId;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
     @Override
     public Category getParent() {
         return parent;
@@ -85,6 +138,8 @@ public class Category extends AbstractBaseEntity implements INestedSetNode<Strin
             + ", name = " + name
             + ", left = " + left
             + ", right = " + right
+            + ", treeId = " + treeId
+            + ", depth = " + depth
             + ", parent = " + (parent != null ? parent.getId() : null)
             + ")";
     }
@@ -0,0 +1,87 @@
+package com.mewebstudio.nestedset.entity;
+
+import com.mewebstudio.nestedset.entity.type.UlidType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Type;
+
+/**
+ * Entry of the change journal: bounds of a tree a mutation may have changed, written in the transaction of the
+ * mutation with the tree version it produced. Every version has at least one entry, the journal only loses its
+ * oldest versions when it is trimmed.
+ */
+@Entity
+@Table(
+    name = "category_changes",
+    indexes = @Index(columnList = "version", name = "idx_category_changes_version")
+)
+public class CategoryChange {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "id", nullable = false, updatable = false)
+    private Long id;
+
+    @Column(name = "version", nullable = false, updatable = false)
+    private long version;
+
+    /**
+     * Tree the bounds belong to, null when every tree may have changed.
+     */
+    @Type(UlidType.class)
+    @Column(name = "tree_id", updatable = false, length = 26)
+    private String treeId;
+
+    @Column(name = "from_bound", nullable = false, updatable = false)
+    private int from;
+
+    /**
+     * Last bound of the range, null when it reaches to the end of the tree.
+     */
+    @Column(name = "to_bound", updatable = false)
+    private Integer to;
+
+    public CategoryChange() {
+    }
+
+    public CategoryChange(long version, String treeId, int from, Integer to) {
+        this.version = version;
+        this.treeId = treeId;
+        this.from = from;
+        this.to = to;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public int getFrom() {
+        return from;
+    }
+
+    public Integer getTo() {
+        return to;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+            + "(version = " + version
+            + ", treeId = " + treeId
+            + ", from = " + from
+            + ", to = " + to
+            + ")";
+    }
+}
@@ -0,0 +1,133 @@
+package com.mewebstudio.nestedset.entity;
+
+import com.mewebstudio.nestedset.entity.type.UlidType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import org.hibernate.annotations.Type;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Corrected position of a category computed by an online rebuild, kept aside in a shadow table until the rebuild
+ * swaps it into {@code categories}. Only the categories whose position changed get a row.
+ */
+@Entity
+@Table(name = "category_rebuilds")
+@IdClass(CategoryRebuildRow.Key.class)
+public class CategoryRebuildRow {
+    @Id
+    @Column(name = "rebuild_id", nullable = false, updatable = false, length = 26)
+    private String rebuildId;
+
+    @Id
+    @Type(UlidType.class)
+    @Column(name = "id", nullable = false, updatable = false, length = 26)
+    private String id;
+
+    /**
+     * Tree of the category when the rebuild read it, null for a row created before tree IDs existed.
+     */
+    @Type(UlidType.class)
+    @Column(name = "base_tree_id", length = 26)
+    private String baseTreeId;
+
+    @Type(UlidType.class)
+    @Column(name = "tree_id", nullable = false, length = 26)
+    private String treeId;
+
+    @Column(name = "left", nullable = false)
+    private int left;
+
+    @Column(name = "right", nullable = false)
+    private int right;
+
+    @Column(name = "depth", nullable = false)
+    private int depth;
+
+    public CategoryRebuildRow() {
+    }
+
+    public String getRebuildId() {
+        return rebuildId;
+    }
+
+    public void setRebuildId(String rebuildId) {
+        this.rebuildId = rebuildId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getBaseTreeId() {
+        return baseTreeId;
+    }
+
+    public void setBaseTreeId(String baseTreeId) {
+        this.baseTreeId = baseTreeId;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public void setTreeId(String treeId) {
+        this.treeId = treeId;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public void setLeft(int left) {
+        this.left = left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public void setRight(int right) {
+        this.right = right;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public static class Key implements Serializable {
+        private String rebuildId;
+
+        private String id;
+
+        public Key() {
+        }
+
+        public Key(String rebuildId, String id) {
+            this.rebuildId = rebuildId;
+            this.id = id;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key key && Objects.equals(rebuildId, key.rebuildId) && Objects.equals(id, key.id);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(rebuildId, id);
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.mewebstudio.nestedset.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * Version counter of a set of trees, incremented in the transaction of every mutation that changes it.
+ */
+@Entity
+@Table(name = "tree_versions")
+public class TreeVersion {
+    /**
+     * Name of the counter shared by all category trees, which numbers the committed mutations.
+     */
+    public static final String CATEGORIES = "categories";
+
+    /**
+     * Name of the counter of the order of the category roots, held by the mutations that add or reorder trees.
+     */
+    public static final String CATEGORY_ROOTS = "category-roots";
+
+    /**
+     * Prefix of the counter of every category tree, followed by the ID of its root.
+     */
+    public static final String CATEGORY_TREE_PREFIX = "category-tree:";
+
+    @Id
+    @Column(name = "name", nullable = false, updatable = false, length = 64)
+    private String name;
+
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    public TreeVersion() {
+    }
+
+    public TreeVersion(String name, long version) {
+        this.name = name;
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    /**
+     * @param treeId String The ID of the tree, which is the ID of its root.
+     * @return String The name of the counter of the category tree.
+     */
+    public static String categoryTree(String treeId) {
+        return CATEGORY_TREE_PREFIX + treeId;
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()
+            + "(name = " + name
+            + ", version = " + version
+            + ")";
+    }
+}
@@ -1,12 +1,25 @@
 package com.mewebstudio.nestedset.entity.generator;
 
 import com.github.f4b6a3.ulid.UlidCreator;
+import com.mewebstudio.nestedset.entity.AbstractBaseEntity;
 import org.hibernate.engine.spi.SharedSessionContractImplementor;
 import org.hibernate.id.IdentifierGenerator;
 
 public class ULIDGenerator implements IdentifierGenerator {
+    /**
+     * Create a new ULID string. The ULIDs are monotonic: within one millisecond the random part of the previous one is
+     * incremented, so the IDs created in the same millisecond still sort in creation order and inserts keep landing on
+     * the right edge of the primary key index.
+     *
+     * @return String The ULID.
+     */
+    public static String next() {
+        return UlidCreator.getMonotonicUlid().toString();
+    }
+
     /**
      * Generates a ULID (Universally Unique Lexicographically Sortable Identifier) as a string.
+     * An identifier already assigned to the entity is kept as is.
      *
      * @param session The session in which the identifier is generated.
      * @param object  The entity for which the identifier is generated.
@@ -14,6 +27,20 @@ public class ULIDGenerator implements IdentifierGenerator {
      */
     @Override
     public String generate(SharedSessionContractImplementor session, Object object) {
-        return UlidCreator.getUlid().toString();
+        if (object instanceof AbstractBaseEntity entity && entity.getId() != null) {
+            return entity.getId();
+        }
+
+        return next();
+    }
+
+    /**
+     * Allow callers to pick the identifier up front, e.g. a root category that is also its own tree id.
+     *
+     * @return true
+     */
+    @Override
+    public boolean allowAssignedIdentifiers() {
+        return true;
     }
 }
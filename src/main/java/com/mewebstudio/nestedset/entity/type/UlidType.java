@@ -0,0 +1,98 @@
+package com.mewebstudio.nestedset.entity.type;
+
+import com.github.f4b6a3.ulid.Ulid;
+import com.mewebstudio.nestedset.config.NestedSetProperties.IdStorage;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.type.SqlTypes;
+import org.hibernate.type.spi.TypeBootstrapContext;
+import org.hibernate.usertype.UserType;
+
+import java.io.Serializable;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Maps a ULID string attribute to a varchar column, or to a 16-byte uuid column when the IDs are stored as binary.
+ * The entities, queries and responses keep the 26-character string either way, the conversion happens when a value
+ * is bound or read. The storage is taken from the Hibernate setting {@link #ID_STORAGE}.
+ */
+public class UlidType implements UserType<String> {
+    /**
+     * Hibernate setting holding the {@link IdStorage}, filled from {@code app.nested-set.id-storage}.
+     */
+    public static final String ID_STORAGE = "app.nested_set.id_storage";
+
+    private final IdStorage storage;
+
+    public UlidType(TypeBootstrapContext context) {
+        Object setting = context.getConfigurationSettings().get(ID_STORAGE);
+        this.storage = setting != null ? IdStorage.valueOf(setting.toString().toUpperCase()) : IdStorage.TEXT;
+    }
+
+    @Override
+    public int getSqlType() {
+        return storage == IdStorage.BINARY ? SqlTypes.UUID : Types.VARCHAR;
+    }
+
+    @Override
+    public Class<String> returnedClass() {
+        return String.class;
+    }
+
+    @Override
+    public boolean equals(String x, String y) {
+        return Objects.equals(x, y);
+    }
+
+    @Override
+    public int hashCode(String x) {
+        return Objects.hashCode(x);
+    }
+
+    @Override
+    public String nullSafeGet(ResultSet rs, int position, SharedSessionContractImplementor session, Object owner)
+        throws SQLException {
+        if (storage == IdStorage.TEXT) {
+            return rs.getString(position);
+        }
+
+        UUID value = rs.getObject(position, UUID.class);
+        return value != null ? Ulid.from(value).toString() : null;
+    }
+
+    @Override
+    public void nullSafeSet(PreparedStatement st, String value, int index, SharedSessionContractImplementor session)
+        throws SQLException {
+        if (storage == IdStorage.TEXT) {
+            st.setString(index, value);
+        } else if (value == null) {
+            st.setNull(index, Types.OTHER);
+        } else {
+            st.setObject(index, storage.toColumn(value));
+        }
+    }
+
+    @Override
+    public String deepCopy(String value) {
+        return value;
+    }
+
+    @Override
+    public boolean isMutable() {
+        return false;
+    }
+
+    @Override
+    public Serializable disassemble(String value) {
+        return value;
+    }
+
+    @Override
+    public String assemble(Serializable cached, Object owner) {
+        return (String) cached;
+    }
+}
@@ -0,0 +1,114 @@
+package com.mewebstudio.nestedset.event;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Published by every mutation of the category trees, listeners that only care about committed data listen to it
+ * after commit.
+ */
+public class CategoryTreeChangedEvent {
+    private final Operation operation;
+
+    private final long version;
+
+    private final Set<String> treeIds;
+
+    private final List<Range> ranges;
+
+    public CategoryTreeChangedEvent(Operation operation, long version, Set<String> treeIds, List<Range> ranges) {
+        this.operation = operation;
+        this.version = version;
+        this.treeIds = treeIds;
+        this.ranges = ranges;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * @return long The persisted tree version the mutation produced.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The trees touched by the mutation.
+     *
+     * @return Set<String> The tree IDs, empty when every tree may have changed.
+     */
+    public Set<String> getTreeIds() {
+        return treeIds;
+    }
+
+    /**
+     * The bounds the mutation may have changed, one range per touched tree.
+     *
+     * @return List<Range> The ranges, empty when every tree may have changed.
+     */
+    public List<Range> getRanges() {
+        return ranges;
+    }
+
+    public enum Operation {
+        CREATE,
+        UPDATE,
+        DELETE,
+        MOVE_UP,
+        MOVE_DOWN,
+        REBUILD
+    }
+
+    /**
+     * Bounds of a tree a mutation may have changed: the categories of the tree with a left or a right bound in the
+     * range, before and after the mutation, may differ, the others are left as they were. A range without an end
+     * reaches to the end of the tree, the bounds after its start may have been shifted.
+     */
+    public static class Range {
+        private final String treeId;
+
+        private final int from;
+
+        private final Integer to;
+
+        public Range(String treeId, int from, Integer to) {
+            this.treeId = treeId;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * @param treeId String The ID of the tree.
+         * @return Range The range of every bound of the tree.
+         */
+        public static Range wholeTree(String treeId) {
+            return new Range(treeId, 0, null);
+        }
+
+        public String getTreeId() {
+            return treeId;
+        }
+
+        public int getFrom() {
+            return from;
+        }
+
+        /**
+         * @return Integer? The last bound of the range, null when it reaches to the end of the tree.
+         */
+        public Integer getTo() {
+            return to;
+        }
+
+        /**
+         * @param other Range A range of the same tree.
+         * @return Range The smallest range covering both.
+         */
+        public Range union(Range other) {
+            return new Range(treeId, Math.min(from, other.from),
+                to == null || other.to == null ? null : Math.max(to, other.to));
+        }
+    }
+}
@@ -5,17 +5,21 @@ import com.mewebstudio.nestedset.dto.response.ErrorResponse;
 import jakarta.validation.ConstraintViolationException;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.Order;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.HttpMediaTypeNotSupportedException;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
+import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.MissingRequestHeaderException;
+import org.springframework.web.bind.MissingServletRequestParameterException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 import org.springframework.web.method.annotation.MethodArgumentTypeMismatchException;
 import org.springframework.web.multipart.MultipartException;
 import org.springframework.web.multipart.support.MissingServletRequestPartException;
+import org.springframework.web.server.ResponseStatusException;
 import org.springframework.web.servlet.resource.NoResourceFoundException;
 
 import java.util.HashMap;
@@ -39,17 +43,39 @@ public class AppExceptionHandler {
         IllegalArgumentException.class,
         InvalidDataAccessApiUsageException.class,
         ConstraintViolationException.class,
-        MissingRequestHeaderException.class
+        MissingRequestHeaderException.class,
+        MissingServletRequestParameterException.class
     })
     public ResponseEntity<ErrorResponse> handleBadRequestException(Exception e) {
         return build(HttpStatus.BAD_REQUEST, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
     }
 
+    @ExceptionHandler(MethodArgumentNotValidException.class)
+    public ResponseEntity<ErrorResponse> handleMethodArgumentNotValidException(MethodArgumentNotValidException e) {
+        Map<String, String> errors = new HashMap<>();
+        e.getBindingResult().getFieldErrors()
+            .forEach(error -> errors.putIfAbsent(error.getField(), error.getDefaultMessage()));
+        return build(HttpStatus.BAD_REQUEST, "Validation failed", errors);
+    }
+
     @ExceptionHandler({NotFoundException.class, NoResourceFoundException.class})
     public ResponseEntity<ErrorResponse> handleNotFoundException(Exception e) {
         return build(HttpStatus.NOT_FOUND, e.getCause() != null ? e.getCause().getMessage() : e.getMessage());
     }
 
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<ErrorResponse> handleConcurrencyFailureException(ConcurrencyFailureException e) {
+        return build(HttpStatus.CONFLICT, "Conflicting concurrent modification, please retry: " + e.getMessage());
+    }
+
+    /**
+     * An actuator endpoint reports an invalid request with the status it should be answered with.
+     */
+    @ExceptionHandler(ResponseStatusException.class)
+    public ResponseEntity<ErrorResponse> handleResponseStatusException(ResponseStatusException e) {
+        return build(HttpStatus.valueOf(e.getStatusCode().value()), e.getReason());
+    }
+
     @ExceptionHandler(Exception.class)
     public ResponseEntity<ErrorResponse> handleAllExceptions(Exception e) {
         return build(HttpStatus.INTERNAL_SERVER_ERROR, "Internal server error: " + e.getMessage());
@@ -0,0 +1,16 @@
+package com.mewebstudio.nestedset.exception;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+
+/**
+ * Thrown when another mutation changed the trees between the start and the end of a mutation.
+ */
+public class ConcurrentTreeModificationException extends OptimisticLockingFailureException {
+    public ConcurrentTreeModificationException(String message) {
+        super(message);
+    }
+
+    public ConcurrentTreeModificationException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
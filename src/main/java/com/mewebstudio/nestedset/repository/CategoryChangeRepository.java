@@ -0,0 +1,34 @@
+package com.mewebstudio.nestedset.repository;
+
+import com.mewebstudio.nestedset.entity.CategoryChange;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface CategoryChangeRepository extends JpaRepository<CategoryChange, Long> {
+    /**
+     * @return Optional<Long> The oldest version the journal still has, empty when it has none.
+     */
+    @Query("SELECT MIN(c.version) FROM CategoryChange c")
+    Optional<Long> findOldestVersion();
+
+    /**
+     * @param after long The version the entries come after.
+     * @param until long The last version of the entries.
+     * @return List<CategoryChange> The entries of the versions in between, ordered by version.
+     */
+    @Query("SELECT c FROM CategoryChange c WHERE c.version > :after AND c.version <= :until ORDER BY c.version")
+    List<CategoryChange> findBetween(@Param("after") long after, @Param("until") long until);
+
+    /**
+     * @param version long The last version to forget.
+     * @return int The number of entries deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM CategoryChange c WHERE c.version <= :version")
+    int deleteUpTo(@Param("version") long version);
+}
@@ -0,0 +1,17 @@
+package com.mewebstudio.nestedset.repository;
+
+import com.mewebstudio.nestedset.entity.CategoryRebuildRow;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface CategoryRebuildRowRepository extends JpaRepository<CategoryRebuildRow, CategoryRebuildRow.Key> {
+    /**
+     * @param rebuildId String The ID of the online rebuild.
+     * @return int The number of shadow rows deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM CategoryRebuildRow s WHERE s.rebuildId = :rebuildId")
+    int deleteByRebuildId(@Param("rebuildId") String rebuildId);
+}
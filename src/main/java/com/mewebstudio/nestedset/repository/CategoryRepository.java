@@ -1,8 +1,423 @@
 package com.mewebstudio.nestedset.repository;
 
 import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.repository.projection.CategoryBounds;
+import com.mewebstudio.nestedset.repository.projection.CategoryNode;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
 import com.mewebstudio.springboot.jpa.nestedset.JpaNestedSetRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CategoryRepository extends JpaNestedSetRepository<Category, String> {
+    /**
+     * Select clause of the {@link CategoryRow} projection, {@code c.parent.id} reads the foreign key without a join.
+     */
+    String SELECT_ROW = "SELECT new com.mewebstudio.nestedset.repository.projection.CategoryRow("
+        + "c.id, c.name, c.left, c.right, c.treeId, c.parent.id, c.createdAt, c.updatedAt) ";
+
+    /**
+     * Select clause of the {@link CategoryNode} projection.
+     */
+    String SELECT_NODE = "SELECT new com.mewebstudio.nestedset.repository.projection.CategoryNode("
+        + "c.id, c.parent.id, c.treeId, c.left, c.right, c.depth) ";
+
+    /**
+     * Copy the positions computed by an online rebuild from the shadow table with one set-based MERGE, which has no
+     * JPQL form. Completed with the condition that selects the shadow rows to apply and the merge clause.
+     */
+    String MERGE_REBUILD = "MERGE INTO categories c USING (SELECT s.id, s.\"left\", s.\"right\", s.depth, s.tree_id "
+        + "FROM category_rebuilds s WHERE s.rebuild_id = :rebuildId";
+
+    String MERGE_REBUILD_MATCHED = ") r ON c.id = r.id WHEN MATCHED THEN UPDATE SET "
+        + "\"left\" = r.\"left\", \"right\" = r.\"right\", depth = r.depth, tree_id = r.tree_id";
+
+    /**
+     * Query space of the native statements that shift bounds. No entity is mapped to it, so Hibernate does not clear
+     * the cached categories when one runs, as it does for a bulk JPQL statement. The service evicts the categories
+     * in the ranges the statement changed instead.
+     */
+    String BOUNDS_SPACE = "category_bounds";
+
     boolean existsByName(String name);
+
+    @Query("SELECT c.name FROM Category c WHERE c.name IN :names")
+    List<String> findExistingNames(@Param("names") Collection<String> names);
+
+    Optional<CategoryBounds> findBoundsById(String id);
+
+    @Query("SELECT DISTINCT c.treeId FROM Category c WHERE c.id IN :ids")
+    List<String> findTreeIds(@Param("ids") Collection<String> ids);
+
+    @Query("SELECT c.id FROM Category c WHERE c.parent IS NULL")
+    List<String> findRootIds();
+
+    @Query("SELECT c FROM Category c WHERE c.treeId = :treeId ORDER BY c.left")
+    List<Category> findAllOrderedByLeft(@Param("treeId") String treeId);
+
+    /**
+     * Find every category, tree by tree in root order, each tree ordered by left value.
+     *
+     * @return List<CategoryRow> The rows of all trees.
+     */
+    @Query(SELECT_ROW + "FROM Category c JOIN Category r ON r.id = c.treeId ORDER BY r.left, c.treeId, c.left")
+    List<CategoryRow> findRowsOrderedByTreeAndLeft();
+
+    /**
+     * @param treeId String The ID of the tree (its root category).
+     * @return List<CategoryRow> The rows of the tree ordered by left value.
+     */
+    @Query(SELECT_ROW + "FROM Category c WHERE c.treeId = :treeId ORDER BY c.left")
+    List<CategoryRow> findRowsOrderedByLeft(@Param("treeId") String treeId);
+
+    /**
+     * Find the categories of a tree with a left or a right bound in a range.
+     *
+     * @param treeId String The ID of the tree (its root category).
+     * @param from   int The first bound of the range.
+     * @param to     int The last bound of the range.
+     * @return List<CategoryRow> The rows ordered by left value.
+     */
+    @Query(SELECT_ROW + "FROM Category c WHERE c.treeId = :treeId AND c.left <= :to AND c.right >= :from "
+        + "AND (c.left >= :from OR c.right <= :to) ORDER BY c.left")
+    List<CategoryRow> findRowsWithBoundBetween(@Param("treeId") String treeId, @Param("from") int from,
+                                               @Param("to") int to);
+
+    /**
+     * Find the IDs of the categories of a tree with a left or a right bound in a range, as
+     * {@link #findRowsWithBoundBetween}.
+     *
+     * @param treeId String The ID of the tree (its root category).
+     * @param from   int The first bound of the range.
+     * @param to     int The last bound of the range.
+     * @param limit  Limit The maximum number of IDs.
+     * @return List<String> The IDs of the categories.
+     */
+    @Query("SELECT c.id FROM Category c WHERE c.treeId = :treeId AND c.left <= :to AND c.right >= :from "
+        + "AND (c.left >= :from OR c.right <= :to)")
+    List<String> findIdsWithBoundBetween(@Param("treeId") String treeId, @Param("from") int from,
+                                         @Param("to") int to, Limit limit);
+
+    /**
+     * Find a category and its subtree with one statement, the bounds of the category are joined in.
+     *
+     * @param id       String The ID of the category.
+     * @param maxDepth int The number of levels below the category to include.
+     * @return List<CategoryRow> The category and its descendants ordered by left value, empty when it is not found.
+     */
+    @Query(SELECT_ROW + "FROM Category c JOIN Category n ON n.treeId = c.treeId "
+        + "WHERE n.id = :id AND c.left >= n.left AND c.right <= n.right AND c.depth - n.depth <= :maxDepth "
+        + "ORDER BY c.left")
+    List<CategoryRow> findSubtreeRows(@Param("id") String id, @Param("maxDepth") int maxDepth);
+
+    /**
+     * Find a page of the subtree of a category, the rows after a left bound in left order.
+     *
+     * @param id    String The ID of the category.
+     * @param after int Only rows with a greater left bound are returned.
+     * @param limit Limit The maximum number of rows.
+     * @return List<CategoryRow> The rows ordered by left value.
+     */
+    @Query(SELECT_ROW + "FROM Category c JOIN Category n ON n.treeId = c.treeId "
+        + "WHERE n.id = :id AND c.left >= n.left AND c.right <= n.right AND c.left > :after ORDER BY c.left")
+    List<CategoryRow> findSubtreeRowsAfter(@Param("id") String id, @Param("after") int after, Limit limit);
+
+    /**
+     * Find a page of a single tree, the rows after a left bound in left order.
+     *
+     * @param treeId   String The ID of the tree (its root category).
+     * @param maxDepth int The deepest depth to include, the root has depth 0.
+     * @param after    int Only rows with a greater left bound are returned.
+     * @param limit    Limit The maximum number of rows.
+     * @return List<CategoryRow> The rows ordered by left value.
+     */
+    @Query(SELECT_ROW + "FROM Category c WHERE c.treeId = :treeId AND c.depth <= :maxDepth AND c.left > :after "
+        + "ORDER BY c.left")
+    List<CategoryRow> findTreeRowsAfter(@Param("treeId") String treeId, @Param("maxDepth") int maxDepth,
+                                        @Param("after") int after, Limit limit);
+
+    /**
+     * Find a page of every tree, the rows after a position given by the left bound of a root and the left bound of
+     * a row in its tree, tree by tree in root order.
+     *
+     * @param maxDepth int The deepest depth to include, roots have depth 0.
+     * @param rootLeft int Left bound of the root of the tree the position is in.
+     * @param after    int Left bound of the position within that tree.
+     * @param limit    Limit The maximum number of rows.
+     * @return List<CategoryRow> The rows, tree by tree in root order, each tree ordered by left value.
+     */
+    @Query(SELECT_ROW + "FROM Category c JOIN Category r ON r.id = c.treeId WHERE c.depth <= :maxDepth "
+        + "AND (r.left > :rootLeft OR (r.left = :rootLeft AND c.left > :after)) ORDER BY r.left, c.left")
+    List<CategoryRow> findRowsAfter(@Param("maxDepth") int maxDepth, @Param("rootLeft") int rootLeft,
+                                    @Param("after") int after, Limit limit);
+
+    /**
+     * Find the path from the root to a category with one statement, the bounds of the category are joined in.
+     *
+     * @param id String The ID of the category.
+     * @return List<CategoryRow> The ancestors ordered by left value followed by the category, empty when it is
+     * not found.
+     */
+    @Query(SELECT_ROW + "FROM Category c JOIN Category n ON n.treeId = c.treeId "
+        + "WHERE n.id = :id AND c.left <= n.left AND c.right >= n.right ORDER BY c.left")
+    List<CategoryRow> findPathRows(@Param("id") String id);
+
+    /**
+     * Find a category together with its parent with one statement.
+     *
+     * @param id String The ID of the category.
+     * @return List<CategoryRow> The category and, unless it is a root, its parent, empty when it is not found.
+     */
+    @Query(SELECT_ROW + "FROM Category c "
+        + "WHERE c.id = :id OR c.id = (SELECT n.parent.id FROM Category n WHERE n.id = :id)")
+    List<CategoryRow> findRowWithParent(@Param("id") String id);
+
+    /**
+     * Stream every category through a database cursor, tree by tree in root order, each tree ordered by left value.
+     * Must be consumed inside a transaction and closed.
+     *
+     * @param maxDepth int The deepest depth to include, roots have depth 0.
+     * @return Stream<CategoryRow> The rows of all trees.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_ROW + "FROM Category c JOIN Category r ON r.id = c.treeId WHERE c.depth <= :maxDepth "
+        + "ORDER BY r.left, c.treeId, c.left")
+    Stream<CategoryRow> streamAllOrderedByTreeAndLeft(@Param("maxDepth") int maxDepth);
+
+    /**
+     * Stream the categories of a single tree through a database cursor, ordered by left value.
+     * Must be consumed inside a transaction and closed.
+     *
+     * @param treeId   String The ID of the tree (its root category).
+     * @param maxDepth int The deepest depth to include, the root has depth 0.
+     * @return Stream<CategoryRow> The rows of the tree.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_ROW + "FROM Category c WHERE c.treeId = :treeId AND c.depth <= :maxDepth ORDER BY c.left")
+    Stream<CategoryRow> streamAllOrderedByLeft(@Param("treeId") String treeId, @Param("maxDepth") int maxDepth);
+
+    /**
+     * Stream the descendants of a category through a database cursor, ordered by left value.
+     * Must be consumed inside a transaction and closed.
+     *
+     * @param treeId   String The tree the category belongs to.
+     * @param left     int Left bound of the category.
+     * @param right    int Right bound of the category.
+     * @param maxDepth int The deepest depth to include, counted from the root of the tree.
+     * @return Stream<CategoryRow> The rows of the descendants.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_ROW + "FROM Category c WHERE c.treeId = :treeId AND c.left > :left AND c.right < :right "
+        + "AND c.depth <= :maxDepth ORDER BY c.left")
+    Stream<CategoryRow> streamDescendants(@Param("treeId") String treeId, @Param("left") int left,
+                                          @Param("right") int right, @Param("maxDepth") int maxDepth);
+
+    /**
+     * Stream the structure of every category through a database cursor, ordered by left value so that siblings
+     * come in their current order. Must be consumed inside a transaction and closed.
+     *
+     * @return Stream<CategoryNode> The nodes of all trees.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_NODE + "FROM Category c ORDER BY c.left")
+    Stream<CategoryNode> streamNodesOrderedByLeft();
+
+    /**
+     * Like {@link #streamNodesOrderedByLeft()}, for a single tree.
+     *
+     * @param treeId String The ID of the tree (its root category).
+     * @return Stream<CategoryNode> The nodes of the tree.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query(SELECT_NODE + "FROM Category c WHERE c.treeId = :treeId ORDER BY c.left")
+    Stream<CategoryNode> streamNodesOrderedByLeft(@Param("treeId") String treeId);
+
+    long countByTreeId(String treeId);
+
+    /**
+     * Apply every shadow row of an online rebuild.
+     *
+     * @param rebuildId String The ID of the online rebuild.
+     * @return int The number of categories updated.
+     */
+    @Modifying
+    @Query(value = MERGE_REBUILD + MERGE_REBUILD_MATCHED, nativeQuery = true)
+    int applyRebuild(@Param("rebuildId") String rebuildId);
+
+    /**
+     * Apply the shadow rows of an online rebuild, except those of trees changed since the rebuild read them.
+     *
+     * @param rebuildId String The ID of the online rebuild.
+     * @param treeIds   Collection<?> The changed trees as column values, see
+     *                  {@link com.mewebstudio.nestedset.config.NestedSetProperties.IdStorage#toColumn}, must not be
+     *                  empty.
+     * @return int The number of categories updated.
+     */
+    @Modifying
+    @Query(value = MERGE_REBUILD + " AND s.tree_id NOT IN (:treeIds) "
+        + "AND (s.base_tree_id IS NULL OR s.base_tree_id NOT IN (:treeIds))" + MERGE_REBUILD_MATCHED,
+        nativeQuery = true)
+    int applyRebuildExcept(@Param("rebuildId") String rebuildId, @Param("treeIds") Collection<?> treeIds);
+
+    @Query("SELECT c FROM Category c WHERE c.treeId = :treeId AND c.left < :left AND c.right > :right "
+        + "ORDER BY c.left")
+    List<Category> findAncestors(@Param("treeId") String treeId, @Param("left") int left, @Param("right") int right);
+
+    @Query("SELECT c FROM Category c WHERE c.treeId = :treeId AND c.left > :left AND c.right < :right "
+        + "ORDER BY c.left")
+    List<Category> findDescendants(@Param("treeId") String treeId, @Param("left") int left,
+                                   @Param("right") int right);
+
+    @Query("SELECT COUNT(c) FROM Category c WHERE c.treeId = :treeId AND c.left > :left AND c.right < :right")
+    long countDescendants(@Param("treeId") String treeId, @Param("left") int left, @Param("right") int right);
+
+    @Query("SELECT MAX(c.right) FROM Category c WHERE c.parent IS NULL")
+    Optional<Integer> findMaxRootRight();
+
+    @Query("SELECT MAX(c.depth) FROM Category c")
+    Optional<Integer> findMaxDepth();
+
+    @Query("SELECT MAX(c.right) FROM Category c WHERE c.parent.id = :parentId")
+    Optional<Integer> findMaxChildRight(@Param("parentId") String parentId);
+
+    Optional<Category> findFirstByParentIdAndRightLessThanOrderByRightDesc(String parentId, int left);
+
+    Optional<Category> findFirstByParentIdAndLeftGreaterThanOrderByLeftAsc(String parentId, int right);
+
+    Optional<Category> findFirstByParentIsNullAndLeftLessThanOrderByLeftDesc(int left);
+
+    Optional<Category> findFirstByParentIsNullAndLeftGreaterThanOrderByLeftAsc(int left);
+
+    /**
+     * Shift every bound of a tree that is greater than the given value.
+     *
+     * @param treeId Object The tree to shift, as its column value, see
+     *               {@link com.mewebstudio.nestedset.config.NestedSetProperties.IdStorage#toColumn}.
+     * @param from   int Bounds strictly greater than this value are shifted.
+     * @param delta  int The amount to add.
+     * @return int The number of rows touched.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "UPDATE categories SET "
+        + "\"left\" = CASE WHEN \"left\" > :from THEN \"left\" + :delta ELSE \"left\" END, "
+        + "\"right\" = \"right\" + :delta "
+        + "WHERE tree_id = :treeId AND \"right\" > :from", nativeQuery = true)
+    int shiftBoundsAfter(@Param("treeId") Object treeId, @Param("from") int from, @Param("delta") int delta);
+
+    /**
+     * Translate a whole subtree by a fixed offset, possibly into another tree and to another depth.
+     *
+     * @param treeId       Object The tree the subtree currently belongs to, as its column value.
+     * @param left         int Left bound of the subtree root.
+     * @param right        int Right bound of the subtree root.
+     * @param offset       int The amount to add to both bounds.
+     * @param targetTreeId Object The tree the subtree belongs to afterward, as its column value.
+     * @param depthDelta   int The amount to add to the depths.
+     * @return int The number of rows touched.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "UPDATE categories SET \"left\" = \"left\" + :offset, \"right\" = \"right\" + :offset, "
+        + "tree_id = :targetTreeId, depth = depth + :depthDelta "
+        + "WHERE tree_id = :treeId AND \"left\" >= :left AND \"right\" <= :right", nativeQuery = true)
+    int translateSubtree(@Param("treeId") Object treeId, @Param("left") int left, @Param("right") int right,
+                         @Param("offset") int offset, @Param("targetTreeId") Object targetTreeId,
+                         @Param("depthDelta") int depthDelta);
+
+    /**
+     * Move a subtree inside its tree with one statement: the subtree is translated by an offset while the bounds
+     * between its old and new position are shifted by its width the other way.
+     *
+     * @param treeId       Object The tree the subtree belongs to, as its column value.
+     * @param left         int Left bound of the subtree root.
+     * @param right        int Right bound of the subtree root.
+     * @param offset       int The amount added to the bounds of the subtree.
+     * @param shiftedFrom  int First bound of the range between the old and the new position.
+     * @param shiftedTo    int Last bound of the range between the old and the new position.
+     * @param shift        int The amount added to the bounds in that range.
+     * @param depthDelta   int The amount added to the depths of the subtree.
+     * @return int The number of rows touched.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "UPDATE categories SET "
+        + "\"left\" = CASE "
+        + "WHEN \"left\" BETWEEN :left AND :right THEN \"left\" + :offset "
+        + "WHEN \"left\" BETWEEN :shiftedFrom AND :shiftedTo THEN \"left\" + :shift "
+        + "ELSE \"left\" END, "
+        + "\"right\" = CASE "
+        + "WHEN \"right\" BETWEEN :left AND :right THEN \"right\" + :offset "
+        + "WHEN \"right\" BETWEEN :shiftedFrom AND :shiftedTo THEN \"right\" + :shift "
+        + "ELSE \"right\" END, "
+        + "depth = CASE WHEN \"left\" BETWEEN :left AND :right THEN depth + :depthDelta ELSE depth END "
+        + "WHERE tree_id = :treeId AND (\"left\" BETWEEN :left AND :right "
+        + "OR \"left\" BETWEEN :shiftedFrom AND :shiftedTo OR \"right\" BETWEEN :shiftedFrom AND :shiftedTo)",
+        nativeQuery = true)
+    int moveSubtree(@Param("treeId") Object treeId, @Param("left") int left, @Param("right") int right,
+                    @Param("offset") int offset, @Param("shiftedFrom") int shiftedFrom,
+                    @Param("shiftedTo") int shiftedTo, @Param("shift") int shift,
+                    @Param("depthDelta") int depthDelta);
+
+    /**
+     * Swap two adjacent sibling subtrees, keeping the gap between them.
+     *
+     * @param treeId       Object The tree both siblings belong to, as its column value.
+     * @param firstLeft    int Left bound of the first (leftmost) sibling.
+     * @param secondLeft   int Left bound of the second sibling.
+     * @param secondRight  int Right bound of the second sibling.
+     * @param firstOffset  int Offset applied to the first sibling's subtree.
+     * @param secondOffset int Offset applied to the second sibling's subtree.
+     * @return int The number of rows touched.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "UPDATE categories SET "
+        + "\"left\" = \"left\" + CASE WHEN \"left\" < :secondLeft THEN :firstOffset ELSE :secondOffset END, "
+        + "\"right\" = \"right\" + CASE WHEN \"left\" < :secondLeft THEN :firstOffset ELSE :secondOffset END "
+        + "WHERE tree_id = :treeId AND \"left\" >= :firstLeft AND \"right\" <= :secondRight", nativeQuery = true)
+    int swapSiblings(@Param("treeId") Object treeId, @Param("firstLeft") int firstLeft,
+                     @Param("secondLeft") int secondLeft, @Param("secondRight") int secondRight,
+                     @Param("firstOffset") int firstOffset, @Param("secondOffset") int secondOffset);
+
+    /**
+     * Swap the order of two trees by exchanging the left bounds of their roots.
+     *
+     * @param firstTreeId  Object The tree that comes first, as its column value.
+     * @param secondTreeId Object The tree that comes right after it, as its column value.
+     * @param firstOffset  int Offset applied to the first tree.
+     * @param secondOffset int Offset applied to the second tree.
+     * @return int The number of rows touched.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "UPDATE categories SET "
+        + "\"left\" = \"left\" + CASE WHEN tree_id = :firstTreeId THEN :firstOffset ELSE :secondOffset END, "
+        + "\"right\" = \"right\" + CASE WHEN tree_id = :firstTreeId THEN :firstOffset ELSE :secondOffset END "
+        + "WHERE tree_id IN (:firstTreeId, :secondTreeId)", nativeQuery = true)
+    int swapTrees(@Param("firstTreeId") Object firstTreeId, @Param("secondTreeId") Object secondTreeId,
+                  @Param("firstOffset") int firstOffset, @Param("secondOffset") int secondOffset);
+
+    /**
+     * Delete a whole subtree without closing the gap it leaves behind.
+     *
+     * @param treeId Object The tree the subtree belongs to, as its column value.
+     * @param left   int Left bound of the subtree root.
+     * @param right  int Right bound of the subtree root.
+     * @return int The number of rows deleted.
+     */
+    @Modifying(flushAutomatically = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = BOUNDS_SPACE))
+    @Query(value = "DELETE FROM categories WHERE tree_id = :treeId AND \"left\" >= :left AND \"right\" <= :right",
+        nativeQuery = true)
+    int deleteSubtree(@Param("treeId") Object treeId, @Param("left") int left, @Param("right") int right);
 }
@@ -0,0 +1,118 @@
+package com.mewebstudio.nestedset.repository;
+
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+
+public interface TreeVersionRepository extends JpaRepository<TreeVersion, String> {
+    @Query("SELECT v.version FROM TreeVersion v WHERE v.name = :name")
+    Optional<Long> findVersion(@Param("name") String name);
+
+    /**
+     * Read a version counter and lock its row until the transaction ends.
+     *
+     * @param name String The name of the counter.
+     * @return Optional<TreeVersion> The counter, empty when it does not exist yet.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM TreeVersion v WHERE v.name = :name")
+    Optional<TreeVersion> findForUpdate(@Param("name") String name);
+
+    /**
+     * Read the counters whose name starts with a prefix and lock their rows until the transaction ends, in the order
+     * of their names.
+     *
+     * @param prefix String The prefix of the names.
+     * @return List<TreeVersion> The counters ordered by name.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT v FROM TreeVersion v WHERE v.name LIKE CONCAT(:prefix, '%') ORDER BY v.name")
+    List<TreeVersion> findAllForUpdate(@Param("prefix") String prefix);
+
+    @Query("SELECT v.name FROM TreeVersion v WHERE v.name LIKE CONCAT(:prefix, '%')")
+    List<String> findNames(@Param("prefix") String prefix);
+
+    /**
+     * Create a version counter at 0. Fails on a concurrent insert instead of overwriting it.
+     *
+     * @param name String The name of the counter.
+     * @return int The number of rows inserted.
+     */
+    @Modifying
+    @Query("INSERT INTO TreeVersion (name, version) VALUES (:name, 0)")
+    int insert(@Param("name") String name);
+
+    /**
+     * Increment a version counter only if it still has the expected value, the row stays locked until the
+     * transaction ends.
+     *
+     * @param name     String The name of the counter.
+     * @param expected long The value read when the mutation started.
+     * @return int The number of rows touched, 0 when another mutation incremented it meanwhile.
+     */
+    @Modifying
+    @Query("UPDATE TreeVersion v SET v.version = v.version + 1 WHERE v.name = :name AND v.version = :expected")
+    int increment(@Param("name") String name, @Param("expected") long expected);
+
+    /**
+     * Increment a version counter, the row stays locked until the transaction ends.
+     *
+     * @param name String The name of the counter.
+     * @return int The number of rows touched, 0 when the counter does not exist yet.
+     */
+    @Modifying
+    @Query("UPDATE TreeVersion v SET v.version = v.version + 1 WHERE v.name = :name")
+    int increment(@Param("name") String name);
+
+    /**
+     * Add to a version counter only if it still has the expected value, the row stays locked until the transaction
+     * ends.
+     *
+     * @param name     String The name of the counter.
+     * @param expected long The value read when the mutation started.
+     * @param delta    long The value to add.
+     * @return int The number of rows touched, 0 when another mutation changed it meanwhile.
+     */
+    @Modifying
+    @Query("UPDATE TreeVersion v SET v.version = v.version + :delta WHERE v.name = :name AND v.version = :expected")
+    int add(@Param("name") String name, @Param("expected") long expected, @Param("delta") long delta);
+
+    /**
+     * Add to a version counter, the row stays locked until the transaction ends.
+     *
+     * @param name  String The name of the counter.
+     * @param delta long The value to add.
+     * @return int The number of rows touched, 0 when the counter does not exist yet.
+     */
+    @Modifying
+    @Query("UPDATE TreeVersion v SET v.version = v.version + :delta WHERE v.name = :name")
+    int add(@Param("name") String name, @Param("delta") long delta);
+
+    /**
+     * Increment every version counter whose name starts with a prefix, the rows stay locked until the transaction
+     * ends.
+     *
+     * @param prefix String The prefix of the names.
+     * @return int The number of rows touched.
+     */
+    @Modifying
+    @Query("UPDATE TreeVersion v SET v.version = v.version + 1 WHERE v.name LIKE CONCAT(:prefix, '%')")
+    int incrementAll(@Param("prefix") String prefix);
+
+    /**
+     * Remove a version counter that counts nothing anymore.
+     *
+     * @param name String The name of the counter.
+     * @return int The number of rows deleted.
+     */
+    @Modifying
+    @Query("DELETE FROM TreeVersion v WHERE v.name = :name")
+    int remove(@Param("name") String name);
+}
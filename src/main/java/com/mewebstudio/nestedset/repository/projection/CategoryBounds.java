@@ -0,0 +1,14 @@
+package com.mewebstudio.nestedset.repository.projection;
+
+/**
+ * Closed projection of the nested-set position of a category, read without hydrating the entity.
+ */
+public interface CategoryBounds {
+    String getTreeId();
+
+    int getLeft();
+
+    int getRight();
+
+    int getDepth();
+}
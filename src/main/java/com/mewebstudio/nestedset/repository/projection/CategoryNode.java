@@ -0,0 +1,52 @@
+package com.mewebstudio.nestedset.repository.projection;
+
+/**
+ * Structure of a category as the rebuild needs it: its parent and its current position, selected with a
+ * constructor expression so that a full scan never enters the persistence context.
+ */
+public class CategoryNode {
+    private final String id;
+
+    private final String parentId;
+
+    private final String treeId;
+
+    private final int left;
+
+    private final int right;
+
+    private final int depth;
+
+    public CategoryNode(String id, String parentId, String treeId, int left, int right, int depth) {
+        this.id = id;
+        this.parentId = parentId;
+        this.treeId = treeId;
+        this.left = left;
+        this.right = right;
+        this.depth = depth;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+}
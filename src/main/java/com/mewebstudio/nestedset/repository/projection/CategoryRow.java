@@ -0,0 +1,69 @@
+package com.mewebstudio.nestedset.repository.projection;
+
+import java.time.LocalDateTime;
+
+/**
+ * Flat row of a category as the read paths need it, selected with a constructor expression so that rows never enter
+ * the persistence context and the parent is never fetched.
+ */
+public class CategoryRow {
+    private final String id;
+
+    private final String name;
+
+    private final int left;
+
+    private final int right;
+
+    private final String treeId;
+
+    private final String parentId;
+
+    private final LocalDateTime createdAt;
+
+    private final LocalDateTime updatedAt;
+
+    public CategoryRow(String id, String name, int left, int right, String treeId, String parentId,
+                       LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.left = left;
+        this.right = right;
+        this.treeId = treeId;
+        this.parentId = parentId;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    public int getRight() {
+        return right;
+    }
+
+    public String getTreeId() {
+        return treeId;
+    }
+
+    public String getParentId() {
+        return parentId;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+
+    public LocalDateTime getUpdatedAt() {
+        return updatedAt;
+    }
+}
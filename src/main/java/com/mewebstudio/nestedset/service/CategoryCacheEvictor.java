@@ -0,0 +1,125 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.repository.CategoryRepository;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.cache.CacheManager;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Evicts from the second-level cache the categories a mutation wrote without going through their entity: the native
+ * statements on the bounds, see {@link CategoryRepository#BOUNDS_SPACE}, the subtrees deleted with them, and the JDBC
+ * batches of a rebuild. Only the categories with a bound in the ranges the mutation changed are evicted, the rest of
+ * the region stays cached. They are evicted right away and again once the transaction completed, as a read racing
+ * the commit may have cached them as they were before.
+ *
+ * <p>Looking the categories up costs a query, which is only worth it for a few of them: a range open to the end of
+ * its tree, or holding more than {@link #MAX_EVICTED} categories, evicts the whole region instead. Nothing is looked
+ * up while the region is empty, the region is then evicted once the transaction completed if a read put a category
+ * there in the meantime.
+ */
+@Component
+public class CategoryCacheEvictor {
+    /**
+     * Most categories evicted one by one, a mutation changing more evicts the whole region.
+     */
+    static final int MAX_EVICTED = 256;
+
+    private final CategoryRepository categoryRepository;
+
+    private final EntityManagerFactory entityManagerFactory;
+
+    private final CacheManager secondLevelCacheManager;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    public CategoryCacheEvictor(CategoryRepository categoryRepository, EntityManagerFactory entityManagerFactory,
+                                CacheManager secondLevelCacheManager, NestedSetProperties nestedSetProperties) {
+        this.categoryRepository = categoryRepository;
+        this.entityManagerFactory = entityManagerFactory;
+        this.secondLevelCacheManager = secondLevelCacheManager;
+        this.nestedSetProperties = nestedSetProperties;
+    }
+
+    /**
+     * Evict the categories with a bound in the ranges, as they are now. Must run inside the transaction of the
+     * mutation, after its statements.
+     *
+     * @param ranges Collection<CategoryTreeChangedEvent.Range> The bounds a mutation changed, empty when every tree
+     *               may have changed and the whole region is evicted.
+     */
+    void evict(Collection<CategoryTreeChangedEvent.Range> ranges) {
+        if (!nestedSetProperties.isCacheEnabled()) {
+            return;
+        }
+
+        Cache cache = entityManagerFactory.getCache();
+        if (isRegionEmpty()) {
+            afterCompletion(() -> {
+                if (!isRegionEmpty()) {
+                    cache.evict(Category.class);
+                }
+            });
+            return;
+        }
+
+        List<String> ids = ranges.isEmpty() ? null : findIds(ranges);
+        if (ids == null) {
+            cache.evict(Category.class);
+            afterCompletion(() -> cache.evict(Category.class));
+            return;
+        }
+
+        ids.forEach(id -> cache.evict(Category.class, id));
+        afterCompletion(() -> ids.forEach(id -> cache.evict(Category.class, id)));
+    }
+
+    /**
+     * Find the IDs of the categories with a bound in the ranges.
+     *
+     * @param ranges Collection<CategoryTreeChangedEvent.Range> The bounds a mutation changed.
+     * @return List<String> The IDs, null when a range is open-ended or they are more than {@link #MAX_EVICTED}.
+     */
+    private List<String> findIds(Collection<CategoryTreeChangedEvent.Range> ranges) {
+        if (ranges.stream().anyMatch(range -> range.getTo() == null)) {
+            return null;
+        }
+
+        List<String> ids = new ArrayList<>();
+        for (CategoryTreeChangedEvent.Range range : ranges) {
+            ids.addAll(categoryRepository.findIdsWithBoundBetween(range.getTreeId(), range.getFrom(), range.getTo(),
+                Limit.of(MAX_EVICTED - ids.size() + 1)));
+            if (ids.size() > MAX_EVICTED) {
+                return null;
+            }
+        }
+
+        return ids;
+    }
+
+    private boolean isRegionEmpty() {
+        return secondLevelCacheManager.getCache(Category.CACHE_REGION)
+            .unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize() == 0;
+    }
+
+    private static void afterCompletion(Runnable eviction) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    eviction.run();
+                }
+            });
+        }
+    }
+}
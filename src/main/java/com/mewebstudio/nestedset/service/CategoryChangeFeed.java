@@ -0,0 +1,341 @@
+package com.mewebstudio.nestedset.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.response.CategoryTreeChangeResponse;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.ContextClosedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams the committed tree changes to Server-Sent Events subscribers in version order, each with the version it
+ * produced and the bounds it may have changed, so a client keeping its own copy of the trees reads again only the
+ * categories in those bounds. Mutations committed by different threads may announce themselves out of order, a
+ * change is held back until the versions before it were sent, or for {@link #ORDER_WAIT} at most.
+ * <p>
+ * The latest changes are kept, so a client reconnecting with the last version it got is sent the ones it missed.
+ * When they are not kept anymore, or a version was never announced to this instance (it was committed by another
+ * one), the client gets a {@code resync} event instead and has to read the trees again. Every subscriber has a
+ * buffer of its own and is sent to by a fixed pool of sender threads, one at a time per subscriber, so the threads
+ * stay bounded however many subscribe. A subscriber that falls behind by more than the buffer gets a {@code resync}
+ * event and is dropped, without slowing down the others. A client that stops reading keeps a sender in a blocking
+ * write until the write times out, the other subscribers are sent to by the remaining senders meanwhile.
+ * <p>
+ * The gauge {@code category.feed.subscribers} counts the open subscriptions and {@code category.feed.dropped} the
+ * subscribers dropped for falling behind.
+ */
+@Service
+public class CategoryChangeFeed {
+    /**
+     * How long a change waits for the changes of the versions before it.
+     */
+    private static final long ORDER_WAIT = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private static final MediaType EVENT_TEXT = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryService categoryService;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The latest changes sent, oldest first, without a missing version in between.
+     */
+    private final Deque<CategoryTreeChangedEvent> history = new ArrayDeque<>();
+
+    /**
+     * Committed changes waiting for the changes of the versions before them, by version.
+     */
+    private final NavigableMap<Long, CategoryTreeChangedEvent> pending = new TreeMap<>();
+
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "category-change-feed");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Threads sending to the subscribers, a subscriber is queued for one when it has events to send.
+     */
+    private final ExecutorService senders;
+
+    /**
+     * The version of the last change sent, -1 until it is known.
+     */
+    private long version = -1;
+
+    /**
+     * When the oldest pending change started waiting for a missing version, 0 when none waits.
+     */
+    private long waitingSince;
+
+    public CategoryChangeFeed(CategoryService categoryService, NestedSetProperties nestedSetProperties,
+                              MeterRegistry meterRegistry, ObjectMapper objectMapper) {
+        this.categoryService = categoryService;
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+        this.objectMapper = objectMapper;
+        AtomicInteger threads = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(Math.max(1, nestedSetProperties.getFeedSenderThreads()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "category-change-feed-sender-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+
+        Gauge.builder("category.feed.subscribers", subscribers, List::size)
+            .description("Open subscriptions to the tree change feed")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Subscribe to the tree changes committed from now on, and to those after a version when it is given.
+     *
+     * @param sinceVersion Long? The last version the client got, it is sent every change after it.
+     * @return SseEmitter The stream of {@code change} and {@code resync} events, each with its version as ID.
+     * @throws BadRequestException if the version is negative.
+     */
+    public SseEmitter subscribe(Long sinceVersion) {
+        if (sinceVersion != null && sinceVersion < 0) {
+            throw new BadRequestException("Version must not be negative");
+        }
+
+        SseEmitter emitter = new SseEmitter(nestedSetProperties.getFeedTimeout().toMillis());
+        synchronized (this) {
+            start();
+            List<String> missed = new ArrayList<>();
+            if (sinceVersion != null && sinceVersion != version) {
+                if (sinceVersion < version && !history.isEmpty()
+                    && history.getFirst().getVersion() <= sinceVersion + 1) {
+                    history.stream().filter(event -> event.getVersion() > sinceVersion)
+                        .map(event -> frame(CategoryTreeChangeResponse.convert(event)))
+                        .forEach(missed::add);
+                } else {
+                    missed.add(frame(CategoryTreeChangeResponse.resync(version)));
+                }
+            }
+
+            Subscriber subscriber = new Subscriber(emitter, nestedSetProperties.getFeedBufferSize() + missed.size());
+            subscribers.add(subscriber);
+            missed.forEach(subscriber::offer);
+        }
+
+        return emitter;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (version < 0) {
+            version = categoryService.getVersion();
+        }
+    }
+
+    /**
+     * Queue a change once its mutation is committed, and send it with those it completes the order of.
+     *
+     * @param event CategoryTreeChangedEvent The committed mutation.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public synchronized void onTreeChanged(CategoryTreeChangedEvent event) {
+        if (version < 0) {
+            version = event.getVersion() - 1;
+        }
+        if (event.getVersion() > version) {
+            pending.put(event.getVersion(), event);
+            release();
+        }
+    }
+
+    /**
+     * End the subscriptions once the application shuts down, before the graceful shutdown of the web server would
+     * wait for them. A subscription is completed by its sender, which may still be writing to a slow client.
+     */
+    @EventListener(ContextClosedEvent.class)
+    public void closeSubscriptions() {
+        subscribers.forEach(subscriber -> {
+            subscriber.close();
+            subscriber.drain();
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Send the pending changes that follow the last one sent. When a version is still missing after
+     * {@link #ORDER_WAIT}, it is given up on: the subscribers are told to resync and the history starts over, so no
+     * client is ever resumed across it.
+     */
+    private synchronized void release() {
+        while (!pending.isEmpty()) {
+            CategoryTreeChangedEvent next = pending.firstEntry().getValue();
+            if (next.getVersion() != version + 1) {
+                long now = System.nanoTime();
+                if (waitingSince == 0) {
+                    waitingSince = now;
+                    scheduler.schedule(this::release, ORDER_WAIT, TimeUnit.NANOSECONDS);
+                }
+                if (now - waitingSince < ORDER_WAIT) {
+                    return;
+                }
+
+                log.warn("Tree versions {} to {} were not announced, subscribers have to resync", version + 1,
+                    next.getVersion() - 1);
+                history.clear();
+                String resync = frame(CategoryTreeChangeResponse.resync(next.getVersion() - 1));
+                subscribers.forEach(subscriber -> subscriber.offer(resync));
+            }
+
+            pending.pollFirstEntry();
+            waitingSince = 0;
+            version = next.getVersion();
+            history.addLast(next);
+            while (history.size() > nestedSetProperties.getFeedHistorySize()) {
+                history.removeFirst();
+            }
+            String change = frame(CategoryTreeChangeResponse.convert(next));
+            subscribers.forEach(subscriber -> subscriber.offer(change));
+        }
+    }
+
+    /**
+     * Write a change as a Server-Sent Event once for every subscriber, with the version as its ID.
+     *
+     * @param change CategoryTreeChangeResponse The change, or the version to resync at.
+     * @return String The {@code change} or {@code resync} event.
+     */
+    private String frame(CategoryTreeChangeResponse change) {
+        try {
+            return "id:" + change.getVersion() + "\nevent:" + (change.getOperation() != null ? "change" : "resync")
+                + "\ndata:" + objectMapper.writeValueAsString(change) + "\n\n";
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * A subscription with its buffer of events not sent yet. At most one sender thread drains it at a time, so the
+     * events are sent in the order they were offered, and every event buffered meanwhile goes out in one write.
+     */
+    private final class Subscriber {
+        private final SseEmitter emitter;
+
+        private final BlockingQueue<String> buffer;
+
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        /**
+         * Set once nothing is offered anymore, the emitter is completed after the buffer was sent.
+         */
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.buffer = new LinkedBlockingQueue<>(capacity);
+            emitter.onCompletion(this::close);
+            emitter.onTimeout(this::close);
+            emitter.onError(error -> close());
+        }
+
+        /**
+         * Buffer an event, or drop the subscriber with a last {@code resync} event when the buffer is full.
+         *
+         * @param event String The event.
+         */
+        private void offer(String event) {
+            if (closed) {
+                return;
+            }
+            if (!buffer.offer(event)) {
+                buffer.clear();
+                buffer.offer(frame(CategoryTreeChangeResponse.resync(version)));
+                close();
+                meterRegistry.counter("category.feed.dropped").increment();
+                log.debug("Dropped a change feed subscriber that fell behind at version {}", version);
+            }
+            drain();
+        }
+
+        private void close() {
+            closed = true;
+            subscribers.remove(this);
+        }
+
+        private void drain() {
+            if (draining.compareAndSet(false, true)) {
+                senders.execute(this::send);
+            }
+        }
+
+        private void send() {
+            try {
+                while (!buffer.isEmpty()) {
+                    StringBuilder events = new StringBuilder();
+                    String event;
+                    while ((event = buffer.poll()) != null) {
+                        events.append(event);
+                    }
+                    emitter.send(Set.of(new ResponseBodyEmitter.DataWithMediaType(events.toString(), EVENT_TEXT)));
+                }
+                if (closed) {
+                    emitter.complete();
+                    return;
+                }
+            } catch (IOException | IllegalStateException e) {
+                close();
+                buffer.clear();
+                return;
+            } finally {
+                draining.set(false);
+            }
+
+            if (!buffer.isEmpty() || closed) {
+                drain();
+            }
+        }
+    }
+}
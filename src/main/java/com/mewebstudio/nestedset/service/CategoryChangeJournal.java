@@ -0,0 +1,128 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.entity.CategoryChange;
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import com.mewebstudio.nestedset.repository.CategoryChangeRepository;
+import com.mewebstudio.nestedset.repository.CategoryRepository;
+import com.mewebstudio.nestedset.repository.TreeVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Journal of the bounds every mutation may have changed, kept in the database by tree version for the clients that
+ * sync their copy of the trees by delta. An entry holds a range of bounds, not the categories, so a mutation writes
+ * one small row per tree it touched however many categories it shifted. The journal keeps the latest
+ * {@link NestedSetProperties#getJournalSize()} versions, a client behind them has to read the trees again.
+ * <p>
+ * The ranges of consecutive mutations merge into one range per tree: a mutation only moves bounds inside its range,
+ * or after its start when the range reaches to the end of the tree, so a category that any of them changed has a
+ * bound in the merged range both in the copy of the client and in the trees now.
+ */
+@Service
+public class CategoryChangeJournal {
+    /**
+     * Number of versions between two trims of the journal.
+     */
+    private static final int TRIM_INTERVAL = 64;
+
+    private final CategoryChangeRepository categoryChangeRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final TreeVersionRepository treeVersionRepository;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    public CategoryChangeJournal(CategoryChangeRepository categoryChangeRepository,
+                                 CategoryRepository categoryRepository, TreeVersionRepository treeVersionRepository,
+                                 NestedSetProperties nestedSetProperties, MeterRegistry meterRegistry) {
+        this.categoryChangeRepository = categoryChangeRepository;
+        this.categoryRepository = categoryRepository;
+        this.treeVersionRepository = treeVersionRepository;
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Write the ranges of a mutation in its transaction, and every {@link #TRIM_INTERVAL} versions forget the
+     * versions the journal does not keep anymore.
+     *
+     * @param version long The tree version the mutation produced.
+     * @param ranges  List<CategoryTreeChangedEvent.Range> The bounds it may have changed, empty when every tree may
+     *                have changed.
+     */
+    void record(long version, List<CategoryTreeChangedEvent.Range> ranges) {
+        int size = nestedSetProperties.getJournalSize();
+        if (size <= 0) {
+            return;
+        }
+
+        if (ranges.isEmpty()) {
+            categoryChangeRepository.save(new CategoryChange(version, null, 0, null));
+        } else {
+            categoryChangeRepository.saveAll(ranges.stream()
+                .map(range -> new CategoryChange(version, range.getTreeId(), range.getFrom(), range.getTo()))
+                .toList());
+        }
+        if (version % TRIM_INTERVAL == 0) {
+            categoryChangeRepository.deleteUpTo(version - size);
+        }
+    }
+
+    /**
+     * Read the changes since a version from one snapshot of the journal and the trees.
+     *
+     * @param sinceVersion long The last version the client has.
+     * @return CategoryChangeSet The changes tree by tree, or a resync when the journal does not reach back to the
+     * version, when a mutation changed every tree since, or when the version is not one the trees had.
+     * @throws BadRequestException if the version is negative.
+     */
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public CategoryChangeSet changesSince(long sinceVersion) {
+        if (sinceVersion < 0) {
+            throw new BadRequestException("Version must not be negative");
+        }
+
+        long version = treeVersionRepository.findVersion(TreeVersion.CATEGORIES).orElse(0L);
+        if (sinceVersion == version) {
+            return new CategoryChangeSet(version, List.of());
+        }
+
+        Optional<Long> oldest = categoryChangeRepository.findOldestVersion();
+        if (sinceVersion > version || oldest.isEmpty() || oldest.get() > sinceVersion + 1) {
+            return resync(version);
+        }
+
+        Map<String, CategoryTreeChangedEvent.Range> ranges = new TreeMap<>();
+        for (CategoryChange change : categoryChangeRepository.findBetween(sinceVersion, version)) {
+            if (change.getTreeId() == null) {
+                return resync(version);
+            }
+            ranges.merge(change.getTreeId(),
+                new CategoryTreeChangedEvent.Range(change.getTreeId(), change.getFrom(), change.getTo()),
+                CategoryTreeChangedEvent.Range::union);
+        }
+
+        return new CategoryChangeSet(version, ranges.values().stream()
+            .map(range -> new CategoryChangeSet.TreeChanges(range, categoryRepository.findRowsWithBoundBetween(
+                range.getTreeId(), range.getFrom(), range.getTo() != null ? range.getTo() : Integer.MAX_VALUE)))
+            .toList());
+    }
+
+    private CategoryChangeSet resync(long version) {
+        meterRegistry.counter("category.journal.resyncs").increment();
+        return CategoryChangeSet.resync(version);
+    }
+}
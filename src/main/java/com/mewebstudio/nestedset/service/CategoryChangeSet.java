@@ -0,0 +1,73 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+
+import java.util.List;
+
+/**
+ * The changes of the trees since a version, read from the change journal: for every tree changed meanwhile, the
+ * bounds that may have changed and the categories that have a bound in them now.
+ */
+public class CategoryChangeSet {
+    private final long version;
+
+    private final List<TreeChanges> trees;
+
+    public CategoryChangeSet(long version, List<TreeChanges> trees) {
+        this.version = version;
+        this.trees = trees;
+    }
+
+    /**
+     * @param version long The tree version the client has to read the trees at.
+     * @return CategoryChangeSet The changes telling the client to read the trees again.
+     */
+    public static CategoryChangeSet resync(long version) {
+        return new CategoryChangeSet(version, null);
+    }
+
+    /**
+     * @return long The tree version the changes bring the client to.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return List<TreeChanges>? The changes tree by tree, null when the journal does not reach back to the version.
+     */
+    public List<TreeChanges> getTrees() {
+        return trees;
+    }
+
+    public boolean isResync() {
+        return trees == null;
+    }
+
+    /**
+     * Changes of one tree: the categories the client has with a bound in the range are replaced by those read now.
+     * A category missing from them was deleted or moved to a range of another tree.
+     */
+    public static class TreeChanges {
+        private final CategoryTreeChangedEvent.Range range;
+
+        private final List<CategoryRow> rows;
+
+        public TreeChanges(CategoryTreeChangedEvent.Range range, List<CategoryRow> rows) {
+            this.range = range;
+            this.rows = rows;
+        }
+
+        public CategoryTreeChangedEvent.Range getRange() {
+            return range;
+        }
+
+        /**
+         * @return List<CategoryRow> The categories with a bound in the range, ordered by left value.
+         */
+        public List<CategoryRow> getRows() {
+            return rows;
+        }
+    }
+}
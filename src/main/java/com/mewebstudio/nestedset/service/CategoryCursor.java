@@ -0,0 +1,71 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.exception.BadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Keyset position of a page of categories: the left bound of the root of the last tree read, the left bound of the
+ * last category read and its ID, to look its bounds up again. Handed to clients as an opaque string.
+ */
+public final class CategoryCursor {
+    /**
+     * Position before the first category.
+     */
+    public static final CategoryCursor START = new CategoryCursor(Integer.MIN_VALUE, Integer.MIN_VALUE, null);
+
+    private final int rootLeft;
+
+    private final int left;
+
+    private final String id;
+
+    public CategoryCursor(int rootLeft, int left, String id) {
+        this.rootLeft = rootLeft;
+        this.left = left;
+        this.id = id;
+    }
+
+    public int getRootLeft() {
+        return rootLeft;
+    }
+
+    public int getLeft() {
+        return left;
+    }
+
+    /**
+     * @return String? The ID of the last category read, null before the first one.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((rootLeft + ":" + left + ":" + id).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * @param cursor String? The cursor of the previous page, null for the first page.
+     * @return CategoryCursor The position to read after.
+     * @throws BadRequestException if the cursor is malformed.
+     */
+    public static CategoryCursor decode(String cursor) {
+        if (cursor == null) {
+            return START;
+        }
+
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3) {
+                throw new BadRequestException("Invalid cursor");
+            }
+
+            return new CategoryCursor(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), parts[2]);
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid cursor");
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable structure of the category trees as parallel primitive arrays, one slot per category in the order the
+ * rows were given: tree by tree, each tree ordered by left value. The descendants of a category are the slots right
+ * after it up to its end, its ancestors are found by following the parent slots, and the IDs are looked up in an
+ * open-addressing table of slots, so no object is held per category apart from its ID.
+ */
+public final class CategoryIntervalIndex {
+    /**
+     * Slot of no category: the parent of a root, or an ID that is not indexed.
+     */
+    public static final int NONE = -1;
+
+    private final String[] ids;
+
+    private final int[] lefts;
+
+    private final int[] rights;
+
+    private final int[] parents;
+
+    private final int[] depths;
+
+    /**
+     * Slot right after the last descendant of every category.
+     */
+    private final int[] ends;
+
+    /**
+     * Slot of the root of every category.
+     */
+    private final int[] roots;
+
+    /**
+     * Open-addressing table of the IDs, each entry is a slot plus one, 0 when the entry is free.
+     */
+    private final int[] table;
+
+    private final int maxDepth;
+
+    private CategoryIntervalIndex(String[] ids, int[] lefts, int[] rights, int[] parents, int[] depths, int[] ends,
+                                  int[] roots, int[] table, int maxDepth) {
+        this.ids = ids;
+        this.lefts = lefts;
+        this.rights = rights;
+        this.parents = parents;
+        this.depths = depths;
+        this.ends = ends;
+        this.roots = roots;
+        this.table = table;
+        this.maxDepth = maxDepth;
+    }
+
+    /**
+     * Build the index in one pass with a stack of open categories, the nesting comes from the bounds only.
+     *
+     * @param categories List<CategoryRow> The categories grouped by tree, each tree ordered by left value.
+     * @return CategoryIntervalIndex The index.
+     */
+    public static CategoryIntervalIndex of(List<CategoryRow> categories) {
+        int size = categories.size();
+        String[] ids = new String[size];
+        int[] lefts = new int[size];
+        int[] rights = new int[size];
+        int[] parents = new int[size];
+        int[] depths = new int[size];
+        int[] ends = new int[size];
+        int[] roots = new int[size];
+        int[] stack = new int[size];
+        String[] treeIds = new String[size];
+        int top = -1;
+        int maxDepth = -1;
+
+        for (int i = 0; i < size; i++) {
+            CategoryRow category = categories.get(i);
+            while (top >= 0 && !(Objects.equals(treeIds[stack[top]], category.getTreeId())
+                && category.getLeft() < rights[stack[top]])) {
+                ends[stack[top--]] = i;
+            }
+
+            ids[i] = category.getId();
+            treeIds[i] = category.getTreeId();
+            lefts[i] = category.getLeft();
+            rights[i] = category.getRight();
+            parents[i] = top >= 0 ? stack[top] : NONE;
+            roots[i] = top >= 0 ? stack[0] : i;
+            depths[i] = top + 1;
+            maxDepth = Math.max(maxDepth, depths[i]);
+            stack[++top] = i;
+        }
+        while (top >= 0) {
+            ends[stack[top--]] = size;
+        }
+
+        int[] table = new int[Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1];
+        for (int i = 0; i < size; i++) {
+            int entry = slotOf(ids[i], table.length);
+            while (table[entry] != 0) {
+                entry = (entry + 1) & (table.length - 1);
+            }
+            table[entry] = i + 1;
+        }
+
+        return new CategoryIntervalIndex(ids, lefts, rights, parents, depths, ends, roots, table, maxDepth);
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @return int The depth of the deepest category, -1 when there is none.
+     */
+    public int maxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @param id String? The ID of a category.
+     * @return int The slot of the category, {@link #NONE} when it is not indexed.
+     */
+    public int indexOf(String id) {
+        if (id == null) {
+            return NONE;
+        }
+
+        for (int entry = slotOf(id, table.length); table[entry] != 0;
+             entry = (entry + 1) & (table.length - 1)) {
+            if (ids[table[entry] - 1].equals(id)) {
+                return table[entry] - 1;
+            }
+        }
+
+        return NONE;
+    }
+
+    public String id(int index) {
+        return ids[index];
+    }
+
+    public int left(int index) {
+        return lefts[index];
+    }
+
+    public int right(int index) {
+        return rights[index];
+    }
+
+    /**
+     * @return int The slot of the parent, {@link #NONE} for a root.
+     */
+    public int parent(int index) {
+        return parents[index];
+    }
+
+    public int depth(int index) {
+        return depths[index];
+    }
+
+    /**
+     * @return int The slot right after the last descendant, the descendants are the slots in between.
+     */
+    public int end(int index) {
+        return ends[index];
+    }
+
+    public boolean isRoot(int index) {
+        return parents[index] == NONE;
+    }
+
+    /**
+     * @param index int The slot of a category.
+     * @return int[] The slots of the ancestors from the root down to the parent.
+     */
+    public int[] ancestors(int index) {
+        int[] path = new int[depths[index]];
+        for (int i = parents[index], at = path.length; i != NONE; i = parents[i]) {
+            path[--at] = i;
+        }
+
+        return path;
+    }
+
+    /**
+     * Whether a category lies strictly inside another one, decided from their bounds.
+     *
+     * @param ancestor int The slot of the enclosing category.
+     * @param index    int The slot of the enclosed category.
+     * @return boolean True when the category is a descendant of the other one.
+     */
+    public boolean isDescendant(int ancestor, int index) {
+        return roots[ancestor] == roots[index] && lefts[ancestor] < lefts[index] && rights[index] < rights[ancestor];
+    }
+
+    /**
+     * The deepest category that is the category itself or one of its ancestors for each of the categories. The
+     * candidates are the first category and its ancestors, the deepest one enclosing every other category wins.
+     *
+     * @param indexes int[] The slots of the categories, at least one.
+     * @return int The slot of the common ancestor, {@link #NONE} when the categories are in different trees.
+     */
+    public int lowestCommonAncestor(int... indexes) {
+        int candidate = indexes[0];
+        for (int i = 1; i < indexes.length && candidate != NONE; i++) {
+            if (roots[candidate] != roots[indexes[i]]) {
+                return NONE;
+            }
+            while (candidate != indexes[i] && !isDescendant(candidate, indexes[i])) {
+                candidate = parents[candidate];
+            }
+        }
+
+        return candidate;
+    }
+
+    /**
+     * Spread the hash of an ID over the table, IDs sharing a prefix have close string hashes that would otherwise fill
+     * long runs of neighbouring entries.
+     *
+     * @param id     String The ID.
+     * @param length int The length of the table, a power of two.
+     * @return int The first entry to probe.
+     */
+    private static int slotOf(String id, int length) {
+        int hash = id.hashCode() * 0x9E3779B9;
+        return (hash ^ hash >>> 16) & (length - 1);
+    }
+}
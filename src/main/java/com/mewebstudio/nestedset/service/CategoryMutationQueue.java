@@ -0,0 +1,294 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces the create, move and delete requests that arrive within a few milliseconds into one transaction, so a
+ * burst of single-node writes pays the transaction, the version lock and the commit once per batch instead of once
+ * per request. Consecutive creates of a batch go through {@link CategoryService#createAll}, which shifts every
+ * parent once for all the nodes added under it; moves and deletes are applied in arrival order in between.
+ * <p>
+ * A batch that fails as a whole is rolled back and its requests are applied again one transaction each, so a
+ * request that cannot be applied (a taken name, a missing category) fails alone and the others still commit.
+ * When the group commit is disabled every request runs on the caller thread in its own transaction. The worker
+ * thread only runs when the group commit is enabled as the application context starts, and is stopped with it.
+ */
+@Service
+public class CategoryMutationQueue implements SmartLifecycle {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryService categoryService;
+
+    private final TreeMutationRetrier treeMutationRetrier;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TransactionTemplate transaction;
+
+    private final BlockingQueue<PendingMutation> queue = new LinkedBlockingQueue<>();
+
+    /**
+     * The thread applying the batches, null while the queue is not running.
+     */
+    private volatile Thread worker;
+
+    public CategoryMutationQueue(CategoryService categoryService, TreeMutationRetrier treeMutationRetrier,
+                                 NestedSetProperties nestedSetProperties, MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager) {
+        this.categoryService = categoryService;
+        this.treeMutationRetrier = treeMutationRetrier;
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * @param request CreateCategoryRequest The request containing the category name and optional parent ID.
+     * @return CompletableFuture<Category> The created category, once its batch committed.
+     */
+    public CompletableFuture<Category> create(CreateCategoryRequest request) {
+        return submit(new PendingMutation(CategoryTreeChangedEvent.Operation.CREATE, request,
+            () -> categoryService.create(request)));
+    }
+
+    /**
+     * @param id      String The ID of the category to update.
+     * @param request UpdateCategoryRequest The request containing the new name and optional parent ID.
+     * @return CompletableFuture<Category> The updated category, once its batch committed.
+     */
+    public CompletableFuture<Category> update(String id, UpdateCategoryRequest request) {
+        return submit(new PendingMutation(CategoryTreeChangedEvent.Operation.UPDATE, null,
+            () -> categoryService.update(id, request)));
+    }
+
+    /**
+     * @param id String The ID of the category to move before its previous sibling.
+     * @return CompletableFuture<Category> The moved category, once its batch committed.
+     */
+    public CompletableFuture<Category> moveUp(String id) {
+        return submit(new PendingMutation(CategoryTreeChangedEvent.Operation.MOVE_UP, null,
+            () -> categoryService.moveUp(categoryService.findById(id))));
+    }
+
+    /**
+     * @param id String The ID of the category to move after its next sibling.
+     * @return CompletableFuture<Category> The moved category, once its batch committed.
+     */
+    public CompletableFuture<Category> moveDown(String id) {
+        return submit(new PendingMutation(CategoryTreeChangedEvent.Operation.MOVE_DOWN, null,
+            () -> categoryService.moveDown(categoryService.findById(id))));
+    }
+
+    /**
+     * @param id String The ID of the category to delete with its subtree.
+     * @return CompletableFuture<Void> Completed once its batch committed.
+     */
+    public CompletableFuture<Void> delete(String id) {
+        return submit(new PendingMutation(CategoryTreeChangedEvent.Operation.DELETE, null, () -> {
+            categoryService.delete(id);
+            return null;
+        }));
+    }
+
+    /**
+     * Start the worker thread if the group commit is enabled.
+     */
+    @Override
+    public synchronized void start() {
+        if (worker != null || !nestedSetProperties.isGroupCommitEnabled()) {
+            return;
+        }
+
+        Thread thread = new Thread(this::run, "category-mutation-queue");
+        thread.setDaemon(true);
+        worker = thread;
+        thread.start();
+    }
+
+    /**
+     * Stop the worker thread and cancel the queued requests, the requests that arrive afterward run on the caller
+     * thread.
+     */
+    @Override
+    public synchronized void stop() {
+        Thread thread = worker;
+        if (thread == null) {
+            return;
+        }
+
+        worker = null;
+        thread.interrupt();
+        cancelQueued();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return worker != null;
+    }
+
+    /**
+     * Apply a mutation, timing it in {@code category.mutation} from the call until its result is known, queueing and
+     * retries included.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> CompletableFuture<T> submit(PendingMutation pending) {
+        long started = System.nanoTime();
+        if (!nestedSetProperties.isGroupCommitEnabled() || worker == null) {
+            try {
+                T result = (T) treeMutationRetrier.execute(pending.operation, pending.mutation);
+                recordMutation(pending.operation, started, null);
+                return CompletableFuture.completedFuture(result);
+            } catch (RuntimeException e) {
+                recordMutation(pending.operation, started, e);
+                throw e;
+            }
+        }
+
+        queue.add(pending);
+        if (worker == null) {
+            cancelQueued();
+        }
+        return (CompletableFuture<T>) pending.future
+            .whenComplete((result, failure) -> recordMutation(pending.operation, started, failure));
+    }
+
+    private void cancelQueued() {
+        for (PendingMutation pending; (pending = queue.poll()) != null; ) {
+            pending.future.completeExceptionally(new CancellationException("Shutting down"));
+        }
+    }
+
+    private void recordMutation(CategoryTreeChangedEvent.Operation operation, long started, Throwable failure) {
+        meterRegistry.timer("category.mutation", "operation", operation.name().toLowerCase(),
+                "outcome", failure == null ? "success" : "failure")
+            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    private void run() {
+        List<PendingMutation> batch = new ArrayList<>();
+        while (worker == Thread.currentThread() && !Thread.currentThread().isInterrupted()) {
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + nestedSetProperties.getGroupCommitWindow().toNanos();
+                while (batch.size() < nestedSetProperties.getGroupCommitMaxBatch()) {
+                    PendingMutation next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                apply(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                batch.forEach(pending -> pending.future.completeExceptionally(new CancellationException(
+                    "Shutting down")));
+            } catch (RuntimeException e) {
+                log.error("Group commit failed", e);
+                batch.forEach(pending -> pending.future.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Apply a batch in one transaction, or every request of it in a transaction of its own if that fails.
+     */
+    private void apply(List<PendingMutation> batch) {
+        meterRegistry.summary("category.mutation.batch.size").record(batch.size());
+        List<Object> results;
+        try {
+            results = treeMutationRetrier.execute("group_commit", () -> transaction.execute(status -> applyAll(batch)));
+        } catch (RuntimeException e) {
+            if (batch.size() == 1) {
+                batch.get(0).future.completeExceptionally(e);
+                return;
+            }
+
+            log.debug("Applying a batch of {} mutations one by one after it failed: {}", batch.size(), e.getMessage());
+            for (PendingMutation pending : batch) {
+                try {
+                    pending.future.complete(treeMutationRetrier.execute(pending.operation, pending.mutation));
+                } catch (RuntimeException failure) {
+                    pending.future.completeExceptionally(failure);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < batch.size(); i++) {
+            batch.get(i).future.complete(results.get(i));
+        }
+    }
+
+    /**
+     * Run the mutations of a batch in arrival order inside the current transaction, every run of consecutive creates
+     * as one batch create.
+     *
+     * @param batch List<PendingMutation> The queued mutations.
+     * @return List<Object> The result of every mutation, in the order of the batch.
+     */
+    private List<Object> applyAll(List<PendingMutation> batch) {
+        List<Object> results = new ArrayList<>(batch.size());
+        int i = 0;
+        while (i < batch.size()) {
+            int end = i;
+            List<CreateCategoryBatchItemRequest> creates = new ArrayList<>();
+            while (end < batch.size() && batch.get(end).create != null) {
+                CreateCategoryRequest request = batch.get(end).create;
+                creates.add(new CreateCategoryBatchItemRequest(null, request.getName(), request.getParentId(), null));
+                end++;
+            }
+
+            if (creates.size() > 1) {
+                results.addAll(categoryService.createAll(creates));
+                i = end;
+            } else {
+                results.add(batch.get(i).mutation.get());
+                i++;
+            }
+        }
+
+        return results;
+    }
+
+    private static final class PendingMutation {
+        private final CategoryTreeChangedEvent.Operation operation;
+
+        private final CreateCategoryRequest create;
+
+        private final Supplier<Object> mutation;
+
+        private final CompletableFuture<Object> future = new CompletableFuture<>();
+
+        private PendingMutation(CategoryTreeChangedEvent.Operation operation, CreateCategoryRequest create,
+                                Supplier<Object> mutation) {
+            this.operation = operation;
+            this.create = create;
+            this.mutation = mutation;
+        }
+    }
+}
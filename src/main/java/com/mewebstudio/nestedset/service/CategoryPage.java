@@ -0,0 +1,33 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated read.
+ */
+public class CategoryPage {
+    private final List<CategoryRow> rows;
+
+    private final CategoryCursor next;
+
+    public CategoryPage(List<CategoryRow> rows, CategoryCursor next) {
+        this.rows = rows;
+        this.next = next;
+    }
+
+    /**
+     * @return List<CategoryRow> The rows of the page ordered like the unpaginated read.
+     */
+    public List<CategoryRow> getRows() {
+        return rows;
+    }
+
+    /**
+     * @return CategoryCursor? The position to read the next page after, null on the last page.
+     */
+    public CategoryCursor getNext() {
+        return next;
+    }
+}
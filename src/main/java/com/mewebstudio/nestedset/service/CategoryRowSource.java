@@ -0,0 +1,18 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+
+import java.util.function.Consumer;
+
+/**
+ * Rows of a tree read, fed one at a time so that a caller can write them out without holding them all.
+ */
+@FunctionalInterface
+public interface CategoryRowSource {
+    /**
+     * Feed every row to the action, tree by tree in root order, each tree ordered by left value.
+     *
+     * @param action Consumer<CategoryResponse> The action, the rows carry no children.
+     */
+    void forEach(Consumer<CategoryResponse> action);
+}
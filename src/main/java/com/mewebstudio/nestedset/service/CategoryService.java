@@ -1,28 +1,95 @@
 package com.mewebstudio.nestedset.service;
 
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
 import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
 import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
 import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import com.mewebstudio.nestedset.entity.generator.ULIDGenerator;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
 import com.mewebstudio.nestedset.repository.CategoryRepository;
+import com.mewebstudio.nestedset.repository.TreeVersionRepository;
+import com.mewebstudio.nestedset.repository.projection.CategoryBounds;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
 import com.mewebstudio.nestedset.exception.BadRequestException;
+import com.mewebstudio.nestedset.exception.ConcurrentTreeModificationException;
 import com.mewebstudio.nestedset.exception.NotFoundException;
 import com.mewebstudio.springboot.jpa.nestedset.AbstractNestedSetService;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.CacheRetrieveMode;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityNotFoundException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.LongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class CategoryService extends AbstractNestedSetService<Category, String> {
+    private static final String CACHE_RETRIEVE_MODE = "jakarta.persistence.cache.retrieveMode";
+
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final CategoryRepository categoryRepository;
 
-    public CategoryService(CategoryRepository categoryRepository) {
+    private final TreeVersionRepository treeVersionRepository;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final CategoryTreeLocks categoryTreeLocks;
+
+    private final MeterRegistry meterRegistry;
+
+    private final CategoryTreeRebuilder categoryTreeRebuilder;
+
+    private final EntityManager entityManager;
+
+    private final CategoryCacheEvictor categoryCacheEvictor;
+
+    /**
+     * Rows whose bounds the running mutation of the current thread changed, recorded when it publishes.
+     */
+    private final ThreadLocal<long[]> shiftedRows = ThreadLocal.withInitial(() -> new long[1]);
+
+    /**
+     * Bounds the running mutation of the current thread may have changed by tree, announced when it publishes.
+     */
+    private final ThreadLocal<Map<String, CategoryTreeChangedEvent.Range>> changedRanges =
+        ThreadLocal.withInitial(HashMap::new);
+
+    public CategoryService(CategoryRepository categoryRepository, TreeVersionRepository treeVersionRepository,
+                           NestedSetProperties nestedSetProperties, CategoryTreeLocks categoryTreeLocks,
+                           MeterRegistry meterRegistry, CategoryTreeRebuilder categoryTreeRebuilder,
+                           EntityManager entityManager, CategoryCacheEvictor categoryCacheEvictor) {
         super(categoryRepository);
         this.categoryRepository = categoryRepository;
+        this.treeVersionRepository = treeVersionRepository;
+        this.nestedSetProperties = nestedSetProperties;
+        this.categoryTreeLocks = categoryTreeLocks;
+        this.meterRegistry = meterRegistry;
+        this.categoryTreeRebuilder = categoryTreeRebuilder;
+        this.entityManager = entityManager;
+        this.categoryCacheEvictor = categoryCacheEvictor;
         log.debug("CategoryService initialized with repository: {}", categoryRepository);
         if (categoryRepository == null) {
             throw new IllegalArgumentException("CategoryRepository cannot be null");
@@ -30,12 +97,54 @@ public class CategoryService extends AbstractNestedSetService<Category, String>
     }
 
     /**
-     * Retrieve all categories ordered by left value.
+     * Retrieve all categories, tree by tree in root order, each tree ordered by left value.
+     *
+     * @return List<CategoryRow> The list of all categories.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getAllCategories() {
+        return categoryRepository.findRowsOrderedByTreeAndLeft();
+    }
+
+    /**
+     * Retrieve the categories of a single tree ordered by left value.
      *
-     * @return List<Category> The list of all categories.
+     * @param treeId String The ID of the tree (its root category).
+     * @return List<CategoryRow> The categories of the tree.
      */
-    public List<Category> getAllCategories() {
-        return categoryRepository.findAllOrderedByLeft();
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getTree(String treeId) {
+        return categoryRepository.findRowsOrderedByLeft(treeId);
+    }
+
+    /**
+     * Retrieve a category together with its parent with one query.
+     *
+     * @param id String The ID of the category.
+     * @return List<CategoryRow> The category followed by its parent, unless it is a root.
+     * @throws NotFoundException if the category is not found.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getWithParent(String id) {
+        List<CategoryRow> rows = categoryRepository.findRowWithParent(id);
+        CategoryRow category = rows.stream()
+            .filter(row -> row.getId().equals(id))
+            .findFirst()
+            .orElseThrow(() -> new NotFoundException("Category not found"));
+
+        return rows.size() == 1 || rows.get(0) == category ? rows : List.of(category, rows.get(0));
+    }
+
+    /**
+     * Retrieve the path from the root of its tree to a category with one query.
+     *
+     * @param id String The ID of the category.
+     * @return List<CategoryRow> The ancestors ordered by left value, followed by the category.
+     * @throws NotFoundException if the category is not found.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getPath(String id) {
+        return requireFound(categoryRepository.findPathRows(id));
     }
 
     /**
@@ -50,13 +159,84 @@ public class CategoryService extends AbstractNestedSetService<Category, String>
     }
 
     /**
-     * Rebuild the tree structure of categories.
+     * Retrieve the ancestors of a category within its tree.
      *
-     * @param category Category? The root category to start rebuilding from.
+     * @param category Category The category.
+     * @return List<Category> The ancestors ordered by left value.
+     */
+    @Override
+    public List<Category> getAncestors(Category category) {
+        return categoryRepository.findAncestors(category.getTreeId(), category.getLeft(), category.getRight());
+    }
+
+    /**
+     * Retrieve the descendants of a category within its tree.
+     *
+     * @param category Category The category.
+     * @return List<Category> The descendants ordered by left value.
+     */
+    @Override
+    public List<Category> getDescendants(Category category) {
+        return categoryRepository.findDescendants(category.getTreeId(), category.getLeft(), category.getRight());
+    }
+
+    /**
+     * Rebuild the tree structure of categories from the parent references.
+     * Also assigns the tree ID and the depth of every node, so it can be used to backfill rows created before these
+     * columns existed. The rows are streamed and only the changed ones are written, see {@link CategoryTreeRebuilder}.
+     *
+     * @param category Category? A category of the tree to rebuild, null to rebuild every tree.
+     * @return RebuildProgress The number of categories read and changed.
+     */
+    @Transactional
+    public RebuildProgress rebuildTree(Category category) {
+        beginMutation();
+        String treeId = category != null ? category.getTreeId() : null;
+        if (treeId != null) {
+            categoryTreeLocks.hold(false, List.of(treeId));
+            requireHeld(reread(category), List.of(treeId));
+        } else {
+            categoryTreeLocks.holdAll();
+        }
+        int stride = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+        RebuildProgress progress = categoryTreeRebuilder.rebuild(treeId, stride);
+        shifted(progress.getChanged());
+        publish(CategoryTreeChangedEvent.Operation.REBUILD, treeId);
+        return progress;
+    }
+
+    /**
+     * Swap the positions an online rebuild computed into the categories, see {@link CategoryTreeRebuildService}.
+     * The trees changed since the rebuild read them keep their own rows and are rebuilt in place instead, so the
+     * mutations that arrived meanwhile are kept.
+     *
+     * @param rebuildId    String The ID of the online rebuild.
+     * @param changedTrees LongFunction<Set<String>> Given the version the swap starts from, the trees changed since
+     *                     the rebuild read them, null when they are not known.
+     * @return Long? The number of categories changed, null when the changed trees are not known and nothing was
+     * swapped.
      */
     @Transactional
-    public void rebuildTree(Category category) {
-        rebuildTree(category, categoryRepository.findAllOrderedByLeft());
+    public Long swapRebuild(String rebuildId, LongFunction<Set<String>> changedTrees) {
+        beginMutation();
+        long version = categoryTreeLocks.holdAll();
+        Set<String> changed = changedTrees.apply(version);
+        if (changed == null) {
+            return null;
+        }
+
+        int stride = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+        long count = changed.isEmpty()
+            ? categoryRepository.applyRebuild(rebuildId)
+            : categoryRepository.applyRebuildExcept(rebuildId,
+                changed.stream().map(nestedSetProperties.getIdStorage()::toColumn).toList());
+        for (String treeId : changed) {
+            count += categoryTreeRebuilder.catchUp(treeId, stride);
+        }
+        shifted(count);
+
+        publish(CategoryTreeChangedEvent.Operation.REBUILD);
+        return count;
     }
 
     /**
@@ -68,18 +248,152 @@ public class CategoryService extends AbstractNestedSetService<Category, String>
      */
     @Transactional
     public Category create(CreateCategoryRequest request) {
+        beginMutation();
         if (categoryRepository.existsByName(request.getName())) {
             throw new BadRequestException("Category with name " + request.getName() + " already exists");
         }
 
         Category parent = null;
         if (request.getParentId() != null) {
+            List<String> treeIds = List.of(treeOf(request.getParentId(), "Parent not found"));
+            categoryTreeLocks.hold(false, treeIds);
             parent = categoryRepository.findById(request.getParentId())
                 .orElseThrow(() -> new NotFoundException("Parent not found"));
+            requireHeld(parent, treeIds);
+        } else {
+            categoryTreeLocks.hold(true, List.of());
         }
 
         Category category = new Category(request.getName(), 0, 0, parent);
-        return createNode(category);
+        Category created;
+        if (parent == null) {
+            created = createRoot(category);
+        } else {
+            category.setTreeId(parent.getTreeId());
+            category.setDepth(parent.getDepth() + 1);
+            created = nestedSetProperties.isGapped() ? createGappedNode(category) : createDenseNode(category);
+        }
+
+        publish(CategoryTreeChangedEvent.Operation.CREATE, created.getTreeId());
+        return created;
+    }
+
+    /**
+     * Create a batch of categories in one transaction. A parent is either an existing category or another item of
+     * the batch, referenced by its ref. Names and parents are checked with one query each, every existing parent gets
+     * one shift for all the nodes added under it, and the rows are inserted through JDBC batches.
+     *
+     * @param items List<CreateCategoryBatchItemRequest> The items to create, parents may come after their children.
+     * @return List<Category> The created categories, in the order of the items.
+     * @throws BadRequestException if a name is taken or repeated, or a parent reference is invalid or cyclic.
+     * @throws NotFoundException   if a parent category is not found.
+     */
+    @Transactional
+    public List<Category> createAll(List<CreateCategoryBatchItemRequest> items) {
+        beginMutation();
+        Map<String, Integer> indexByRef = new HashMap<>();
+        Set<String> names = new HashSet<>();
+        Set<String> parentIds = new HashSet<>();
+        for (int i = 0; i < items.size(); i++) {
+            CreateCategoryBatchItemRequest item = items.get(i);
+            if (!names.add(item.getName())) {
+                throw new BadRequestException("Category with name " + item.getName() + " is repeated in the batch");
+            }
+            if (item.getRef() != null && indexByRef.put(item.getRef(), i) != null) {
+                throw new BadRequestException("Ref " + item.getRef() + " is repeated in the batch");
+            }
+            if (item.getParentId() != null && item.getParentRef() != null) {
+                throw new BadRequestException("Category " + item.getName() + " has both a parent ID and a parent ref");
+            }
+            if (item.getParentId() != null) {
+                parentIds.add(item.getParentId());
+            }
+        }
+
+        List<String> existingNames = categoryRepository.findExistingNames(names);
+        if (!existingNames.isEmpty()) {
+            throw new BadRequestException("Categories with names " + existingNames + " already exist");
+        }
+
+        List<String> treeIds = parentIds.isEmpty() ? List.of() : categoryRepository.findTreeIds(parentIds);
+        boolean newRoots = items.stream().anyMatch(item -> item.getParentId() == null && item.getParentRef() == null);
+        categoryTreeLocks.hold(newRoots, treeIds);
+        Map<String, Category> parents = new HashMap<>();
+        for (Category parent : categoryRepository.findAllById(parentIds)) {
+            requireHeld(parent, treeIds);
+            parents.put(parent.getId(), parent);
+        }
+        if (parents.size() != parentIds.size()) {
+            throw new NotFoundException("Parent not found");
+        }
+
+        int[] parentIndex = new int[items.size()];
+        for (int i = 0; i < items.size(); i++) {
+            String parentRef = items.get(i).getParentRef();
+            parentIndex[i] = parentRef == null ? -1 : indexByRef.getOrDefault(parentRef, -2);
+            if (parentIndex[i] == -2) {
+                throw new BadRequestException("Parent ref " + parentRef + " is not in the batch");
+            }
+        }
+
+        List<Category> categories = new ArrayList<>(items.size());
+        for (CreateCategoryBatchItemRequest item : items) {
+            Category category = new Category(item.getName(), 0, 0, null);
+            category.setId(ULIDGenerator.next());
+            categories.add(category);
+        }
+
+        // Anchor each new node to the existing parent (or the new root) its batch subtree hangs from.
+        Map<String, List<Category>> children = new HashMap<>();
+        Map<String, List<Category>> anchored = new LinkedHashMap<>();
+        Map<String, Integer> anchoredSizes = new HashMap<>();
+        List<Category> roots = new ArrayList<>();
+        List<Category> ordered = new ArrayList<>(items.size());
+        for (int i : topologicalOrder(parentIndex)) {
+            Category category = categories.get(i);
+            ordered.add(category);
+            String anchor;
+            if (parentIndex[i] >= 0) {
+                Category parent = categories.get(parentIndex[i]);
+                category.setParent(parent);
+                children.computeIfAbsent(parent.getId(), key -> new ArrayList<>()).add(category);
+                anchor = anchorOf(parent, parents);
+            } else if (items.get(i).getParentId() != null) {
+                Category parent = parents.get(items.get(i).getParentId());
+                category.setParent(parent);
+                anchored.computeIfAbsent(parent.getId(), key -> new ArrayList<>()).add(category);
+                anchor = parent.getId();
+            } else {
+                roots.add(category);
+                anchor = null;
+            }
+            if (anchor != null) {
+                anchoredSizes.merge(anchor, 1, Integer::sum);
+            }
+        }
+        // Keep the siblings of every node in the order of the items.
+        Map<Category, Integer> position = new IdentityHashMap<>();
+        for (int i = 0; i < categories.size(); i++) {
+            position.put(categories.get(i), i);
+        }
+        children.values().forEach(list -> list.sort(Comparator.comparing(position::get)));
+        anchored.values().forEach(list -> list.sort(Comparator.comparing(position::get)));
+
+        insertUnderExistingParents(anchored, anchoredSizes, parents, children);
+
+        int stride = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+        int right = categoryRepository.findMaxRootRight().orElse(0);
+        for (Category root : roots) {
+            right = number(root, root.getId(), 0, Math.addExact(right, stride), stride, children);
+            changed(CategoryTreeChangedEvent.Range.wholeTree(root.getId()));
+        }
+        categoryTreeLocks.hold(false, roots.stream().map(Category::getId).toList());
+
+        categoryRepository.saveAll(ordered);
+        publish(CategoryTreeChangedEvent.Operation.CREATE,
+            ordered.stream().map(Category::getTreeId).distinct().toArray(String[]::new));
+        log.info("Created {} categories in one batch", ordered.size());
+        return categories;
     }
 
     /**
@@ -93,43 +407,792 @@ public class CategoryService extends AbstractNestedSetService<Category, String>
      */
     @Transactional
     public Category update(String id, UpdateCategoryRequest request) {
+        beginMutation();
+        CategoryBounds bounds = categoryRepository.findBoundsById(id)
+            .orElseThrow(() -> new NotFoundException("Category not found"));
+        List<String> treeIds = new ArrayList<>(List.of(bounds.getTreeId()));
+        if (request.getParentId() != null) {
+            treeIds.add(treeOf(request.getParentId(), "Parent not found"));
+        }
+        categoryTreeLocks.hold((request.getParentId() == null) != (bounds.getDepth() == 0), treeIds);
         Category category = categoryRepository.findById(id)
             .orElseThrow(() -> new NotFoundException("Category not found"));
+        requireHeld(category, List.of(bounds.getTreeId()));
 
         Category parent = null;
         if (request.getParentId() != null) {
             parent = categoryRepository.findById(request.getParentId())
                 .orElseThrow(() -> new NotFoundException("Parent not found"));
+            requireHeld(parent, treeIds);
         }
 
         category.setName(request.getName());
 
-        return updateNode(category, parent);
+        if (parent != null && parent.getTreeId().equals(category.getTreeId())
+            && parent.getLeft() >= category.getLeft() && parent.getRight() <= category.getRight()) {
+            throw new BadRequestException("Cannot move a category under itself or its descendants");
+        }
+
+        String sourceTreeId = category.getTreeId();
+        String parentId = category.getParent() != null ? category.getParent().getId() : null;
+        Category updated;
+        if (Objects.equals(parentId, parent != null ? parent.getId() : null)) {
+            changed(new CategoryTreeChangedEvent.Range(sourceTreeId, category.getLeft(), category.getLeft()));
+            updated = categoryRepository.save(category);
+        } else if (nestedSetProperties.isGapped() && moveIntoGap(category, parent)) {
+            updated = categoryRepository.save(category);
+        } else {
+            updated = moveDenseNode(category, parent);
+        }
+        if (bounds.getDepth() == 0 && parent != null) {
+            categoryTreeLocks.drop(sourceTreeId);
+        } else if (bounds.getDepth() != 0 && parent == null) {
+            categoryTreeLocks.hold(false, List.of(updated.getTreeId()));
+        }
+
+        publish(CategoryTreeChangedEvent.Operation.UPDATE, sourceTreeId, updated.getTreeId());
+        return updated;
     }
 
     /**
      * Delete a category and its subtree.
+     * In range mode the category is never loaded: the subtree goes with one DELETE over its bounds and,
+     * unless the tree is gapped, the gap is closed with one UPDATE.
      *
      * @param id String The ID of the category to delete.
      * @throws NotFoundException if the category is not found.
      */
     @Transactional
     public void delete(String id) {
-        Category category = categoryRepository.findById(id)
+        beginMutation();
+        CategoryBounds held = categoryRepository.findBoundsById(id)
             .orElseThrow(() -> new NotFoundException("Category not found"));
-        deleteNode(category);
+        String treeId = held.getTreeId();
+        categoryTreeLocks.hold(held.getDepth() == 0, List.of(treeId));
+        if (nestedSetProperties.getDeleteMode() == NestedSetProperties.DeleteMode.CASCADE) {
+            Category category = categoryRepository.findById(id)
+                .orElseThrow(() -> new NotFoundException("Category not found"));
+            requireHeld(category, List.of(treeId));
+            categoryCacheEvictor.evict(List.of(
+                new CategoryTreeChangedEvent.Range(treeId, category.getLeft(), category.getRight())));
+            categoryRepository.delete(category);
+            closeGap(treeId, category.getLeft(), category.getRight());
+        } else {
+            CategoryBounds bounds = categoryRepository.findBoundsById(id)
+                .orElseThrow(() -> new NotFoundException("Category not found"));
+            if (!treeId.equals(bounds.getTreeId())) {
+                throw movedToAnotherTree(id);
+            }
+            categoryCacheEvictor.evict(List.of(
+                new CategoryTreeChangedEvent.Range(treeId, bounds.getLeft(), bounds.getRight())));
+            categoryRepository.deleteSubtree(column(treeId), bounds.getLeft(), bounds.getRight());
+            closeGap(treeId, bounds.getLeft(), bounds.getRight());
+        }
+        if (held.getDepth() == 0) {
+            categoryTreeLocks.drop(treeId);
+        }
+        publish(CategoryTreeChangedEvent.Operation.DELETE, treeId);
         log.info("Deleted: {}", id);
     }
 
     /**
-     * Retrieve the subtree under the specified category.
+     * Retrieve the subtree under the specified category with one query.
      *
      * @param id String The ID of the category.
-     * @return List<Category> The list of categories in the subtree.
+     * @return List<CategoryRow> The category followed by its descendants, ordered by left value.
      * @throws NotFoundException if the category is not found.
      */
-    public List<Category> getSubtree(String id) {
-        Category category = categoryRepository.findById(id).orElseThrow(() -> new NotFoundException("Category not found"));
-        return categoryRepository.findSubtree(category.getLeft(), category.getRight());
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getSubtree(String id) {
+        return getSubtree(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Retrieve the subtree under the specified category down to a number of levels with one query.
+     *
+     * @param id       String The ID of the category.
+     * @param maxDepth int The number of levels below the category to include.
+     * @return List<CategoryRow> The category followed by its descendants, ordered by left value.
+     * @throws NotFoundException if the category is not found.
+     */
+    @Transactional(readOnly = true)
+    public List<CategoryRow> getSubtree(String id, int maxDepth) {
+        return requireFound(categoryRepository.findSubtreeRows(id, maxDepth));
+    }
+
+    /**
+     * Move a category before its previous sibling. A root swaps places with the previous tree.
+     *
+     * @param category Category The category to move, it is read again once the mutation holds the trees.
+     * @return Category The moved category.
+     * @throws NotFoundException if the category is not found anymore.
+     */
+    @Override
+    @Transactional
+    public Category moveUp(Category category) {
+        beginMutation();
+        Category current = holdTreeOf(category);
+        if (current.getParent() == null) {
+            categoryRepository.findFirstByParentIsNullAndLeftLessThanOrderByLeftDesc(current.getLeft())
+                .ifPresent(previous -> swapTrees(holdTreeOf(previous), current));
+        } else {
+            categoryRepository.findFirstByParentIdAndRightLessThanOrderByRightDesc(
+                current.getParent().getId(), current.getLeft()
+            ).ifPresent(previous -> swapSiblings(previous, current));
+        }
+        publish(CategoryTreeChangedEvent.Operation.MOVE_UP, current.getTreeId());
+
+        return current;
+    }
+
+    /**
+     * Move a category after its next sibling. A root swaps places with the next tree.
+     *
+     * @param category Category The category to move, it is read again once the mutation holds the trees.
+     * @return Category The moved category.
+     * @throws NotFoundException if the category is not found anymore.
+     */
+    @Override
+    @Transactional
+    public Category moveDown(Category category) {
+        beginMutation();
+        Category current = holdTreeOf(category);
+        if (current.getParent() == null) {
+            categoryRepository.findFirstByParentIsNullAndLeftGreaterThanOrderByLeftAsc(current.getLeft())
+                .ifPresent(next -> swapTrees(current, holdTreeOf(next)));
+        } else {
+            categoryRepository.findFirstByParentIdAndLeftGreaterThanOrderByLeftAsc(
+                current.getParent().getId(), current.getRight()
+            ).ifPresent(next -> swapSiblings(current, next));
+        }
+        publish(CategoryTreeChangedEvent.Operation.MOVE_DOWN, current.getTreeId());
+
+        return current;
+    }
+
+    /**
+     * Create a root category, which starts a tree of its own after the last one.
+     *
+     * @param category Category The new category without a parent.
+     * @return Category The created category.
+     */
+    private Category createRoot(Category category) {
+        int step = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+        int left = Math.addExact(categoryRepository.findMaxRootRight().orElse(0), step);
+        String id = ULIDGenerator.next();
+        category.setId(id);
+        category.setTreeId(id);
+        category.setDepth(0);
+        category.setLeft(left);
+        category.setRight(Math.addExact(left, step));
+        changed(CategoryTreeChangedEvent.Range.wholeTree(id));
+        categoryTreeLocks.hold(false, List.of(id));
+        return categoryRepository.save(category);
+    }
+
+    /**
+     * Insert a node as the last child of its parent, shifting the rest of the tree by two.
+     *
+     * @param category Category The new category with its parent and tree set.
+     * @return Category The created category.
+     */
+    private Category createDenseNode(Category category) {
+        Category parent = category.getParent();
+        int left = parent.getRight();
+        shifted(categoryRepository.shiftBoundsAfter(column(parent.getTreeId()), left - 1, 2));
+        changed(new CategoryTreeChangedEvent.Range(parent.getTreeId(), left, null));
+        parent.setRight(left + 2);
+
+        category.setLeft(left);
+        category.setRight(left + 1);
+        return categoryRepository.save(category);
+    }
+
+    /**
+     * Insert a node into the free gap after the last child of its parent.
+     *
+     * @param category Category The new category with its parent and tree set.
+     * @return Category The created category.
+     */
+    private Category createGappedNode(Category category) {
+        Category parent = category.getParent();
+        int lastRight = lastChildRight(parent);
+        if (parent.getRight() - lastRight - 1 < 2) {
+            makeRoom(parent);
+            lastRight = lastChildRight(parent);
+        }
+
+        int free = parent.getRight() - lastRight - 1;
+        category.setLeft(lastRight + 1);
+        category.setRight(lastRight + 1 + Math.max(1, free / 3));
+        changed(new CategoryTreeChangedEvent.Range(parent.getTreeId(), category.getLeft(), category.getRight()));
+        return categoryRepository.save(category);
+    }
+
+    /**
+     * Move a node by translating its subtree into the free gap of the new parent, or after the last tree
+     * when it becomes a root.
+     *
+     * @param category Category The category to move.
+     * @param parent   Category? The new parent, null to make the category a root.
+     * @return boolean false when the gap is too small for the subtree.
+     */
+    private boolean moveIntoGap(Category category, Category parent) {
+        int width = category.getRight() - category.getLeft();
+        int left;
+        String treeId;
+        if (parent == null) {
+            left = Math.addExact(categoryRepository.findMaxRootRight().orElse(0), nestedSetProperties.getGapStep());
+            treeId = category.getId();
+        } else {
+            int lastRight = lastChildRight(parent);
+            if (parent.getRight() - lastRight - 1 <= width) {
+                return false;
+            }
+            left = lastRight + 1;
+            treeId = parent.getTreeId();
+        }
+
+        int depthDelta = depthUnder(parent) - category.getDepth();
+        category.setParent(parent);
+        shifted(categoryRepository.translateSubtree(column(category.getTreeId()), category.getLeft(),
+            category.getRight(), left - category.getLeft(), column(treeId), depthDelta));
+        changed(new CategoryTreeChangedEvent.Range(category.getTreeId(), category.getLeft(), category.getRight()));
+        changed(parent != null
+            ? new CategoryTreeChangedEvent.Range(treeId, left, left + width)
+            : CategoryTreeChangedEvent.Range.wholeTree(treeId));
+        category.setLeft(left);
+        category.setRight(left + width);
+        category.setTreeId(treeId);
+        category.setDepth(category.getDepth() + depthDelta);
+        return true;
+    }
+
+    /**
+     * Move a node to the end of its new parent with range updates only, the subtree is never loaded.
+     * Inside one tree this is a single statement; across trees the target gap is opened, the subtree is
+     * translated into it and the source gap is closed.
+     *
+     * @param category Category The category to move.
+     * @param parent   Category? The new parent, null to make the category a root.
+     * @return Category The moved category.
+     */
+    private Category moveDenseNode(Category category, Category parent) {
+        String sourceTreeId = category.getTreeId();
+        int left = category.getLeft();
+        int right = category.getRight();
+        int width = right - left + 1;
+        int depthDelta = depthUnder(parent) - category.getDepth();
+        category.setParent(parent);
+        category.setDepth(category.getDepth() + depthDelta);
+
+        if (parent != null && parent.getTreeId().equals(sourceTreeId)) {
+            int position = parent.getRight();
+            int offset;
+            int shiftedFrom;
+            int shiftedTo;
+            int shift;
+            if (position > right) {
+                offset = position - 1 - right;
+                shiftedFrom = right + 1;
+                shiftedTo = position - 1;
+                shift = -width;
+            } else {
+                offset = position - left;
+                shiftedFrom = position;
+                shiftedTo = left - 1;
+                shift = width;
+            }
+
+            shifted(categoryRepository.moveSubtree(column(sourceTreeId), left, right, offset, shiftedFrom, shiftedTo,
+                shift, depthDelta));
+            changed(new CategoryTreeChangedEvent.Range(sourceTreeId, Math.min(left, shiftedFrom),
+                Math.max(right, shiftedTo)));
+            parent.setLeft(shift(parent.getLeft(), shiftedFrom, shiftedTo, shift));
+            parent.setRight(shift(parent.getRight(), shiftedFrom, shiftedTo, shift));
+            category.setLeft(left + offset);
+            category.setRight(right + offset);
+            return categoryRepository.save(category);
+        }
+
+        String treeId;
+        int newLeft;
+        if (parent == null) {
+            treeId = category.getId();
+            newLeft = categoryRepository.findMaxRootRight().orElse(0) + 1;
+            changed(CategoryTreeChangedEvent.Range.wholeTree(treeId));
+        } else {
+            treeId = parent.getTreeId();
+            newLeft = parent.getRight();
+            shifted(categoryRepository.shiftBoundsAfter(column(treeId), newLeft - 1, width));
+            changed(new CategoryTreeChangedEvent.Range(treeId, newLeft, null));
+            parent.setRight(parent.getRight() + width);
+        }
+
+        shifted(categoryRepository.translateSubtree(column(sourceTreeId), left, right, newLeft - left,
+            column(treeId), depthDelta));
+        shifted(categoryRepository.shiftBoundsAfter(column(sourceTreeId), right, -width));
+        changed(new CategoryTreeChangedEvent.Range(sourceTreeId, left, null));
+        category.setLeft(newLeft);
+        category.setRight(newLeft + width - 1);
+        category.setTreeId(treeId);
+        return categoryRepository.save(category);
+    }
+
+    /**
+     * Renumber the smallest enclosing subtree that still has room, so that the parent gets a free gap again.
+     * When even the root is full, the root is widened, which only moves the end of its own tree. Near the end of the
+     * int range it is widened with the largest stride that still fits.
+     *
+     * @param parent Category The parent whose gap is used up.
+     * @throws BadRequestException if the widened root would not leave a free gap with the bounds that remain.
+     */
+    private void makeRoom(Category parent) {
+        int step = nestedSetProperties.getGapStep();
+        int minStride = Math.max(4, step / 32);
+
+        List<Category> candidates = new ArrayList<>(getAncestors(parent));
+        candidates.add(parent);
+        for (int i = candidates.size() - 1; i >= 0; i--) {
+            Category candidate = candidates.get(i);
+            long slots = 2 * categoryRepository.countDescendants(
+                candidate.getTreeId(), candidate.getLeft(), candidate.getRight()) + 3;
+            long stride = (candidate.getRight() - candidate.getLeft()) / slots;
+            if (stride >= minStride) {
+                respace(candidate, (int) stride);
+                changed(new CategoryTreeChangedEvent.Range(candidate.getTreeId(), candidate.getLeft(),
+                    candidate.getRight()));
+                return;
+            }
+        }
+
+        Category root = candidates.get(0);
+        long slots = 2 * categoryRepository.countDescendants(root.getTreeId(), root.getLeft(), root.getRight()) + 3;
+        long stride = Math.min(step, ((long) Integer.MAX_VALUE - root.getLeft()) / slots);
+        // A new node takes two bounds between the last child and the right bound of its parent.
+        if (stride < 3) {
+            throw new BadRequestException("Tree " + root.getTreeId()
+                + " has no room left for another category, lower the gap step and rebuild the trees");
+        }
+
+        changed(CategoryTreeChangedEvent.Range.wholeTree(root.getTreeId()));
+        root.setRight((int) (root.getLeft() + slots * stride));
+        respace(root, (int) stride);
+    }
+
+    /**
+     * Spread the descendants of a node evenly over its interval, keeping their relative order.
+     *
+     * @param node   Category The subtree root, its own bounds are left unchanged.
+     * @param stride int Distance between two consecutive bounds.
+     */
+    private void respace(Category node, int stride) {
+        List<Category> descendants = getDescendants(node);
+        int[] bounds = new int[descendants.size() * 2];
+        int i = 0;
+        for (Category descendant : descendants) {
+            bounds[i++] = descendant.getLeft();
+            bounds[i++] = descendant.getRight();
+        }
+        Arrays.sort(bounds);
+
+        for (Category descendant : descendants) {
+            descendant.setLeft(node.getLeft() + stride * (Arrays.binarySearch(bounds, descendant.getLeft()) + 1));
+            descendant.setRight(node.getLeft() + stride * (Arrays.binarySearch(bounds, descendant.getRight()) + 1));
+        }
+        categoryRepository.saveAll(descendants);
+        shifted(descendants.size());
+        log.debug("Respaced {} descendants of {} with stride {}", descendants.size(), node.getId(), stride);
+    }
+
+    /**
+     * Swap two adjacent siblings with one range update, keeping the gap between them.
+     *
+     * @param first  Category The leftmost sibling.
+     * @param second Category The sibling right after it.
+     */
+    private void swapSiblings(Category first, Category second) {
+        int firstOffset = second.getRight() - first.getRight();
+        int secondOffset = first.getLeft() - second.getLeft();
+        shifted(categoryRepository.swapSiblings(column(first.getTreeId()), first.getLeft(), second.getLeft(),
+            second.getRight(), firstOffset, secondOffset));
+        changed(new CategoryTreeChangedEvent.Range(first.getTreeId(), first.getLeft(), second.getRight()));
+
+        first.setLeft(first.getLeft() + firstOffset);
+        first.setRight(first.getRight() + firstOffset);
+        second.setLeft(second.getLeft() + secondOffset);
+        second.setRight(second.getRight() + secondOffset);
+    }
+
+    /**
+     * Swap the order of two adjacent trees by exchanging the left bounds of their roots.
+     *
+     * @param first  Category The root that comes first.
+     * @param second Category The root right after it.
+     */
+    private void swapTrees(Category first, Category second) {
+        int offset = second.getLeft() - first.getLeft();
+        shifted(categoryRepository.swapTrees(column(first.getTreeId()), column(second.getTreeId()), offset, -offset));
+        changed(CategoryTreeChangedEvent.Range.wholeTree(first.getTreeId()));
+        changed(CategoryTreeChangedEvent.Range.wholeTree(second.getTreeId()));
+
+        first.setLeft(first.getLeft() + offset);
+        first.setRight(first.getRight() + offset);
+        second.setLeft(second.getLeft() - offset);
+        second.setRight(second.getRight() - offset);
+    }
+
+    /**
+     * Number a tree or a subtree depth first from its parent references, assigning the depths on the way.
+     *
+     * @param root     Category The root of the tree or subtree.
+     * @param treeId   String The tree the nodes belong to.
+     * @param depth    int The depth of the root.
+     * @param left     int The left bound of the root.
+     * @param stride   int Distance between two consecutive bounds.
+     * @param children Map<String, List<Category>> Children by parent ID, each list ordered by left value.
+     * @return int The right bound of the root.
+     */
+    private int number(Category root, String treeId, int depth, int left, int stride,
+                       Map<String, List<Category>> children) {
+        Deque<Category> path = new ArrayDeque<>();
+        Deque<Iterator<Category>> pending = new ArrayDeque<>();
+        int bound = left;
+        root.setLeft(bound);
+        root.setTreeId(treeId);
+        root.setDepth(depth);
+        path.push(root);
+        pending.push(children.getOrDefault(root.getId(), List.of()).iterator());
+        while (!path.isEmpty()) {
+            if (pending.peek().hasNext()) {
+                Category child = pending.peek().next();
+                bound = Math.addExact(bound, stride);
+                child.setLeft(bound);
+                child.setTreeId(treeId);
+                child.setDepth(depth + path.size());
+                path.push(child);
+                pending.push(children.getOrDefault(child.getId(), List.of()).iterator());
+            } else {
+                bound = Math.addExact(bound, stride);
+                path.pop().setRight(bound);
+                pending.pop();
+            }
+        }
+
+        return bound;
+    }
+
+    /**
+     * Open one slot per existing parent for the batch subtrees hanging from it and number them in place.
+     * Per tree the slots are laid out from left to right, then the shifts are applied from right to left so that
+     * each one runs against bounds that are not shifted yet. Gapped parents with enough room take no shift at all.
+     *
+     * @param anchored      Map<String, List<Category>> New top-level nodes by existing parent ID.
+     * @param anchoredSizes Map<String, Integer> Number of new nodes under each existing parent.
+     * @param parents       Map<String, Category> Existing parents by ID.
+     * @param children      Map<String, List<Category>> New children by new parent ID.
+     */
+    private void insertUnderExistingParents(Map<String, List<Category>> anchored, Map<String, Integer> anchoredSizes,
+                                            Map<String, Category> parents, Map<String, List<Category>> children) {
+        int step = nestedSetProperties.getGapStep();
+        Map<String, List<Category>> anchorsByTree = new HashMap<>();
+        for (String parentId : anchored.keySet()) {
+            Category parent = parents.get(parentId);
+            anchorsByTree.computeIfAbsent(parent.getTreeId(), key -> new ArrayList<>()).add(parent);
+        }
+
+        for (Map.Entry<String, List<Category>> tree : anchorsByTree.entrySet()) {
+            List<Category> anchors = tree.getValue();
+            anchors.sort(Comparator.comparingInt(Category::getRight));
+            int[] points = new int[anchors.size()];
+            int[] shifts = new int[anchors.size()];
+            int cumulative = 0;
+            int from = Integer.MAX_VALUE;
+            int to = 0;
+            for (int i = 0; i < anchors.size(); i++) {
+                Category parent = anchors.get(i);
+                int slots = 2 * anchoredSizes.get(parent.getId());
+                int lastRight = nestedSetProperties.isGapped() ? lastChildRight(parent) : parent.getRight();
+                int gapStride = nestedSetProperties.isGapped()
+                    ? Math.min(step, (parent.getRight() - lastRight - 1) / (slots + 1))
+                    : 0;
+                int start;
+                int stride;
+                if (gapStride > 0) {
+                    stride = gapStride;
+                    start = lastRight + cumulative + gapStride;
+                } else {
+                    stride = nestedSetProperties.isGapped() ? step : 1;
+                    start = parent.getRight() + cumulative;
+                    shifts[i] = Math.multiplyExact(slots, stride);
+                }
+                points[i] = parent.getRight();
+                cumulative += shifts[i];
+                from = Math.min(from, lastRight);
+                to = Math.max(to, parent.getRight());
+
+                int bound = start - stride;
+                for (Category top : anchored.get(parent.getId())) {
+                    bound = number(top, parent.getTreeId(), parent.getDepth() + 1, bound + stride, stride, children);
+                }
+            }
+
+            for (int i = anchors.size() - 1; i >= 0; i--) {
+                if (shifts[i] > 0) {
+                    shifted(categoryRepository.shiftBoundsAfter(column(tree.getKey()), points[i] - 1, shifts[i]));
+                }
+            }
+            changed(new CategoryTreeChangedEvent.Range(tree.getKey(), from, cumulative > 0 ? null : to));
+            for (Category parent : anchors) {
+                parent.setLeft(parent.getLeft() + shiftAt(parent.getLeft(), points, shifts));
+                parent.setRight(parent.getRight() + shiftAt(parent.getRight(), points, shifts));
+            }
+        }
+    }
+
+    /**
+     * Walk up the batch parents of a new node to the existing category its batch subtree hangs from.
+     *
+     * @param category Category A new node.
+     * @param parents  Map<String, Category> Existing parents by ID.
+     * @return String? The ID of the existing parent, null when the batch subtree is a new tree.
+     */
+    private static String anchorOf(Category category, Map<String, Category> parents) {
+        Category node = category;
+        while (node.getParent() != null && !parents.containsKey(node.getParent().getId())) {
+            node = node.getParent();
+        }
+
+        return node.getParent() != null ? node.getParent().getId() : null;
+    }
+
+    /**
+     * Order the items of a batch so that every parent comes before its children.
+     *
+     * @param parentIndex int[] Index of the parent item of each item, negative when the parent is not in the batch.
+     * @return int[] The item indexes, parents first.
+     * @throws BadRequestException if the parent references form a cycle.
+     */
+    private static int[] topologicalOrder(int[] parentIndex) {
+        int[] depth = new int[parentIndex.length];
+        Arrays.fill(depth, -1);
+        for (int i = 0; i < parentIndex.length; i++) {
+            int node = i;
+            int steps = 0;
+            while (node >= 0 && depth[node] < 0) {
+                if (++steps > parentIndex.length) {
+                    throw new BadRequestException("Parent refs of the batch form a cycle");
+                }
+                node = parentIndex[node];
+            }
+            int known = node >= 0 ? depth[node] : -1;
+            int length = steps;
+            node = i;
+            while (node >= 0 && depth[node] < 0) {
+                depth[node] = known + length--;
+                node = parentIndex[node];
+            }
+        }
+
+        return IntStream.range(0, parentIndex.length).boxed()
+            .sorted(Comparator.comparingInt(i -> depth[i]))
+            .mapToInt(Integer::intValue)
+            .toArray();
+    }
+
+    private static int shiftAt(int bound, int[] points, int[] shifts) {
+        int shift = 0;
+        for (int i = 0; i < points.length; i++) {
+            if (bound >= points[i]) {
+                shift += shifts[i];
+            }
+        }
+
+        return shift;
+    }
+
+    /**
+     * Close the gap left by a removed subtree, gapped trees keep it for later inserts.
+     *
+     * @param treeId String The tree the subtree belonged to.
+     * @param left   int Left bound of the removed subtree.
+     * @param right  int Right bound of the removed subtree.
+     */
+    private void closeGap(String treeId, int left, int right) {
+        if (!nestedSetProperties.isGapped()) {
+            shifted(categoryRepository.shiftBoundsAfter(column(treeId), right, left - right - 1));
+        }
+        changed(new CategoryTreeChangedEvent.Range(treeId, left, nestedSetProperties.isGapped() ? right : null));
+    }
+
+    /**
+     * Retrieve the persisted tree version, which every committed mutation increments.
+     *
+     * @return long The tree version, 0 before the first mutation.
+     */
+    public long getVersion() {
+        return treeVersionRepository.findVersion(TreeVersion.CATEGORIES).orElse(0L);
+    }
+
+    /**
+     * Start a mutation, before any bound is read. The mutation then holds the trees it changes through
+     * {@link CategoryTreeLocks} before it reads their bounds. The transaction reads the categories from the database
+     * instead of the second-level cache, and puts them there: a read racing the commit of an earlier mutation may
+     * have cached a category as it was before, and a mutation must only shift the bounds as they are. The persistence
+     * context is flushed and cleared, so that the categories a mutation of a group commit reads once it holds its
+     * trees are not the ones an earlier mutation of the batch loaded before shifting them.
+     */
+    private void beginMutation() {
+        entityManager.setProperty(CACHE_RETRIEVE_MODE, CacheRetrieveMode.BYPASS);
+        entityManager.flush();
+        entityManager.clear();
+        shiftedRows.get()[0] = 0;
+        changedRanges.get().clear();
+    }
+
+    /**
+     * Announce the mutation once its transaction commits, see {@link CategoryTreeLocks#publish}. The rows whose bounds
+     * the mutation changed are recorded in {@code category.mutation.rows.shifted}. A touched tree the mutation
+     * recorded no range for is announced as changed as a whole, the ranges are written to the change journal and the
+     * categories in them are evicted from the second-level cache.
+     *
+     * @param operation CategoryTreeChangedEvent.Operation The mutation.
+     * @param treeIds   String... The trees touched, none when every tree may have changed.
+     * @throws ConcurrentTreeModificationException if another mutation changed a held tree since it was held.
+     */
+    private void publish(CategoryTreeChangedEvent.Operation operation, String... treeIds) {
+        meterRegistry.summary("category.mutation.rows.shifted", "operation", operation.name().toLowerCase())
+            .record(shiftedRows.get()[0]);
+        Map<String, CategoryTreeChangedEvent.Range> ranges = changedRanges.get();
+        Set<String> touched = Arrays.stream(treeIds).filter(Objects::nonNull).collect(Collectors.toSet());
+        if (touched.isEmpty()) {
+            ranges.clear();
+        } else {
+            touched.forEach(treeId -> ranges.putIfAbsent(treeId, CategoryTreeChangedEvent.Range.wholeTree(treeId)));
+            touched.addAll(ranges.keySet());
+        }
+        List<CategoryTreeChangedEvent.Range> changed = ranges.values().stream()
+            .sorted(Comparator.comparing(CategoryTreeChangedEvent.Range::getTreeId))
+            .toList();
+        ranges.clear();
+        categoryCacheEvictor.evict(changed);
+        categoryTreeLocks.publish(operation, touched, changed);
+    }
+
+    /**
+     * Record bounds the running mutation may have changed, merged with those of the same tree recorded before.
+     *
+     * @param range CategoryTreeChangedEvent.Range The bounds.
+     */
+    private void changed(CategoryTreeChangedEvent.Range range) {
+        changedRanges.get().merge(range.getTreeId(), range, CategoryTreeChangedEvent.Range::union);
+    }
+
+    /**
+     * Count rows whose bounds the running mutation changed.
+     *
+     * @param rows long The number of rows a statement updated.
+     */
+    private void shifted(long rows) {
+        shiftedRows.get()[0] += rows;
+    }
+
+    /**
+     * Hold the tree of a category, and the root order when it is a root, then read the category again.
+     *
+     * @param category Category The category as the caller loaded it.
+     * @return Category The category as it is now.
+     * @throws NotFoundException                   if the category is not found anymore.
+     * @throws ConcurrentTreeModificationException if a concurrent mutation moved it to another tree meanwhile.
+     */
+    private Category holdTreeOf(Category category) {
+        CategoryBounds bounds = categoryRepository.findBoundsById(category.getId())
+            .orElseThrow(() -> new NotFoundException("Category not found"));
+        List<String> treeIds = List.of(bounds.getTreeId());
+        categoryTreeLocks.hold(bounds.getDepth() == 0, treeIds);
+        Category current = reread(category);
+        requireHeld(current, treeIds);
+        return current;
+    }
+
+    /**
+     * @param id       String The ID of a category.
+     * @param notFound String The message when it is not found.
+     * @return String The tree the category is in, read without holding it.
+     * @throws NotFoundException if the category is not found.
+     */
+    private String treeOf(String id, String notFound) {
+        return categoryRepository.findBoundsById(id)
+            .map(CategoryBounds::getTreeId)
+            .orElseThrow(() -> new NotFoundException(notFound));
+    }
+
+    /**
+     * Check that a category read once the mutation holds its trees is still in one of them.
+     *
+     * @param category Category The category read again.
+     * @param treeIds  Collection<String> The trees held for it.
+     * @throws ConcurrentTreeModificationException if a concurrent mutation moved it to another tree meanwhile.
+     */
+    private static void requireHeld(Category category, Collection<String> treeIds) {
+        if (!treeIds.contains(category.getTreeId())) {
+            throw movedToAnotherTree(category.getId());
+        }
+    }
+
+    private static ConcurrentTreeModificationException movedToAnotherTree(String id) {
+        return new ConcurrentTreeModificationException(
+            "Category " + id + " was moved to another tree by a concurrent mutation");
+    }
+
+    /**
+     * Read a category again once the mutation holds the trees. An instance the transaction still manages may be
+     * older than the trees it now holds and is refreshed from the database.
+     *
+     * @param category Category The category as the caller loaded it.
+     * @return Category The category as it is now.
+     * @throws NotFoundException if the category is not found anymore.
+     */
+    private Category reread(Category category) {
+        if (!entityManager.contains(category)) {
+            return findById(category.getId());
+        }
+
+        entityManager.flush();
+        try {
+            entityManager.refresh(category);
+        } catch (EntityNotFoundException e) {
+            throw new NotFoundException("Category not found");
+        }
+
+        return category;
+    }
+
+    private static List<CategoryRow> requireFound(List<CategoryRow> rows) {
+        if (rows.isEmpty()) {
+            throw new NotFoundException("Category not found");
+        }
+
+        return rows;
+    }
+
+    /**
+     * @param treeId String The ID of a tree.
+     * @return Object The value of its column, for the native statements on the bounds.
+     */
+    private Object column(String treeId) {
+        return nestedSetProperties.getIdStorage().toColumn(treeId);
+    }
+
+    private static int depthUnder(Category parent) {
+        return parent != null ? parent.getDepth() + 1 : 0;
+    }
+
+    private static int shift(int bound, int from, int to, int delta) {
+        return bound >= from && bound <= to ? bound + delta : bound;
+    }
+
+    private int lastChildRight(Category parent) {
+        return categoryRepository.findMaxChildRight(parent.getId()).orElse(parent.getLeft());
     }
 }
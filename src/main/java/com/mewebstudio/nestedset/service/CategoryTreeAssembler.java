@@ -0,0 +1,66 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Builds nested {@link CategoryResponse} trees from rows ordered by left value. Each response is created once and
+ * gets a child list of the exact size, the nesting comes from the bounds with a stack of open nodes.
+ */
+public final class CategoryTreeAssembler {
+    private CategoryTreeAssembler() {
+    }
+
+    /**
+     * @param rows    List<T> The rows, tree by tree, each tree ordered by left value.
+     * @param convert Function<T, CategoryResponse> Creates the response of a row, without children.
+     * @return List<CategoryResponse> The top-level responses with their children.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> List<CategoryResponse> assemble(List<T> rows, Function<T, CategoryResponse> convert) {
+        int size = rows.size();
+        CategoryResponse[] responses = new CategoryResponse[size];
+        int[] parents = new int[size];
+        int[] childCounts = new int[size];
+        int[] stack = new int[size];
+        int top = -1;
+        int rootCount = 0;
+
+        for (int i = 0; i < size; i++) {
+            CategoryResponse response = convert.apply(rows.get(i));
+            responses[i] = response;
+            while (top >= 0 && !encloses(responses[stack[top]], response)) {
+                top--;
+            }
+            parents[i] = top >= 0 ? stack[top] : -1;
+            if (top >= 0) {
+                childCounts[stack[top]]++;
+            } else {
+                rootCount++;
+            }
+            stack[++top] = i;
+        }
+
+        List<CategoryResponse> roots = new ArrayList<>(rootCount);
+        List<CategoryResponse>[] children = new List[size];
+        for (int i = 0; i < size; i++) {
+            children[i] = childCounts[i] == 0 ? List.of() : new ArrayList<>(childCounts[i]);
+            responses[i].setChildren(children[i]);
+            if (parents[i] >= 0) {
+                children[parents[i]].add(responses[i]);
+            } else {
+                roots.add(responses[i]);
+            }
+        }
+
+        return roots;
+    }
+
+    private static boolean encloses(CategoryResponse parent, CategoryResponse node) {
+        return Objects.equals(parent.getTreeId(), node.getTreeId()) && node.getLeft() < parent.getRight();
+    }
+}
@@ -0,0 +1,288 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.ConcurrentTreeModificationException;
+import com.mewebstudio.nestedset.repository.CategoryRepository;
+import com.mewebstudio.nestedset.repository.TreeVersionRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps concurrent mutations of the category trees apart with the counters of {@code tree_versions}: one per tree,
+ * keyed by the ID of its root, and one for the order of the roots. A mutation holds the counters of the trees it
+ * touches, and the root order counter when it adds or reorders trees, so mutations of different trees run side by
+ * side. With locking the rows are locked until the transaction ends, with optimistic concurrency their versions are
+ * only read and compared when the mutation increments them. A rebuild of every tree holds every counter.
+ * <p>
+ * The global {@link TreeVersion#CATEGORIES} version, which the ETags, the change journal and the change feed count
+ * with, is incremented once per transaction right before it commits, by the number of mutations it ran. Its row is
+ * only locked while the transaction commits, the mutations are numbered, journaled and announced then.
+ */
+@Component
+public class CategoryTreeLocks {
+    private final TreeVersionRepository treeVersionRepository;
+
+    private final CategoryRepository categoryRepository;
+
+    private final CategoryChangeJournal categoryChangeJournal;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final MeterRegistry meterRegistry;
+
+    public CategoryTreeLocks(TreeVersionRepository treeVersionRepository, CategoryRepository categoryRepository,
+                             CategoryChangeJournal categoryChangeJournal, NestedSetProperties nestedSetProperties,
+                             ApplicationEventPublisher eventPublisher, MeterRegistry meterRegistry) {
+        this.treeVersionRepository = treeVersionRepository;
+        this.categoryRepository = categoryRepository;
+        this.categoryChangeJournal = categoryChangeJournal;
+        this.nestedSetProperties = nestedSetProperties;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Hold the counters of trees, and of the root order, before the mutation reads the bounds it changes. The
+     * counters are taken in the order of their names, the root order first. A new tree holds its counter as it is
+     * created, so that no other mutation sees the tree before the counter; a tree without one gets it on its first
+     * mutation, two first mutations racing fail on its primary key and one of them is run again. A
+     * mutation that finds out about another tree later holds it then, a deadlock this may cause is broken by the
+     * database and the mutation is run again as well.
+     *
+     * @param roots   boolean Whether the mutation reads or changes the order of the roots.
+     * @param treeIds Collection<String> The trees the mutation changes.
+     */
+    void hold(boolean roots, Collection<String> treeIds) {
+        Mutations mutations = mutations();
+        Set<String> names = new HashSet<>();
+        if (roots) {
+            names.add(TreeVersion.CATEGORY_ROOTS);
+        }
+        treeIds.forEach(treeId -> names.add(TreeVersion.categoryTree(treeId)));
+        names.removeAll(mutations.held.keySet());
+        if (names.isEmpty() || mutations.all) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        for (String name : names.stream().sorted().toList()) {
+            Optional<Long> version = locking()
+                ? treeVersionRepository.findForUpdate(name).map(TreeVersion::getVersion)
+                : treeVersionRepository.findVersion(name);
+            if (locking() && version.isEmpty()) {
+                treeVersionRepository.insert(name);
+            }
+            mutations.held.put(name, version.orElse(null));
+        }
+        if (locking()) {
+            recordLockWait(started);
+        }
+    }
+
+    /**
+     * Hold every counter, for a mutation that may change every tree. The missing tree counters are created first, so
+     * that a mutation of a tree that had none fails on its primary key instead of slipping past.
+     *
+     * @return long The global version the mutation starts from.
+     */
+    long holdAll() {
+        Mutations mutations = mutations();
+        long started = System.nanoTime();
+        Optional<Long> startVersion = locking() ? Optional.of(0L)
+            : treeVersionRepository.findVersion(TreeVersion.CATEGORIES);
+        if (startVersion.isEmpty()) {
+            treeVersionRepository.insert(TreeVersion.CATEGORIES);
+        }
+        long version = startVersion.orElse(0L);
+        hold(true, List.of());
+        Set<String> existing = new HashSet<>(treeVersionRepository.findNames(TreeVersion.CATEGORY_TREE_PREFIX));
+        for (String rootId : categoryRepository.findRootIds()) {
+            if (!existing.contains(TreeVersion.categoryTree(rootId))) {
+                treeVersionRepository.insert(TreeVersion.categoryTree(rootId));
+            }
+        }
+        if (locking()) {
+            treeVersionRepository.findAllForUpdate(TreeVersion.CATEGORY_TREE_PREFIX);
+            recordLockWait(started);
+            version = treeVersionRepository.findVersion(TreeVersion.CATEGORIES).orElse(0L);
+        }
+        mutations.all = true;
+        if (mutations.startVersion == null) {
+            mutations.startVersion = version;
+        }
+
+        return version;
+    }
+
+    /**
+     * Forget the counter of a tree whose root the mutation deleted, once it is incremented.
+     *
+     * @param treeId String The ID of the deleted tree.
+     */
+    void drop(String treeId) {
+        mutations().dropped.add(TreeVersion.categoryTree(treeId));
+    }
+
+    /**
+     * Increment the counters the transaction holds, once per transaction, and queue the mutation to be numbered when
+     * the transaction commits. With optimistic concurrency an increment waits for a concurrent mutation holding the
+     * row and fails when it moved the counter.
+     *
+     * @param operation CategoryTreeChangedEvent.Operation The mutation.
+     * @param treeIds   Set<String> The trees touched, empty when every tree may have changed.
+     * @param ranges    List<CategoryTreeChangedEvent.Range> The bounds the mutation may have changed.
+     * @throws ConcurrentTreeModificationException if another mutation changed a held tree since it was held.
+     */
+    void publish(CategoryTreeChangedEvent.Operation operation, Set<String> treeIds,
+                 List<CategoryTreeChangedEvent.Range> ranges) {
+        Mutations mutations = mutations();
+        long started = System.nanoTime();
+        for (Map.Entry<String, Long> counter : mutations.held.entrySet()) {
+            String name = counter.getKey();
+            if (!mutations.incremented.add(name)) {
+                continue;
+            }
+
+            if (locking()) {
+                treeVersionRepository.increment(name);
+            } else if (counter.getValue() == null) {
+                treeVersionRepository.insert(name);
+            } else if (treeVersionRepository.increment(name, counter.getValue()) == 0) {
+                throw new ConcurrentTreeModificationException(
+                    "Counter " + name + " was changed by a concurrent mutation since version " + counter.getValue());
+            }
+        }
+        if (mutations.all && mutations.incremented.add(TreeVersion.CATEGORY_TREE_PREFIX)) {
+            treeVersionRepository.incrementAll(TreeVersion.CATEGORY_TREE_PREFIX);
+        }
+        if (!locking()) {
+            recordLockWait(started);
+        }
+        for (String name : mutations.dropped) {
+            treeVersionRepository.remove(name);
+        }
+        mutations.dropped.clear();
+        mutations.pending.add(new CategoryTreeChangedEvent(operation, 0, treeIds, ranges));
+    }
+
+    /**
+     * @return Mutations The state of the mutations of the current transaction, bound to it on first use.
+     * @throws IllegalStateException if no transaction is running.
+     */
+    private Mutations mutations() {
+        Mutations mutations = (Mutations) TransactionSynchronizationManager.getResource(this);
+        if (mutations != null) {
+            return mutations;
+        }
+
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("A category mutation must run in a transaction");
+        }
+        mutations = new Mutations();
+        TransactionSynchronizationManager.bindResource(this, mutations);
+        TransactionSynchronizationManager.registerSynchronization(mutations);
+        return mutations;
+    }
+
+    /**
+     * Number the mutations of the transaction with the global version and announce them, the listeners interested
+     * in committed data only hear about them after commit.
+     *
+     * @param mutations Mutations The mutations of the committing transaction.
+     * @throws ConcurrentTreeModificationException if a rebuild of every tree with optimistic concurrency was overtaken
+     *                                             by another mutation.
+     */
+    private void commit(Mutations mutations) {
+        int count = mutations.pending.size();
+        if (count == 0) {
+            return;
+        }
+
+        long started = System.nanoTime();
+        long version;
+        if (!locking() && mutations.all) {
+            version = mutations.startVersion;
+            if (treeVersionRepository.add(TreeVersion.CATEGORIES, version, count) == 0) {
+                throw new ConcurrentTreeModificationException(
+                    "Categories were changed by a concurrent mutation since version " + version);
+            }
+        } else {
+            if (treeVersionRepository.add(TreeVersion.CATEGORIES, count) == 0) {
+                treeVersionRepository.insert(TreeVersion.CATEGORIES);
+                treeVersionRepository.add(TreeVersion.CATEGORIES, count);
+            }
+            version = treeVersionRepository.findVersion(TreeVersion.CATEGORIES).orElseThrow() - count;
+        }
+        recordLockWait(started);
+
+        for (CategoryTreeChangedEvent pending : mutations.pending) {
+            version++;
+            categoryChangeJournal.record(version, pending.getRanges());
+            eventPublisher.publishEvent(new CategoryTreeChangedEvent(pending.getOperation(), version,
+                pending.getTreeIds(), pending.getRanges()));
+        }
+    }
+
+    private boolean locking() {
+        return nestedSetProperties.getConcurrency() == NestedSetProperties.Concurrency.LOCK;
+    }
+
+    private void recordLockWait(long started) {
+        meterRegistry.timer("category.mutation.lock.wait",
+                "concurrency", nestedSetProperties.getConcurrency().name().toLowerCase())
+            .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * The counters the mutations of one transaction hold and the mutations waiting for the commit to be numbered.
+     */
+    private final class Mutations implements TransactionSynchronization {
+        /**
+         * Held counters by name, with the version read when optimistic, null when it did not exist yet.
+         */
+        private final Map<String, Long> held = new TreeMap<>();
+
+        private final Set<String> incremented = new HashSet<>();
+
+        private final Set<String> dropped = new HashSet<>();
+
+        private final List<CategoryTreeChangedEvent> pending = new ArrayList<>();
+
+        /**
+         * Whether the transaction holds every counter.
+         */
+        private boolean all;
+
+        /**
+         * The global version a rebuild of every tree with optimistic concurrency started from.
+         */
+        private Long startVersion;
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            commit(this);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CategoryTreeLocks.this);
+        }
+    }
+}
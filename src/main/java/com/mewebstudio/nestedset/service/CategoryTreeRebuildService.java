@@ -0,0 +1,236 @@
+package com.mewebstudio.nestedset.service;
+
+import com.github.f4b6a3.ulid.UlidCreator;
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import com.mewebstudio.nestedset.repository.CategoryRebuildRowRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs the rebuilds requested through the API. A rebuild of a single tree, or of every tree in the locked mode,
+ * holds its trees for its whole run. An online rebuild of every tree computes the positions into the shadow
+ * table {@code category_rebuilds} without holding anything, so reads and mutations go on meanwhile, then swaps them
+ * in with one short transaction. The trees that changed since the rows were read are known from the change events
+ * of this instance and are rebuilt in place during the swap; those committed before the swap starts are collected
+ * before it holds the trees, so the swap only waits for the events of the few versions committed while it takes
+ * them. If a change cannot be attributed to a tree (a mutation
+ * on another instance, or a rebuild), the positions are computed again, and after {@code max-retries} attempts the
+ * rebuild falls back to the locked mode.
+ */
+@Service
+public class CategoryTreeRebuildService {
+    /**
+     * How long a rebuild waits for the events of the versions committed right before it collects them.
+     */
+    private static final Duration EVENT_WAIT = Duration.ofMillis(50);
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryService categoryService;
+
+    private final CategoryTreeRebuilder categoryTreeRebuilder;
+
+    private final CategoryRebuildRowRepository categoryRebuildRowRepository;
+
+    private final TreeMutationRetrier treeMutationRetrier;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TransactionTemplate transaction;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Trees changed by every version committed while an online rebuild runs, null when none runs.
+     */
+    private volatile RecordedChanges changes;
+
+    public CategoryTreeRebuildService(CategoryService categoryService, CategoryTreeRebuilder categoryTreeRebuilder,
+                                      CategoryRebuildRowRepository categoryRebuildRowRepository,
+                                      TreeMutationRetrier treeMutationRetrier,
+                                      NestedSetProperties nestedSetProperties, MeterRegistry meterRegistry,
+                                      PlatformTransactionManager transactionManager) {
+        this.categoryService = categoryService;
+        this.categoryTreeRebuilder = categoryTreeRebuilder;
+        this.categoryRebuildRowRepository = categoryRebuildRowRepository;
+        this.treeMutationRetrier = treeMutationRetrier;
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Rebuild every tree, or a single one, in the configured mode. The whole run is timed in
+     * {@code category.mutation}.
+     *
+     * @param treeId String? The ID of the tree to rebuild, null to rebuild every tree.
+     * @return RebuildProgress The state of the finished rebuild.
+     * @throws BadRequestException if an online rebuild is already running on this instance.
+     */
+    public RebuildProgress rebuild(String treeId) {
+        long started = System.nanoTime();
+        String outcome = "failure";
+        try {
+            RebuildProgress progress = run(treeId);
+            outcome = "success";
+            return progress;
+        } finally {
+            meterRegistry.timer("category.mutation", "operation", "rebuild", "outcome", outcome)
+                .record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private RebuildProgress run(String treeId) {
+        if (treeId != null || nestedSetProperties.getRebuildMode() == NestedSetProperties.RebuildMode.LOCKED) {
+            return treeMutationRetrier.execute(CategoryTreeChangedEvent.Operation.REBUILD,
+                () -> categoryService.rebuildTree(treeId != null ? categoryService.findById(treeId) : null));
+        }
+
+        if (!running.compareAndSet(false, true)) {
+            throw new BadRequestException("A rebuild is already running");
+        }
+        try {
+            for (int attempt = 1; attempt <= nestedSetProperties.getMaxRetries(); attempt++) {
+                RebuildProgress progress = rebuildOnline();
+                if (progress != null) {
+                    return progress;
+                }
+
+                log.debug("Online rebuild attempt {} cannot catch up on the changes since it read the rows", attempt);
+            }
+
+            log.warn("Online rebuild could not catch up, rebuilding with the tree version locked");
+            return treeMutationRetrier.execute(CategoryTreeChangedEvent.Operation.REBUILD,
+                () -> categoryService.rebuildTree(null));
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * Record the trees every committed mutation changed while an online rebuild runs.
+     *
+     * @param event CategoryTreeChangedEvent The committed mutation.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onTreeChanged(CategoryTreeChangedEvent event) {
+        RecordedChanges recorded = changes;
+        if (recorded != null) {
+            recorded.put(event.getVersion(), event.getTreeIds());
+        }
+    }
+
+    /**
+     * @return RebuildProgress? The state of the finished rebuild, null when it has to be computed again.
+     */
+    private RebuildProgress rebuildOnline() {
+        String rebuildId = UlidCreator.getUlid().toString();
+        RecordedChanges recorded = new RecordedChanges();
+        changes = recorded;
+        try {
+            long baseVersion = categoryService.getVersion();
+            int stride = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+            RebuildProgress computed = transaction.execute(status ->
+                categoryTreeRebuilder.rebuildIntoShadow(rebuildId, stride));
+            categoryTreeRebuilder.setProgress(computed.swapping());
+
+            long caughtUpVersion = categoryService.getVersion();
+            Set<String> changedBefore = recorded.changedTrees(baseVersion, caughtUpVersion);
+            if (changedBefore == null) {
+                return null;
+            }
+
+            long started = System.nanoTime();
+            Long changed = treeMutationRetrier.execute(CategoryTreeChangedEvent.Operation.REBUILD,
+                () -> categoryService.swapRebuild(rebuildId, version -> {
+                    Set<String> treeIds = recorded.changedTrees(caughtUpVersion, version);
+                    if (treeIds != null) {
+                        treeIds.addAll(changedBefore);
+                    }
+                    return treeIds;
+                }));
+            Duration locked = Duration.ofNanos(System.nanoTime() - started);
+            if (changed == null) {
+                return null;
+            }
+
+            RebuildProgress progress = computed.done(changed, locked);
+            categoryTreeRebuilder.setProgress(progress);
+            log.info("Rebuilt {} categories online, {} changed, swapped in {} ms", progress.getRead(), changed,
+                locked.toMillis());
+            return progress;
+        } catch (RuntimeException e) {
+            RebuildProgress progress = categoryTreeRebuilder.getProgress();
+            if (progress != null) {
+                categoryTreeRebuilder.setProgress(progress.finished(RebuildProgress.Phase.FAILED, null));
+            }
+            throw e;
+        } finally {
+            changes = null;
+            transaction.executeWithoutResult(status -> categoryRebuildRowRepository.deleteByRebuildId(rebuildId));
+        }
+    }
+
+    /**
+     * The trees every version committed during an online rebuild changed. The event of a mutation is only recorded
+     * after its commit released the trees, so the trees changed up to a version may have to be waited for a moment.
+     */
+    private static final class RecordedChanges {
+        private final Map<Long, Set<String>> treeIds = new HashMap<>();
+
+        synchronized void put(long version, Set<String> changed) {
+            treeIds.put(version, changed);
+            notifyAll();
+        }
+
+        /**
+         * @param baseVersion long The version the trees are known at.
+         * @param version     long The version the trees are needed at.
+         * @return Set<String>? The trees changed in between, null when a version is still missing after
+         * {@link #EVENT_WAIT} or changed every tree.
+         */
+        synchronized Set<String> changedTrees(long baseVersion, long version) {
+            long deadline = System.nanoTime() + EVENT_WAIT.toNanos();
+            Set<String> changedTrees = new HashSet<>();
+            for (long v = baseVersion + 1; v <= version; v++) {
+                Set<String> changed;
+                while ((changed = treeIds.get(v)) == null) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return null;
+                    }
+                }
+                if (changed.isEmpty()) {
+                    return null;
+                }
+                changedTrees.addAll(changed);
+            }
+
+            return changedTrees;
+        }
+    }
+}
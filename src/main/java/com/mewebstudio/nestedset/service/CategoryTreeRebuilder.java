@@ -0,0 +1,332 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.repository.CategoryRepository;
+import com.mewebstudio.nestedset.repository.projection.CategoryNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Recomputes the left/right bounds, depth and tree ID of every category from the parent references without loading
+ * any entity. The structure is streamed through a database cursor into primitive arrays, numbered with an explicit
+ * stack, and only the rows whose position actually changed are written back through JDBC batches. Must run inside
+ * the transaction of the mutation, once it holds the trees.
+ */
+@Component
+public class CategoryTreeRebuilder {
+    /**
+     * Number of rows read or written between two progress updates, and the size of a JDBC batch.
+     */
+    static final int CHUNK_SIZE = 1000;
+
+    private static final String UPDATE_SQL =
+        "UPDATE categories SET \"left\" = ?, \"right\" = ?, depth = ?, tree_id = ? WHERE id = ?";
+
+    private static final String INSERT_SHADOW_SQL = "INSERT INTO category_rebuilds "
+        + "(rebuild_id, id, base_tree_id, tree_id, \"left\", \"right\", depth) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryRepository categoryRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private volatile RebuildProgress progress;
+
+    public CategoryTreeRebuilder(CategoryRepository categoryRepository, JdbcTemplate jdbcTemplate,
+                                 NestedSetProperties nestedSetProperties) {
+        this.categoryRepository = categoryRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.nestedSetProperties = nestedSetProperties;
+    }
+
+    /**
+     * @return RebuildProgress? The state of the running rebuild, or of the last one, null if none ran yet.
+     */
+    public RebuildProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * Rebuild every tree, or a single one. Every tree of a full rebuild is numbered after the previous one, a single
+     * tree keeps the left bound of its root.
+     *
+     * @param treeId String? The ID of the tree to rebuild, null to rebuild every tree.
+     * @param stride int Distance between consecutive bounds.
+     * @return RebuildProgress The state of the finished rebuild.
+     */
+    public RebuildProgress rebuild(String treeId, int stride) {
+        progress = RebuildProgress.started(treeId,
+            treeId != null ? categoryRepository.countByTreeId(treeId) : categoryRepository.count());
+        try {
+            Nodes nodes = read(treeId, true);
+            progress = progress.numbering();
+            number(nodes, treeId != null, stride);
+            write(nodes, UPDATE_SQL, true, this::updateParameters);
+            progress = progress.finished(RebuildProgress.Phase.DONE, progress.getElapsed());
+            log.info("Rebuilt {} categories, {} changed, in {} ms", progress.getRead(), progress.getChanged(),
+                progress.getElapsed().toMillis());
+            return progress;
+        } catch (RuntimeException e) {
+            progress = progress.finished(RebuildProgress.Phase.FAILED, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Compute the corrected position of every category and insert the changed ones into the shadow table, leaving
+     * {@code categories} untouched. Every tree keeps the left bound of its root, so that a tree changed meanwhile
+     * can be rebuilt on its own without reordering the roots. The progress stays in the writing phase.
+     *
+     * @param rebuildId String The ID of the online rebuild, keys its shadow rows.
+     * @param stride    int Distance between consecutive bounds.
+     * @return RebuildProgress The state of the rebuild once its shadow rows are written.
+     */
+    public RebuildProgress rebuildIntoShadow(String rebuildId, int stride) {
+        progress = RebuildProgress.started(null, categoryRepository.count());
+        try {
+            Nodes nodes = read(null, true);
+            progress = progress.numbering();
+            number(nodes, true, stride);
+            NestedSetProperties.IdStorage ids = nestedSetProperties.getIdStorage();
+            write(nodes, INSERT_SHADOW_SQL, true, (rows, i, treeIdOfRow) -> new Object[]{rebuildId,
+                ids.toColumn(rows.ids[i]), ids.toColumn(rows.treeIds[i]), ids.toColumn(treeIdOfRow),
+                rows.newLefts[i], rows.newRights[i], rows.newDepths[i]});
+            return progress;
+        } catch (RuntimeException e) {
+            progress = progress.finished(RebuildProgress.Phase.FAILED, null);
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuild a single tree in place without reporting progress, for the trees an online rebuild has to catch up.
+     *
+     * @param treeId String The ID of the tree to rebuild.
+     * @param stride int Distance between consecutive bounds.
+     * @return long The number of categories changed.
+     */
+    long catchUp(String treeId, int stride) {
+        Nodes nodes = read(treeId, false);
+        number(nodes, true, stride);
+        return write(nodes, UPDATE_SQL, false, this::updateParameters);
+    }
+
+    void setProgress(RebuildProgress progress) {
+        this.progress = progress;
+    }
+
+    private Nodes read(String treeId, boolean tracked) {
+        Nodes nodes = new Nodes(tracked ? (int) Math.min(Integer.MAX_VALUE - 8, progress.getTotal() + 16) : 16);
+        List<String> parentIds = new ArrayList<>();
+        try (Stream<CategoryNode> stream = treeId != null
+            ? categoryRepository.streamNodesOrderedByLeft(treeId)
+            : categoryRepository.streamNodesOrderedByLeft()) {
+            stream.forEach(node -> {
+                nodes.add(node);
+                parentIds.add(node.getParentId());
+                if (tracked && nodes.size % CHUNK_SIZE == 0) {
+                    progress = progress.reading(nodes.size);
+                }
+            });
+        }
+        if (tracked) {
+            progress = progress.reading(nodes.size);
+        }
+
+        nodes.parents = new int[nodes.size];
+        for (int i = 0; i < nodes.size; i++) {
+            String parentId = parentIds.get(i);
+            // -1 for a root, -2 for a parent outside the rebuilt rows: such a node is left as it is.
+            nodes.parents[i] = parentId == null ? -1 : nodes.indexById.getOrDefault(parentId, -2);
+        }
+
+        return nodes;
+    }
+
+    /**
+     * Number every tree depth-first, children in their current left order. The children of every node are laid out
+     * as one array indexed by offsets, so the numbering allocates nothing per node.
+     */
+    private static void number(Nodes nodes, boolean keepRootLeft, int stride) {
+        int size = nodes.size;
+        int[] offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            if (nodes.parents[i] >= 0) {
+                offsets[nodes.parents[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        int[] children = new int[offsets[size]];
+        int[] filled = Arrays.copyOf(offsets, size);
+        for (int i = 0; i < size; i++) {
+            if (nodes.parents[i] >= 0) {
+                children[filled[nodes.parents[i]]++] = i;
+            }
+        }
+
+        nodes.newLefts = Arrays.copyOf(nodes.lefts, size);
+        nodes.newRights = Arrays.copyOf(nodes.rights, size);
+        nodes.newDepths = Arrays.copyOf(nodes.depths, size);
+        nodes.roots = new int[size];
+        Arrays.fill(nodes.roots, -1);
+        int[] path = new int[16];
+        int[] next = new int[16];
+        int right = 0;
+        for (int root = 0; root < size; root++) {
+            if (nodes.parents[root] != -1) {
+                continue;
+            }
+
+            int bound = keepRootLeft ? nodes.lefts[root] : Math.addExact(right, stride);
+            int top = 0;
+            path[0] = root;
+            next[0] = offsets[root];
+            nodes.newLefts[root] = bound;
+            nodes.newDepths[root] = 0;
+            nodes.roots[root] = root;
+            while (top >= 0) {
+                int node = path[top];
+                if (next[top] < offsets[node + 1]) {
+                    int child = children[next[top]++];
+                    bound = Math.addExact(bound, stride);
+                    nodes.newLefts[child] = bound;
+                    nodes.newDepths[child] = top + 1;
+                    nodes.roots[child] = root;
+                    if (++top == path.length) {
+                        path = Arrays.copyOf(path, top * 2);
+                        next = Arrays.copyOf(next, top * 2);
+                    }
+                    path[top] = child;
+                    next[top] = offsets[child];
+                } else {
+                    bound = Math.addExact(bound, stride);
+                    nodes.newRights[node] = bound;
+                    top--;
+                }
+            }
+            right = bound;
+        }
+    }
+
+    /**
+     * Write the rows whose bounds, depth or tree ID changed, in JDBC batches of {@link #CHUNK_SIZE}.
+     *
+     * @return long The number of rows written.
+     */
+    private long write(Nodes nodes, String sql, boolean tracked, RowParameters parameters) {
+        long written = 0;
+        List<Object[]> batch = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < nodes.size; i++) {
+            int root = nodes.roots[i];
+            if (root < 0) {
+                continue;
+            }
+
+            String treeId = nodes.ids[root];
+            if (nodes.newLefts[i] == nodes.lefts[i] && nodes.newRights[i] == nodes.rights[i]
+                && nodes.newDepths[i] == nodes.depths[i] && Objects.equals(treeId, nodes.treeIds[i])) {
+                continue;
+            }
+
+            batch.add(parameters.of(nodes, i, treeId));
+            if (batch.size() == CHUNK_SIZE) {
+                jdbcTemplate.batchUpdate(sql, batch);
+                written += batch.size();
+                batch.clear();
+                if (tracked) {
+                    progress = progress.writing(written, written);
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sql, batch);
+            written += batch.size();
+        }
+        if (tracked) {
+            progress = progress.writing(written, written);
+        }
+
+        return written;
+    }
+
+    private Object[] updateParameters(Nodes nodes, int i, String treeId) {
+        NestedSetProperties.IdStorage ids = nestedSetProperties.getIdStorage();
+        return new Object[]{nodes.newLefts[i], nodes.newRights[i], nodes.newDepths[i], ids.toColumn(treeId),
+            ids.toColumn(nodes.ids[i])};
+    }
+
+    @FunctionalInterface
+    private interface RowParameters {
+        Object[] of(Nodes nodes, int index, String treeId);
+    }
+
+    /**
+     * The rebuilt rows as parallel arrays, in the order they were read.
+     */
+    private static final class Nodes {
+        private final Map<String, Integer> indexById;
+
+        private String[] ids;
+
+        private String[] treeIds;
+
+        private int[] lefts;
+
+        private int[] rights;
+
+        private int[] depths;
+
+        private int[] parents;
+
+        private int[] newLefts;
+
+        private int[] newRights;
+
+        private int[] newDepths;
+
+        private int[] roots;
+
+        private int size;
+
+        private Nodes(int capacity) {
+            indexById = new HashMap<>(capacity * 4 / 3 + 1);
+            ids = new String[capacity];
+            treeIds = new String[capacity];
+            lefts = new int[capacity];
+            rights = new int[capacity];
+            depths = new int[capacity];
+        }
+
+        private void add(CategoryNode node) {
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                treeIds = Arrays.copyOf(treeIds, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+            }
+            ids[size] = node.getId();
+            treeIds[size] = node.getTreeId();
+            lefts[size] = node.getLeft();
+            rights[size] = node.getRight();
+            depths[size] = node.getDepth();
+            indexById.put(node.getId(), size++);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable in-memory view of the category trees at one tree version. The categories are kept as one pre-order list
+ * of flat responses, so a tree, a subtree or the descendants of a category are slices of it, whose structure is
+ * held by a {@link CategoryIntervalIndex} over the same order.
+ */
+public final class CategoryTreeSnapshot {
+    private final long version;
+
+    private final List<CategoryResponse> rows;
+
+    private final CategoryIntervalIndex index;
+
+    private CategoryTreeSnapshot(long version, List<CategoryResponse> rows, CategoryIntervalIndex index) {
+        this.version = version;
+        this.rows = rows;
+        this.index = index;
+    }
+
+    /**
+     * @param version    long The tree version the categories were read at.
+     * @param categories List<CategoryRow> The categories grouped by tree, each tree ordered by left value.
+     * @return CategoryTreeSnapshot The snapshot.
+     */
+    public static CategoryTreeSnapshot of(long version, List<CategoryRow> categories) {
+        List<CategoryResponse> rows = new ArrayList<>(categories.size());
+        for (CategoryRow category : categories) {
+            rows.add(CategoryResponse.convert(category));
+        }
+
+        return new CategoryTreeSnapshot(version, Collections.unmodifiableList(rows),
+            CategoryIntervalIndex.of(categories));
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return rows.size();
+    }
+
+    /**
+     * @return int The depth of the deepest category, -1 when there is none.
+     */
+    public int maxDepth() {
+        return index.maxDepth();
+    }
+
+    public boolean contains(String id) {
+        return index.indexOf(id) != CategoryIntervalIndex.NONE;
+    }
+
+    /**
+     * @return CategoryIntervalIndex The structure of the trees, its slots are the positions in {@link #tree()}.
+     */
+    public CategoryIntervalIndex index() {
+        return index;
+    }
+
+    /**
+     * @param slot int A slot of the index.
+     * @return CategoryResponse The flat category in the slot.
+     */
+    public CategoryResponse row(int slot) {
+        return rows.get(slot);
+    }
+
+    /**
+     * @return List<CategoryResponse> Every category, tree by tree in root order, each tree ordered by left value.
+     */
+    public List<CategoryResponse> tree() {
+        return rows;
+    }
+
+    /**
+     * @param maxDepth int The number of levels below the roots to include.
+     * @return List<CategoryResponse> The categories down to the depth, tree by tree in root order, each tree
+     * ordered by left value.
+     */
+    public List<CategoryResponse> tree(int maxDepth) {
+        return limit(0, rows.size(), maxDepth);
+    }
+
+    /**
+     * @param treeId String The ID of the tree (its root category).
+     * @return List<CategoryResponse> The categories of the tree ordered by left value, empty when there is no
+     * such tree.
+     */
+    public List<CategoryResponse> tree(String treeId) {
+        return tree(treeId, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param treeId   String The ID of the tree (its root category).
+     * @param maxDepth int The number of levels below the root to include.
+     * @return List<CategoryResponse> The categories of the tree down to the depth ordered by left value, empty when
+     * there is no such tree.
+     */
+    public List<CategoryResponse> tree(String treeId, int maxDepth) {
+        int root = index.indexOf(treeId);
+        return root != CategoryIntervalIndex.NONE && index.isRoot(root)
+            ? limit(root, index.end(root), maxDepth)
+            : List.of();
+    }
+
+    /**
+     * @param id String The ID of a category in the snapshot.
+     * @return List<CategoryResponse> The chain of ancestors from the root, each holding the next one as only child.
+     */
+    public List<CategoryResponse> ancestors(String id) {
+        int[] slots = index.ancestors(index.indexOf(id));
+        CategoryResponse[] path = new CategoryResponse[slots.length];
+        for (int i = 0; i < slots.length; i++) {
+            path[i] = rows.get(slots[i]);
+        }
+
+        return CategoryTreeAssembler.assemble(Arrays.asList(path), row -> new CategoryResponse(row.getId(),
+            row.getName(), row.getLeft(), row.getRight(), row.getTreeId(), null, null, row.getCreatedAt(),
+            row.getUpdatedAt()));
+    }
+
+    /**
+     * @param id String The ID of a category in the snapshot.
+     * @return List<CategoryResponse> The descendants of the category ordered by left value.
+     */
+    public List<CategoryResponse> descendants(String id) {
+        return descendants(id, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param id       String The ID of a category in the snapshot.
+     * @param maxDepth int The number of levels below the category to include.
+     * @return List<CategoryResponse> The descendants of the category down to the depth ordered by left value.
+     */
+    public List<CategoryResponse> descendants(String id, int maxDepth) {
+        int slot = index.indexOf(id);
+        int depth = (int) Math.min(Integer.MAX_VALUE, (long) index.depth(slot) + maxDepth);
+        return limit(slot + 1, index.end(slot), depth);
+    }
+
+    /**
+     * @param id String The ID of a category in the snapshot.
+     * @return List<CategoryResponse> The category and its descendants ordered by left value.
+     */
+    public List<CategoryResponse> subtree(String id) {
+        int slot = index.indexOf(id);
+        return rows.subList(slot, index.end(slot));
+    }
+
+    /**
+     * Slice the rows in a range, leaving out the nodes below a depth. The subtree under a node at that depth is
+     * jumped over, so the cost follows the rows returned rather than the range.
+     *
+     * @param from     int First row of the range.
+     * @param to       int Row right after the range.
+     * @param maxDepth int The deepest depth to include.
+     * @return List<CategoryResponse> The rows.
+     */
+    private List<CategoryResponse> limit(int from, int to, int maxDepth) {
+        if (maxDepth == Integer.MAX_VALUE) {
+            return rows.subList(from, to);
+        }
+
+        List<CategoryResponse> limited = new ArrayList<>();
+        for (int i = from; i < to; i = index.depth(i) < maxDepth ? i + 1 : index.end(i)) {
+            if (index.depth(i) <= maxDepth) {
+                limited.add(rows.get(i));
+            }
+        }
+
+        return limited;
+    }
+}
@@ -0,0 +1,602 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import com.mewebstudio.nestedset.exception.NotFoundException;
+import com.mewebstudio.nestedset.repository.CategoryRepository;
+import com.mewebstudio.nestedset.repository.projection.CategoryBounds;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Serves the tree reads from an immutable {@link CategoryTreeSnapshot}. Every committed mutation raises the known
+ * tree version and the snapshot is rebuilt on a background thread, readers keep getting the previous snapshot
+ * meanwhile. The mutations of other instances are not announced here, so a read compares the known version with the
+ * persisted one, at most once every {@link NestedSetProperties#getSnapshotCheckInterval()}. A category the snapshot
+ * does not know yet, a read before the first snapshot, or every read when the snapshot is disabled, is answered from
+ * the database. Every result carries the persisted tree version it reflects.
+ * <p>
+ * Every read is timed in {@code category.read} and its categories counted in {@code category.read.nodes}, both
+ * tagged with the read. A streamed read is timed until its last row is written. The gauges
+ * {@code category.tree.size} and {@code category.tree.max.depth} come from the snapshot, or from the database when
+ * the snapshot is disabled, queried again only once the tree version moved.
+ */
+@Service
+public class CategoryTreeSnapshotService {
+    /**
+     * Largest page a paginated read returns.
+     */
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    /**
+     * Largest number of categories a common ancestor is looked for.
+     */
+    public static final int MAX_COMMON_ANCESTOR_IDS = 100;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryRepository categoryRepository;
+
+    private final CategoryService categoryService;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    /**
+     * Reads the tree version and the rows it tags from one snapshot of the database.
+     */
+    private final TransactionTemplate versionedTransaction;
+
+    private final AtomicLong version = new AtomicLong();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    /**
+     * When the known version was last compared with the persisted one, from {@link System#nanoTime()}.
+     */
+    private final AtomicLong versionCheckedAt = new AtomicLong(System.nanoTime());
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "category-tree-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile CategoryTreeSnapshot snapshot;
+
+    /**
+     * Size and depth read from the database while the snapshot is disabled, null until the gauges are first read.
+     */
+    private volatile TreeStats stats;
+
+    public CategoryTreeSnapshotService(CategoryRepository categoryRepository, CategoryService categoryService,
+                                       NestedSetProperties nestedSetProperties, MeterRegistry meterRegistry,
+                                       PlatformTransactionManager transactionManager) {
+        this.categoryRepository = categoryRepository;
+        this.categoryService = categoryService;
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.versionedTransaction = new TransactionTemplate(transactionManager);
+        this.versionedTransaction.setReadOnly(true);
+        this.versionedTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+
+        Gauge.builder("category.tree.size", this, service -> service.stats().size)
+            .description("Categories in every tree")
+            .register(meterRegistry);
+        Gauge.builder("category.tree.max.depth", this, service -> service.stats().maxDepth)
+            .description("Depth of the deepest category, -1 when there is none")
+            .register(meterRegistry);
+    }
+
+    /**
+     * @return long The latest persisted tree version known to this instance.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    /**
+     * Tell whether a category lies in the subtree of another one, from the bounds in the snapshot.
+     *
+     * @param ancestorId String The ID of the enclosing category.
+     * @param id         String The ID of the category.
+     * @return Versioned<Boolean> True when the category is a descendant of the other one.
+     * @throws NotFoundException if a category is not found.
+     */
+    public Versioned<Boolean> contains(String ancestorId, String id) {
+        long started = System.nanoTime();
+        CategoryTreeSnapshot current = lookup(List.of(ancestorId, id));
+        CategoryIntervalIndex index = current.index();
+        boolean contains = index.isDescendant(index.indexOf(ancestorId), index.indexOf(id));
+        recordRead("contains", started, 0);
+        return new Versioned<>(current.getVersion(), contains);
+    }
+
+    /**
+     * Find the deepest category that is one of the categories or an ancestor of each of them.
+     *
+     * @param ids List<String> The IDs of the categories.
+     * @return Versioned<CategoryResponse> The common ancestor.
+     * @throws BadRequestException if no ID or too many are given.
+     * @throws NotFoundException   if a category is not found, or the categories are in different trees.
+     */
+    public Versioned<CategoryResponse> commonAncestor(List<String> ids) {
+        long started = System.nanoTime();
+        if (ids.isEmpty() || ids.size() > MAX_COMMON_ANCESTOR_IDS) {
+            throw new BadRequestException("ids must hold between 1 and " + MAX_COMMON_ANCESTOR_IDS + " IDs");
+        }
+
+        CategoryTreeSnapshot current = lookup(ids);
+        CategoryIntervalIndex index = current.index();
+        int ancestor = index.lowestCommonAncestor(ids.stream().mapToInt(index::indexOf).toArray());
+        if (ancestor == CategoryIntervalIndex.NONE) {
+            throw new NotFoundException("The categories are in different trees");
+        }
+
+        recordRead("common_ancestor", started, 1);
+        return new Versioned<>(current.getVersion(), current.row(ancestor));
+    }
+
+    /**
+     * Get every tree, or a single one when a tree ID is given, as rows to be streamed.
+     *
+     * @param treeId   String? The ID of the tree (its root category).
+     * @param maxDepth Integer? The number of levels below the roots to include, null for all of them.
+     * @return Versioned<CategoryRowSource> The rows, tree by tree in root order, each tree ordered by left value.
+     * @throws BadRequestException if the depth is negative.
+     */
+    public Versioned<CategoryRowSource> tree(String treeId, Integer maxDepth) {
+        long started = System.nanoTime();
+        int levels = levels(maxDepth);
+        CategoryTreeSnapshot current = current();
+        if (current != null) {
+            List<CategoryResponse> rows = treeId != null ? current.tree(treeId, levels) : current.tree(levels);
+            return new Versioned<>(current.getVersion(), measured("tree", started, rows::forEach));
+        }
+
+        return new Versioned<>(readVersion(), measured("tree", started, stream(() -> treeId != null
+            ? categoryRepository.streamAllOrderedByLeft(treeId, levels)
+            : categoryRepository.streamAllOrderedByTreeAndLeft(levels))));
+    }
+
+    /**
+     * @param id String The ID of the category.
+     * @return Versioned<List<CategoryResponse>> The ancestors as a chain from the root.
+     * @throws NotFoundException if the category is not found.
+     */
+    public Versioned<List<CategoryResponse>> ancestors(String id) {
+        long started = System.nanoTime();
+        CategoryTreeSnapshot current = lookup(id);
+        if (current == null) {
+            current = read(() -> categoryService.getPath(id));
+        }
+
+        return new Versioned<>(current.getVersion(), recordRead("ancestors", started, current.ancestors(id)));
+    }
+
+    /**
+     * Get the descendants of a category as rows to be streamed.
+     *
+     * @param id       String The ID of the category.
+     * @param maxDepth Integer? The number of levels below the category to include, null for all of them.
+     * @return Versioned<CategoryRowSource> The descendants ordered by left value.
+     * @throws NotFoundException   if the category is not found.
+     * @throws BadRequestException if the depth is negative.
+     */
+    public Versioned<CategoryRowSource> descendants(String id, Integer maxDepth) {
+        long started = System.nanoTime();
+        int levels = levels(maxDepth);
+        CategoryTreeSnapshot current = lookup(id);
+        if (current == null && nestedSetProperties.isSnapshotEnabled()) {
+            current = read(() -> categoryService.getSubtree(id, levels));
+        }
+        if (current != null) {
+            return new Versioned<>(current.getVersion(),
+                measured("descendants", started, current.descendants(id, levels)::forEach));
+        }
+
+        // Streaming needs to know the category exists before the body starts.
+        long readVersion = readVersion();
+        CategoryBounds bounds = categoryRepository.findBoundsById(id)
+            .orElseThrow(() -> new NotFoundException("Category not found"));
+        int depth = (int) Math.min(Integer.MAX_VALUE, (long) bounds.getDepth() + levels);
+        return new Versioned<>(readVersion, measured("descendants", started, stream(() ->
+            categoryRepository.streamDescendants(bounds.getTreeId(), bounds.getLeft(), bounds.getRight(), depth))));
+    }
+
+    /**
+     * @param id String The ID of the category.
+     * @return Versioned<List<CategoryResponse>> The category and its descendants ordered by left value.
+     * @throws NotFoundException if the category is not found.
+     */
+    public Versioned<List<CategoryResponse>> subtree(String id) {
+        long started = System.nanoTime();
+        CategoryTreeSnapshot current = lookup(id);
+        if (current == null) {
+            current = read(() -> categoryService.getSubtree(id));
+        }
+
+        return new Versioned<>(current.getVersion(), recordRead("subtree", started, current.subtree(id)));
+    }
+
+    /**
+     * Get a page of every tree, or of a single one when a tree ID is given. Pages are read from the database with
+     * a keyset on the bounds, so every page is a range scan however deep it is.
+     *
+     * @param treeId   String? The ID of the tree (its root category).
+     * @param maxDepth Integer? The number of levels below the roots to include, null for all of them.
+     * @param after    String? The cursor of the previous page, null for the first page.
+     * @param limit    int The maximum number of rows.
+     * @return CategoryPage The rows, tree by tree in root order, each tree ordered by left value.
+     * @throws BadRequestException if the depth is negative, the limit out of range or the cursor malformed.
+     */
+    public CategoryPage treePage(String treeId, Integer maxDepth, String after, int limit) {
+        long started = System.nanoTime();
+        int levels = levels(maxDepth);
+        checkLimit(limit);
+        CategoryCursor cursor = CategoryCursor.decode(after);
+        CategoryPage page = readOnlyTransaction.execute(status -> {
+            CategoryCursor position = resume(cursor);
+            return page(treeId != null
+                ? categoryRepository.findTreeRowsAfter(treeId, levels, position.getLeft(), Limit.of(limit + 1))
+                : categoryRepository.findRowsAfter(levels, position.getRootLeft(), position.getLeft(),
+                    Limit.of(limit + 1)), limit, position);
+        });
+
+        return recordRead("tree_page", started, page);
+    }
+
+    /**
+     * Get a page of the subtree of a category, read from the database with a keyset on the left bound.
+     *
+     * @param id    String The ID of the category.
+     * @param after String? The cursor of the previous page, null for the first page.
+     * @param limit int The maximum number of rows.
+     * @return CategoryPage The category and its descendants ordered by left value.
+     * @throws NotFoundException   if the category is not found.
+     * @throws BadRequestException if the limit is out of range or the cursor malformed.
+     */
+    public CategoryPage subtreePage(String id, String after, int limit) {
+        long started = System.nanoTime();
+        checkLimit(limit);
+        CategoryCursor cursor = CategoryCursor.decode(after);
+        CategoryPage page = readOnlyTransaction.execute(status -> {
+            CategoryCursor position = resume(cursor);
+            return page(categoryRepository.findSubtreeRowsAfter(id, position.getLeft(), Limit.of(limit + 1)), limit,
+                position);
+        });
+        if (after == null && page.getRows().isEmpty()) {
+            throw new NotFoundException("Category not found");
+        }
+
+        return recordRead("subtree_page", started, page);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (nestedSetProperties.isSnapshotEnabled()) {
+            scheduleRebuild();
+        }
+    }
+
+    /**
+     * Raise the known tree version once the mutation is committed, so the rebuild reads the new state.
+     *
+     * @param event CategoryTreeChangedEvent The mutation.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onTreeChanged(CategoryTreeChangedEvent event) {
+        version.accumulateAndGet(event.getVersion(), Math::max);
+        if (nestedSetProperties.isSnapshotEnabled()) {
+            scheduleRebuild();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private CategoryTreeSnapshot current() {
+        if (!nestedSetProperties.isSnapshotEnabled()) {
+            return null;
+        }
+
+        CategoryTreeSnapshot current = snapshot;
+        checkVersion();
+        if (current == null || current.getVersion() < version.get()) {
+            scheduleRebuild();
+        }
+
+        return current;
+    }
+
+    /**
+     * Raise the known tree version to the persisted one once the check interval passed, so a mutation committed by
+     * another instance outdates the snapshot too. Only the read that claims the check runs the query, the others go
+     * on without waiting for it.
+     */
+    private void checkVersion() {
+        long now = System.nanoTime();
+        long checkedAt = versionCheckedAt.get();
+        if (now - checkedAt < nestedSetProperties.getSnapshotCheckInterval().toNanos()
+            || !versionCheckedAt.compareAndSet(checkedAt, now)) {
+            return;
+        }
+
+        try {
+            version.accumulateAndGet(categoryService.getVersion(), Math::max);
+        } catch (RuntimeException e) {
+            log.warn("Cannot compare the category tree snapshot with the persisted tree version", e);
+        }
+    }
+
+    /**
+     * The version to tag a streamed database read with. The rows are only read once the response is written, so the
+     * persisted version is read before them: a mutation committed in between makes the rows newer than their tag,
+     * which the next conditional read answers in full, but never older. The known version is not used, it lags
+     * behind the mutations of other instances.
+     *
+     * @return long The tree version.
+     */
+    private long readVersion() {
+        return categoryService.getVersion();
+    }
+
+    /**
+     * Read categories from the database into a snapshot, tagged with the persisted tree version read in the same
+     * transaction.
+     *
+     * @param rows Supplier<List<CategoryRow>> The query, grouped by tree and each tree ordered by left value.
+     * @return CategoryTreeSnapshot The snapshot of the rows.
+     */
+    private CategoryTreeSnapshot read(Supplier<List<CategoryRow>> rows) {
+        return versionedTransaction.execute(status -> {
+            long readVersion = categoryService.getVersion();
+            return CategoryTreeSnapshot.of(readVersion, rows.get());
+        });
+    }
+
+    /**
+     * Size and depth of the trees for the gauges, from the snapshot while there is one. Otherwise they are read
+     * from the database, and only when the tree version moved since the last read.
+     *
+     * @return TreeStats The number of categories and the depth of the deepest one.
+     */
+    private TreeStats stats() {
+        CategoryTreeSnapshot current = nestedSetProperties.isSnapshotEnabled() ? snapshot : null;
+        if (current != null) {
+            return new TreeStats(current.getVersion(), current.size(), current.maxDepth());
+        }
+
+        long readVersion = categoryService.getVersion();
+        TreeStats cached = stats;
+        if (cached == null || cached.version != readVersion) {
+            cached = readOnlyTransaction.execute(status -> new TreeStats(readVersion, categoryRepository.count(),
+                categoryRepository.findMaxDepth().orElse(-1)));
+            stats = cached;
+        }
+
+        return cached;
+    }
+
+    /**
+     * Time a streamed read until its rows are consumed, a read answered with 304 is never consumed nor recorded.
+     *
+     * @param read    String The read, used to tag the metrics.
+     * @param started long When the read started, from {@link System#nanoTime()}.
+     * @param rows    CategoryRowSource The rows.
+     * @return CategoryRowSource The rows, counted as they are fed.
+     */
+    private CategoryRowSource measured(String read, long started, CategoryRowSource rows) {
+        return action -> {
+            long[] count = new long[1];
+            rows.forEach(row -> {
+                count[0]++;
+                action.accept(row);
+            });
+            recordRead(read, started, count[0]);
+        };
+    }
+
+    private <T> List<T> recordRead(String read, long started, List<T> rows) {
+        recordRead(read, started, rows.size());
+        return rows;
+    }
+
+    private CategoryPage recordRead(String read, long started, CategoryPage page) {
+        recordRead(read, started, page.getRows().size());
+        return page;
+    }
+
+    private void recordRead(String read, long started, long nodes) {
+        meterRegistry.timer("category.read", "read", read).record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        meterRegistry.summary("category.read.nodes", "read", read).record(nodes);
+    }
+
+    /**
+     * Position to read the next page after. The bounds of the last category read are looked up again, as a mutation
+     * between two pages may have shifted them. When that category was deleted meanwhile, the rows after it were
+     * shifted onto its bounds, so the page starts at its left bound instead of after it.
+     *
+     * @param cursor CategoryCursor The position the previous page ended at.
+     * @return CategoryCursor The position to read after.
+     */
+    private CategoryCursor resume(CategoryCursor cursor) {
+        if (cursor.getId() == null) {
+            return cursor;
+        }
+
+        return categoryRepository.findBoundsById(cursor.getId())
+            .map(bounds -> new CategoryCursor(categoryRepository.findBoundsById(bounds.getTreeId())
+                .map(CategoryBounds::getLeft)
+                .orElse(cursor.getRootLeft()), bounds.getLeft(), cursor.getId()))
+            .orElseGet(() -> new CategoryCursor(cursor.getRootLeft(), cursor.getLeft() - 1, null));
+    }
+
+    /**
+     * Cut one row more than the limit was read, so the last page is known without another query.
+     *
+     * @param rows   List<CategoryRow> The rows read, at most one more than the limit.
+     * @param limit  int The page size.
+     * @param cursor CategoryCursor The position the rows were read after.
+     * @return CategoryPage The page.
+     */
+    private static CategoryPage page(List<CategoryRow> rows, int limit, CategoryCursor cursor) {
+        if (rows.size() <= limit) {
+            return new CategoryPage(rows, null);
+        }
+
+        List<CategoryRow> page = List.copyOf(rows.subList(0, limit));
+        int rootLeft = cursor.getRootLeft();
+        for (CategoryRow row : page) {
+            if (row.getId().equals(row.getTreeId())) {
+                rootLeft = row.getLeft();
+            }
+        }
+
+        CategoryRow last = page.get(limit - 1);
+        return new CategoryPage(page, new CategoryCursor(rootLeft, last.getLeft(), last.getId()));
+    }
+
+    private static void checkLimit(int limit) {
+        if (limit < 1 || limit > MAX_PAGE_SIZE) {
+            throw new BadRequestException("limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    private static int levels(Integer maxDepth) {
+        if (maxDepth != null && maxDepth < 0) {
+            throw new BadRequestException("maxDepth must not be negative");
+        }
+
+        return maxDepth != null ? maxDepth : Integer.MAX_VALUE;
+    }
+
+    private CategoryTreeSnapshot lookup(String id) {
+        CategoryTreeSnapshot current = current();
+        return current != null && current.contains(id) ? current : null;
+    }
+
+    /**
+     * The snapshot when it knows every category, otherwise a snapshot of their paths read from the database, which
+     * holds every ancestor of every category.
+     *
+     * @param ids List<String> The IDs of the categories.
+     * @return CategoryTreeSnapshot The snapshot.
+     * @throws NotFoundException if a category is not found.
+     */
+    private CategoryTreeSnapshot lookup(List<String> ids) {
+        CategoryTreeSnapshot current = current();
+        if (current != null && ids.stream().allMatch(current::contains)) {
+            return current;
+        }
+
+        return read(() -> {
+            Map<String, CategoryRow> rows = new HashMap<>();
+            for (String id : ids) {
+                for (CategoryRow row : categoryService.getPath(id)) {
+                    rows.putIfAbsent(row.getId(), row);
+                }
+            }
+
+            return rows.values().stream()
+                .sorted(Comparator.comparing(CategoryRow::getTreeId).thenComparingInt(CategoryRow::getLeft))
+                .toList();
+        });
+    }
+
+    /**
+     * Rows read through a database cursor in a read-only transaction of their own, opened when the rows are
+     * consumed. Only the row being written is held in memory.
+     *
+     * @param query Supplier<Stream<CategoryRow>> The streaming query.
+     * @return CategoryRowSource The rows.
+     */
+    private CategoryRowSource stream(Supplier<Stream<CategoryRow>> query) {
+        return action -> readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<CategoryRow> rows = query.get()) {
+                rows.forEach(row -> action.accept(CategoryResponse.convert(row)));
+            }
+        });
+    }
+
+    /**
+     * Start a rebuild unless one is running, the running one schedules another when the version moved meanwhile.
+     */
+    private void scheduleRebuild() {
+        if (!rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            boolean rebuilt = false;
+            try {
+                // Read the version first, rows committed in between only make the snapshot newer than its tag.
+                long target = categoryService.getVersion();
+                long started = System.nanoTime();
+                CategoryTreeSnapshot rebuiltSnapshot =
+                    CategoryTreeSnapshot.of(target, categoryService.getAllCategories());
+                snapshot = rebuiltSnapshot;
+                version.accumulateAndGet(target, Math::max);
+                rebuilt = true;
+                log.debug("Rebuilt category tree snapshot of {} nodes at version {} in {} ms",
+                    rebuiltSnapshot.size(), target, (System.nanoTime() - started) / 1_000_000);
+            } catch (RuntimeException e) {
+                log.error("Category tree snapshot rebuild failed", e);
+            } finally {
+                rebuilding.set(false);
+            }
+
+            if (rebuilt && snapshot.getVersion() < version.get()) {
+                scheduleRebuild();
+            }
+        });
+    }
+
+    private static final class TreeStats {
+        private final long version;
+
+        private final long size;
+
+        private final int maxDepth;
+
+        private TreeStats(long version, long size, int maxDepth) {
+            this.version = version;
+            this.size = size;
+            this.maxDepth = maxDepth;
+        }
+    }
+}
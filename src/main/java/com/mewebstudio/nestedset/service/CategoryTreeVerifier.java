@@ -0,0 +1,546 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.service.TreeIntegrityReport.Type;
+import com.mewebstudio.nestedset.service.TreeIntegrityReport.Violation;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Checks the nested-set invariants of every tree without loading any entity and without taking any lock, so
+ * writers go on while it runs. The rows are split into partitions of the {@code (tree_id, left)} key space, balanced
+ * by the size of the trees, and every partition is streamed in its own read-only transaction into primitive arrays.
+ * The checks then run in parallel over chunks of the rows in left order:
+ * <ul>
+ *     <li>every category has a tree ID, and a left bound below its right bound;</li>
+ *     <li>the parent exists, belongs to the same tree and strictly encloses the category, a root is its own tree;</li>
+ *     <li>consecutive siblings do not overlap, which together with the previous check makes the parent the tightest
+ *     enclosing category and the bounds properly nested;</li>
+ *     <li>no bound of a tree is used twice and, with the dense numbering, none is skipped;</li>
+ *     <li>the depth is the depth of the parent plus one.</li>
+ * </ul>
+ * The bounds and the sibling pairs are checked in sorted primitive arrays, so no per-node object is allocated.
+ */
+@Service
+public class CategoryTreeVerifier {
+    static final int FETCH_SIZE = 1000;
+
+    /**
+     * Number of check chunks per partition, so that a slow chunk does not keep the other threads idle.
+     */
+    private static final int CHUNKS_PER_PARTITION = 4;
+
+    private static final String SELECT_ROOTS = "SELECT tree_id, \"left\", \"right\" FROM categories "
+        + "WHERE parent_id IS NULL AND tree_id IS NOT NULL ORDER BY tree_id";
+
+    private static final String SELECT_ROWS = "SELECT id, parent_id, tree_id, \"left\", \"right\", depth "
+        + "FROM categories ";
+
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final CategoryService categoryService;
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService executor;
+
+    public CategoryTreeVerifier(CategoryService categoryService, NestedSetProperties nestedSetProperties,
+                                JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.categoryService = categoryService;
+        this.nestedSetProperties = nestedSetProperties;
+        this.jdbcTemplate = new JdbcTemplate(Objects.requireNonNull(jdbcTemplate.getDataSource()));
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, nestedSetProperties.getVerifyParallelism()),
+            runnable -> {
+                Thread thread = new Thread(runnable, "category-tree-verifier-" + threads.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Check every tree. When a mutation committed while the partitions were read and violations were found, they
+     * may come from rows of different versions, so the check is run again, up to {@code max-retries} times.
+     *
+     * @param limit int The largest number of violations to report.
+     * @return TreeIntegrityReport The outcome of the last check.
+     */
+    public TreeIntegrityReport verify(int limit) {
+        TreeIntegrityReport report = check(limit);
+        for (int attempt = 1; attempt <= nestedSetProperties.getMaxRetries()
+            && !report.isConsistent() && !report.isValid(); attempt++) {
+            log.debug("Integrity check {} read rows of different versions, checking again", attempt);
+            report = check(limit);
+        }
+
+        return report;
+    }
+
+    private TreeIntegrityReport check(int limit) {
+        long started = System.nanoTime();
+        long version = categoryService.getVersion();
+        int parallelism = Math.max(1, nestedSetProperties.getVerifyParallelism());
+        List<Partition> partitions = partitions(parallelism);
+        List<Callable<Rows>> reads = new ArrayList<>(partitions.size());
+        for (Partition partition : partitions) {
+            reads.add(() -> readOnlyTransaction.execute(status -> read(partition)));
+        }
+        Rows rows = Rows.concat(invokeAll(reads));
+        boolean consistent = categoryService.getVersion() == version;
+
+        Findings findings = new Check(rows, limit, !nestedSetProperties.isGapped()).run(parallelism);
+        TreeIntegrityReport report = new TreeIntegrityReport(version, consistent, rows.size, partitions.size(),
+            findings.count, findings.violations(), Duration.ofNanos(System.nanoTime() - started));
+        log.info("Checked {} categories in {} partitions, {} violations, in {} ms", report.getChecked(),
+            report.getPartitions(), report.getViolationCount(), report.getElapsed().toMillis());
+        return report;
+    }
+
+    /**
+     * Split the {@code (tree_id, left)} key space into ranges of about the same number of categories, estimated
+     * from the bounds of the roots. Rows without a tree ID are read by a last partition of their own.
+     */
+    private List<Partition> partitions(int parallelism) {
+        int stride = nestedSetProperties.isGapped() ? nestedSetProperties.getGapStep() : 1;
+        List<Object[]> roots = jdbcTemplate.query(SELECT_ROOTS, (rs, rowNum) ->
+            new Object[]{rs.getObject(1), rs.getInt(2), rs.getInt(3)});
+        long[] sizes = new long[roots.size()];
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = Math.max(1, span(roots.get(i)) / (2L * stride));
+            total += sizes[i];
+        }
+
+        List<Object[]> splits = new ArrayList<>();
+        long position = 0;
+        int next = 1;
+        for (int i = 0; i < sizes.length; i++) {
+            Object[] root = roots.get(i);
+            while (next < parallelism && total * next / parallelism < position + sizes[i]) {
+                long offset = total * next / parallelism - position;
+                Object[] split = {root[0], (int) ((int) root[1] + offset * span(root) / sizes[i])};
+                if (splits.isEmpty() || !Arrays.equals(splits.get(splits.size() - 1), split)) {
+                    splits.add(split);
+                }
+                next++;
+            }
+            position += sizes[i];
+        }
+
+        List<Partition> partitions = new ArrayList<>(splits.size() + 2);
+        for (int i = 0; i <= splits.size(); i++) {
+            partitions.add(new Partition(i > 0 ? splits.get(i - 1) : null, i < splits.size() ? splits.get(i) : null,
+                false));
+        }
+        partitions.add(new Partition(null, null, true));
+        return partitions;
+    }
+
+    private static long span(Object[] root) {
+        return Math.max(1, (long) (int) root[2] - (int) root[1] + 1);
+    }
+
+    private Rows read(Partition partition) {
+        List<Object> args = new ArrayList<>(4);
+        StringBuilder sql = new StringBuilder(SELECT_ROWS);
+        if (partition.withoutTree) {
+            sql.append("WHERE tree_id IS NULL ORDER BY \"left\"");
+        } else {
+            sql.append("WHERE tree_id IS NOT NULL");
+            if (partition.from != null) {
+                sql.append(" AND (tree_id, \"left\") >= (?, ?)");
+                args.addAll(Arrays.asList(partition.from));
+            }
+            if (partition.to != null) {
+                sql.append(" AND (tree_id, \"left\") < (?, ?)");
+                args.addAll(Arrays.asList(partition.to));
+            }
+            sql.append(" ORDER BY tree_id, \"left\"");
+        }
+
+        Rows rows = new Rows(FETCH_SIZE);
+        NestedSetProperties.IdStorage idStorage = nestedSetProperties.getIdStorage();
+        jdbcTemplate.query(sql.toString(), (RowCallbackHandler) rs -> rows.add(rs, idStorage), args.toArray());
+        return rows;
+    }
+
+    private <T> List<T> invokeAll(List<Callable<T>> tasks) {
+        try {
+            List<T> results = new ArrayList<>(tasks.size());
+            for (Future<T> future : executor.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Integrity check interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * A range of the {@code (tree_id, left)} key space, from inclusive to exclusive, each end a tree ID and a left
+     * bound, null when open.
+     */
+    private static final class Partition {
+        private final Object[] from;
+
+        private final Object[] to;
+
+        private final boolean withoutTree;
+
+        private Partition(Object[] from, Object[] to, boolean withoutTree) {
+            this.from = from;
+            this.to = to;
+            this.withoutTree = withoutTree;
+        }
+    }
+
+    /**
+     * The checks over all rows, in {@code (tree_id, left)} order. Each chunk is checked by one thread, which only
+     * writes its own slice of the arrays.
+     */
+    private final class Check {
+        private final Rows rows;
+
+        private final int limit;
+
+        private final boolean dense;
+
+        private final Map<String, Integer> indexById;
+
+        /**
+         * Ordinal of the tree of every row, trees numbered in their order.
+         */
+        private final int[] trees;
+
+        private final String[] treeIdsByOrdinal;
+
+        /**
+         * Tree ordinal and bound of every left and right bound, {@link #NONE} for the rows without a tree ID.
+         */
+        private final long[] bounds;
+
+        /**
+         * Parent and row index of every row in the tree of its parent, {@link #NONE} for the others.
+         */
+        private final long[] siblings;
+
+        private Check(Rows rows, int limit, boolean dense) {
+            this.rows = rows;
+            this.limit = limit;
+            this.dense = dense;
+            this.indexById = new HashMap<>(rows.size * 4 / 3 + 1);
+            this.trees = new int[rows.size];
+            List<String> treeIds = new ArrayList<>();
+            for (int i = 0; i < rows.size; i++) {
+                indexById.put(rows.ids[i], i);
+                if (i == 0 || !Objects.equals(rows.treeIds[i], rows.treeIds[i - 1])) {
+                    treeIds.add(rows.treeIds[i]);
+                }
+                trees[i] = treeIds.size() - 1;
+            }
+            this.treeIdsByOrdinal = treeIds.toArray(new String[0]);
+            this.bounds = new long[2 * rows.size];
+            this.siblings = new long[rows.size];
+        }
+
+        private Findings run(int parallelism) {
+            int chunks = parallelism * CHUNKS_PER_PARTITION;
+            List<Findings> nodes = inChunks(rows.size, chunks, this::checkNodes);
+            Arrays.parallelSort(bounds);
+            Arrays.parallelSort(siblings);
+            List<Findings> all = new ArrayList<>(nodes);
+            all.addAll(inChunks(bounds.length, chunks, this::checkBounds));
+            all.addAll(inChunks(siblings.length, chunks, this::checkSiblings));
+            return Findings.merge(all, limit);
+        }
+
+        private List<Findings> inChunks(int size, int chunks, ChunkCheck check) {
+            int chunkSize = Math.max(1, (size + chunks - 1) / chunks);
+            List<Callable<Findings>> tasks = new ArrayList<>(chunks);
+            for (int from = 0; from < size; from += chunkSize) {
+                int start = from;
+                int end = Math.min(size, from + chunkSize);
+                tasks.add(() -> {
+                    Findings findings = new Findings(limit);
+                    check.run(start, end, findings);
+                    return findings;
+                });
+            }
+            return invokeAll(tasks);
+        }
+
+        private void checkNodes(int from, int to, Findings findings) {
+            for (int i = from; i < to; i++) {
+                bounds[2 * i] = NONE;
+                bounds[2 * i + 1] = NONE;
+                siblings[i] = NONE;
+                checkNode(i, findings);
+            }
+        }
+
+        private void checkNode(int i, Findings findings) {
+            String treeId = rows.treeIds[i];
+            int left = rows.lefts[i];
+            int right = rows.rights[i];
+            if (treeId == null) {
+                add(findings, i, Type.MISSING_TREE_ID, () -> "no tree ID");
+                return;
+            }
+
+            bounds[2 * i] = key(trees[i], left);
+            bounds[2 * i + 1] = key(trees[i], right);
+            if (left >= right) {
+                add(findings, i, Type.INVERTED_BOUNDS, () -> "left " + left + " is not below right " + right);
+            }
+
+            String parentId = rows.parentIds[i];
+            if (parentId == null) {
+                if (!treeId.equals(rows.ids[i])) {
+                    add(findings, i, Type.TREE_MISMATCH, () -> "root in tree " + treeId);
+                }
+                if (rows.depths[i] != 0) {
+                    add(findings, i, Type.WRONG_DEPTH, () -> "root at depth " + rows.depths[i]);
+                }
+                return;
+            }
+
+            Integer parent = indexById.get(parentId);
+            if (parent == null) {
+                add(findings, i, Type.MISSING_PARENT, () -> "parent " + parentId + " does not exist");
+                return;
+            }
+
+            int p = parent;
+            if (trees[p] != trees[i]) {
+                add(findings, i, Type.TREE_MISMATCH, () -> "parent " + parentId + " in tree " + rows.treeIds[p]);
+                return;
+            }
+
+            siblings[i] = (long) p << 32 | i;
+            if (left <= rows.lefts[p] || right >= rows.rights[p]) {
+                add(findings, i, Type.NOT_ENCLOSED, () -> "[" + left + ", " + right + "] not inside parent "
+                    + parentId + " [" + rows.lefts[p] + ", " + rows.rights[p] + "]");
+            }
+            if (rows.depths[i] != rows.depths[p] + 1) {
+                add(findings, i, Type.WRONG_DEPTH, () -> "depth " + rows.depths[i] + " under parent at depth "
+                    + rows.depths[p]);
+            }
+        }
+
+        private void checkBounds(int from, int to, Findings findings) {
+            for (int k = Math.max(1, from); k < to && bounds[k] != NONE; k++) {
+                long previous = bounds[k - 1];
+                long current = bounds[k];
+                int tree = (int) (current >>> 32);
+                if ((int) (previous >>> 32) != tree) {
+                    continue;
+                }
+
+                int bound = bound(current);
+                int previousBound = bound(previous);
+                if (bound == previousBound) {
+                    findings.add(current, () -> new Violation(Type.DUPLICATE_BOUND, null, treeIdsByOrdinal[tree],
+                        bound, "bound " + bound + " used more than once"));
+                } else if (dense && bound - previousBound > 1) {
+                    findings.add(previous, () -> new Violation(Type.GAP, null, treeIdsByOrdinal[tree], previousBound,
+                        "no bound between " + previousBound + " and " + bound));
+                }
+            }
+        }
+
+        private void checkSiblings(int from, int to, Findings findings) {
+            for (int k = Math.max(1, from); k < to && siblings[k] != NONE; k++) {
+                if (siblings[k - 1] >>> 32 != siblings[k] >>> 32) {
+                    continue;
+                }
+
+                int previous = (int) siblings[k - 1];
+                int i = (int) siblings[k];
+                if (rows.rights[previous] >= rows.lefts[i]) {
+                    add(findings, i, Type.OVERLAP, () -> "[" + rows.lefts[i] + ", " + rows.rights[i]
+                        + "] overlaps previous sibling " + rows.ids[previous] + " [" + rows.lefts[previous] + ", "
+                        + rows.rights[previous] + "]");
+                }
+            }
+        }
+
+        private void add(Findings findings, int i, Type type, Supplier<String> detail) {
+            findings.add(key(trees[i], rows.lefts[i]), () ->
+                new Violation(type, rows.ids[i], rows.treeIds[i], rows.lefts[i], detail.get()));
+        }
+    }
+
+    /**
+     * @return long A key that orders by tree ordinal, then by bound.
+     */
+    private static long key(int tree, int bound) {
+        return (long) tree << 32 | ((long) bound - Integer.MIN_VALUE);
+    }
+
+    private static int bound(long key) {
+        return (int) ((key & 0xFFFFFFFFL) + Integer.MIN_VALUE);
+    }
+
+    @FunctionalInterface
+    private interface ChunkCheck {
+        void run(int from, int to, Findings findings);
+    }
+
+    /**
+     * The violations a chunk found: all of them counted, the first ones kept with their order key. Every chunk keeps
+     * its own first ones, so the first ones overall are among them.
+     */
+    private static final class Findings {
+        private final int limit;
+
+        private final List<Found> kept = new ArrayList<>();
+
+        private long count;
+
+        private Findings(int limit) {
+            this.limit = limit;
+        }
+
+        private void add(long key, Supplier<Violation> violation) {
+            count++;
+            if (kept.size() < limit) {
+                kept.add(new Found(key, violation.get()));
+            }
+        }
+
+        private List<Violation> violations() {
+            return kept.stream().map(found -> found.violation).toList();
+        }
+
+        private static Findings merge(List<Findings> all, int limit) {
+            Findings merged = new Findings(limit);
+            for (Findings findings : all) {
+                merged.count += findings.count;
+                merged.kept.addAll(findings.kept);
+            }
+            merged.kept.sort(Comparator.comparingLong(found -> found.key));
+            if (merged.kept.size() > limit) {
+                merged.kept.subList(limit, merged.kept.size()).clear();
+            }
+            return merged;
+        }
+    }
+
+    private static final class Found {
+        private final long key;
+
+        private final Violation violation;
+
+        private Found(long key, Violation violation) {
+            this.key = key;
+            this.violation = violation;
+        }
+    }
+
+    /**
+     * Rows as parallel arrays, in the order they were read.
+     */
+    private static final class Rows {
+        private String[] ids;
+
+        private String[] parentIds;
+
+        private String[] treeIds;
+
+        private int[] lefts;
+
+        private int[] rights;
+
+        private int[] depths;
+
+        private int size;
+
+        private Rows(int capacity) {
+            ids = new String[capacity];
+            parentIds = new String[capacity];
+            treeIds = new String[capacity];
+            lefts = new int[capacity];
+            rights = new int[capacity];
+            depths = new int[capacity];
+        }
+
+        private static Rows concat(List<Rows> parts) {
+            Rows rows = new Rows(parts.stream().mapToInt(part -> part.size).sum());
+            for (Rows part : parts) {
+                System.arraycopy(part.ids, 0, rows.ids, rows.size, part.size);
+                System.arraycopy(part.parentIds, 0, rows.parentIds, rows.size, part.size);
+                System.arraycopy(part.treeIds, 0, rows.treeIds, rows.size, part.size);
+                System.arraycopy(part.lefts, 0, rows.lefts, rows.size, part.size);
+                System.arraycopy(part.rights, 0, rows.rights, rows.size, part.size);
+                System.arraycopy(part.depths, 0, rows.depths, rows.size, part.size);
+                rows.size += part.size;
+            }
+            return rows;
+        }
+
+        private void add(ResultSet rs, NestedSetProperties.IdStorage idStorage) throws SQLException {
+            if (size == ids.length) {
+                int capacity = Math.max(16, size * 2);
+                ids = Arrays.copyOf(ids, capacity);
+                parentIds = Arrays.copyOf(parentIds, capacity);
+                treeIds = Arrays.copyOf(treeIds, capacity);
+                lefts = Arrays.copyOf(lefts, capacity);
+                rights = Arrays.copyOf(rights, capacity);
+                depths = Arrays.copyOf(depths, capacity);
+            }
+            ids[size] = idStorage.fromColumn(rs.getObject(1));
+            parentIds[size] = idStorage.fromColumn(rs.getObject(2));
+            String treeId = idStorage.fromColumn(rs.getObject(3));
+            // Share one string per tree, the rows of a tree come one after the other.
+            treeIds[size] = size > 0 && Objects.equals(treeId, treeIds[size - 1]) ? treeIds[size - 1] : treeId;
+            lefts[size] = rs.getInt(4);
+            rights[size] = rs.getInt(5);
+            depths[size] = rs.getInt(6);
+            size++;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.mewebstudio.nestedset.service;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Immutable state of a tree rebuild, replaced as the rebuild goes on so that a reader always sees a consistent one.
+ */
+public class RebuildProgress {
+    private final Phase phase;
+
+    private final String treeId;
+
+    private final long total;
+
+    private final long read;
+
+    private final long changed;
+
+    private final long written;
+
+    private final Instant startedAt;
+
+    private final Instant finishedAt;
+
+    private final Duration locked;
+
+    public RebuildProgress(Phase phase, String treeId, long total, long read, long changed, long written,
+                           Instant startedAt, Instant finishedAt, Duration locked) {
+        this.phase = phase;
+        this.treeId = treeId;
+        this.total = total;
+        this.read = read;
+        this.changed = changed;
+        this.written = written;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+        this.locked = locked;
+    }
+
+    /**
+     * @param treeId String? The tree being rebuilt, null for every tree.
+     * @param total  long The number of categories expected to be read.
+     * @return RebuildProgress The state of a rebuild that starts reading.
+     */
+    public static RebuildProgress started(String treeId, long total) {
+        return new RebuildProgress(Phase.READING, treeId, total, 0, 0, 0, Instant.now(), null, null);
+    }
+
+    public RebuildProgress reading(long read) {
+        return new RebuildProgress(Phase.READING, treeId, total, read, changed, written, startedAt, null, null);
+    }
+
+    public RebuildProgress numbering() {
+        return new RebuildProgress(Phase.NUMBERING, treeId, total, read, changed, written, startedAt, null, null);
+    }
+
+    public RebuildProgress writing(long changed, long written) {
+        return new RebuildProgress(Phase.WRITING, treeId, total, read, changed, written, startedAt, null, null);
+    }
+
+    public RebuildProgress swapping() {
+        return new RebuildProgress(Phase.SWAPPING, treeId, total, read, changed, written, startedAt, null, null);
+    }
+
+    /**
+     * @param phase  Phase DONE or FAILED.
+     * @param locked Duration? How long the tree version was held locked, null when unknown.
+     * @return RebuildProgress The state of the finished rebuild.
+     */
+    public RebuildProgress finished(Phase phase, Duration locked) {
+        return new RebuildProgress(phase, treeId, total, read, changed, written, startedAt, Instant.now(), locked);
+    }
+
+    /**
+     * @param changed long The number of categories changed in the end.
+     * @param locked  Duration How long the tree version was held locked.
+     * @return RebuildProgress The state of the finished rebuild.
+     */
+    public RebuildProgress done(long changed, Duration locked) {
+        return new RebuildProgress(Phase.DONE, treeId, total, read, changed, written, startedAt, Instant.now(),
+            locked);
+    }
+
+    public Phase getPhase() {
+        return phase;
+    }
+
+    /**
+     * @return String? The tree being rebuilt, null for every tree.
+     */
+    public String getTreeId() {
+        return treeId;
+    }
+
+    /**
+     * @return long The number of categories counted before the rows were read.
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    public long getRead() {
+        return read;
+    }
+
+    /**
+     * @return long The number of categories whose bounds, depth or tree ID changed.
+     */
+    public long getChanged() {
+        return changed;
+    }
+
+    public long getWritten() {
+        return written;
+    }
+
+    public Instant getStartedAt() {
+        return startedAt;
+    }
+
+    /**
+     * @return Instant? When the rebuild finished or failed, null while it runs.
+     */
+    public Instant getFinishedAt() {
+        return finishedAt;
+    }
+
+    /**
+     * How long the rebuild kept other mutations waiting: its whole run for a locked rebuild, the swap for an online
+     * one.
+     *
+     * @return Duration? The lock time, null while the rebuild runs or when it failed.
+     */
+    public Duration getLocked() {
+        return locked;
+    }
+
+    /**
+     * @return Duration The time spent so far, or in total once finished.
+     */
+    public Duration getElapsed() {
+        return Duration.between(startedAt, finishedAt != null ? finishedAt : Instant.now());
+    }
+
+    public enum Phase {
+        READING,
+        NUMBERING,
+        WRITING,
+        SWAPPING,
+        DONE,
+        FAILED
+    }
+}
@@ -0,0 +1,176 @@
+package com.mewebstudio.nestedset.service;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of a nested-set integrity check, see {@link CategoryTreeVerifier}.
+ */
+public class TreeIntegrityReport {
+    private final long version;
+
+    private final boolean consistent;
+
+    private final long checked;
+
+    private final int partitions;
+
+    private final long violationCount;
+
+    private final List<Violation> violations;
+
+    private final Duration elapsed;
+
+    public TreeIntegrityReport(long version, boolean consistent, long checked, int partitions, long violationCount,
+                               List<Violation> violations, Duration elapsed) {
+        this.version = version;
+        this.consistent = consistent;
+        this.checked = checked;
+        this.partitions = partitions;
+        this.violationCount = violationCount;
+        this.violations = List.copyOf(violations);
+        this.elapsed = elapsed;
+    }
+
+    /**
+     * @return long The tree version when the rows were read.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * The partitions are read in separate transactions. When a mutation committed in between, rows of different
+     * partitions may come from different versions, and the violations found across them may be false.
+     *
+     * @return boolean Whether the tree version stayed the same while the rows were read.
+     */
+    public boolean isConsistent() {
+        return consistent;
+    }
+
+    /**
+     * @return long The number of categories checked.
+     */
+    public long getChecked() {
+        return checked;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * @return long The number of violations found, which may exceed the ones reported.
+     */
+    public long getViolationCount() {
+        return violationCount;
+    }
+
+    /**
+     * @return List<Violation> The first violations, in tree and bound order.
+     */
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    public Duration getElapsed() {
+        return elapsed;
+    }
+
+    /**
+     * @return boolean Whether no violation was found.
+     */
+    public boolean isValid() {
+        return violationCount == 0;
+    }
+
+    public static class Violation {
+        private final Type type;
+
+        private final String categoryId;
+
+        private final String treeId;
+
+        private final int bound;
+
+        private final String detail;
+
+        public Violation(Type type, String categoryId, String treeId, int bound, String detail) {
+            this.type = type;
+            this.categoryId = categoryId;
+            this.treeId = treeId;
+            this.bound = bound;
+            this.detail = detail;
+        }
+
+        public Type getType() {
+            return type;
+        }
+
+        /**
+         * @return String? The category that breaks the invariant, null for a duplicate bound or a gap.
+         */
+        public String getCategoryId() {
+            return categoryId;
+        }
+
+        /**
+         * @return String? The tree of the category or bound, null for a category without a tree ID.
+         */
+        public String getTreeId() {
+            return treeId;
+        }
+
+        /**
+         * @return int The left bound of the category, or the bound that is duplicated or followed by a gap.
+         */
+        public int getBound() {
+            return bound;
+        }
+
+        public String getDetail() {
+            return detail;
+        }
+    }
+
+    public enum Type {
+        /**
+         * The category has no tree ID.
+         */
+        MISSING_TREE_ID,
+        /**
+         * The left bound is not below the right bound.
+         */
+        INVERTED_BOUNDS,
+        /**
+         * Two bounds of the same tree are equal.
+         */
+        DUPLICATE_BOUND,
+        /**
+         * A bound is missing between two consecutive bounds of a tree, only checked with the dense numbering.
+         */
+        GAP,
+        /**
+         * The parent does not exist.
+         */
+        MISSING_PARENT,
+        /**
+         * The parent belongs to another tree, or a root is not the root of its own tree.
+         */
+        TREE_MISMATCH,
+        /**
+         * The bounds are not strictly inside the bounds of the parent.
+         */
+        NOT_ENCLOSED,
+        /**
+         * The bounds overlap or enclose those of the previous sibling, so the parent is not the tightest enclosing
+         * category.
+         */
+        OVERLAP,
+        /**
+         * The depth is not the depth of the parent plus one, or not 0 for a root.
+         */
+        WRONG_DEPTH
+    }
+}
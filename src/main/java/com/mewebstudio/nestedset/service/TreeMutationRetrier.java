@@ -0,0 +1,132 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import com.mewebstudio.nestedset.exception.ConcurrentTreeModificationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a mutation in transactions of its own until it does not lose a race against another writer: a tree version
+ * that moved, a lock wait or deadlock given up by the database, a unique key taken meanwhile, or a parent deleted
+ * meanwhile. Any other integrity violation is a bug or a bad request and is thrown on the first attempt. Must be
+ * called outside a transaction, otherwise the retried transaction is the outer one and nothing is rolled back in
+ * between.
+ */
+@Component
+public class TreeMutationRetrier {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    private final NestedSetProperties nestedSetProperties;
+
+    private final MeterRegistry meterRegistry;
+
+    public TreeMutationRetrier(NestedSetProperties nestedSetProperties, MeterRegistry meterRegistry) {
+        this.nestedSetProperties = nestedSetProperties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param operation CategoryTreeChangedEvent.Operation The mutation, used to tag the metrics.
+     * @param mutation  Supplier<T> The transactional mutation.
+     * @return T The result of the attempt that succeeded.
+     * @throws ConcurrencyFailureException     if the last attempt still lost a race, or referenced a deleted category.
+     * @throws DataIntegrityViolationException if the last attempt still hit a unique key, or any attempt broke
+     *                                         another constraint.
+     */
+    public <T> T execute(CategoryTreeChangedEvent.Operation operation, Supplier<T> mutation) {
+        return execute(operation.name().toLowerCase(), mutation);
+    }
+
+    /**
+     * @param tag      String The name of the mutation, used to tag the metrics.
+     * @param mutation Supplier<T> The transactional mutation.
+     * @return T The result of the attempt that succeeded.
+     * @throws ConcurrencyFailureException     if the last attempt still lost a race, or referenced a deleted category.
+     * @throws DataIntegrityViolationException if the last attempt still hit a unique key, or any attempt broke
+     *                                         another constraint.
+     */
+    public <T> T execute(String tag, Supplier<T> mutation) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return mutation.get();
+            } catch (ConcurrencyFailureException | DataIntegrityViolationException e) {
+                ConstraintViolationException violation = violation(e);
+                boolean parentDeleted = violation != null && isParentForeignKey(violation.getConstraintName());
+                boolean unique = violation != null
+                    && violation.getKind() == ConstraintViolationException.ConstraintKind.UNIQUE;
+                if (e instanceof DataIntegrityViolationException && !parentDeleted && !unique) {
+                    throw e;
+                }
+                if (attempt > nestedSetProperties.getMaxRetries()) {
+                    meterRegistry.counter("category.mutation.conflicts", "operation", tag).increment();
+                    throw parentDeleted
+                        ? new ConcurrentTreeModificationException("A category was deleted by a concurrent mutation", e)
+                        : e;
+                }
+
+                meterRegistry.counter("category.mutation.retries", "operation", tag).increment();
+                log.debug("Retrying {} after attempt {} lost a race: {}", tag, attempt, e.getMessage());
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    /**
+     * @param operation CategoryTreeChangedEvent.Operation The mutation, used to tag the metrics.
+     * @param mutation  Runnable The transactional mutation.
+     */
+    public void execute(CategoryTreeChangedEvent.Operation operation, Runnable mutation) {
+        execute(operation, () -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    /**
+     * A violation of {@link Category#PARENT_FOREIGN_KEY} means a parent the mutation read was deleted by a concurrent
+     * mutation before it flushed, a race lost like a moved tree version and reported as one once the retries are used
+     * up. A unique key still taken is reported as it is.
+     *
+     * @param e RuntimeException The failure of an attempt.
+     * @return ConstraintViolationException? The constraint the attempt broke, null when it broke none.
+     */
+    private static ConstraintViolationException violation(RuntimeException e) {
+        for (Throwable cause = e.getCause(); cause != null && cause != cause.getCause(); cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation) {
+                return violation;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param constraintName String? The name of a violated constraint as the dialect extracted it.
+     * @return boolean Whether it is {@link Category#PARENT_FOREIGN_KEY}, in any case as the database folds it.
+     */
+    private static boolean isParentForeignKey(String constraintName) {
+        return Category.PARENT_FOREIGN_KEY.equalsIgnoreCase(constraintName);
+    }
+
+    /**
+     * Wait a random time that doubles with every attempt, so the writers that collided do not collide again.
+     */
+    private static void backOff(int attempt, RuntimeException cause) {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(1, 2L << Math.min(attempt, 8)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw cause;
+        }
+    }
+}
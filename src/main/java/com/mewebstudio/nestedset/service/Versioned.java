@@ -0,0 +1,25 @@
+package com.mewebstudio.nestedset.service;
+
+/**
+ * A read result together with the tree version it reflects.
+ *
+ * @param <T> The type of the result.
+ */
+public class Versioned<T> {
+    private final long version;
+
+    private final T value;
+
+    public Versioned(long version, T value) {
+        this.version = version;
+        this.value = value;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public T getValue() {
+        return value;
+    }
+}
@@ -0,0 +1,112 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import com.mewebstudio.nestedset.service.CategoryIntervalIndex;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the build of a {@link CategoryIntervalIndex} and its lookups on a balanced tree: an ID, the ancestors of
+ * a category, a containment check and the common ancestor of two categories, each on random categories. Run with
+ * {@code mvn test -Pbenchmark -Dtest=CategoryIntervalIndexBenchmarkTests}; {@code -Dbenchmark.sizes=10000} narrows
+ * the tree sizes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class CategoryIntervalIndexBenchmarkTests {
+    private static final int FANOUT = 10;
+
+    private static final int PICKS = 1024;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private List<CategoryRow> rows;
+
+    private CategoryIntervalIndex index;
+
+    private String[] ids;
+
+    private int[] slots;
+
+    private int pick;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows = SyntheticTrees.tree(size, FANOUT).stream().map(CategoryIntervalIndexBenchmarkTests::row).toList();
+        index = CategoryIntervalIndex.of(rows);
+        Random random = new Random(size);
+        ids = new String[PICKS];
+        slots = new int[PICKS];
+        for (int i = 0; i < PICKS; i++) {
+            slots[i] = random.nextInt(size);
+            ids[i] = index.id(slots[i]);
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public CategoryIntervalIndex build() {
+        return CategoryIntervalIndex.of(rows);
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return index.indexOf(ids[pick++ & (PICKS - 1)]);
+    }
+
+    @Benchmark
+    public int[] ancestors() {
+        return index.ancestors(slots[pick++ & (PICKS - 1)]);
+    }
+
+    @Benchmark
+    public boolean isDescendant() {
+        return index.isDescendant(slots[pick++ & (PICKS - 1)], slots[pick++ & (PICKS - 1)]);
+    }
+
+    @Benchmark
+    public int lowestCommonAncestor() {
+        return index.lowestCommonAncestor(slots[pick++ & (PICKS - 1)], slots[pick++ & (PICKS - 1)]);
+    }
+
+    private static CategoryRow row(Category category) {
+        return new CategoryRow(category.getId(), category.getName(), category.getLeft(), category.getRight(),
+            category.getTreeId(), category.getParent() != null ? category.getParent().getId() : null, null, null);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(getClass().getName())
+            .param("size", System.getProperty("benchmark.sizes", "10000,100000,1000000").split(","))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
@@ -0,0 +1,25 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.service.ConcurrentMutationTests;
+import org.junit.jupiter.api.Tag;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * The long run of {@link ConcurrentMutationTests}, with more threads and more mutations per thread. Run with
+ * {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles(value = "benchmark", inheritProfiles = false)
+class ConcurrentMutationStressTests extends ConcurrentMutationTests {
+    @Override
+    protected int threads() {
+        return 8;
+    }
+
+    @Override
+    protected int operationsPerThread() {
+        return 150;
+    }
+}
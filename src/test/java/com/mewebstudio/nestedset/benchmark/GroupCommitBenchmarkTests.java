@@ -0,0 +1,87 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.service.CategoryMutationQueue;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the throughput of bursts of concurrent single-node creates, each in its own transaction and coalesced by
+ * the group commit. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+class GroupCommitBenchmarkTests {
+    private static final int BURSTS = 5;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryMutationQueue categoryMutationQueue;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setGroupCommitEnabled(false);
+        categoryMutationQueue.stop();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 10, 100, 500})
+    void createThroughputByBurstSize(int burstSize) throws Exception {
+        String rootId = categoryService.create(new CreateCategoryRequest("root-" + burstSize, null)).getId();
+        double single = run(rootId, burstSize, false);
+        double grouped = run(rootId, burstSize, true);
+
+        System.out.printf("burst=%d singleOpsPerSec=%.0f groupedOpsPerSec=%.0f%n", burstSize, single, grouped);
+        assertEquals(2 * BURSTS * burstSize + 1, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories WHERE tree_id = ?", Integer.class, rootId));
+        assertEquals(2 * (2 * BURSTS * burstSize + 1), jdbcTemplate.queryForObject(
+            "SELECT \"right\" - \"left\" + 1 FROM categories WHERE id = ?", Integer.class, rootId));
+    }
+
+    private double run(String rootId, int burstSize, boolean grouped) throws Exception {
+        nestedSetProperties.setGroupCommitEnabled(grouped);
+        categoryMutationQueue.stop();
+        categoryMutationQueue.start();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(burstSize, 64));
+        long started = System.nanoTime();
+        for (int burst = 0; burst < BURSTS; burst++) {
+            List<CompletableFuture<?>> futures = new ArrayList<>();
+            for (int i = 0; i < burstSize; i++) {
+                String name = (grouped ? "grouped-" : "single-") + burstSize + "-" + burst + "-" + i;
+                futures.add(CompletableFuture.supplyAsync(
+                    () -> categoryMutationQueue.create(new CreateCategoryRequest(name, rootId)), executor
+                ).thenCompose(future -> future));
+            }
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get();
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+        executor.shutdown();
+        return BURSTS * burstSize / seconds;
+    }
+}
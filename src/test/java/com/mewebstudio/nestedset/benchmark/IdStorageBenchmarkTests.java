@@ -0,0 +1,126 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares the ULIDs stored as text with the ULIDs stored as binary: the space used by the categories table and its
+ * indexes, and the latency of the reads that look a category up by ID or join on IDs. Each storage gets its own
+ * database, in files under {@code target/benchmark-db} so that their size can be read, since the column types
+ * differ. Run with {@code mvn test -Pbenchmark -Dtest=IdStorageBenchmarkTests}; {@code -Dbenchmark.sizes=10000}
+ * changes the tree size.
+ */
+@Tag("benchmark")
+class IdStorageBenchmarkTests {
+    private static final String DATABASE = ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;"
+        + "LOCK_TIMEOUT=30000";
+
+    private static final int LOOKUPS = 5_000;
+
+    @Nested
+    @TestPropertySource(properties = {
+        "app.nested-set.id-storage=text",
+        "spring.datasource.url=jdbc:h2:file:./target/benchmark-db/id-storage-text" + DATABASE
+    })
+    class Text extends Storage {
+    }
+
+    @Nested
+    @TestPropertySource(properties = {
+        "app.nested-set.id-storage=binary",
+        "spring.datasource.url=jdbc:h2:file:./target/benchmark-db/id-storage-binary" + DATABASE
+    })
+    class Binary extends Storage {
+    }
+
+    @SpringBootTest
+    @ActiveProfiles("benchmark")
+    abstract static class Storage {
+        @Autowired
+        private CategoryService categoryService;
+
+        @Autowired
+        private NestedSetProperties nestedSetProperties;
+
+        @Autowired
+        private JdbcTemplate jdbcTemplate;
+
+        @AfterEach
+        void tearDown() {
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            jdbcTemplate.execute("TRUNCATE TABLE categories");
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+
+        @Test
+        void readsBySize() {
+            measure(categoryService, nestedSetProperties.getIdStorage(), jdbcTemplate);
+        }
+    }
+
+    private static void measure(CategoryService categoryService, NestedSetProperties.IdStorage idStorage,
+                                JdbcTemplate jdbcTemplate) {
+        for (String size : System.getProperty("benchmark.sizes", "100000").split(",")) {
+            int nodes = Integer.parseInt(size.trim());
+            new TreeSeeder(jdbcTemplate, idStorage).seedWithDepth("storage", null, null, 1, nodes, 10, 0);
+            jdbcTemplate.execute("CHECKPOINT");
+            Long bytes = jdbcTemplate.queryForObject("CALL DISK_SPACE_USED('categories')", Long.class);
+
+            // Leaves, and categories at depth 3 whose subtrees hold about a hundred rows in a 100k tree.
+            List<String> leaves = ids(jdbcTemplate, idStorage, nodes, "\"right\" = \"left\" + 1");
+            List<String> inner = ids(jdbcTemplate, idStorage, nodes, "depth = 3");
+            String findById = time(leaves, categoryService::findById);
+            String withParent = time(leaves, categoryService::getWithParent);
+            String subtree = time(inner, categoryService::getSubtree);
+
+            assertEquals(nodes, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories", Integer.class));
+            System.out.printf("storage=%s nodes=%d bytesPerRow=%d findById(%s) withParent(%s) subtree(%s)%n",
+                idStorage, nodes, bytes / nodes, findById, withParent, subtree);
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            jdbcTemplate.execute("TRUNCATE TABLE categories");
+            jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+        }
+    }
+
+    private static List<String> ids(JdbcTemplate jdbcTemplate, NestedSetProperties.IdStorage idStorage, int nodes,
+                                    String condition) {
+        List<String> ids = jdbcTemplate.query("SELECT id FROM categories WHERE " + condition,
+            (rs, rowNum) -> idStorage.fromColumn(rs.getObject(1)));
+        Random random = new Random(nodes);
+        return random.ints(LOOKUPS, 0, ids.size()).mapToObj(ids::get).toList();
+    }
+
+    /**
+     * Read every ID once to warm up, then once more timed.
+     *
+     * @return The median and 99th percentile in microseconds.
+     */
+    private static String time(List<String> ids, Consumer<String> read) {
+        ids.forEach(read);
+        long[] nanos = new long[ids.size()];
+        for (int i = 0; i < nanos.length; i++) {
+            long started = System.nanoTime();
+            read.accept(ids.get(i));
+            nanos[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(nanos);
+        return String.format("p50Us=%.0f p99Us=%.0f", nanos[nanos.length / 2] / 1e3,
+            nanos[(int) Math.ceil(nanos.length * 0.99) - 1] / 1e3);
+    }
+}
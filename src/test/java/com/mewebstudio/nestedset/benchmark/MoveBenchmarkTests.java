@@ -0,0 +1,90 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.service.CategoryService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures the latency and the statements of moving a subtree under a new parent, by subtree size.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+class MoveBenchmarkTests {
+    private static final int ROUNDS = 10;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1_000, 10_000, 50_000})
+    void moveLatencyBySubtreeSize(int subtreeSize) {
+        TreeSeeder seeder = new TreeSeeder(jdbcTemplate);
+        String rootId = seeder.seed("root", null, null, 1, 1, 10);
+        String movedId = seeder.seed("moved", rootId, rootId, 2, subtreeSize, 10);
+        String targetId = seeder.seed("target", rootId, rootId, 2 * subtreeSize + 2, 1_000, 10);
+        jdbcTemplate.update("UPDATE categories SET \"right\" = ? WHERE id = ?", 2 * subtreeSize + 2_002, rootId);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        long[] sameTree = new long[ROUNDS];
+        long[] crossTree = new long[ROUNDS];
+        long statements = 0;
+        for (int i = 0; i < ROUNDS; i++) {
+            statistics.clear();
+            long started = System.nanoTime();
+            categoryService.update(movedId, new UpdateCategoryRequest("moved-0", i % 2 == 0 ? targetId : rootId));
+            sameTree[i] = System.nanoTime() - started;
+            statements = Math.max(statements, statistics.getPrepareStatementCount());
+
+            started = System.nanoTime();
+            categoryService.update(movedId, new UpdateCategoryRequest("moved-0", null));
+            categoryService.update(movedId, new UpdateCategoryRequest("moved-0", rootId));
+            crossTree[i] = (System.nanoTime() - started) / 2;
+        }
+
+        System.out.printf(
+            "subtree=%d sameTreeMs(p50=%.1f max=%.1f) crossTreeMs(p50=%.1f max=%.1f) maxStatementsPerMove=%d%n",
+            subtreeSize, median(sameTree), max(sameTree), median(crossTree), max(crossTree), statements
+        );
+        assertEquals(subtreeSize, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories c JOIN categories m ON m.id = ? "
+                + "WHERE c.tree_id = m.tree_id AND c.\"left\" >= m.\"left\" AND c.\"right\" <= m.\"right\"",
+            Integer.class, movedId));
+    }
+
+    private static double median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2] / 1e6;
+    }
+
+    private static double max(long[] nanos) {
+        return Arrays.stream(nanos).max().orElse(0) / 1e6;
+    }
+}
@@ -0,0 +1,216 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures every mutation of {@link CategoryService} end to end by tree size: latency percentiles, statements
+ * executed and rows written per call. Every round creates a leaf under a category in the middle of a balanced tree,
+ * moves it under another parent, moves it up and down among its new siblings and deletes it, so the tree keeps its
+ * size; a rebuild of the intact tree closes each size. The results are written as JSON to
+ * {@code target/benchmark-reports/mutation-scaling.json} (or {@code -Dbenchmark.report}) to be diffed between
+ * releases. Run with {@code mvn test -Pbenchmark -Dtest=MutationScalingBenchmarkTests -DargLine=-Xmx3g}, the
+ * in-memory database keeps the undo log of a shift over half of a 1M tree on the heap;
+ * {@code -Dbenchmark.sizes=10000} narrows the tree sizes.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+@Import(MutationScalingBenchmarkTests.Counting.class)
+class MutationScalingBenchmarkTests {
+    private static final String[] OPERATIONS = {"create", "update", "moveUp", "moveDown", "delete", "rebuildTree"};
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private SqlStatementCounter sqlStatementCounter;
+
+    @BeforeEach
+    void setUp() {
+        // Every mutation would otherwise reload the whole forest into the read snapshot on the only other thread.
+        nestedSetProperties.setSnapshotEnabled(false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nestedSetProperties.setSnapshotEnabled(true);
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE categories");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+    }
+
+    @Test
+    void mutationsBySize() throws IOException {
+        ObjectMapper objectMapper = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+        ObjectNode report = objectMapper.createObjectNode();
+        report.put("generatedAt", Instant.now().toString());
+        report.put("database", "H2 in PostgreSQL mode");
+        report.put("numbering", nestedSetProperties.getNumbering().name());
+        report.put("concurrency", nestedSetProperties.getConcurrency().name());
+        report.put("deleteMode", nestedSetProperties.getDeleteMode().name());
+        report.put("shape", "balanced, 10 children per category");
+        ArrayNode results = report.putArray("results");
+
+        for (String size : System.getProperty("benchmark.sizes", "10000,100000,1000000").split(",")) {
+            int nodes = Integer.parseInt(size.trim());
+            int rounds = nodes >= 1_000_000 ? 3 : nodes >= 100_000 ? 10 : 30;
+            Map<String, Samples> samples = measure(nodes, rounds);
+            for (String operation : OPERATIONS) {
+                Samples sample = samples.get(operation);
+                System.out.printf("nodes=%d operation=%s %s%n", nodes, operation, sample);
+                results.add(sample.toJson(objectMapper, operation, nodes));
+            }
+            tearDown();
+            setUp();
+        }
+
+        Path path = Path.of(System.getProperty("benchmark.report", "target/benchmark-reports/mutation-scaling.json"));
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        objectMapper.writeValue(path.toFile(), report);
+        System.out.println("report=" + path.toAbsolutePath());
+    }
+
+    private Map<String, Samples> measure(int nodes, int rounds) {
+        TreeSeeder seeder = new TreeSeeder(jdbcTemplate);
+        String rootId = seeder.seedWithDepth("scaling", null, null, 1, nodes, 10, 0);
+        // Two categories at depth 2, one in the middle of the tree and the first one.
+        String middleId = jdbcTemplate.queryForObject("SELECT id FROM categories WHERE depth = 2 "
+            + "ORDER BY ABS(\"left\" - ?) LIMIT 1", String.class, nodes);
+        String firstId = jdbcTemplate.queryForObject("SELECT id FROM categories WHERE depth = 2 "
+            + "ORDER BY \"left\" LIMIT 1", String.class);
+
+        Map<String, Samples> samples = new LinkedHashMap<>();
+        for (String operation : OPERATIONS) {
+            samples.put(operation, new Samples(rounds));
+        }
+        for (int round = 0; round < rounds; round++) {
+            String name = "scaling-created-" + round;
+            String id = samples.get("create").time(() ->
+                categoryService.create(new CreateCategoryRequest(name, middleId)).getId());
+            samples.get("update").time(() -> categoryService.update(id, new UpdateCategoryRequest(name, firstId)));
+            samples.get("moveUp").time(() -> categoryService.moveUp(categoryService.findById(id)));
+            samples.get("moveDown").time(() -> categoryService.moveDown(categoryService.findById(id)));
+            samples.get("delete").time(() -> {
+                categoryService.delete(id);
+                return null;
+            });
+        }
+        Samples rebuild = samples.get("rebuildTree");
+        for (int round = 0; round < Math.max(1, rounds / 10); round++) {
+            rebuild.time(() -> categoryService.rebuildTree(null));
+        }
+
+        assertEquals(nodes, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories", Integer.class));
+        assertEquals(2 * nodes, jdbcTemplate.queryForObject(
+            "SELECT \"right\" FROM categories WHERE id = ?", Integer.class, rootId));
+        return samples;
+    }
+
+    /**
+     * Latency, statements and rows of every call of one operation.
+     */
+    private final class Samples {
+        private final List<Long> nanos;
+
+        private final List<Long> statements;
+
+        private final List<Long> rows;
+
+        private Samples(int rounds) {
+            nanos = new ArrayList<>(rounds);
+            statements = new ArrayList<>(rounds);
+            rows = new ArrayList<>(rounds);
+        }
+
+        private <T> T time(Supplier<T> call) {
+            long started = System.nanoTime();
+            SqlStatementCounter.Counted<T> counted = sqlStatementCounter.count(call);
+            nanos.add(System.nanoTime() - started);
+            statements.add(counted.counts().statements());
+            rows.add(counted.counts().rows());
+            return counted.result();
+        }
+
+        private ObjectNode toJson(ObjectMapper objectMapper, String operation, int nodes) {
+            ObjectNode result = objectMapper.createObjectNode();
+            result.put("operation", operation);
+            result.put("nodes", nodes);
+            result.put("calls", nanos.size());
+            ObjectNode latency = result.putObject("latencyMs");
+            for (int percentile : new int[]{50, 90, 99}) {
+                latency.put("p" + percentile, percentile(nanos, percentile) / 1e6);
+            }
+            latency.put("max", percentile(nanos, 100) / 1e6);
+            result.put("statementsPerCall", mean(statements));
+            result.put("maxStatements", percentile(statements, 100));
+            result.put("rowsPerCall", mean(rows));
+            result.put("maxRows", percentile(rows, 100));
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("calls=%d p50Ms=%.1f p90Ms=%.1f p99Ms=%.1f statements=%.1f rows=%.1f",
+                nanos.size(), percentile(nanos, 50) / 1e6, percentile(nanos, 90) / 1e6, percentile(nanos, 99) / 1e6,
+                mean(statements), mean(rows));
+        }
+    }
+
+    /**
+     * @return The nearest-rank percentile.
+     */
+    private static long percentile(List<Long> values, int percentile) {
+        long[] sorted = values.stream().mapToLong(Long::longValue).sorted().toArray();
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.length);
+        return sorted[Math.max(0, rank - 1)];
+    }
+
+    private static double mean(List<Long> values) {
+        return Arrays.stream(values.stream().mapToLong(Long::longValue).toArray()).average().orElse(0);
+    }
+
+    @TestConfiguration
+    static class Counting {
+        @Bean
+        static SqlStatementCounter sqlStatementCounter() {
+            return new SqlStatementCounter();
+        }
+    }
+}
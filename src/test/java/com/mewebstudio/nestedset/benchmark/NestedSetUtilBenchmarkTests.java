@@ -0,0 +1,70 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.springboot.jpa.nestedset.NestedSetUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link NestedSetUtil#tree} on wide, deep and balanced trees, in whole trees per second, with the GC
+ * profiler reporting the allocation rate. The library looks every parent up with a linear scan of the list and
+ * recurses once per level, so it is quadratic on deep and balanced trees and needs a large stack on deep ones: the
+ * sizes stop at 10k by default. Run with {@code mvn test -Pbenchmark -Dtest=NestedSetUtilBenchmarkTests};
+ * {@code -Dbenchmark.sizes=1000,100000} and {@code -Dbenchmark.shapes=WIDE} choose the trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g", "-Xss512m"})
+public class NestedSetUtilBenchmarkTests {
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public String shape;
+
+    @Param({"1000", "10000"})
+    public int size;
+
+    private List<Category> categories;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categories = SyntheticTrees.build(SyntheticTrees.Shape.valueOf(shape), size);
+    }
+
+    @Benchmark
+    public List<CategoryResponse> tree() {
+        return NestedSetUtil.tree(categories, category -> CategoryResponse.convert(category, false));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(getClass().getName())
+            .param("shape", System.getProperty("benchmark.shapes", "WIDE,DEEP,BALANCED").split(","))
+            .param("size", System.getProperty("benchmark.sizes", "1000,10000").split(","))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
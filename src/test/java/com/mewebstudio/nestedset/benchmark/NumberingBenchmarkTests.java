@@ -0,0 +1,100 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Compares how many existing rows a single insert rewrites under the dense and the gapped numbering.
+ * Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+class NumberingBenchmarkTests {
+    private static final int SEED_NODES = 1_000;
+
+    private static final int MEASURED_INSERTS = 200;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setNumbering(NestedSetProperties.Numbering.DENSE);
+    }
+
+    @ParameterizedTest
+    @EnumSource(NestedSetProperties.Numbering.class)
+    void rowsTouchedPerInsert(NestedSetProperties.Numbering numbering) {
+        nestedSetProperties.setNumbering(numbering);
+        Random random = new Random(42);
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < SEED_NODES; i++) {
+            ids.add(insert("seed-" + i, ids, random).getId());
+        }
+
+        int[] touched = new int[MEASURED_INSERTS];
+        long started = System.nanoTime();
+        for (int i = 0; i < MEASURED_INSERTS; i++) {
+            Map<String, Long> before = snapshot();
+            ids.add(insert("measured-" + i, ids, random).getId());
+            Map<String, Long> after = snapshot();
+            touched[i] = (int) before.entrySet().stream()
+                .filter(entry -> !entry.getValue().equals(after.get(entry.getKey())))
+                .count();
+        }
+        long elapsed = System.nanoTime() - started;
+
+        Arrays.sort(touched);
+        System.out.printf(
+            "numbering=%s nodes=%d inserts=%d rowsTouched(avg=%.1f p50=%d p99=%d max=%d) avgInsertMs=%.2f%n",
+            numbering, ids.size(), MEASURED_INSERTS,
+            Arrays.stream(touched).average().orElse(0),
+            touched[MEASURED_INSERTS / 2], touched[MEASURED_INSERTS * 99 / 100], touched[MEASURED_INSERTS - 1],
+            elapsed / 1e6 / MEASURED_INSERTS
+        );
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories c JOIN categories p ON p.id = c.parent_id "
+                + "WHERE c.\"left\" <= p.\"left\" OR c.\"right\" >= p.\"right\" OR c.\"left\" >= c.\"right\"",
+            Integer.class));
+    }
+
+    private Category insert(String name, List<String> ids, Random random) {
+        String parentId = ids.isEmpty() || random.nextInt(20) == 0 ? null : ids.get(random.nextInt(ids.size()));
+        return categoryService.create(new CreateCategoryRequest(name, parentId));
+    }
+
+    private Map<String, Long> snapshot() {
+        Map<String, Long> bounds = new HashMap<>();
+        jdbcTemplate.query("SELECT id, \"left\", \"right\" FROM categories", row -> {
+            bounds.put(row.getString(1), ((long) row.getInt(2) << 32) | row.getInt(3));
+        });
+        return bounds;
+    }
+}
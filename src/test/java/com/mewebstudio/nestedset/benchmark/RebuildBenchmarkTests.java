@@ -0,0 +1,134 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent.Operation;
+import com.mewebstudio.nestedset.service.CategoryService;
+import com.mewebstudio.nestedset.service.CategoryTreeRebuildService;
+import com.mewebstudio.nestedset.service.RebuildProgress;
+import com.mewebstudio.nestedset.service.TreeMutationRetrier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Measures a full rebuild by tree size: a first rebuild that backfills the depth of every seeded row, and a second
+ * one over a tree that is already right and must not write anything. Then compares how long a locked and an online
+ * rebuild keep concurrent reads and creates waiting. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+class RebuildBenchmarkTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private CategoryTreeRebuildService categoryTreeRebuildService;
+
+    @Autowired
+    private TreeMutationRetrier treeMutationRetrier;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setRebuildMode(NestedSetProperties.RebuildMode.LOCKED);
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {10_000, 100_000, 300_000})
+    void rebuildWritesOnlyChangedRows(int nodes) {
+        String rootId = new TreeSeeder(jdbcTemplate).seed("node", null, null, 1, nodes, 10);
+
+        RebuildProgress backfill = categoryService.rebuildTree(null);
+        RebuildProgress unchanged = categoryService.rebuildTree(null);
+
+        System.out.printf("nodes=%d backfillMs=%d backfillChanged=%d unchangedMs=%d unchangedChanged=%d%n",
+            nodes, backfill.getElapsed().toMillis(), backfill.getChanged(), unchanged.getElapsed().toMillis(),
+            unchanged.getChanged());
+        assertEquals(nodes, backfill.getRead());
+        assertEquals(nodes - 1, backfill.getChanged(), "only the depth of the non-root rows was missing");
+        assertEquals(0, unchanged.getChanged());
+        assertEquals(2 * nodes, jdbcTemplate.queryForObject(
+            "SELECT \"right\" FROM categories WHERE id = ?", Integer.class, rootId));
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories c JOIN categories p ON p.id = c.parent_id WHERE c.depth <> p.depth + 1",
+            Integer.class));
+    }
+
+    @ParameterizedTest
+    @EnumSource(NestedSetProperties.RebuildMode.class)
+    void rebuildPauseForConcurrentTraffic(NestedSetProperties.RebuildMode mode) throws Exception {
+        int nodes = 50_000;
+        TreeSeeder seeder = new TreeSeeder(jdbcTemplate);
+        seeder.seed(mode + "-big", null, null, 1, nodes, 10);
+        String smallId = seeder.seed(mode + "-small", null, null, 2 * nodes + 1, 100, 10);
+        categoryService.rebuildTree(null);
+        // Break a tenth of the big tree again, so the rebuild reads every row and writes some.
+        jdbcTemplate.update("UPDATE categories SET depth = 0 WHERE tree_id <> ? AND MOD(\"left\", 10) = 0", smallId);
+        nestedSetProperties.setRebuildMode(mode);
+
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong maxReadNanos = new AtomicLong();
+        AtomicLong maxWriteNanos = new AtomicLong();
+        AtomicInteger created = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<?> reader = executor.submit(() -> {
+            while (!done.get()) {
+                long started = System.nanoTime();
+                categoryService.getTree(smallId);
+                maxReadNanos.accumulateAndGet(System.nanoTime() - started, Math::max);
+            }
+        });
+        Future<?> writer = executor.submit(() -> {
+            while (!done.get()) {
+                String name = mode + "-created-" + created.get();
+                long started = System.nanoTime();
+                treeMutationRetrier.execute(Operation.CREATE,
+                    () -> categoryService.create(new CreateCategoryRequest(name, smallId)));
+                maxWriteNanos.accumulateAndGet(System.nanoTime() - started, Math::max);
+                created.incrementAndGet();
+            }
+        });
+        Thread.sleep(200);
+        RebuildProgress progress = categoryTreeRebuildService.rebuild(null);
+        Thread.sleep(200);
+        done.set(true);
+        reader.get();
+        writer.get();
+        executor.shutdown();
+
+        System.out.printf("mode=%s nodes=%d rebuildMs=%d lockedMs=%d maxReadMs=%.1f maxCreateMs=%.1f created=%d%n",
+            mode, nodes, progress.getElapsed().toMillis(), progress.getLocked().toMillis(),
+            maxReadNanos.get() / 1e6, maxWriteNanos.get() / 1e6, created.get());
+        assertEquals(0, jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM categories c JOIN categories p ON p.id = c.parent_id "
+                + "WHERE c.depth <> p.depth + 1 OR c.tree_id <> p.tree_id "
+                + "OR c.\"left\" <= p.\"left\" OR c.\"right\" >= p.\"right\"",
+            Integer.class));
+        assertEquals(100 + created.get(), jdbcTemplate.queryForObject(
+            "SELECT (\"right\" - \"left\" + 1) / 2 FROM categories WHERE id = ?", Integer.class, smallId));
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM category_rebuilds", Integer.class));
+    }
+}
@@ -0,0 +1,136 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.springboot.jpa.nestedset.INestedSetNodeResponse;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CategoryResponse#convert(Category, boolean)} over every category of a tree, and
+ * {@link CategoryResponse#withChildren} attaching the children of every response bottom-up, on wide, deep and
+ * balanced trees. Reports whole-tree operations per second, with the GC profiler reporting the allocation rate and
+ * the bytes allocated per operation. Run with {@code mvn test -Pbenchmark -Dtest=ResponseConversionBenchmarkTests};
+ * {@code -Dbenchmark.sizes=1000} and {@code -Dbenchmark.shapes=DEEP} narrow the trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResponseConversionBenchmarkTests {
+    @Param({"WIDE", "DEEP", "BALANCED"})
+    public String shape;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private List<Category> categories;
+
+    private List<CategoryResponse> responses;
+
+    /**
+     * Children of node i, by index in left order, are {@code children[offsets[i]]} to
+     * {@code children[offsets[i + 1] - 1]}.
+     */
+    private int[] offsets;
+
+    private int[] children;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categories = SyntheticTrees.build(SyntheticTrees.Shape.valueOf(shape), size);
+        responses = convert();
+
+        Map<Category, Integer> indexes = new IdentityHashMap<>(size);
+        int[] parents = new int[size];
+        offsets = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            Category category = categories.get(i);
+            indexes.put(category, i);
+            parents[i] = category.getParent() != null ? indexes.get(category.getParent()) : -1;
+            if (parents[i] >= 0) {
+                offsets[parents[i] + 1]++;
+            }
+        }
+        for (int i = 0; i < size; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+        children = new int[offsets[size]];
+        int[] filled = offsets.clone();
+        for (int i = 0; i < size; i++) {
+            if (parents[i] >= 0) {
+                children[filled[parents[i]]++] = i;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<CategoryResponse> convert() {
+        List<CategoryResponse> converted = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            converted.add(CategoryResponse.convert(category, false));
+        }
+        return converted;
+    }
+
+    @Benchmark
+    public List<CategoryResponse> convertWithParent() {
+        List<CategoryResponse> converted = new ArrayList<>(categories.size());
+        for (Category category : categories) {
+            converted.add(CategoryResponse.convert(category, true));
+        }
+        return converted;
+    }
+
+    /**
+     * Attach the children the way a tree read does, every node after all of its descendants.
+     */
+    @Benchmark
+    @SuppressWarnings("unchecked")
+    public INestedSetNodeResponse<String> withChildren() {
+        INestedSetNodeResponse<String>[] built = new INestedSetNodeResponse[size];
+        for (int i = size - 1; i >= 0; i--) {
+            List<INestedSetNodeResponse<String>> attached = new ArrayList<>(offsets[i + 1] - offsets[i]);
+            for (int k = offsets[i]; k < offsets[i + 1]; k++) {
+                attached.add(built[children[k]]);
+            }
+            built[i] = responses.get(i).withChildren(attached);
+        }
+        return built[0];
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(getClass().getName())
+            .param("shape", System.getProperty("benchmark.shapes", "WIDE,DEEP,BALANCED").split(","))
+            .param("size", System.getProperty("benchmark.sizes", "1000,10000,100000,1000000").split(","))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
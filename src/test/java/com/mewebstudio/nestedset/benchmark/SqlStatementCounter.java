@@ -0,0 +1,119 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.function.Supplier;
+
+/**
+ * Wraps the data source so that the statements executed by the calling thread, and the rows they inserted, updated
+ * or deleted, can be counted around a call. Counts every statement, whether issued by Hibernate, a native query or
+ * a {@code JdbcTemplate}; a JDBC batch counts as one statement.
+ */
+class SqlStatementCounter implements BeanPostProcessor {
+    private volatile Thread recording;
+
+    private long statements;
+
+    private long rows;
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource dataSource && !Proxy.isProxyClass(bean.getClass())) {
+            return wrap(DataSource.class, dataSource);
+        }
+
+        return bean;
+    }
+
+    /**
+     * Run a call and count the statements the current thread executed meanwhile.
+     *
+     * @param call Call to count.
+     * @return The statements and rows counted.
+     */
+    synchronized Counts count(Runnable call) {
+        return count(() -> {
+            call.run();
+            return null;
+        }).counts;
+    }
+
+    synchronized <T> Counted<T> count(Supplier<T> call) {
+        statements = 0;
+        rows = 0;
+        recording = Thread.currentThread();
+        try {
+            T result = call.get();
+            return new Counted<>(result, new Counts(statements, rows));
+        } finally {
+            recording = null;
+        }
+    }
+
+    private <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{type},
+            (proxy, method, args) -> {
+                Object result = invoke(target, method, args);
+                if (result instanceof Connection connection && method.getName().equals("getConnection")) {
+                    return wrap(Connection.class, connection);
+                }
+                if (result instanceof CallableStatement statement) {
+                    return wrap(CallableStatement.class, statement);
+                }
+                if (result instanceof PreparedStatement statement) {
+                    return wrap(PreparedStatement.class, statement);
+                }
+                if (result instanceof Statement statement && method.getName().equals("createStatement")) {
+                    return wrap(Statement.class, statement);
+                }
+                if (target instanceof Statement statement && method.getName().startsWith("execute")
+                    && Thread.currentThread() == recording) {
+                    record(statement, method.getName(), result);
+                }
+                return result;
+            }));
+    }
+
+    private void record(Statement statement, String method, Object result) throws Exception {
+        statements++;
+        if (result instanceof int[] counts) {
+            for (int count : counts) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof long[] counts) {
+            for (long count : counts) {
+                rows += Math.max(0, count);
+            }
+        } else if (result instanceof Number count) {
+            rows += Math.max(0, count.longValue());
+        } else if (method.equals("execute") && Boolean.FALSE.equals(result)) {
+            rows += Math.max(0, statement.getUpdateCount());
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @param statements Number of statements executed.
+     * @param rows       Number of rows inserted, updated or deleted.
+     */
+    record Counts(long statements, long rows) {
+    }
+
+    record Counted<T>(T result, Counts counts) {
+    }
+}
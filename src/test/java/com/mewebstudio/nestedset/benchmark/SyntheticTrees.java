@@ -0,0 +1,88 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.entity.Category;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Builds in-memory trees of detached categories for the JMH benchmarks, so they measure the read path without a
+ * database.
+ */
+final class SyntheticTrees {
+    private SyntheticTrees() {
+    }
+
+    /**
+     * Build a single tree in pre-order with dense bounds and parent references.
+     *
+     * @param shape Shape of the tree.
+     * @param nodes Number of nodes.
+     * @return The categories ordered by left value.
+     */
+    static List<Category> build(Shape shape, int nodes) {
+        return tree(nodes, shape.fanout(nodes));
+    }
+
+    /**
+     * @param nodes  Number of nodes.
+     * @param fanout Number of children per node, node i has children i * fanout + 1 to i * fanout + fanout.
+     * @return The categories ordered by left value.
+     */
+    static List<Category> tree(int nodes, int fanout) {
+        Category[] byIndex = new Category[nodes];
+        List<Category> ordered = new ArrayList<>(nodes);
+        int[] stack = new int[nodes];
+        int[] next = new int[nodes];
+        int top = 0;
+        int bound = 1;
+        byIndex[0] = category(0, null, bound);
+        ordered.add(byIndex[0]);
+        while (top >= 0) {
+            int node = stack[top];
+            long child = (long) node * fanout + 1 + next[node];
+            if (next[node] < fanout && child < nodes) {
+                next[node]++;
+                byIndex[(int) child] = category((int) child, byIndex[node], ++bound);
+                ordered.add(byIndex[(int) child]);
+                stack[++top] = (int) child;
+            } else {
+                byIndex[node].setRight(++bound);
+                top--;
+            }
+        }
+
+        return ordered;
+    }
+
+    private static Category category(int index, Category parent, int left) {
+        Category category = new Category("node-" + index, left, 0, parent);
+        category.setId(String.format("%026d", index));
+        category.setTreeId(String.format("%026d", 0));
+        category.setDepth(parent != null ? parent.getDepth() + 1 : 0);
+        return category;
+    }
+
+    enum Shape {
+        /**
+         * A root with every other node as its child.
+         */
+        WIDE,
+        /**
+         * A single chain, every node the only child of the previous one.
+         */
+        DEEP,
+        /**
+         * Ten children per node.
+         */
+        BALANCED;
+
+        int fanout(int nodes) {
+            return switch (this) {
+                case WIDE -> Math.max(1, nodes - 1);
+                case DEEP -> 1;
+                case BALANCED -> 10;
+            };
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.service.CategoryTreeAssembler;
+import com.mewebstudio.springboot.jpa.nestedset.NestedSetUtil;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NestedSetUtil#tree} with {@link CategoryTreeAssembler} on a balanced tree, with the GC profiler
+ * reporting the bytes allocated per call. {@link NestedSetUtil#tree} scans every node for the parent of each node,
+ * so it is quadratic and never finishes a call at a million nodes; it only runs up to 10k nodes, where the two meet,
+ * and the assembler goes on up to 1M. Run with {@code mvn test -Pbenchmark -Dtest=TreeAssemblerBenchmarkTests};
+ * {@code -Dbenchmark.sizes=10000} narrows the sizes of the assembler, {@code -Dbenchmark.baselineSizes} those of
+ * {@link NestedSetUtil#tree}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class TreeAssemblerBenchmarkTests {
+    private static final int FANOUT = 10;
+
+    @Param({"10000", "100000", "1000000"})
+    public int size;
+
+    private List<Category> categories;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        categories = SyntheticTrees.tree(size, FANOUT);
+    }
+
+    @Benchmark
+    public List<CategoryResponse> nestedSetUtil() {
+        return NestedSetUtil.tree(categories, category -> CategoryResponse.convert(category, false));
+    }
+
+    @Benchmark
+    public List<CategoryResponse> assembler() {
+        return CategoryTreeAssembler.assemble(categories, category -> CategoryResponse.convert(category, false));
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        runBenchmark("nestedSetUtil", System.getProperty("benchmark.baselineSizes", "10000"));
+        runBenchmark("assembler", System.getProperty("benchmark.sizes", "10000,100000,1000000"));
+    }
+
+    private void runBenchmark(String benchmark, String sizes) throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(getClass().getName() + "\\." + benchmark + "$")
+            .param("size", sizes.split(","))
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
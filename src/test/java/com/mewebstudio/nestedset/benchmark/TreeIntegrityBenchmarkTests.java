@@ -0,0 +1,115 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent.Operation;
+import com.mewebstudio.nestedset.service.CategoryService;
+import com.mewebstudio.nestedset.service.CategoryTreeVerifier;
+import com.mewebstudio.nestedset.service.TreeIntegrityReport;
+import com.mewebstudio.nestedset.service.TreeMutationRetrier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Measures the integrity check by tree size while a writer creates a category, and checks that it reports
+ * corrupted bounds, parents and tree IDs. Run with {@code mvn test -Pbenchmark}.
+ */
+@Tag("benchmark")
+@SpringBootTest
+@ActiveProfiles("benchmark")
+class TreeIntegrityBenchmarkTests {
+    @Autowired
+    private CategoryTreeVerifier categoryTreeVerifier;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private TreeMutationRetrier treeMutationRetrier;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        // A DELETE of a million rows checking the parent key of each one takes minutes on H2.
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        jdbcTemplate.execute("TRUNCATE TABLE categories");
+        jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {100_000, 1_000_000})
+    void verifyScales(int nodes) {
+        TreeSeeder seeder = new TreeSeeder(jdbcTemplate);
+        String rootId = seeder.seedWithDepth("big", null, null, 1, nodes - 10_000, 10, 0);
+        for (int tree = 0; tree < 10; tree++) {
+            seeder.seedWithDepth("small-" + tree, null, null, 2 * nodes + tree, 1000, 10, 0);
+        }
+
+        CompletableFuture<TreeIntegrityReport> verifying =
+            CompletableFuture.supplyAsync(() -> categoryTreeVerifier.verify(100));
+        long started = System.nanoTime();
+        treeMutationRetrier.execute(Operation.CREATE,
+            () -> categoryService.create(new CreateCategoryRequest("created", rootId)));
+        double createMs = (System.nanoTime() - started) / 1e6;
+        TreeIntegrityReport report = verifying.join();
+
+        System.out.printf("nodes=%d verifyMs=%d partitions=%d consistent=%s createMs=%.1f%n", nodes,
+            report.getElapsed().toMillis(), report.getPartitions(), report.isConsistent(), createMs);
+        assertTrue(report.isValid(), () -> report.getViolations().stream()
+            .map(TreeIntegrityReport.Violation::getDetail).collect(Collectors.joining("\n")));
+        assertTrue(report.getChecked() >= nodes);
+    }
+
+    @Test
+    void reportsCorruptedRows() {
+        TreeSeeder seeder = new TreeSeeder(jdbcTemplate);
+        String rootId = seeder.seedWithDepth("corrupt", null, null, 1, 10_000, 10, 0);
+        assertTrue(categoryTreeVerifier.verify(100).isValid());
+
+        // A leaf whose right bound takes the left bound of the next node.
+        jdbcTemplate.update("UPDATE categories SET \"right\" = \"right\" + 1 WHERE id = ("
+            + "SELECT id FROM categories WHERE \"right\" = \"left\" + 1 AND tree_id = ? ORDER BY \"left\" LIMIT 1)",
+            rootId);
+        // A node moved under its grandparent without renumbering.
+        jdbcTemplate.update("UPDATE categories SET parent_id = ?, depth = 1 WHERE id = ("
+            + "SELECT id FROM categories WHERE depth = 2 ORDER BY \"left\" DESC LIMIT 1)", rootId);
+        // A node that lost its tree ID.
+        jdbcTemplate.update("UPDATE categories SET tree_id = NULL WHERE id = ("
+            + "SELECT id FROM categories WHERE depth = 3 ORDER BY \"left\" LIMIT 1)");
+
+        TreeIntegrityReport report = categoryTreeVerifier.verify(100);
+        Set<TreeIntegrityReport.Type> types = report.getViolations().stream()
+            .map(TreeIntegrityReport.Violation::getType)
+            .collect(Collectors.toCollection(() -> EnumSet.noneOf(TreeIntegrityReport.Type.class)));
+        TreeIntegrityReport first = categoryTreeVerifier.verify(3);
+
+        System.out.printf("violations=%d types=%s%n", report.getViolationCount(), types);
+        assertFalse(report.isValid());
+        assertTrue(types.containsAll(EnumSet.of(TreeIntegrityReport.Type.DUPLICATE_BOUND,
+            TreeIntegrityReport.Type.GAP, TreeIntegrityReport.Type.OVERLAP, TreeIntegrityReport.Type.MISSING_TREE_ID,
+            TreeIntegrityReport.Type.TREE_MISMATCH)), types::toString);
+        assertEquals(report.getViolationCount(), first.getViolationCount());
+        assertEquals(report.getViolations().subList(0, 3).stream().map(TreeIntegrityReport.Violation::getDetail)
+            .toList(), first.getViolations().stream().map(TreeIntegrityReport.Violation::getDetail).toList());
+
+        categoryService.rebuildTree(null);
+        assertTrue(categoryTreeVerifier.verify(100).isValid());
+    }
+}
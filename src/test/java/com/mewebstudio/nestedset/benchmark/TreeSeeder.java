@@ -0,0 +1,97 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties.IdStorage;
+import com.mewebstudio.nestedset.entity.generator.ULIDGenerator;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inserts synthetic trees straight through JDBC, so benchmarks do not pay for building them through the service.
+ */
+class TreeSeeder {
+    private final JdbcTemplate jdbcTemplate;
+
+    private final IdStorage idStorage;
+
+    TreeSeeder(JdbcTemplate jdbcTemplate) {
+        this(jdbcTemplate, IdStorage.TEXT);
+    }
+
+    /**
+     * @param idStorage How the ID columns store the ULIDs, the seeder and the application must agree.
+     */
+    TreeSeeder(JdbcTemplate jdbcTemplate, IdStorage idStorage) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.idStorage = idStorage;
+    }
+
+    /**
+     * Insert a balanced tree with dense bounds under an existing node, or as a new tree.
+     *
+     * @param prefix   Name prefix, names must be unique across the table.
+     * @param parentId ID of the parent, null to insert a new tree.
+     * @param treeId   ID of the tree of the parent, ignored for a new tree.
+     * @param left     Left bound of the subtree root.
+     * @param nodes    Number of nodes in the subtree, including its root.
+     * @param fanout   Number of children per node.
+     * @return The ID of the subtree root.
+     */
+    String seed(String prefix, String parentId, String treeId, int left, int nodes, int fanout) {
+        return seed(prefix, parentId, treeId, left, nodes, fanout, 0, false);
+    }
+
+    /**
+     * Like {@link #seed(String, String, String, int, int, int)}, also writing the depth of every node.
+     *
+     * @param depth Depth of the subtree root.
+     */
+    String seedWithDepth(String prefix, String parentId, String treeId, int left, int nodes, int fanout, int depth) {
+        return seed(prefix, parentId, treeId, left, nodes, fanout, depth, true);
+    }
+
+    private String seed(String prefix, String parentId, String treeId, int left, int nodes, int fanout, int depth,
+                        boolean withDepth) {
+        String[] ids = new String[nodes];
+        int[] lefts = new int[nodes];
+        int[] rights = new int[nodes];
+        for (int i = 0; i < nodes; i++) {
+            ids[i] = ULIDGenerator.next();
+        }
+        number(0, left, nodes, fanout, lefts, rights);
+
+        String tree = parentId == null ? ids[0] : treeId;
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        int[] depths = new int[nodes];
+        List<Object[]> rows = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            depths[i] = i == 0 ? depth : depths[(i - 1) / fanout] + 1;
+            rows.add(new Object[]{
+                idStorage.toColumn(ids[i]), prefix + "-" + i, lefts[i], rights[i],
+                idStorage.toColumn(i == 0 ? parentId : ids[(i - 1) / fanout]), idStorage.toColumn(tree),
+                withDepth ? depths[i] : 0, now, now
+            });
+        }
+        jdbcTemplate.batchUpdate(
+            "INSERT INTO categories "
+                + "(id, name, \"left\", \"right\", parent_id, tree_id, depth, created_at, updated_at) "
+                + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+            rows
+        );
+
+        return ids[0];
+    }
+
+    private static int number(int node, int left, int nodes, int fanout, int[] lefts, int[] rights) {
+        lefts[node] = left;
+        int bound = left;
+        for (int child = node * fanout + 1; child <= node * fanout + fanout && child < nodes; child++) {
+            bound = number(child, bound + 1, nodes, fanout, lefts, rights);
+        }
+        rights[node] = bound + 1;
+        return bound + 1;
+    }
+}
@@ -0,0 +1,69 @@
+package com.mewebstudio.nestedset.benchmark;
+
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.entity.generator.ULIDGenerator;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the identifier path of every insert, {@link ULIDGenerator#generate}, for a new category and for one whose
+ * ID was assigned up front, with the GC profiler reporting the bytes allocated per ID. Run with
+ * {@code mvn test -Pbenchmark -Dtest=ULIDGeneratorBenchmarkTests}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ULIDGeneratorBenchmarkTests {
+    private ULIDGenerator generator;
+
+    private Category created;
+
+    private Category assigned;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        generator = new ULIDGenerator();
+        created = new Category("created", 0, 0, null);
+        assigned = new Category("assigned", 0, 0, null);
+        assigned.setId(generator.generate(null, created));
+    }
+
+    @Benchmark
+    public String generate() {
+        return generator.generate(null, created);
+    }
+
+    @Benchmark
+    public String generateAssigned() {
+        return generator.generate(null, assigned);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void run() throws RunnerException {
+        new Runner(new OptionsBuilder()
+            .include(getClass().getName())
+            .addProfiler(GCProfiler.class)
+            .build()).run();
+    }
+}
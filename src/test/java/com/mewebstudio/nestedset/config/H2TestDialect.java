@@ -0,0 +1,40 @@
+package com.mewebstudio.nestedset.config;
+
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.jdbc.dialect.spi.DialectResolutionInfo;
+import org.hibernate.exception.spi.TemplatedViolatedConstraintNameExtractor;
+import org.hibernate.exception.spi.ViolatedConstraintNameExtractor;
+
+import java.sql.SQLException;
+
+/**
+ * H2 dialect of the test profiles. The dialect of Hibernate cuts the first character off the name of a violated
+ * foreign key, this one reads the whole name from the message of H2, as PostgreSQL reports it.
+ */
+public class H2TestDialect extends H2Dialect {
+    /**
+     * Error codes of H2 for a foreign key violated by a missing parent or by a child left behind.
+     */
+    private static final int PARENT_MISSING = 23506;
+
+    private static final int CHILD_EXISTS = 23503;
+
+    public H2TestDialect() {
+    }
+
+    public H2TestDialect(DialectResolutionInfo info) {
+        super(info);
+    }
+
+    @Override
+    public ViolatedConstraintNameExtractor getViolatedConstraintNameExtractor() {
+        ViolatedConstraintNameExtractor extractor = super.getViolatedConstraintNameExtractor();
+        return new TemplatedViolatedConstraintNameExtractor(e -> isForeignKeyViolation(e)
+            ? TemplatedViolatedConstraintNameExtractor.extractUsingTemplate("violation: \"", ":", e.getMessage())
+            : extractor.extractConstraintName(e));
+    }
+
+    private static boolean isForeignKeyViolation(SQLException e) {
+        return e.getErrorCode() == PARENT_MISSING || e.getErrorCode() == CHILD_EXISTS;
+    }
+}
@@ -0,0 +1,56 @@
+package com.mewebstudio.nestedset.config;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.validation.ValidationAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.context.annotation.Configuration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Binds the properties alone, a value out of range must fail the startup instead of the first request using it.
+ */
+class NestedSetPropertiesTests {
+    private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+        .withConfiguration(AutoConfigurations.of(ValidationAutoConfiguration.class))
+        .withUserConfiguration(PropertiesConfiguration.class);
+
+    @Test
+    void bindsTheSmallestValues() {
+        contextRunner.withPropertyValues("app.nested-set.gap-step=3", "app.nested-set.max-retries=0",
+                "app.nested-set.journal-size=0", "app.nested-set.feed-history-size=0")
+            .run(context -> {
+                assertNull(context.getStartupFailure());
+                assertEquals(3, context.getBean(NestedSetProperties.class).getGapStep());
+            });
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "gap-step=2",
+        "max-retries=-1",
+        "group-commit-max-batch=0",
+        "batch-max-size=0",
+        "verify-parallelism=0",
+        "cache-max-size=0",
+        "feed-history-size=-1",
+        "feed-buffer-size=0",
+        "feed-sender-threads=0",
+        "journal-size=-1"
+    })
+    void failsTheStartupOnAValueOutOfRange(String property) {
+        contextRunner.withPropertyValues("app.nested-set." + property)
+            .run(context -> assertNotNull(context.getStartupFailure(), property));
+    }
+
+    @Configuration
+    @EnableConfigurationProperties(NestedSetProperties.class)
+    static class PropertiesConfiguration {
+    }
+}
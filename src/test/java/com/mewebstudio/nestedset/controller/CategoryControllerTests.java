@@ -0,0 +1,219 @@
+package com.mewebstudio.nestedset.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.response.CategoryResponse;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Checks the ETags and the JSON of the streamed tree reads through MockMvc, served from the snapshot and from the
+ * database, and the validation of a batch create. The MockMvc is built on the context of the other tests, which share
+ * its in-memory database.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryControllerTests {
+    @Autowired
+    private WebApplicationContext webApplicationContext;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        mockMvc = MockMvcBuilders.webAppContextSetup(webApplicationContext).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setSnapshotEnabled(true);
+        nestedSetProperties.setBatchMaxSize(1000);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void changesTheETagOfTheTreeReadsAfterAMutation(boolean snapshotEnabled) throws Exception {
+        nestedSetProperties.setSnapshotEnabled(snapshotEnabled);
+        String rootId = categoryService.create(new CreateCategoryRequest("etag-root", null)).getId();
+        categoryService.create(new CreateCategoryRequest("etag-child", rootId));
+        List<String> paths = List.of("/categories/tree", "/categories/descendants/" + rootId);
+        String before = currentETag(paths.get(0));
+        assertEquals(before, currentETag(paths.get(1)));
+
+        categoryService.create(new CreateCategoryRequest("etag-added", rootId));
+
+        for (String path : paths) {
+            String after = currentETag(path);
+            assertNotEquals(before, after, path);
+            MockHttpServletResponse response = read(path, before);
+            assertEquals(200, response.getStatus(), path);
+            assertTrue(response.getContentAsString().contains("etag-added"), path);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void answersAReadWithTheCurrentETagWithNotModified(boolean snapshotEnabled) throws Exception {
+        nestedSetProperties.setSnapshotEnabled(snapshotEnabled);
+        String rootId = categoryService.create(new CreateCategoryRequest("not-modified-root", null)).getId();
+        categoryService.create(new CreateCategoryRequest("not-modified-child", rootId));
+
+        for (String path : List.of("/categories/tree", "/categories/descendants/" + rootId)) {
+            String eTag = currentETag(path);
+            MockHttpServletResponse response = read(path, eTag);
+
+            assertEquals(304, response.getStatus(), path);
+            assertEquals(eTag, response.getHeader(HttpHeaders.ETAG), path);
+            assertEquals(0, response.getContentAsByteArray().length, path);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void streamsTheTreeAsTheNestedCategoryResponses(boolean snapshotEnabled) throws Exception {
+        nestedSetProperties.setSnapshotEnabled(snapshotEnabled);
+        String rootId = categoryService.create(new CreateCategoryRequest("shape-root", null)).getId();
+        String childId = categoryService.create(new CreateCategoryRequest("shape-child", rootId)).getId();
+        categoryService.create(new CreateCategoryRequest("shape-grandchild", childId));
+        categoryService.create(new CreateCategoryRequest("shape-sibling", rootId));
+        currentETag("/categories/tree");
+
+        assertEquals(objectMapper.writeValueAsString(nested(categoryService.getTree(rootId))),
+            read("/categories/tree?treeId=" + rootId, null).getContentAsString());
+        List<CategoryRow> subtree = categoryService.getSubtree(childId);
+        assertEquals(objectMapper.writeValueAsString(nested(subtree.subList(1, subtree.size()))),
+            read("/categories/descendants/" + childId, null).getContentAsString());
+    }
+
+    @Test
+    void createsABatchUpToTheMaxSize() throws Exception {
+        nestedSetProperties.setBatchMaxSize(2);
+
+        MockHttpServletResponse response = createBatch(
+            "{\"items\": [{\"ref\": \"r\", \"name\": \"batch-root\"}, {\"name\": \"batch-child\", \"parentRef\": \"r\"}]}");
+
+        assertEquals(200, response.getStatus(), response.getContentAsString());
+        assertEquals(2, categoryService.getAllCategories().size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "{\"items\": [{\"name\": \"batch-a\"}, {\"name\": \"batch-b\"}, {\"name\": \"batch-c\"}]}",
+        "{\"items\": [{\"name\": \"batch-a\"}, null]}",
+        "{\"items\": []}"
+    })
+    void rejectsAnOversizedEmptyOrNullItemBatch(String body) throws Exception {
+        nestedSetProperties.setBatchMaxSize(2);
+
+        MockHttpServletResponse response = createBatch(body);
+
+        assertEquals(400, response.getStatus(), response.getContentAsString());
+        JsonNode error = objectMapper.readTree(response.getContentAsString());
+        assertTrue(error.get("items").fieldNames().hasNext(), error.toString());
+        assertTrue(categoryService.getAllCategories().isEmpty());
+    }
+
+    private MockHttpServletResponse createBatch(String body) throws Exception {
+        return mockMvc.perform(post("/categories/batch").contentType(MediaType.APPLICATION_JSON).content(body))
+            .andReturn().getResponse();
+    }
+
+    /**
+     * Nest rows ordered by left value into the responses a tree was serialized from before it was streamed.
+     *
+     * @param rows List<CategoryRow> The rows of a tree or a subtree.
+     * @return List<CategoryResponse> The top-level responses, their children nested.
+     */
+    private static List<CategoryResponse> nested(List<CategoryRow> rows) {
+        List<CategoryResponse> roots = new ArrayList<>();
+        Deque<CategoryResponse> path = new ArrayDeque<>();
+        Deque<List<CategoryResponse>> children = new ArrayDeque<>();
+        for (CategoryRow row : rows) {
+            while (!path.isEmpty() && row.getLeft() > path.peek().getRight()) {
+                path.pop();
+                children.pop();
+            }
+            CategoryResponse response = CategoryResponse.convert(row);
+            List<CategoryResponse> own = new ArrayList<>();
+            response.setChildren(own);
+            (path.isEmpty() ? roots : children.peek()).add(response);
+            path.push(response);
+            children.push(own);
+        }
+        return roots;
+    }
+
+    /**
+     * Read until the ETag is the persisted tree version, as a read served from the snapshot only catches up with a
+     * mutation once the snapshot is rebuilt.
+     *
+     * @param path String The path of the read.
+     * @return String The ETag of the read.
+     */
+    private String currentETag(String path) throws Exception {
+        String current = "\"" + categoryService.getVersion() + "\"";
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        String eTag = read(path, null).getHeader(HttpHeaders.ETAG);
+        while (!current.equals(eTag) && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+            eTag = read(path, null).getHeader(HttpHeaders.ETAG);
+        }
+        assertEquals(current, eTag, path);
+
+        return eTag;
+    }
+
+    private MockHttpServletResponse read(String path, String ifNoneMatch) throws Exception {
+        MvcResult result = mockMvc.perform(ifNoneMatch != null
+            ? get(path).header(HttpHeaders.IF_NONE_MATCH, ifNoneMatch)
+            : get(path)).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+
+        return result.getResponse();
+    }
+}
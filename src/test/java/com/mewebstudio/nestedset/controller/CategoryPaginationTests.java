@@ -0,0 +1,319 @@
+package com.mewebstudio.nestedset.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.service.CategoryService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Walks the pages of {@code /categories/tree} and {@code /categories/{id}/subtree} over HTTP and compares them with
+ * the unpaginated reads.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryPaginationTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    /**
+     * The forest: three trees of different shapes, in root order.
+     */
+    private List<Category> categories;
+
+    @BeforeEach
+    void setUp() {
+        categories = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "page-a", null, null),
+            new CreateCategoryBatchItemRequest("a1", "page-a1", null, "a"),
+            new CreateCategoryBatchItemRequest("a11", "page-a11", null, "a1"),
+            new CreateCategoryBatchItemRequest("a12", "page-a12", null, "a1"),
+            new CreateCategoryBatchItemRequest("a13", "page-a13", null, "a1"),
+            new CreateCategoryBatchItemRequest("a2", "page-a2", null, "a"),
+            new CreateCategoryBatchItemRequest("a21", "page-a21", null, "a2"),
+            new CreateCategoryBatchItemRequest("a211", "page-a211", null, "a21"),
+            new CreateCategoryBatchItemRequest("b", "page-b", null, null),
+            new CreateCategoryBatchItemRequest("c", "page-c", null, null),
+            new CreateCategoryBatchItemRequest("c1", "page-c1", null, "c"),
+            new CreateCategoryBatchItemRequest("c2", "page-c2", null, "c"),
+            new CreateCategoryBatchItemRequest("c21", "page-c21", null, "c2"),
+            new CreateCategoryBatchItemRequest("c3", "page-c3", null, "c")));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    @Test
+    void walksEveryPageOfTheForest() throws InterruptedException {
+        List<String> expected = unpaged("/categories/tree");
+        assertEquals(categories.size(), expected.size());
+
+        for (int limit = 1; limit <= expected.size() + 1; limit++) {
+            assertEquals(expected, walk("/categories/tree?", limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void walksEveryPageOfOneTree() throws InterruptedException {
+        String treeId = id("page-a");
+        List<String> expected = unpaged("/categories/tree?treeId=" + treeId);
+        assertEquals(8, expected.size());
+
+        for (int limit = 1; limit <= expected.size(); limit++) {
+            assertEquals(expected, walk("/categories/tree?treeId=" + treeId + "&", limit), "limit " + limit);
+        }
+    }
+
+    @Test
+    void walksEveryPageOfASubtree() throws InterruptedException {
+        for (String name : List.of("page-a", "page-a2", "page-c2", "page-b")) {
+            String id = id(name);
+            List<String> expected = unpaged("/categories/" + id + "/subtree");
+
+            for (int limit = 1; limit <= expected.size(); limit++) {
+                assertEquals(expected, walk("/categories/" + id + "/subtree?", limit), name + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    void walksEveryPageUpToADepth() throws InterruptedException {
+        for (int maxDepth = 0; maxDepth <= 2; maxDepth++) {
+            List<String> expected = unpaged("/categories/tree?maxDepth=" + maxDepth);
+            String treeId = id("page-a");
+            List<String> expectedTree = unpaged("/categories/tree?treeId=" + treeId + "&maxDepth=" + maxDepth);
+
+            for (int limit = 1; limit <= expected.size(); limit++) {
+                assertEquals(expected, walk("/categories/tree?maxDepth=" + maxDepth + "&", limit),
+                    "maxDepth " + maxDepth + " limit " + limit);
+                assertEquals(expectedTree, walk("/categories/tree?treeId=" + treeId + "&maxDepth=" + maxDepth + "&",
+                    limit), "tree maxDepth " + maxDepth + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    void trimsTheStreamedAndThePagedTreeToTheMaxDepth() throws InterruptedException {
+        List<String> all = unpaged("/categories/tree");
+        for (int maxDepth = 0; maxDepth <= 3; maxDepth++) {
+            int levels = maxDepth;
+            List<String> expected = all.stream().filter(id -> depth(id) <= levels).toList();
+
+            ResponseEntity<JsonNode> streamed = restTemplate.getForEntity("/categories/tree?maxDepth=" + maxDepth,
+                JsonNode.class);
+            assertEquals(maxDepth + 1, nesting(streamed.getBody()), "maxDepth " + maxDepth);
+            assertEquals(expected, unpaged("/categories/tree?maxDepth=" + maxDepth), "maxDepth " + maxDepth);
+            assertEquals(expected, walk("/categories/tree?maxDepth=" + maxDepth + "&", 3), "maxDepth " + maxDepth);
+        }
+        assertEquals(all, unpaged("/categories/tree?maxDepth=3"), "the deepest category has depth 3");
+    }
+
+    @Test
+    void trimsTheDescendantsToTheMaxDepthBelowTheCategory() throws InterruptedException {
+        String id = id("page-a2");
+        List<String> descendants = unpaged("/categories/descendants/" + id + "?maxDepth=1");
+
+        assertTrue(descendants.contains(id("page-a21")));
+        assertFalse(descendants.contains(id("page-a211")));
+        assertTrue(unpaged("/categories/descendants/" + id + "?maxDepth=2").contains(id("page-a211")));
+        assertTrue(descendants.stream().allMatch(descendant -> depth(descendant) <= depth(id) + 1));
+    }
+
+    @Test
+    void continuesWithTheNextTreeAfterAPageEndingOnATree() throws InterruptedException {
+        List<String> expected = unpaged("/categories/tree");
+        int endOfFirstTree = expected.indexOf(id("page-b"));
+
+        JsonNode first = page("/categories/tree?", endOfFirstTree, null);
+        JsonNode second = page("/categories/tree?", 2, first.get("next").asText());
+
+        assertEquals(expected.subList(0, endOfFirstTree), ids(first.get("items")));
+        assertEquals(expected.subList(endOfFirstTree, endOfFirstTree + 2), ids(second.get("items")));
+    }
+
+    @Test
+    void sendsNoCursorWithTheLastPage() throws InterruptedException {
+        int size = unpaged("/categories/tree").size();
+
+        JsonNode exact = page("/categories/tree?", size, null);
+        assertEquals(size, exact.get("items").size());
+        assertFalse(exact.has("next"), "a page that ends with the last category is the last page");
+
+        JsonNode shorter = page("/categories/tree?", size - 1, null);
+        assertNotNull(shorter.get("next"));
+        JsonNode last = page("/categories/tree?", size - 1, shorter.get("next").asText());
+        assertEquals(1, last.get("items").size());
+        assertFalse(last.has("next"));
+    }
+
+    @Test
+    void continuesAfterTheCategoryOfTheCursorWasDeleted() throws InterruptedException {
+        List<String> expected = new ArrayList<>(unpaged("/categories/tree"));
+        // page-a12 is a leaf followed by its sibling, whose bounds are shifted onto the ones it had.
+        int cursorAt = expected.indexOf(id("page-a12"));
+        JsonNode first = page("/categories/tree?", cursorAt + 1, null);
+        assertEquals(expected.subList(0, cursorAt + 1), ids(first.get("items")));
+
+        categoryService.delete(id("page-a12"));
+
+        List<String> rest = walk("/categories/tree?", 3, first.get("next").asText());
+        assertEquals(expected.subList(cursorAt + 1, expected.size()), rest);
+    }
+
+    @Test
+    void continuesAfterTheSubtreeOfTheCursorWasDeleted() throws InterruptedException {
+        List<String> expected = new ArrayList<>(unpaged("/categories/" + id("page-a") + "/subtree"));
+        int cursorAt = expected.indexOf(id("page-a1"));
+        JsonNode first = page("/categories/" + id("page-a") + "/subtree?", cursorAt + 1, null);
+
+        categoryService.delete(id("page-a1"));
+
+        List<String> rest = walk("/categories/" + id("page-a") + "/subtree?", 2, first.get("next").asText());
+        assertEquals(expected.subList(expected.indexOf(id("page-a2")), expected.size()), rest);
+    }
+
+    @Test
+    void continuesWithTheNextTreeAfterTheTreeOfTheCursorWasDeleted() throws InterruptedException {
+        List<String> expected = new ArrayList<>(unpaged("/categories/tree"));
+        int cursorAt = expected.indexOf(id("page-a21"));
+        JsonNode first = page("/categories/tree?", cursorAt + 1, null);
+
+        categoryService.delete(id("page-a"));
+
+        List<String> rest = walk("/categories/tree?", 2, first.get("next").asText());
+        assertEquals(expected.subList(expected.indexOf(id("page-b")), expected.size()), rest);
+    }
+
+    @Test
+    void rejectsAMalformedCursor() throws InterruptedException {
+        ResponseEntity<String> response = restTemplate.getForEntity("/categories/tree?limit=2&after=not-a-cursor",
+            String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    /**
+     * Walk the pages of a read from the first one.
+     *
+     * @param path  String The path and query of the read, ending with {@code ?} or {@code &}.
+     * @param limit int The page size.
+     * @return List<String> The IDs of every page, in order.
+     */
+    private List<String> walk(String path, int limit) {
+        return walk(path, limit, null);
+    }
+
+    private List<String> walk(String path, int limit, String after) {
+        List<String> ids = new ArrayList<>();
+        String cursor = after;
+        do {
+            JsonNode page = page(path, limit, cursor);
+            List<String> items = ids(page.get("items"));
+            String previous = cursor;
+            cursor = page.has("next") ? page.get("next").asText() : null;
+            if (cursor != null) {
+                assertEquals(limit, items.size(), "a page with a next cursor is full");
+                assertNotEquals(previous, cursor, "the cursor moves on");
+            } else {
+                assertTrue(items.size() <= limit, "the last page is at most full");
+            }
+            ids.addAll(items);
+        } while (cursor != null);
+
+        return ids;
+    }
+
+    private JsonNode page(String path, int limit, String after) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+            path + "limit=" + limit + (after != null ? "&after=" + after : ""), JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode(), String.valueOf(response.getBody()));
+
+        return response.getBody();
+    }
+
+    /**
+     * Read without pages, once the snapshot serving the read caught up with the last mutation.
+     *
+     * @param path String The path and query of the read.
+     * @return List<String> The IDs of the categories in the order they were read, parents before their children.
+     */
+    private List<String> unpaged(String path) throws InterruptedException {
+        String current = "\"" + categoryService.getVersion() + "\"";
+        long deadline = System.nanoTime() + 5_000_000_000L;
+        while (true) {
+            ResponseEntity<JsonNode> response = restTemplate.getForEntity(path, JsonNode.class);
+            assertEquals(HttpStatus.OK, response.getStatusCode());
+            if (current.equals(response.getHeaders().getETag()) || System.nanoTime() > deadline) {
+                assertEquals(current, response.getHeaders().getETag(), "the snapshot caught up");
+                List<String> ids = new ArrayList<>();
+                flatten(response.getBody(), ids);
+                return ids;
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private static void flatten(JsonNode categories, List<String> ids) {
+        for (JsonNode category : categories) {
+            ids.add(category.get("id").asText());
+            if (category.has("children")) {
+                flatten(category.get("children"), ids);
+            }
+        }
+    }
+
+    /**
+     * Count the levels of nested categories in a streamed read.
+     *
+     * @param categories JsonNode The categories of one level.
+     * @return int The number of levels, 0 for no category.
+     */
+    private static int nesting(JsonNode categories) {
+        int levels = 0;
+        for (JsonNode category : categories) {
+            levels = Math.max(levels, 1 + (category.has("children") ? nesting(category.get("children")) : 0));
+        }
+        return levels;
+    }
+
+    private static List<String> ids(JsonNode categories) {
+        List<String> ids = new ArrayList<>();
+        categories.forEach(category -> ids.add(category.get("id").asText()));
+        return ids;
+    }
+
+    private int depth(String id) {
+        return jdbcTemplate.queryForObject("SELECT depth FROM categories WHERE id = ?", Integer.class, id);
+    }
+
+    private String id(String name) {
+        return categories.stream().filter(category -> category.getName().equals(name)).findFirst().orElseThrow()
+            .getId();
+    }
+}
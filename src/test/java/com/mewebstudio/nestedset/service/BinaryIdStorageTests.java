@@ -0,0 +1,143 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the mutations, the native range statements and the rebuilds with the IDs stored as 16-byte uuid columns. The
+ * context has a database of its own, its schema has other column types.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "app.nested-set.id-storage=binary",
+        "spring.datasource.url=jdbc:h2:mem:binary;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;"
+            + "DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;QUERY_CACHE_SIZE=0"
+    }
+)
+@ActiveProfiles("test")
+class BinaryIdStorageTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryTreeRebuildService categoryTreeRebuildService;
+
+    @Autowired
+    private CategoryTreeVerifier categoryTreeVerifier;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setRebuildMode(NestedSetProperties.RebuildMode.LOCKED);
+    }
+
+    @Test
+    void createsReadsAndMovesCategoriesWithBinaryIds() {
+        Category root = categoryService.create(new CreateCategoryRequest("binary-root", null));
+        Category child = categoryService.create(new CreateCategoryRequest("binary-child", root.getId()));
+        Category leaf = categoryService.create(new CreateCategoryRequest("binary-leaf", child.getId()));
+        Category other = categoryService.create(new CreateCategoryRequest("binary-other", null));
+
+        Object stored = jdbcTemplate.queryForObject("SELECT parent_id FROM categories WHERE id = ?", Object.class,
+            column(leaf.getId()));
+        assertInstanceOf(UUID.class, stored);
+        assertEquals(child.getId(), nestedSetProperties.getIdStorage().fromColumn(stored));
+        Category read = categoryService.findById(leaf.getId());
+        assertEquals(leaf.getId(), read.getId());
+        assertEquals(child.getId(), read.getParent().getId());
+        assertEquals(root.getId(), read.getTreeId());
+
+        categoryService.update(child.getId(), new UpdateCategoryRequest("binary-child", other.getId()));
+
+        assertEquals(other.getId(), categoryService.findById(leaf.getId()).getTreeId());
+        assertEquals(List.of(other.getId(), child.getId(), leaf.getId()),
+            categoryService.getSubtree(other.getId()).stream().map(CategoryRow::getId).toList());
+        assertEquals(List.of(root.getId()), categoryService.getTree(root.getId()).stream().map(CategoryRow::getId)
+            .toList());
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void shiftsSwapsAndDeletesBoundsWithNativeStatements() {
+        Category root = categoryService.create(new CreateCategoryRequest("native-root", null));
+        Category first = categoryService.create(new CreateCategoryRequest("native-first", root.getId()));
+        Category second = categoryService.create(new CreateCategoryRequest("native-second", root.getId()));
+        categoryService.create(new CreateCategoryRequest("native-under-first", first.getId()));
+
+        categoryService.moveDown(first);
+        assertTrue(categoryService.findById(second.getId()).getLeft()
+            < categoryService.findById(first.getId()).getLeft(), "the siblings are swapped");
+        categoryService.delete(first.getId());
+
+        assertEquals(List.of(root.getId(), second.getId()),
+            categoryService.getTree(root.getId()).stream().map(CategoryRow::getId).toList());
+        assertEquals(4, categoryService.findById(root.getId()).getRight(), "the gap is closed");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void rebuildsCorruptedTreesWithBinaryIds() {
+        Category root = categoryService.create(new CreateCategoryRequest("rebuild-root", null));
+        Category child = categoryService.create(new CreateCategoryRequest("rebuild-child", root.getId()));
+        Category other = categoryService.create(new CreateCategoryRequest("rebuild-other", null));
+        Category otherChild = categoryService.create(new CreateCategoryRequest("rebuild-other-child", other.getId()));
+
+        jdbcTemplate.update("UPDATE categories SET depth = 4 WHERE id = ?", column(child.getId()));
+        jdbcTemplate.update("UPDATE categories SET tree_id = ? WHERE id = ?", column(root.getId()),
+            column(otherChild.getId()));
+        assertEquals(2, categoryService.rebuildTree(null).getChanged());
+        assertEquals(other.getId(), categoryService.findById(otherChild.getId()).getTreeId());
+        TreeInvariants.assertValid(jdbcTemplate);
+
+        nestedSetProperties.setRebuildMode(NestedSetProperties.RebuildMode.ONLINE);
+        jdbcTemplate.update("UPDATE categories SET depth = 4 WHERE id = ?", column(otherChild.getId()));
+        assertEquals(1, categoryTreeRebuildService.rebuild(null).getChanged());
+        TreeInvariants.assertValid(jdbcTemplate);
+        assertTrue(categoryTreeVerifier.verify(10).isValid());
+    }
+
+    @Test
+    void ordersByIdAsTheUlidStrings() {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            ids.add(categoryService.create(new CreateCategoryRequest("order-" + i, null)).getId());
+        }
+
+        List<String> byColumn = jdbcTemplate.queryForList("SELECT id FROM categories ORDER BY id", Object.class)
+            .stream().map(nestedSetProperties.getIdStorage()::fromColumn).toList();
+        assertEquals(ids.stream().sorted().toList(), byColumn);
+
+        // Every tree numbered from 1, the trees are then read in the order of their IDs.
+        jdbcTemplate.update("UPDATE categories SET \"left\" = 1, \"right\" = 2");
+        assertEquals(ids.stream().sorted().toList(),
+            categoryService.getAllCategories().stream().map(CategoryRow::getId).toList());
+    }
+
+    private Object column(String id) {
+        return nestedSetProperties.getIdStorage().toColumn(id);
+    }
+}
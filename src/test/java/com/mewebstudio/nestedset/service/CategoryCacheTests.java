@@ -0,0 +1,169 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.Cache;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads categories through the second-level cache around mutations that shift their bounds with native statements.
+ * The shifted categories must be evicted, the categories of the other trees stay cached unless the shift runs to the
+ * end of a tree.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryCacheTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Cache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = entityManagerFactory.getCache();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        cache.evict(Category.class);
+    }
+
+    @Test
+    void readsTheNewBoundsOfACachedCategoryAfterASwap() {
+        Category root = categoryService.create(new CreateCategoryRequest("cache-root", null));
+        Category first = categoryService.create(new CreateCategoryRequest("cache-first", root.getId()));
+        Category second = categoryService.create(new CreateCategoryRequest("cache-second", root.getId()));
+        Category other = categoryService.create(new CreateCategoryRequest("cache-other", null));
+        cache.evict(Category.class);
+
+        Category cached = categoryService.findById(second.getId());
+        categoryService.findById(root.getId());
+        categoryService.findById(other.getId());
+        assertTrue(cache.contains(Category.class, second.getId()));
+        double hits = hits();
+        assertEquals(cached.getLeft(), categoryService.findById(second.getId()).getLeft());
+        assertEquals(hits + 1, hits());
+
+        categoryService.moveDown(first);
+
+        assertFalse(cache.contains(Category.class, second.getId()));
+        assertTrue(cache.contains(Category.class, root.getId()), "the root only encloses the swapped range");
+        assertTrue(cache.contains(Category.class, other.getId()));
+        Category swapped = categoryService.findById(second.getId());
+        assertEquals(cached.getLeft() - 2, swapped.getLeft());
+        assertEquals(cached.getRight() - 2, swapped.getRight());
+    }
+
+    @Test
+    void evictsTheRegionAfterAShiftToTheEndOfATree() {
+        Category root = categoryService.create(new CreateCategoryRequest("cache-root", null));
+        Category first = categoryService.create(new CreateCategoryRequest("cache-first", root.getId()));
+        Category second = categoryService.create(new CreateCategoryRequest("cache-second", root.getId()));
+        Category other = categoryService.create(new CreateCategoryRequest("cache-other", null));
+        Category cached = categoryService.findById(second.getId());
+        categoryService.findById(other.getId());
+
+        categoryService.create(new CreateCategoryRequest("cache-shifting", first.getId()));
+
+        assertFalse(cache.contains(Category.class, second.getId()));
+        assertFalse(cache.contains(Category.class, other.getId()), "an open-ended range is not looked up");
+        Category shifted = categoryService.findById(second.getId());
+        assertEquals(cached.getLeft() + 2, shifted.getLeft());
+        assertEquals(cached.getRight() + 2, shifted.getRight());
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void evictsWhatAReadRacingTheCommitCached(boolean regionEmpty) throws Exception {
+        Category root = categoryService.create(new CreateCategoryRequest("cache-race-root", null));
+        Category first = categoryService.create(new CreateCategoryRequest("cache-race-first", root.getId()));
+        Category second = categoryService.create(new CreateCategoryRequest("cache-race-second", root.getId()));
+        cache.evict(Category.class);
+        Category cached = categoryService.findById(second.getId());
+        if (regionEmpty) {
+            cache.evict(Category.class);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            categoryService.moveDown(first);
+            assertFalse(cache.contains(Category.class, second.getId()));
+            // Another transaction reads the bounds as they were before the commit and caches them.
+            CompletableFuture<Category> racing = CompletableFuture.supplyAsync(() ->
+                categoryService.findById(second.getId()));
+            assertEquals(cached.getLeft(), racing.join().getLeft());
+            assertTrue(cache.contains(Category.class, second.getId()));
+        });
+
+        assertFalse(cache.contains(Category.class, second.getId()));
+        assertEquals(cached.getLeft() - 2, categoryService.findById(second.getId()).getLeft());
+    }
+
+    @Test
+    void readsTheNewTreeOfACachedCategoryMovedUnderAnotherTree() {
+        Category source = categoryService.create(new CreateCategoryRequest("cache-source", null));
+        Category moved = categoryService.create(new CreateCategoryRequest("cache-moved", source.getId()));
+        Category leaf = categoryService.create(new CreateCategoryRequest("cache-leaf", moved.getId()));
+        Category target = categoryService.create(new CreateCategoryRequest("cache-target", null));
+        Category parent = categoryService.create(new CreateCategoryRequest("cache-target-child", target.getId()));
+        Category cached = categoryService.findById(leaf.getId());
+
+        categoryService.update(moved.getId(), new UpdateCategoryRequest("cache-moved", parent.getId()));
+
+        Category read = categoryService.findById(leaf.getId());
+        assertEquals(target.getId(), read.getTreeId());
+        assertEquals(cached.getDepth() + 1, read.getDepth());
+        Category readParent = categoryService.findById(parent.getId());
+        assertEquals(readParent.getLeft() + 2, read.getLeft());
+        assertEquals(readParent.getRight() - 2, read.getRight());
+    }
+
+    @Test
+    void forgetsACachedCategoryDeletedWithItsParent() {
+        Category root = categoryService.create(new CreateCategoryRequest("cache-deleted-root", null));
+        Category parent = categoryService.create(new CreateCategoryRequest("cache-deleted", root.getId()));
+        Category child = categoryService.create(new CreateCategoryRequest("cache-deleted-child", parent.getId()));
+        categoryService.findById(child.getId());
+        assertTrue(cache.contains(Category.class, child.getId()));
+
+        categoryService.delete(parent.getId());
+
+        assertFalse(cache.contains(Category.class, child.getId()));
+        assertEquals(2, categoryService.findById(root.getId()).getRight());
+    }
+
+    private double hits() {
+        return meterRegistry.get("cache.gets").tag("cache", Category.CACHE_REGION).tag("result", "hit")
+            .functionCounter().count();
+    }
+}
@@ -0,0 +1,293 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Subscribes to {@code /categories/tree/events} over HTTP. The changes the feed has to reorder or give up on are
+ * announced to it directly with versions after the current one, which is then moved past them so the following
+ * mutations carry on from there.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryChangeFeedTests {
+    private static final long EVENT_TIMEOUT = 5;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryChangeFeed categoryChangeFeed;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int port;
+
+    private final HttpClient httpClient = HttpClient.newHttpClient();
+
+    private int feedHistorySize;
+
+    private int feedBufferSize;
+
+    /**
+     * The last version announced to the feed directly, 0 when none was.
+     */
+    private long announced;
+
+    @BeforeEach
+    void setUp() {
+        feedHistorySize = nestedSetProperties.getFeedHistorySize();
+        feedBufferSize = nestedSetProperties.getFeedBufferSize();
+        categoryService.create(new CreateCategoryRequest("feed-setup", null));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setFeedHistorySize(feedHistorySize);
+        nestedSetProperties.setFeedBufferSize(feedBufferSize);
+        if (announced > 0) {
+            jdbcTemplate.update("UPDATE tree_versions SET version = GREATEST(version, ?) WHERE name = ?",
+                announced, TreeVersion.CATEGORIES);
+        }
+    }
+
+    @Test
+    void sendsTheCommittedChangesInVersionOrder() throws Exception {
+        BlockingQueue<Event> events = subscribe("");
+        long version = categoryService.getVersion();
+
+        String rootId = categoryService.create(new CreateCategoryRequest("live", null)).getId();
+        categoryService.create(new CreateCategoryRequest("live-child", rootId));
+
+        assertChange(version + 1, next(events));
+        assertChange(version + 2, next(events));
+        assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void resumesAfterTheVersionTheClientGot() throws Exception {
+        categoryService.create(new CreateCategoryRequest("resume-1", null));
+        categoryService.create(new CreateCategoryRequest("resume-2", null));
+        long version = categoryService.getVersion();
+
+        BlockingQueue<Event> missed = subscribe("?sinceVersion=" + (version - 2));
+        assertChange(version - 1, next(missed));
+        assertChange(version, next(missed));
+
+        BlockingQueue<Event> current = subscribe("?sinceVersion=" + version);
+        assertNull(current.poll(200, TimeUnit.MILLISECONDS));
+        categoryService.create(new CreateCategoryRequest("resume-3", null));
+        assertChange(version + 1, next(current));
+        assertChange(version + 1, next(missed));
+    }
+
+    @Test
+    void resyncsAClientBehindTheHistory() throws Exception {
+        nestedSetProperties.setFeedHistorySize(2);
+        for (int i = 0; i < 3; i++) {
+            categoryService.create(new CreateCategoryRequest("history-" + i, null));
+        }
+        long version = categoryService.getVersion();
+
+        assertChange(version - 1, next(subscribe("?sinceVersion=" + (version - 2))));
+
+        Event resync = next(subscribe("?sinceVersion=" + (version - 3)));
+        assertEquals("resync", resync.name());
+        assertEquals(version, resync.id());
+
+        assertEquals("resync", next(subscribe("?sinceVersion=" + (version + 10))).name());
+    }
+
+    @Test
+    void holdsBackAChangeUntilTheVersionBeforeItIsAnnounced() throws Exception {
+        BlockingQueue<Event> events = subscribe("");
+        long version = categoryService.getVersion();
+
+        announce(version + 2);
+        assertNull(events.poll(200, TimeUnit.MILLISECONDS));
+        announce(version + 1);
+
+        assertChange(version + 1, next(events));
+        assertChange(version + 2, next(events));
+    }
+
+    @Test
+    void givesUpOnAVersionNeverAnnounced() throws Exception {
+        BlockingQueue<Event> events = subscribe("");
+        long version = categoryService.getVersion();
+
+        long started = System.nanoTime();
+        announce(version + 2);
+
+        Event resync = next(events);
+        assertTrue(System.nanoTime() - started >= TimeUnit.MILLISECONDS.toNanos(450),
+            "Gave up on the missing version before the order wait");
+        assertEquals("resync", resync.name());
+        assertEquals(version + 1, resync.id());
+        assertChange(version + 2, next(events));
+
+        Event behindTheGap = next(subscribe("?sinceVersion=" + version));
+        assertEquals("resync", behindTheGap.name());
+    }
+
+    @Test
+    void dropsASubscriberThatFallsBehindItsBuffer() throws Exception {
+        BlockingQueue<Event> fast = subscribe("");
+        nestedSetProperties.setFeedBufferSize(8);
+        double dropped = meterRegistry.counter("category.feed.dropped").count();
+        long version = categoryService.getVersion();
+
+        try (Socket slow = new Socket()) {
+            slow.setReceiveBufferSize(1024);
+            slow.setSoTimeout((int) TimeUnit.SECONDS.toMillis(EVENT_TIMEOUT));
+            slow.connect(new InetSocketAddress("localhost", port));
+            awaitSubscription(() -> {
+                slow.getOutputStream().write(("GET /categories/tree/events HTTP/1.1\r\nHost: localhost\r\n"
+                    + "Accept: text/event-stream\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                return null;
+            });
+
+            String padding = "x".repeat(64 * 1024);
+            for (int i = 1; i <= 300; i++) {
+                categoryChangeFeed.onTreeChanged(new CategoryTreeChangedEvent(
+                    CategoryTreeChangedEvent.Operation.UPDATE, version + i, Set.of(padding),
+                    List.of(new CategoryTreeChangedEvent.Range(padding, i, null))));
+                announced = version + i;
+                assertChange(version + i, next(fast));
+            }
+
+            assertEquals(dropped + 1, meterRegistry.counter("category.feed.dropped").count());
+            InputStream in = new BufferedInputStream(slow.getInputStream());
+            assertTrue(readUntil(in, "HTTP/1.1 200").startsWith("HTTP/1.1 200"));
+            assertTrue(readUntil(in, "event:resync").endsWith("event:resync"));
+        }
+    }
+
+    /**
+     * Open a subscription and collect its events in the background. The response headers only come with the first
+     * event, so the subscription is waited for on the gauge of the open subscriptions instead.
+     *
+     * @param query String The query string, empty for none.
+     * @return BlockingQueue<Event> The events as they arrive.
+     */
+    private BlockingQueue<Event> subscribe(String query) throws Exception {
+        BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+        awaitSubscription(() -> httpClient.sendAsync(
+            HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/categories/tree/events" + query)).build(),
+            HttpResponse.BodyHandlers.ofLines()
+        ).thenAccept(response -> {
+            String name = null;
+            long id = -1;
+            for (String line : (Iterable<String>) response.body()::iterator) {
+                if (line.startsWith("event:")) {
+                    name = line.substring("event:".length());
+                } else if (line.startsWith("id:")) {
+                    id = Long.parseLong(line.substring("id:".length()));
+                } else if (line.isEmpty() && name != null) {
+                    events.add(new Event(name, id));
+                    name = null;
+                }
+            }
+        }));
+
+        return events;
+    }
+
+    private void awaitSubscription(Callable<?> request) throws Exception {
+        double subscribers = subscribers();
+        request.call();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(EVENT_TIMEOUT);
+        while (subscribers() <= subscribers) {
+            assertTrue(System.nanoTime() < deadline, "Not subscribed within " + EVENT_TIMEOUT + "s");
+            Thread.sleep(10);
+        }
+    }
+
+    private double subscribers() {
+        return meterRegistry.get("category.feed.subscribers").gauge().value();
+    }
+
+    private void announce(long version) {
+        categoryChangeFeed.onTreeChanged(new CategoryTreeChangedEvent(CategoryTreeChangedEvent.Operation.UPDATE,
+            version, Set.of(), List.of()));
+        announced = Math.max(announced, version);
+    }
+
+    private static Event next(BlockingQueue<Event> events) throws InterruptedException {
+        Event event = events.poll(EVENT_TIMEOUT, TimeUnit.SECONDS);
+        assertNotNull(event, "No event within " + EVENT_TIMEOUT + "s");
+        return event;
+    }
+
+    private static void assertChange(long version, Event event) {
+        assertEquals(new Event("change", version), event);
+    }
+
+    /**
+     * Read a raw response until a text shows up.
+     *
+     * @param in   InputStream The response.
+     * @param text String The text to wait for.
+     * @return String The last bytes read, ending with the text.
+     */
+    private static String readUntil(InputStream in, String text) throws IOException {
+        StringBuilder read = new StringBuilder();
+        int next;
+        while ((next = in.read()) != -1) {
+            read.append((char) next);
+            if (read.length() >= text.length() && read.indexOf(text, read.length() - text.length()) >= 0) {
+                return read.toString();
+            }
+            if (read.length() > 64 * 1024) {
+                read.delete(0, read.length() - text.length());
+            }
+        }
+
+        throw new IOException("Response ended before " + text);
+    }
+
+    private record Event(String name, long id) {
+    }
+}
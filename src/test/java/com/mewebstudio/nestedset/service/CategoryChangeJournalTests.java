@@ -0,0 +1,160 @@
+package com.mewebstudio.nestedset.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.repository.CategoryChangeRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Reads {@code /categories/tree/changes} over HTTP after mutations, down to a journal trimmed to a few versions.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryChangeJournalTests {
+    /**
+     * Versions between two trims of the journal, as {@link CategoryChangeJournal} trims it.
+     */
+    private static final int TRIM_INTERVAL = 64;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private CategoryTreeRebuildService categoryTreeRebuildService;
+
+    @Autowired
+    private CategoryChangeRepository categoryChangeRepository;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private int journalSize;
+
+    @BeforeEach
+    void setUp() {
+        journalSize = nestedSetProperties.getJournalSize();
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setJournalSize(journalSize);
+    }
+
+    @Test
+    void returnsTheCategoriesInTheChangedRanges() {
+        String rootId = categoryService.create(new CreateCategoryRequest("journal-root", null)).getId();
+        String otherId = categoryService.create(new CreateCategoryRequest("journal-other", null)).getId();
+        long version = categoryService.getVersion();
+
+        String childId = categoryService.create(new CreateCategoryRequest("journal-child", rootId)).getId();
+        JsonNode changes = changesSince(version);
+
+        assertEquals(version + 1, changes.get("version").asLong());
+        assertFalse(changes.get("resync").asBoolean());
+        assertEquals(1, changes.get("trees").size());
+        JsonNode tree = changes.get("trees").get(0);
+        assertEquals(rootId, tree.get("range").get("treeId").asText());
+        assertEquals(List.of(rootId, childId), ids(tree.get("categories")));
+
+
+        JsonNode none = changesSince(version + 1);
+        assertEquals(version + 1, none.get("version").asLong());
+        assertFalse(none.get("resync").asBoolean());
+        assertTrue(none.get("trees").isEmpty());
+
+        JsonNode bothTrees = changesSince(version - 1);
+        List<String> treeIds = new ArrayList<>();
+        bothTrees.get("trees").forEach(changed -> treeIds.add(changed.get("range").get("treeId").asText()));
+        assertEquals(List.of(rootId, otherId), treeIds);
+    }
+
+    @Test
+    void resyncsAfterARebuildOfEveryTree() {
+        categoryService.create(new CreateCategoryRequest("journal-rebuilt", null));
+        long version = categoryService.getVersion();
+
+        categoryTreeRebuildService.rebuild(null);
+        JsonNode changes = changesSince(version);
+
+        assertTrue(changes.get("resync").asBoolean());
+        assertEquals(version + 1, changes.get("version").asLong());
+        assertFalse(changes.hasNonNull("trees"));
+    }
+
+    @Test
+    void resyncsAClientAheadOfTheTrees() {
+        categoryService.create(new CreateCategoryRequest("journal-ahead", null));
+        long version = categoryService.getVersion();
+
+        JsonNode changes = changesSince(version + 10);
+
+        assertTrue(changes.get("resync").asBoolean());
+        assertEquals(version, changes.get("version").asLong());
+    }
+
+    @Test
+    void rejectsANegativeVersion() {
+        ResponseEntity<String> response = restTemplate.getForEntity("/categories/tree/changes?sinceVersion=-1",
+            String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    @Test
+    void trimsTheJournalAndResyncsAClientBehindIt() {
+        nestedSetProperties.setJournalSize(4);
+        String rootId = categoryService.create(new CreateCategoryRequest("journal-trimmed", null)).getId();
+        for (int i = 0; i < 4 || categoryService.getVersion() % TRIM_INTERVAL != 0; i++) {
+            categoryService.create(new CreateCategoryRequest("journal-trimmed-" + i, rootId));
+        }
+        long version = categoryService.getVersion();
+
+        assertEquals(version - 3, categoryChangeRepository.findOldestVersion().orElseThrow());
+
+        JsonNode kept = changesSince(version - 4);
+        assertFalse(kept.get("resync").asBoolean());
+        assertEquals(version, kept.get("version").asLong());
+        assertEquals(rootId, kept.get("trees").get(0).get("range").get("treeId").asText());
+
+        JsonNode trimmed = changesSince(version - 5);
+        assertTrue(trimmed.get("resync").asBoolean());
+        assertEquals(version, trimmed.get("version").asLong());
+    }
+
+    private JsonNode changesSince(long version) {
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity(
+            "/categories/tree/changes?sinceVersion=" + version, JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        return response.getBody();
+    }
+
+    private static List<String> ids(JsonNode categories) {
+        List<String> ids = new ArrayList<>();
+        categories.forEach(category -> ids.add(category.get("id").asText()));
+        return ids;
+    }
+}
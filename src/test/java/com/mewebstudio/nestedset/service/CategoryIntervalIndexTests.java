@@ -0,0 +1,172 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.repository.projection.CategoryRow;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link CategoryIntervalIndex} on small hand-built forests. The default forest has two trees whose bounds
+ * overlap, so the nesting must come from the tree IDs as well as the bounds:
+ * <pre>
+ * a (1, 10)          b (1, 4)
+ * ├── a1 (2, 7)      └── b1 (2, 3)
+ * │   ├── a11 (3, 4)
+ * │   └── a12 (5, 6)
+ * └── a2 (8, 9)
+ * </pre>
+ */
+class CategoryIntervalIndexTests {
+    private static final List<CategoryRow> FOREST = List.of(
+        row("a", 1, 10, "a", null),
+        row("a1", 2, 7, "a", "a"),
+        row("a11", 3, 4, "a", "a1"),
+        row("a12", 5, 6, "a", "a1"),
+        row("a2", 8, 9, "a", "a"),
+        row("b", 1, 4, "b", null),
+        row("b1", 2, 3, "b", "b")
+    );
+
+    private final CategoryIntervalIndex index = CategoryIntervalIndex.of(FOREST);
+
+    @Test
+    void nestsCategoriesWithinTheirOwnTree() {
+        assertEquals(7, index.size());
+        assertEquals(2, index.maxDepth());
+
+        assertEquals(CategoryIntervalIndex.NONE, index.parent(slot("a")));
+        assertEquals(slot("a"), index.parent(slot("a1")));
+        assertEquals(slot("a1"), index.parent(slot("a11")));
+        assertEquals(slot("a1"), index.parent(slot("a12")));
+        assertEquals(slot("a"), index.parent(slot("a2")));
+        assertEquals(CategoryIntervalIndex.NONE, index.parent(slot("b")));
+        assertEquals(slot("b"), index.parent(slot("b1")));
+
+        assertTrue(index.isRoot(slot("b")));
+        assertFalse(index.isRoot(slot("b1")));
+        assertEquals(0, index.depth(slot("b")));
+        assertEquals(1, index.depth(slot("b1")));
+        assertEquals(2, index.depth(slot("a12")));
+
+        assertEquals(slot("b"), index.end(slot("a")));
+        assertEquals(slot("a2"), index.end(slot("a1")));
+        assertEquals(slot("a12"), index.end(slot("a11")));
+        assertEquals(index.size(), index.end(slot("b")));
+        assertEquals(index.size(), index.end(slot("b1")));
+    }
+
+    @Test
+    void keepsTheBoundsOfTheRows() {
+        for (int i = 0; i < FOREST.size(); i++) {
+            assertEquals(FOREST.get(i).getId(), index.id(i));
+            assertEquals(FOREST.get(i).getLeft(), index.left(i));
+            assertEquals(FOREST.get(i).getRight(), index.right(i));
+        }
+    }
+
+    @Test
+    void indexOfFindsEverySlot() {
+        for (int i = 0; i < FOREST.size(); i++) {
+            assertEquals(i, index.indexOf(FOREST.get(i).getId()));
+        }
+        assertEquals(CategoryIntervalIndex.NONE, index.indexOf("c"));
+        assertEquals(CategoryIntervalIndex.NONE, index.indexOf(null));
+    }
+
+    @Test
+    void ancestorsRunFromTheRootDownToTheParent() {
+        assertArrayEquals(new int[]{slot("a"), slot("a1")}, index.ancestors(slot("a11")));
+        assertArrayEquals(new int[]{slot("a")}, index.ancestors(slot("a2")));
+        assertArrayEquals(new int[]{slot("b")}, index.ancestors(slot("b1")));
+        assertArrayEquals(new int[0], index.ancestors(slot("a")));
+    }
+
+    @Test
+    void isDescendantIsStrictAndStaysWithinATree() {
+        assertTrue(index.isDescendant(slot("a"), slot("a11")));
+        assertTrue(index.isDescendant(slot("a1"), slot("a12")));
+        assertFalse(index.isDescendant(slot("a11"), slot("a")));
+        assertFalse(index.isDescendant(slot("a1"), slot("a1")));
+        assertFalse(index.isDescendant(slot("a1"), slot("a2")));
+        assertFalse(index.isDescendant(slot("a"), slot("b1")));
+        assertFalse(index.isDescendant(slot("b"), slot("a11")));
+    }
+
+    @Test
+    void lowestCommonAncestorOfCategories() {
+        assertEquals(slot("a1"), index.lowestCommonAncestor(slot("a11"), slot("a12")));
+        assertEquals(slot("a"), index.lowestCommonAncestor(slot("a11"), slot("a2")));
+        assertEquals(slot("a"), index.lowestCommonAncestor(slot("a11"), slot("a12"), slot("a2")));
+        assertEquals(slot("a12"), index.lowestCommonAncestor(slot("a12")));
+        assertEquals(slot("a12"), index.lowestCommonAncestor(slot("a12"), slot("a12")));
+    }
+
+    @Test
+    void lowestCommonAncestorOfACategoryAndItsAncestorIsTheAncestor() {
+        assertEquals(slot("a1"), index.lowestCommonAncestor(slot("a1"), slot("a11")));
+        assertEquals(slot("a1"), index.lowestCommonAncestor(slot("a11"), slot("a1")));
+        assertEquals(slot("a"), index.lowestCommonAncestor(slot("a12"), slot("a")));
+    }
+
+    @Test
+    void lowestCommonAncestorAcrossTreesIsNone() {
+        assertEquals(CategoryIntervalIndex.NONE, index.lowestCommonAncestor(slot("a11"), slot("b1")));
+        assertEquals(CategoryIntervalIndex.NONE, index.lowestCommonAncestor(slot("a"), slot("b")));
+        assertEquals(CategoryIntervalIndex.NONE, index.lowestCommonAncestor(slot("a11"), slot("a12"), slot("b1")));
+    }
+
+    @Test
+    void emptyIndex() {
+        CategoryIntervalIndex empty = CategoryIntervalIndex.of(List.of());
+
+        assertEquals(0, empty.size());
+        assertEquals(-1, empty.maxDepth());
+        assertEquals(CategoryIntervalIndex.NONE, empty.indexOf("a"));
+    }
+
+    @Test
+    void forestOfManyTrees() {
+        int trees = 100;
+        List<CategoryRow> rows = new ArrayList<>();
+        for (int t = 0; t < trees; t++) {
+            String root = "t" + t;
+            rows.add(row(root, 1, 6, root, null));
+            rows.add(row(root + "-x", 2, 3, root, root));
+            rows.add(row(root + "-y", 4, 5, root, root));
+        }
+
+        CategoryIntervalIndex forest = CategoryIntervalIndex.of(rows);
+
+        assertEquals(3 * trees, forest.size());
+        assertEquals(1, forest.maxDepth());
+        for (int t = 0; t < trees; t++) {
+            int root = forest.indexOf("t" + t);
+            int x = forest.indexOf("t" + t + "-x");
+            int y = forest.indexOf("t" + t + "-y");
+            assertEquals(3 * t, root);
+            assertTrue(forest.isRoot(root));
+            assertEquals(root, forest.parent(x));
+            assertEquals(root, forest.parent(y));
+            assertEquals(root + 3, forest.end(root));
+            assertEquals(root, forest.lowestCommonAncestor(x, y));
+            if (t > 0) {
+                assertEquals(CategoryIntervalIndex.NONE, forest.lowestCommonAncestor(x, forest.indexOf("t0-y")));
+                assertFalse(forest.isDescendant(forest.indexOf("t0"), x));
+            }
+        }
+    }
+
+    private int slot(String id) {
+        return index.indexOf(id);
+    }
+
+    private static CategoryRow row(String id, int left, int right, String treeId, String parentId) {
+        return new CategoryRow(id, id, left, right, treeId, parentId, null, null);
+    }
+}
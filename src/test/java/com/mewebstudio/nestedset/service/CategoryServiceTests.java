@@ -0,0 +1,459 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.entity.TreeVersion;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the mutations of {@link CategoryService} on an in-memory H2 database and checks the rows they leave behind.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryServiceTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setNumbering(NestedSetProperties.Numbering.DENSE);
+        nestedSetProperties.setGapStep(1024);
+        nestedSetProperties.setDeleteMode(NestedSetProperties.DeleteMode.RANGE);
+    }
+
+    @Test
+    void movingARootUnderAnotherTreeDropsTheCounterOfItsTree() {
+        Category moved = categoryService.create(new CreateCategoryRequest("counter-moved", null));
+        categoryService.create(new CreateCategoryRequest("counter-moved-child", moved.getId()));
+        Category target = categoryService.create(new CreateCategoryRequest("counter-target", null));
+        assertTrue(hasCounter(moved.getId()));
+
+        categoryService.update(moved.getId(), new UpdateCategoryRequest("counter-moved", target.getId()));
+
+        assertFalse(hasCounter(moved.getId()));
+        assertTrue(hasCounter(target.getId()));
+        assertEquals(target.getId(), categoryService.findById(moved.getId()).getTreeId());
+    }
+
+    @Test
+    void deletingARootDropsTheCounterOfItsTree() {
+        Category root = categoryService.create(new CreateCategoryRequest("counter-deleted", null));
+        categoryService.create(new CreateCategoryRequest("counter-deleted-child", root.getId()));
+        assertTrue(hasCounter(root.getId()));
+
+        categoryService.delete(root.getId());
+
+        assertFalse(hasCounter(root.getId()));
+    }
+
+    @Test
+    void createsABatchWhoseChildrenAreListedBeforeTheirParents() {
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("g", "batch-grandchild", null, "c"),
+            new CreateCategoryBatchItemRequest("c", "batch-child", null, "r"),
+            new CreateCategoryBatchItemRequest("s", "batch-sibling", null, "r"),
+            new CreateCategoryBatchItemRequest("r", "batch-root", null, null)));
+
+        assertEquals(List.of("batch-grandchild", "batch-child", "batch-sibling", "batch-root"),
+            created.stream().map(Category::getName).toList());
+        String root = created.get(3).getId();
+        assertEquals(created.get(1).getId(), parentOf(created.get(0).getId()));
+        assertEquals(root, parentOf(created.get(1).getId()));
+        assertEquals(root, parentOf(created.get(2).getId()));
+        assertTrue(bounds(created.get(1).getId())[1] < bounds(created.get(2).getId())[0],
+            "siblings keep the order of the items");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void createsABatchUnderAnExistingParentAndItsAncestor() {
+        Category root = categoryService.create(new CreateCategoryRequest("anchor-root", null));
+        Category child = categoryService.create(new CreateCategoryRequest("anchor-child", root.getId()));
+        Category sibling = categoryService.create(new CreateCategoryRequest("anchor-sibling", root.getId()));
+
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("x", "anchor-under-child", child.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "anchor-under-root", root.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "anchor-under-x", null, "x"),
+            new CreateCategoryBatchItemRequest(null, "anchor-second-under-child", child.getId(), null)));
+
+        assertEquals(child.getId(), parentOf(created.get(0).getId()));
+        assertEquals(root.getId(), parentOf(created.get(1).getId()));
+        assertEquals(created.get(0).getId(), parentOf(created.get(2).getId()));
+        assertEquals(child.getId(), parentOf(created.get(3).getId()));
+        assertTrue(bounds(sibling.getId())[1] < bounds(created.get(1).getId())[0],
+            "new children come after the existing ones");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void createsABatchUnderParentsInTwoTrees() {
+        Category first = categoryService.create(new CreateCategoryRequest("two-trees-first", null));
+        Category firstChild = categoryService.create(new CreateCategoryRequest("two-trees-first-child", first.getId()));
+        Category second = categoryService.create(new CreateCategoryRequest("two-trees-second", null));
+
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "two-trees-under-first", firstChild.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "two-trees-under-a", null, "a"),
+            new CreateCategoryBatchItemRequest(null, "two-trees-under-second", second.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "two-trees-new-root", null, null)));
+
+        assertEquals(first.getId(), treeOf(created.get(0).getId()));
+        assertEquals(first.getId(), treeOf(created.get(1).getId()));
+        assertEquals(second.getId(), treeOf(created.get(2).getId()));
+        assertEquals(created.get(3).getId(), treeOf(created.get(3).getId()));
+        assertEquals(second.getId(), parentOf(created.get(2).getId()));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void rejectsABatchWhoseRefsFormACycle() {
+        Category root = categoryService.create(new CreateCategoryRequest("cycle-root", null));
+
+        assertThrows(BadRequestException.class, () -> categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "cycle-a", null, "b"),
+            new CreateCategoryBatchItemRequest("b", "cycle-b", null, "a"),
+            new CreateCategoryBatchItemRequest(null, "cycle-c", root.getId(), null))));
+
+        assertEquals(1, count());
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void rejectsABatchItemThatIsItsOwnParent() {
+        assertThrows(BadRequestException.class, () -> categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "self-a", null, "a"))));
+
+        assertEquals(0, count());
+    }
+
+    @Test
+    void rejectsABatchWithARepeatedName() {
+        assertThrows(BadRequestException.class, () -> categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "repeated-name", null, null),
+            new CreateCategoryBatchItemRequest("b", "repeated-name", null, "a"))));
+
+        assertEquals(0, count());
+    }
+
+    @Test
+    void rejectsABatchWithARepeatedRef() {
+        assertThrows(BadRequestException.class, () -> categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "repeated-ref-first", null, null),
+            new CreateCategoryBatchItemRequest("a", "repeated-ref-second", null, null))));
+
+        assertEquals(0, count());
+    }
+
+    @Test
+    void createsABatchInTheGapOfAGappedParentWithRoom() {
+        nestedSetProperties.setNumbering(NestedSetProperties.Numbering.GAPPED);
+        nestedSetProperties.setGapStep(64);
+        Category root = categoryService.create(new CreateCategoryRequest("room-root", null));
+        Category parent = categoryService.create(new CreateCategoryRequest("room-parent", root.getId()));
+        Category after = categoryService.create(new CreateCategoryRequest("room-after", root.getId()));
+        int[] parentBounds = bounds(parent.getId());
+        int[] afterBounds = bounds(after.getId());
+
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "room-a", parent.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "room-b", null, "a")));
+
+        assertArrayEquals(parentBounds, bounds(parent.getId()), "the parent keeps its bounds");
+        assertArrayEquals(afterBounds, bounds(after.getId()), "nothing after the parent is shifted");
+        assertEquals(parent.getId(), parentOf(created.get(0).getId()));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void createsABatchUnderAGappedParentWithoutRoom() {
+        nestedSetProperties.setNumbering(NestedSetProperties.Numbering.GAPPED);
+        nestedSetProperties.setGapStep(4);
+        Category root = categoryService.create(new CreateCategoryRequest("full-root", null));
+        Category parent = categoryService.create(new CreateCategoryRequest("full-parent", root.getId()));
+        Category after = categoryService.create(new CreateCategoryRequest("full-after", root.getId()));
+        int[] parentBounds = bounds(parent.getId());
+        int[] afterBounds = bounds(after.getId());
+
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "full-a", parent.getId(), null),
+            new CreateCategoryBatchItemRequest(null, "full-b", null, "a"),
+            new CreateCategoryBatchItemRequest(null, "full-c", parent.getId(), null)));
+
+        assertTrue(bounds(parent.getId())[1] > parentBounds[1], "the parent is widened");
+        assertTrue(bounds(after.getId())[0] > afterBounds[0], "the categories after the parent are shifted");
+        assertEquals(parent.getId(), parentOf(created.get(2).getId()));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void movesACategoryToTheLeftWithinItsTree(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+
+        categoryService.update(ids.get("a3"), new UpdateCategoryRequest("a3", ids.get("a1")));
+
+        assertEquals(ids.get("a1"), parentOf(ids.get("a3")));
+        assertTrue(bounds(ids.get("a12"))[1] < bounds(ids.get("a3"))[0], "the category is the last child");
+        assertTrue(bounds(ids.get("a3"))[1] < bounds(ids.get("a2"))[0], "the category comes before a2");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void movesASubtreeToTheRightWithinItsTree(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+
+        categoryService.update(ids.get("a1"), new UpdateCategoryRequest("a1", ids.get("a2")));
+
+        assertEquals(ids.get("a2"), parentOf(ids.get("a1")));
+        assertEquals(ids.get("a1"), parentOf(ids.get("a11")));
+        assertEquals(ids.get("a1"), parentOf(ids.get("a12")));
+        assertTrue(bounds(ids.get("a21"))[1] < bounds(ids.get("a1"))[0], "the subtree is the last child");
+        assertTrue(bounds(ids.get("a2"))[1] < bounds(ids.get("a3"))[0], "the subtree comes before a3");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void movesASubtreeToAnotherTree(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+
+        categoryService.update(ids.get("a2"), new UpdateCategoryRequest("a2", ids.get("b1")));
+
+        assertEquals(ids.get("b1"), parentOf(ids.get("a2")));
+        assertEquals(ids.get("b"), treeOf(ids.get("a2")));
+        assertEquals(ids.get("b"), treeOf(ids.get("a21")));
+        assertEquals(ids.get("a2"), parentOf(ids.get("a21")));
+        assertEquals(5, count("a"));
+        assertEquals(5, count("b"));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void movesARootUnderACategoryOfAnotherTree(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+
+        categoryService.update(ids.get("b"), new UpdateCategoryRequest("b", ids.get("a3")));
+
+        assertEquals(ids.get("a3"), parentOf(ids.get("b")));
+        assertEquals(ids.get("a"), treeOf(ids.get("b")));
+        assertEquals(ids.get("a"), treeOf(ids.get("b1")));
+        assertEquals(10, count("a"));
+        assertFalse(hasCounter(ids.get("b")));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void movesASubtreeOutToANewRoot(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+
+        categoryService.update(ids.get("a1"), new UpdateCategoryRequest("a1", null));
+
+        assertNull(parentOf(ids.get("a1")));
+        assertEquals(ids.get("a1"), treeOf(ids.get("a1")));
+        assertEquals(ids.get("a1"), treeOf(ids.get("a11")));
+        assertEquals(ids.get("a1"), treeOf(ids.get("a12")));
+        assertEquals(4, count("a"));
+        assertEquals(3, count("a1"));
+        assertTrue(hasCounter(ids.get("a1")));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"DENSE, 1024", "GAPPED, 1024", "GAPPED, 4"})
+    void keepsTheDepthsThroughCreatesAndMoves(NestedSetProperties.Numbering numbering, int gapStep) {
+        Map<String, String> ids = forest(numbering, gapStep);
+        assertEquals(0, depthOf(ids.get("a")));
+        assertEquals(1, depthOf(ids.get("a1")));
+        assertEquals(2, depthOf(ids.get("a11")));
+
+        Category created = categoryService.create(new CreateCategoryRequest("a111", ids.get("a11")));
+        assertEquals(3, created.getDepth());
+        assertEquals(3, depthOf(created.getId()));
+
+        categoryService.update(ids.get("a1"), new UpdateCategoryRequest("a1", ids.get("a21")));
+        assertEquals(3, depthOf(ids.get("a1")));
+        assertEquals(4, depthOf(ids.get("a11")));
+        assertEquals(5, depthOf(created.getId()));
+
+        categoryService.update(ids.get("a11"), new UpdateCategoryRequest("a11", ids.get("b")));
+        assertEquals(1, depthOf(ids.get("a11")));
+        assertEquals(2, depthOf(created.getId()));
+
+        categoryService.update(ids.get("b"), new UpdateCategoryRequest("b", ids.get("a12")));
+        assertEquals(5, depthOf(ids.get("b")));
+        assertEquals(6, depthOf(ids.get("a11")));
+        assertEquals(7, depthOf(created.getId()));
+
+        categoryService.update(ids.get("a2"), new UpdateCategoryRequest("a2", null));
+        assertEquals(0, depthOf(ids.get("a2")));
+        assertEquals(4, depthOf(ids.get("b")));
+        assertEquals(6, depthOf(created.getId()));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"RANGE, DENSE", "RANGE, GAPPED", "CASCADE, DENSE", "CASCADE, GAPPED"})
+    void deletesASubtreeInTheMiddleOfItsTree(NestedSetProperties.DeleteMode deleteMode,
+                                             NestedSetProperties.Numbering numbering) {
+        Map<String, String> ids = forest(numbering, 1024);
+        nestedSetProperties.setDeleteMode(deleteMode);
+
+        categoryService.delete(ids.get("a2"));
+
+        assertEquals(0, countOf(ids.get("a2"), ids.get("a21")));
+        assertEquals(5, count("a"));
+        assertEquals(ids.get("a"), parentOf(ids.get("a3")));
+        assertClosed(numbering, ids.get("a"));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"RANGE, DENSE", "RANGE, GAPPED", "CASCADE, DENSE", "CASCADE, GAPPED"})
+    void deletesTheLastChildOfAParent(NestedSetProperties.DeleteMode deleteMode,
+                                      NestedSetProperties.Numbering numbering) {
+        Map<String, String> ids = forest(numbering, 1024);
+        nestedSetProperties.setDeleteMode(deleteMode);
+
+        categoryService.delete(ids.get("a12"));
+        categoryService.delete(ids.get("a3"));
+
+        assertEquals(0, countOf(ids.get("a12"), ids.get("a3")));
+        assertEquals(5, count("a"));
+        assertEquals(ids.get("a1"), parentOf(ids.get("a11")));
+        assertClosed(numbering, ids.get("a"));
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @ParameterizedTest
+    @CsvSource({"RANGE, DENSE", "RANGE, GAPPED", "CASCADE, DENSE", "CASCADE, GAPPED"})
+    void deletesAWholeTree(NestedSetProperties.DeleteMode deleteMode, NestedSetProperties.Numbering numbering) {
+        Map<String, String> ids = forest(numbering, 1024);
+        nestedSetProperties.setDeleteMode(deleteMode);
+        int[] other = bounds(ids.get("b"));
+        assertTrue(hasCounter(ids.get("a")));
+
+        categoryService.delete(ids.get("a"));
+
+        assertEquals(0, count("a"));
+        assertEquals(0, countOf(ids.get("a"), ids.get("a1"), ids.get("a11"), ids.get("a12"), ids.get("a2"),
+            ids.get("a21"), ids.get("a3")));
+        assertFalse(hasCounter(ids.get("a")));
+        assertTrue(hasCounter(ids.get("b")));
+        assertArrayEquals(other, bounds(ids.get("b")), "the other tree keeps its bounds");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    /**
+     * Create two trees, {@code a} with three children of which two have children, and {@code b} with a child and
+     * a grandchild.
+     *
+     * @param numbering NestedSetProperties.Numbering The numbering the trees are created and mutated with.
+     * @param gapStep   int The gap step of the gapped numbering, a small one runs out of gaps on the first move.
+     * @return Map<String, String> The IDs of the categories by name.
+     */
+    private Map<String, String> forest(NestedSetProperties.Numbering numbering, int gapStep) {
+        nestedSetProperties.setNumbering(numbering);
+        nestedSetProperties.setGapStep(gapStep);
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "a", null, null),
+            new CreateCategoryBatchItemRequest("a1", "a1", null, "a"),
+            new CreateCategoryBatchItemRequest("a11", "a11", null, "a1"),
+            new CreateCategoryBatchItemRequest("a12", "a12", null, "a1"),
+            new CreateCategoryBatchItemRequest("a2", "a2", null, "a"),
+            new CreateCategoryBatchItemRequest("a21", "a21", null, "a2"),
+            new CreateCategoryBatchItemRequest("a3", "a3", null, "a"),
+            new CreateCategoryBatchItemRequest("b", "b", null, null),
+            new CreateCategoryBatchItemRequest("b1", "b1", null, "b"),
+            new CreateCategoryBatchItemRequest("b11", "b11", null, "b1")));
+        TreeInvariants.assertValid(jdbcTemplate);
+
+        Map<String, String> ids = new HashMap<>();
+        created.forEach(category -> ids.put(category.getName(), category.getId()));
+        return ids;
+    }
+
+    private String parentOf(String id) {
+        return jdbcTemplate.queryForObject("SELECT parent_id FROM categories WHERE id = ?", String.class, id);
+    }
+
+    private String treeOf(String id) {
+        return jdbcTemplate.queryForObject("SELECT tree_id FROM categories WHERE id = ?", String.class, id);
+    }
+
+    private int depthOf(String id) {
+        return jdbcTemplate.queryForObject("SELECT depth FROM categories WHERE id = ?", Integer.class, id);
+    }
+
+    private int[] bounds(String id) {
+        return jdbcTemplate.queryForObject("SELECT \"left\", \"right\" FROM categories WHERE id = ?",
+            (rs, row) -> new int[]{rs.getInt(1), rs.getInt(2)}, id);
+    }
+
+    private int count() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories", Integer.class);
+    }
+
+    private int countOf(String... ids) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories WHERE id IN ("
+            + String.join(", ", Collections.nCopies(ids.length, "?")) + ")", Integer.class, (Object[]) ids);
+    }
+
+    /**
+     * Check that a dense tree has no gap left, its root spanning two bounds per category.
+     *
+     * @param numbering NestedSetProperties.Numbering The numbering of the tree, a gapped tree keeps its gaps.
+     * @param treeId    String The ID of the tree.
+     */
+    private void assertClosed(NestedSetProperties.Numbering numbering, String treeId) {
+        if (numbering == NestedSetProperties.Numbering.DENSE) {
+            int[] root = bounds(treeId);
+            int size = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories WHERE tree_id = ?", Integer.class,
+                treeId);
+            assertEquals(2 * size, root[1] - root[0] + 1, "the gap is closed");
+        }
+    }
+
+    private int count(String treeName) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM categories c JOIN categories r ON r.id = c.tree_id "
+            + "WHERE r.name = ?", Integer.class, treeName);
+    }
+
+    private boolean hasCounter(String treeId) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM tree_versions WHERE name = ?", Integer.class,
+            TreeVersion.categoryTree(treeId)) > 0;
+    }
+}
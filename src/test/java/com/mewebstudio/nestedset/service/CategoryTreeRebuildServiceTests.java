@@ -0,0 +1,127 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs online rebuilds of every tree over corrupted rows, with and without a mutation committed between the shadow
+ * write and the swap. The context has a database of its own, as its rebuilder is a spy.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "app.nested-set.rebuild-mode=online",
+        "spring.datasource.url=jdbc:h2:mem:rebuild;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;"
+            + "DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;QUERY_CACHE_SIZE=0"
+    }
+)
+@ActiveProfiles("test")
+class CategoryTreeRebuildServiceTests {
+    @Autowired
+    private CategoryTreeRebuildService categoryTreeRebuildService;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @MockitoSpyBean
+    private CategoryTreeRebuilder categoryTreeRebuilder;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Map<String, String> ids;
+
+    @BeforeEach
+    void setUp() {
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "online-a", null, null),
+            new CreateCategoryBatchItemRequest("a1", "online-a1", null, "a"),
+            new CreateCategoryBatchItemRequest("a11", "online-a11", null, "a1"),
+            new CreateCategoryBatchItemRequest("a2", "online-a2", null, "a"),
+            new CreateCategoryBatchItemRequest("b", "online-b", null, null),
+            new CreateCategoryBatchItemRequest("b1", "online-b1", null, "b"),
+            new CreateCategoryBatchItemRequest("b11", "online-b11", null, "b1")));
+        ids = new HashMap<>();
+        created.forEach(category -> ids.put(category.getName().substring("online-".length()), category.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    @Test
+    void swapsInTheCorrectedBounds() {
+        Map<String, List<Integer>> before = positions();
+        jdbcTemplate.update("UPDATE categories SET \"right\" = \"right\" + 3 WHERE id = ?", ids.get("a2"));
+        jdbcTemplate.update("UPDATE categories SET depth = 5 WHERE id = ?", ids.get("b11"));
+
+        RebuildProgress progress = categoryTreeRebuildService.rebuild(null);
+
+        assertEquals(RebuildProgress.Phase.DONE, progress.getPhase());
+        assertEquals(2, progress.getChanged());
+        assertEquals(before, positions());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM category_rebuilds", Integer.class),
+            "the shadow rows are dropped");
+        verify(categoryTreeRebuilder, never()).catchUp(anyString(), anyInt());
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void catchesUpATreeMutatedBetweenTheShadowWriteAndTheSwap() {
+        jdbcTemplate.update("UPDATE categories SET \"right\" = \"right\" + 3 WHERE id = ?", ids.get("a2"));
+        jdbcTemplate.update("UPDATE categories SET depth = 5 WHERE id = ?", ids.get("b11"));
+        Map<String, String> added = new HashMap<>();
+        doAnswer(invocation -> {
+            Object computed = invocation.callRealMethod();
+            // Committed by another transaction, the shadow rows of tree b are stale once the swap starts.
+            added.put("b2", CompletableFuture.supplyAsync(() ->
+                categoryService.create(new CreateCategoryRequest("online-b2", ids.get("b"))).getId()).join());
+            return computed;
+        }).when(categoryTreeRebuilder).rebuildIntoShadow(anyString(), anyInt());
+
+        RebuildProgress progress = categoryTreeRebuildService.rebuild(null);
+
+        assertEquals(RebuildProgress.Phase.DONE, progress.getPhase());
+        verify(categoryTreeRebuilder).catchUp(eq(ids.get("b")), anyInt());
+        verify(categoryTreeRebuilder, never()).catchUp(eq(ids.get("a")), anyInt());
+        assertEquals(ids.get("b"), jdbcTemplate.queryForObject("SELECT parent_id FROM categories WHERE id = ?",
+            String.class, added.get("b2")));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT depth FROM categories WHERE id = ?", Integer.class,
+            ids.get("b11")), "the tree caught up is rebuilt as well");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    /**
+     * @return Map<String, List<Integer>> The left and right bounds and the depth of every category, by ID.
+     */
+    private Map<String, List<Integer>> positions() {
+        Map<String, List<Integer>> positions = new HashMap<>();
+        jdbcTemplate.query("SELECT id, \"left\", \"right\", depth FROM categories", rs -> {
+            positions.put(rs.getString(1), List.of(rs.getInt(2), rs.getInt(3), rs.getInt(4)));
+        });
+        return positions;
+    }
+}
@@ -0,0 +1,98 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Corrupts the positions of a few categories behind the back of the service and rebuilds them from the parent
+ * references with {@link CategoryTreeRebuilder}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryTreeRebuilderTests {
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private Map<String, String> ids;
+
+    @BeforeEach
+    void setUp() {
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "rebuild-a", null, null),
+            new CreateCategoryBatchItemRequest("a1", "rebuild-a1", null, "a"),
+            new CreateCategoryBatchItemRequest("a11", "rebuild-a11", null, "a1"),
+            new CreateCategoryBatchItemRequest("a2", "rebuild-a2", null, "a"),
+            new CreateCategoryBatchItemRequest("a3", "rebuild-a3", null, "a"),
+            new CreateCategoryBatchItemRequest("b", "rebuild-b", null, null),
+            new CreateCategoryBatchItemRequest("b1", "rebuild-b1", null, "b"),
+            new CreateCategoryBatchItemRequest("b11", "rebuild-b11", null, "b1")));
+        ids = new HashMap<>();
+        created.forEach(category -> ids.put(category.getName().substring("rebuild-".length()), category.getId()));
+        assertEquals(0, categoryService.rebuildTree(null).getChanged(), "the created trees need no rebuild");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    @Test
+    void rebuildsEveryTreeWritingOnlyTheCorruptedRows() {
+        Map<String, List<Integer>> before = positions();
+        jdbcTemplate.update("UPDATE categories SET \"right\" = \"right\" + 5 WHERE id = ?", ids.get("a3"));
+        jdbcTemplate.update("UPDATE categories SET depth = 7 WHERE id = ?", ids.get("a11"));
+        jdbcTemplate.update("UPDATE categories SET tree_id = ? WHERE id = ?", ids.get("a"), ids.get("b11"));
+
+        RebuildProgress progress = categoryService.rebuildTree(null);
+
+        assertEquals(RebuildProgress.Phase.DONE, progress.getPhase());
+        assertEquals(8, progress.getRead());
+        assertEquals(3, progress.getChanged());
+        assertEquals(before, positions());
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    @Test
+    void rebuildsOneTreeKeepingTheLeftBoundOfItsRoot() {
+        jdbcTemplate.update("UPDATE categories SET \"left\" = \"left\" + 100, \"right\" = \"right\" + 100 "
+            + "WHERE tree_id = ?", ids.get("b"));
+        Map<String, List<Integer>> before = positions();
+        jdbcTemplate.update("UPDATE categories SET \"left\" = \"left\" + 1 WHERE id = ?", ids.get("b11"));
+        jdbcTemplate.update("UPDATE categories SET depth = 0 WHERE id = ?", ids.get("b1"));
+
+        RebuildProgress progress = categoryService.rebuildTree(categoryService.findById(ids.get("b")));
+
+        assertEquals(ids.get("b"), progress.getTreeId());
+        assertEquals(3, progress.getRead());
+        assertEquals(2, progress.getChanged());
+        assertEquals(before, positions(), "the root of the tree keeps its left bound, the other tree is untouched");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    /**
+     * @return Map<String, List<Integer>> The left and right bounds and the depth of every category, by ID.
+     */
+    private Map<String, List<Integer>> positions() {
+        Map<String, List<Integer>> positions = new HashMap<>();
+        jdbcTemplate.query("SELECT id, \"left\", \"right\", depth FROM categories", rs -> {
+            positions.put(rs.getString(1), List.of(rs.getInt(2), rs.getInt(3), rs.getInt(4)));
+        });
+        return positions;
+    }
+}
@@ -0,0 +1,175 @@
+package com.mewebstudio.nestedset.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryBatchItemRequest;
+import com.mewebstudio.nestedset.entity.Category;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Plants violations of the nested-set invariants through JDBC and checks them with {@link CategoryTreeVerifier},
+ * directly and through {@code /actuator/treeintegrity}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+class CategoryTreeVerifierTests {
+    @Autowired
+    private CategoryTreeVerifier categoryTreeVerifier;
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    private Map<String, String> ids;
+
+    @BeforeEach
+    void setUp() {
+        List<Category> created = categoryService.createAll(List.of(
+            new CreateCategoryBatchItemRequest("a", "verify-a", null, null),
+            new CreateCategoryBatchItemRequest("a1", "verify-a1", null, "a"),
+            new CreateCategoryBatchItemRequest("a11", "verify-a11", null, "a1"),
+            new CreateCategoryBatchItemRequest("a2", "verify-a2", null, "a"),
+            new CreateCategoryBatchItemRequest("a3", "verify-a3", null, "a"),
+            new CreateCategoryBatchItemRequest("b", "verify-b", null, null),
+            new CreateCategoryBatchItemRequest("b1", "verify-b1", null, "b")));
+        ids = new HashMap<>();
+        created.forEach(category -> ids.put(category.getName().substring("verify-".length()), category.getId()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+    }
+
+    @Test
+    void passesAValidForest() {
+        TreeIntegrityReport report = categoryTreeVerifier.verify(100);
+
+        assertTrue(report.isValid());
+        assertTrue(report.isConsistent());
+        assertEquals(7, report.getChecked());
+        assertEquals(0, report.getViolationCount());
+        assertTrue(report.getViolations().isEmpty());
+
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity("/actuator/treeintegrity", JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertTrue(response.getBody().get("valid").asBoolean());
+        assertEquals(7, response.getBody().get("checked").asLong());
+    }
+
+    @ParameterizedTest
+    @EnumSource(TreeIntegrityReport.Type.class)
+    void reportsAPlantedViolation(TreeIntegrityReport.Type type) {
+        String categoryId = plant(type);
+
+        TreeIntegrityReport report = categoryTreeVerifier.verify(100);
+
+        assertFalse(report.isValid(), type.name());
+        assertTrue(report.getViolations().stream().anyMatch(violation -> violation.getType() == type
+                && (categoryId == null || categoryId.equals(violation.getCategoryId()))),
+            type + " in " + report.getViolations().stream().map(TreeIntegrityReport.Violation::getType).toList());
+    }
+
+    @Test
+    void reportsTheFirstViolationsUpToTheLimit() {
+        jdbcTemplate.update("UPDATE categories SET depth = 9 WHERE parent_id IS NOT NULL");
+
+        TreeIntegrityReport all = categoryTreeVerifier.verify(100);
+        TreeIntegrityReport limited = categoryTreeVerifier.verify(2);
+
+        assertEquals(5, all.getViolationCount());
+        assertEquals(5, all.getViolations().size());
+        assertEquals(5, limited.getViolationCount(), "every violation is counted");
+        assertEquals(2, limited.getViolations().size());
+        assertEquals(all.getViolations().subList(0, 2).stream().map(TreeIntegrityReport.Violation::getCategoryId)
+            .toList(), limited.getViolations().stream().map(TreeIntegrityReport.Violation::getCategoryId).toList());
+
+        ResponseEntity<JsonNode> response = restTemplate.getForEntity("/actuator/treeintegrity?limit=1",
+            JsonNode.class);
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(5, response.getBody().get("violationCount").asLong());
+        assertEquals(1, response.getBody().get("violations").size());
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {0, -1, 10_001})
+    void rejectsALimitOutOfRange(int limit) {
+        ResponseEntity<String> response = restTemplate.getForEntity("/actuator/treeintegrity?limit=" + limit,
+            String.class);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode(), response.getBody());
+    }
+
+    /**
+     * Break one invariant of tree {@code a}, or of the link between the two trees.
+     *
+     * @param type TreeIntegrityReport.Type The invariant to break.
+     * @return String? The category the violation is reported for, null for a bound of a tree.
+     */
+    private String plant(TreeIntegrityReport.Type type) {
+        return switch (type) {
+            case MISSING_TREE_ID -> set("a3", "tree_id = NULL");
+            case INVERTED_BOUNDS -> set("a2", "\"left\" = \"right\", \"right\" = \"left\"");
+            case DUPLICATE_BOUND -> {
+                set("a3", "\"left\" = ?", bounds("a2")[1]);
+                yield null;
+            }
+            case GAP -> {
+                set("a", "\"right\" = \"right\" + 1");
+                yield null;
+            }
+            case MISSING_PARENT -> {
+                jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY FALSE");
+                try {
+                    yield set("a3", "parent_id = ?", "01ARZ3NDEKTSV4RRFFQ69G5FAV");
+                } finally {
+                    jdbcTemplate.execute("SET REFERENTIAL_INTEGRITY TRUE");
+                }
+            }
+            case TREE_MISMATCH -> set("b1", "parent_id = ?", ids.get("a2"));
+            case NOT_ENCLOSED -> set("a11", "\"right\" = ?", bounds("a1")[1]);
+            case OVERLAP -> set("a2", "\"left\" = ?", bounds("a1")[1] - 1);
+            case WRONG_DEPTH -> set("a2", "depth = 3");
+        };
+    }
+
+    /**
+     * @return String The ID of the category updated.
+     */
+    private String set(String name, String assignments, Object... values) {
+        Object[] args = Arrays.copyOf(values, values.length + 1);
+        args[values.length] = ids.get(name);
+        jdbcTemplate.update("UPDATE categories SET " + assignments + " WHERE id = ?", args);
+        return ids.get(name);
+    }
+
+    private int[] bounds(String name) {
+        return jdbcTemplate.queryForObject("SELECT \"left\", \"right\" FROM categories WHERE id = ?",
+            (rs, row) -> new int[]{rs.getInt(1), rs.getInt(2)}, ids.get(name));
+    }
+}
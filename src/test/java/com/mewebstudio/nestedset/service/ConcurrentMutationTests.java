@@ -0,0 +1,165 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.dto.request.CreateCategoryRequest;
+import com.mewebstudio.nestedset.dto.request.UpdateCategoryRequest;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent.Operation;
+import com.mewebstudio.nestedset.exception.BadRequestException;
+import com.mewebstudio.nestedset.exception.NotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs random mutations from several threads at once, the way concurrent requests reach the service, then checks
+ * that the nested-set invariants hold and that no committed mutation was lost. A short run, the long one is
+ * {@code ConcurrentMutationStressTests}.
+ */
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("test")
+public class ConcurrentMutationTests {
+    private final Logger log = LoggerFactory.getLogger(getClass());
+
+    @Autowired
+    private CategoryService categoryService;
+
+    @Autowired
+    private TreeMutationRetrier treeMutationRetrier;
+
+    @Autowired
+    private NestedSetProperties nestedSetProperties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.update("DELETE FROM categories");
+        nestedSetProperties.setConcurrency(NestedSetProperties.Concurrency.LOCK);
+    }
+
+    @ParameterizedTest
+    @EnumSource(NestedSetProperties.Concurrency.class)
+    void concurrentMutationsKeepTheTreesValid(NestedSetProperties.Concurrency concurrency) throws Exception {
+        nestedSetProperties.setConcurrency(concurrency);
+        List<String> ids = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ids.add(categoryService.create(new CreateCategoryRequest(concurrency + "-root-" + i, null)).getId());
+        }
+        long versionBefore = categoryService.getVersion();
+        double retriesBefore = count("category.mutation.retries");
+
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger names = new AtomicInteger();
+        ConcurrentLinkedQueue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        int threads = threads();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            Random random = new Random(t);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < operationsPerThread(); i++) {
+                    try {
+                        mutate(random, ids, concurrency + "-" + names.incrementAndGet());
+                        committed.incrementAndGet();
+                    } catch (NotFoundException | BadRequestException e) {
+                        // Deleted by another thread, or a move under its own subtree.
+                        skipped.incrementAndGet();
+                    } catch (ConcurrencyFailureException e) {
+                        // Out of retries, answered with 409.
+                        rejected.incrementAndGet();
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+        log.debug("concurrency={} threads={} committed={} rejected={} skipped={} retries={} elapsedMs={}",
+            concurrency, threads, committed.get(), rejected.get(), skipped.get(),
+            count("category.mutation.retries") - retriesBefore, elapsedMs);
+        assertTrue(failures.isEmpty(), () -> failures.size() + " mutations failed, the first with: " + failures.peek());
+        assertEquals(threads * operationsPerThread(), committed.get() + rejected.get() + skipped.get(),
+            "every mutation is committed, rejected or skipped");
+        assertEquals(versionBefore + committed.get(), categoryService.getVersion(), "every commit bumps the version");
+        TreeInvariants.assertValid(jdbcTemplate);
+    }
+
+    /**
+     * @return int The number of threads mutating at once.
+     */
+    protected int threads() {
+        return 4;
+    }
+
+    /**
+     * @return int The number of mutations each thread runs.
+     */
+    protected int operationsPerThread() {
+        return 75;
+    }
+
+    private void mutate(Random random, List<String> ids, String name) {
+        if (ids.size() < 3) {
+            ids.add(treeMutationRetrier.execute(Operation.CREATE,
+                () -> categoryService.create(new CreateCategoryRequest(name, null))).getId());
+            return;
+        }
+
+        String id = ids.get(random.nextInt(ids.size()));
+        int operation = random.nextInt(10);
+        if (operation < 5) {
+            String parentId = random.nextInt(10) == 0 ? null : id;
+            ids.add(treeMutationRetrier.execute(Operation.CREATE,
+                () -> categoryService.create(new CreateCategoryRequest(name, parentId))).getId());
+        } else if (operation < 7) {
+            String parentId = ids.get(random.nextInt(ids.size()));
+            treeMutationRetrier.execute(Operation.UPDATE,
+                () -> categoryService.update(id, new UpdateCategoryRequest(name, parentId)));
+        } else if (operation < 9) {
+            boolean up = random.nextBoolean();
+            treeMutationRetrier.execute(up ? Operation.MOVE_UP : Operation.MOVE_DOWN, () -> up
+                ? categoryService.moveUp(categoryService.findById(id))
+                : categoryService.moveDown(categoryService.findById(id)));
+        } else {
+            treeMutationRetrier.execute(Operation.DELETE, () -> categoryService.delete(id));
+            ids.remove(id);
+        }
+    }
+
+    private double count(String name) {
+        return meterRegistry.find(name).counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+}
@@ -0,0 +1,22 @@
+package com.mewebstudio.nestedset.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+/**
+ * {@link ConcurrentMutationTests} with gapped numbering. The gap step is small enough that the gaps run out after a
+ * few inserts, so the mutations keep renumbering subtrees and widening roots while the others run. The context has a
+ * database of its own, the schema it creates and drops would otherwise replace the one of the other tests.
+ */
+@SpringBootTest(
+    webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+    properties = {
+        "app.nested-set.numbering=gapped",
+        "app.nested-set.gap-step=4",
+        "spring.datasource.url=jdbc:h2:mem:gapped;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;"
+            + "DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=30000;QUERY_CACHE_SIZE=0"
+    }
+)
+@ActiveProfiles("test")
+class GappedConcurrentMutationTests extends ConcurrentMutationTests {
+}
@@ -0,0 +1,71 @@
+package com.mewebstudio.nestedset.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the nested-set invariants of the rows a test leaves behind.
+ */
+public final class TreeInvariants {
+    private TreeInvariants() {
+    }
+
+    /**
+     * Check every tree with one pass over its rows in left order: bounds are ordered and unique, every row sits
+     * right inside its parent with the depth of its parent plus one, and no two subtrees overlap.
+     *
+     * @param jdbcTemplate JdbcTemplate The template the rows are read with.
+     */
+    public static void assertValid(JdbcTemplate jdbcTemplate) {
+        Map<String, List<Object[]>> trees = new HashMap<>();
+        jdbcTemplate.query("SELECT id, parent_id, tree_id, \"left\", \"right\", depth FROM categories "
+                + "ORDER BY tree_id, \"left\"",
+            rs -> {
+                trees.computeIfAbsent(rs.getString(3), key -> new ArrayList<>()).add(new Object[]{
+                    rs.getString(1), rs.getString(2), rs.getInt(4), rs.getInt(5), rs.getInt(6)});
+            });
+
+        for (Map.Entry<String, List<Object[]>> tree : trees.entrySet()) {
+            Deque<Object[]> open = new ArrayDeque<>();
+            int lastBound = Integer.MIN_VALUE;
+            List<Integer> bounds = new ArrayList<>();
+            for (Object[] row : tree.getValue()) {
+                int left = (int) row[2];
+                int right = (int) row[3];
+                while (!open.isEmpty() && (int) open.peek()[3] < left) {
+                    open.pop();
+                }
+                assertTrue(left < right, "left < right for " + row[0]);
+                assertTrue(left > lastBound, "unique left for " + row[0]);
+                lastBound = left;
+                bounds.add(left);
+                bounds.add(right);
+                if (open.isEmpty()) {
+                    assertEquals(tree.getKey(), row[0], "the root of a tree is its ID");
+                    assertEquals(null, row[1], "a root has no parent");
+                    assertEquals(0, row[4], "a root has depth 0");
+                } else {
+                    Object[] parent = open.peek();
+                    assertTrue(right < (int) parent[3], "no overlap for " + row[0]);
+                    assertEquals(parent[0], row[1], "parent of " + row[0]);
+                    assertEquals((int) parent[4] + 1, row[4], "depth of " + row[0]);
+                }
+                open.push(row);
+            }
+            Collections.sort(bounds);
+            for (int i = 1; i < bounds.size(); i++) {
+                assertTrue(bounds.get(i - 1) < bounds.get(i), "unique bounds in " + tree.getKey());
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.mewebstudio.nestedset.service;
+
+import com.mewebstudio.nestedset.config.NestedSetProperties;
+import com.mewebstudio.nestedset.entity.Category;
+import com.mewebstudio.nestedset.event.CategoryTreeChangedEvent.Operation;
+import com.mewebstudio.nestedset.exception.ConcurrentTreeModificationException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Checks which failures {@link TreeMutationRetrier} runs a mutation again for, with the violations Hibernate reports.
+ */
+class TreeMutationRetrierTests {
+    private static final int MAX_RETRIES = 2;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private TreeMutationRetrier retrier;
+
+    @BeforeEach
+    void setUp() {
+        NestedSetProperties nestedSetProperties = new NestedSetProperties();
+        nestedSetProperties.setMaxRetries(MAX_RETRIES);
+        retrier = new TreeMutationRetrier(nestedSetProperties, meterRegistry);
+    }
+
+    @Test
+    void retriesAConcurrentModificationUntilItSucceeds() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retrier.execute(Operation.CREATE, () -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new ConcurrentTreeModificationException("Moved");
+            }
+            return "done";
+        });
+
+        assertEquals("done", result);
+        assertEquals(3, attempts.get());
+        assertEquals(2, meterRegistry.counter("category.mutation.retries", "operation", "create").count());
+    }
+
+    @Test
+    void reportsADeletedParentAsAConcurrentModification() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        ConcurrentTreeModificationException e = assertThrows(ConcurrentTreeModificationException.class,
+            () -> retrier.execute(Operation.CREATE, () -> fail(attempts, Category.PARENT_FOREIGN_KEY, null)));
+
+        assertEquals(MAX_RETRIES + 1, attempts.get());
+        assertEquals(1, meterRegistry.counter("category.mutation.conflicts", "operation", "create").count());
+        assertEquals(DataIntegrityViolationException.class, e.getCause().getClass());
+    }
+
+    @Test
+    void retriesAUniqueKeyAndThrowsItAsItIs() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        DataIntegrityViolationException e = assertThrows(DataIntegrityViolationException.class,
+            () -> retrier.execute(Operation.CREATE, () -> fail(attempts, "uk_categories_name",
+                ConstraintViolationException.ConstraintKind.UNIQUE)));
+
+        assertEquals(MAX_RETRIES + 1, attempts.get());
+        assertSame(DataIntegrityViolationException.class, e.getClass());
+    }
+
+    @Test
+    void throwsAnyOtherViolationOnTheFirstAttempt() {
+        for (String name : new String[]{"k_categories_parent_id", "fk_other_parent_id", "nn_categories_name", null}) {
+            AtomicInteger attempts = new AtomicInteger();
+
+            assertThrows(DataIntegrityViolationException.class,
+                () -> retrier.execute(Operation.CREATE, () -> fail(attempts, name, null)));
+
+            assertEquals(1, attempts.get(), String.valueOf(name));
+        }
+    }
+
+    private static Object fail(AtomicInteger attempts, String constraintName,
+                               ConstraintViolationException.ConstraintKind kind) {
+        attempts.incrementAndGet();
+        ConstraintViolationException violation = kind != null
+            ? new ConstraintViolationException("Violated", new SQLException(), kind, constraintName)
+            : new ConstraintViolationException("Violated", new SQLException(), constraintName);
+        throw new DataIntegrityViolationException("Could not execute statement", violation);
+    }
+}